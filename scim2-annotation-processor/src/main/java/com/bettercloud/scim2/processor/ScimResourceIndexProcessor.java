@@ -0,0 +1,102 @@
+package com.bettercloud.scim2.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Writes the names of all classes annotated with both {@code @ScimResource} and {@code @RequestMapping} to {@link #INDEX_LOCATION}.
+ * With {@code scim2.useResourceIndex} enabled the starter reads this index at startup instead of scanning the classpath.
+ * <p>
+ * The annotations are matched by name so that this processor does not depend on the starter or on Spring.
+ */
+@SupportedAnnotationTypes(ScimResourceIndexProcessor.SCIM_RESOURCE_ANNOTATION)
+public class ScimResourceIndexProcessor extends AbstractProcessor {
+
+    /**
+     * The location of the index within the compiled classes.
+     */
+    public static final String INDEX_LOCATION = "META-INF/scim2.resources";
+
+    static final String SCIM_RESOURCE_ANNOTATION = "com.bettercloud.scim2.server.annotation.ScimResource";
+
+    private static final String REQUEST_MAPPING_ANNOTATION = "org.springframework.web.bind.annotation.RequestMapping";
+
+    private final Set<String> resourceClasses = new TreeSet<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(final Set<? extends TypeElement> annotations, final RoundEnvironment roundEnv) {
+        for (final TypeElement annotation : annotations) {
+            for (final Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (element.getKind() == ElementKind.CLASS && isRequestMapping(element, new ArrayList<>())) {
+                    resourceClasses.add(processingEnv.getElementUtils().getBinaryName((TypeElement) element).toString());
+                }
+            }
+        }
+
+        if (roundEnv.processingOver() && !resourceClasses.isEmpty()) {
+            writeIndex();
+        }
+
+        return false;
+    }
+
+    /**
+     * Check whether the element is annotated with {@code @RequestMapping}, either directly or through a composed annotation.
+     *
+     * @param element The element to check.
+     * @param visited The annotation types already checked, used to stop on annotations that annotate each other.
+     *
+     * @return true if the element is annotated with {@code @RequestMapping}.
+     */
+    private boolean isRequestMapping(final Element element, final List<Element> visited) {
+        for (final AnnotationMirror annotationMirror : element.getAnnotationMirrors()) {
+            final TypeElement annotationType = (TypeElement) annotationMirror.getAnnotationType().asElement();
+            if (annotationType.getQualifiedName().contentEquals(REQUEST_MAPPING_ANNOTATION)) {
+                return true;
+            }
+            if (!visited.contains(annotationType) && !annotationType.getQualifiedName().toString().startsWith("java.lang.annotation.")) {
+                visited.add(annotationType);
+                if (isRequestMapping(annotationType, visited)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private void writeIndex() {
+        try {
+            final FileObject index = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", INDEX_LOCATION);
+            try (Writer writer = new OutputStreamWriter(index.openOutputStream(), StandardCharsets.UTF_8)) {
+                for (final String resourceClass : resourceClasses) {
+                    writer.write(resourceClass);
+                    writer.write('\n');
+                }
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Unable to write " + INDEX_LOCATION + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.bettercloud.scim2.processor;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ScimResourceIndexProcessorTest {
+
+    private static final String SCIM_RESOURCE = "package com.bettercloud.scim2.server.annotation;\n"
+                                                + "@java.lang.annotation.Retention(java.lang.annotation.RetentionPolicy.RUNTIME)\n"
+                                                + "public @interface ScimResource { String name(); }";
+
+    private static final String REQUEST_MAPPING = "package org.springframework.web.bind.annotation;\n"
+                                                  + "@java.lang.annotation.Retention(java.lang.annotation.RetentionPolicy.RUNTIME)\n"
+                                                  + "public @interface RequestMapping { String[] value() default {}; }";
+
+    private static final String COMPOSED_MAPPING = "package com.example;\n"
+                                                   + "@org.springframework.web.bind.annotation.RequestMapping\n"
+                                                   + "@java.lang.annotation.Retention(java.lang.annotation.RetentionPolicy.RUNTIME)\n"
+                                                   + "public @interface ComposedMapping { }";
+
+    private static final String USER_CONTROLLER = "package com.example;\n"
+                                                   + "@com.bettercloud.scim2.server.annotation.ScimResource(name = \"User\")\n"
+                                                   + "@org.springframework.web.bind.annotation.RequestMapping(\"/Users\")\n"
+                                                   + "public class UserController {\n"
+                                                   + "  @com.bettercloud.scim2.server.annotation.ScimResource(name = \"Nested\")\n"
+                                                   + "  @ComposedMapping\n"
+                                                   + "  public static class NestedController { }\n"
+                                                   + "}";
+
+    private static final String UNMAPPED_RESOURCE = "package com.example;\n"
+                                                    + "@com.bettercloud.scim2.server.annotation.ScimResource(name = \"Unmapped\")\n"
+                                                    + "public class UnmappedResource { }";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void writesIndexOfMappedResources() throws Exception {
+        final File output = compile(source("com.bettercloud.scim2.server.annotation.ScimResource", SCIM_RESOURCE),
+                                    source("org.springframework.web.bind.annotation.RequestMapping", REQUEST_MAPPING),
+                                    source("com.example.ComposedMapping", COMPOSED_MAPPING),
+                                    source("com.example.UserController", USER_CONTROLLER),
+                                    source("com.example.UnmappedResource", UNMAPPED_RESOURCE));
+
+        final File index = new File(output, ScimResourceIndexProcessor.INDEX_LOCATION);
+        assertTrue(index.exists());
+        assertEquals(Arrays.asList("com.example.UserController", "com.example.UserController$NestedController"),
+                     Files.readAllLines(index.toPath(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void writesNoIndexWithoutResources() throws Exception {
+        final File output = compile(source("org.springframework.web.bind.annotation.RequestMapping", REQUEST_MAPPING));
+
+        assertFalse(new File(output, ScimResourceIndexProcessor.INDEX_LOCATION).exists());
+    }
+
+    private File compile(final JavaFileObject... sources) throws Exception {
+        final File output = temporaryFolder.newFolder();
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, StandardCharsets.UTF_8)) {
+            fileManager.setLocation(StandardLocation.CLASS_OUTPUT, Collections.singletonList(output));
+
+            final List<String> options = Collections.singletonList("-proc:only");
+            final JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, null, options, null, Arrays.asList(sources));
+            task.setProcessors(Collections.singletonList(new ScimResourceIndexProcessor()));
+            assertTrue(task.call());
+        }
+        return output;
+    }
+
+    private JavaFileObject source(final String className, final String content) {
+        return new SimpleJavaFileObject(URI.create("string:///" + className.replace('.', '/') + ".java"), JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(final boolean ignoreEncodingErrors) {
+                return content;
+            }
+        };
+    }
+}
@@ -31,6 +31,7 @@ import com.bettercloud.scim2.common.exceptions.BadRequestException;
 import com.bettercloud.scim2.common.exceptions.ScimException;
 import com.bettercloud.scim2.common.types.Meta;
 import com.bettercloud.scim2.common.utils.JsonUtils;
+import com.bettercloud.scim2.common.utils.SchemaRegistry;
 import com.bettercloud.scim2.common.utils.SchemaUtils;
 
 import java.io.Serializable;
@@ -202,21 +203,24 @@ public abstract class BaseScimResource implements ScimResource, Serializable {
    * @param value value of the field.
    *
    * @throws ScimException if the key is not an extension attribute namespace
-   * (the key name doesn't start with "{@code urn:}").
+   * (the key name doesn't start with "{@code urn:}" and is not the URN of a
+   * schema in the {@link SchemaRegistry#getDefault() default registry}).
    */
   @JsonAnySetter
   protected void setAny(final String key,
                         final JsonNode value)
       throws ScimException
   {
-    if(SchemaUtils.isUrn(key) && value.isObject())
+    if((SchemaUtils.isUrn(key) ||
+        SchemaRegistry.getDefault().getSchema(key) != null) &&
+        value.isObject())
     {
       extensionObjectNode.set(key, value);
     }
     else
     {
       Schema schemaAnnotation = this.getClass().getAnnotation(Schema.class);
-      if (!schemaAnnotation.ignoreUnknown()) {
+      if (schemaAnnotation == null || !schemaAnnotation.ignoreUnknown()) {
         String message = "Core attribute " + key + " is undefined";
         if (schemaAnnotation != null) {
           message += " for schema " + schemaAnnotation.id();
@@ -2270,7 +2270,7 @@ public final class GenericScimResource implements ScimResource, Serializable
   {
     try
     {
-      return JsonUtils.getObjectReader().forType(Date.class).readValue(node);
+      return JsonUtils.getObjectReader(Date.class).readValue(node);
     }
     catch(JsonProcessingException ex)
     {
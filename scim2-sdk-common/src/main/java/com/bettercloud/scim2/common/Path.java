@@ -98,8 +98,7 @@ public final class Path implements Iterable<Path.Element>
 
       Element element = (Element) o;
 
-      if (!StaticUtils.toLowerCase(attribute).equals(
-          StaticUtils.toLowerCase(element.attribute)))
+      if (!StaticUtils.equalsIgnoreCase(attribute, element.attribute))
       {
         return false;
       }
@@ -118,7 +117,7 @@ public final class Path implements Iterable<Path.Element>
     @Override
     public int hashCode()
     {
-      int result = StaticUtils.toLowerCase(attribute).hashCode();
+      int result = StaticUtils.hashCodeIgnoreCase(attribute);
       result = 31 * result + (valueFilter != null ? valueFilter.hashCode() : 0);
       return result;
     }
@@ -442,8 +441,7 @@ public final class Path implements Iterable<Path.Element>
   @Override
   public int hashCode()
   {
-    int result = schemaUrn != null ?
-        StaticUtils.toLowerCase(schemaUrn).hashCode() : 0;
+    int result = StaticUtils.hashCodeIgnoreCase(schemaUrn);
     result = 31 * result + elements.hashCode();
     return result;
   }
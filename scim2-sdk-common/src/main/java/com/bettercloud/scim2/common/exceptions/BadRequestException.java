@@ -84,6 +84,12 @@ public class BadRequestException extends ScimException
    */
   public static final String INVALID_VERSION = "invalidVersion";
 
+  /**
+   * The SCIM detailed error keyword that indicates the cursor used for
+   * cursor-based pagination is invalid.
+   */
+  public static final String INVALID_CURSOR = "invalidCursor";
+
   /**
    * Create a new <code>BadRequestException</code> from the provided
    * information.
@@ -152,6 +158,18 @@ public class BadRequestException extends ScimException
     return new BadRequestException(errorMessage, TOO_MANY);
   }
 
+  /**
+   * Factory method to create a new <code>BadRequestException</code> with the
+   * invalidCursor SCIM detailed error keyword.
+   *
+   * @param errorMessage  The error message for this SCIM exception.
+   * @return The new <code>BadRequestException</code>.
+   */
+  public static BadRequestException invalidCursor(final String errorMessage)
+  {
+    return new BadRequestException(errorMessage, INVALID_CURSOR);
+  }
+
   /**
    * Factory method to create a new <code>BadRequestException</code> with the
    * uniqueness SCIM detailed error keyword.
@@ -19,7 +19,6 @@ package com.bettercloud.scim2.common.messages;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
-import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.databind.ObjectWriter;
 import com.bettercloud.scim2.common.BaseScimResource;
@@ -70,6 +69,11 @@ public final class ListResponse<T> extends BaseScimResource
   @JsonProperty("itemsPerPage")
   private final Integer itemsPerPage;
 
+  @Attribute(description = "A cursor identifying the next page of results " +
+      "when using cursor-based pagination")
+  @JsonProperty("nextCursor")
+  private final String nextCursor;
+
   /**
    * Create a new List Response.
    *
@@ -92,6 +96,8 @@ public final class ListResponse<T> extends BaseScimResource
       (Integer)properties.get("startIndex") : null;
     this.itemsPerPage =  properties.containsKey("itemsPerPage") ?
       (Integer)properties.get("itemsPerPage") : null;
+    this.nextCursor = properties.containsKey("nextCursor") ?
+      (String)properties.get("nextCursor") : null;
     if (properties.containsKey("schemas"))
     {
       this.setSchemaUrns((Collection<String>)properties.get("schemas"));
@@ -113,18 +119,42 @@ public final class ListResponse<T> extends BaseScimResource
                       final List<T> resources,
                       final Integer startIndex,
                       final Integer itemsPerPage)
+  {
+    this(totalResults, resources, startIndex, itemsPerPage, null);
+  }
+
+  /**
+   * Create a new List Response.
+   *
+   * @param totalResults The total number of results returned.
+   * @param resources A multi-valued list of complex objects containing the
+   *                  requested resources
+   * @param startIndex The 1-based index of hte first result in the current
+   *                   set of list results
+   * @param itemsPerPage The number of resources returned in a list response
+   *                     page.
+   * @param nextCursor The cursor identifying the next page of results when
+   *                   using cursor-based pagination, or {@code null} if this
+   *                   is the last page.
+   */
+  public ListResponse(final int totalResults,
+                      final List<T> resources,
+                      final Integer startIndex,
+                      final Integer itemsPerPage,
+                      final String nextCursor)
   {
     this.totalResults = totalResults;
     this.startIndex   = startIndex;
     this.itemsPerPage = itemsPerPage;
+    this.nextCursor   = nextCursor;
 
-    final ObjectReader reader = JsonUtils.getObjectReader();
+    final ObjectReader reader =
+      JsonUtils.getObjectReader(JsonUtils.getListType(Object.class));
     final ObjectWriter writer = JsonUtils.getObjectWriter();
     try
     {
-      final String rawResources = writer.writeValueAsString(resources);
-      this.resources = reader.forType(
-        new TypeReference<List<T>>(){}).readValue(rawResources);
+      final byte[] rawResources = writer.writeValueAsBytes(resources);
+      this.resources = reader.readValue(rawResources);
     }
     catch (final IOException ie)
     {
@@ -144,6 +174,7 @@ public final class ListResponse<T> extends BaseScimResource
     this.resources = new ArrayList<T>(resources);
     this.startIndex = null;
     this.itemsPerPage = null;
+    this.nextCursor = null;
   }
 
   /**
@@ -192,6 +223,18 @@ public final class ListResponse<T> extends BaseScimResource
     return itemsPerPage;
   }
 
+  /**
+   * Retrieves the cursor identifying the next page of results when using
+   * cursor-based pagination.
+   *
+   * @return The cursor identifying the next page of results or {@code null}
+   * if this is the last page or cursor-based pagination is not used.
+   */
+  public String getNextCursor()
+  {
+    return nextCursor;
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -240,6 +283,11 @@ public final class ListResponse<T> extends BaseScimResource
     {
       return false;
     }
+    if (nextCursor != null ? !nextCursor.equals(that.nextCursor) :
+        that.nextCursor != null)
+    {
+      return false;
+    }
 
     return true;
   }
@@ -255,6 +303,7 @@ public final class ListResponse<T> extends BaseScimResource
     result = 31 * result + resources.hashCode();
     result = 31 * result + (startIndex != null ? startIndex.hashCode() : 0);
     result = 31 * result + (itemsPerPage != null ? itemsPerPage.hashCode() : 0);
+    result = 31 * result + (nextCursor != null ? nextCursor.hashCode() : 0);
     return result;
   }
 
@@ -137,8 +137,7 @@ public abstract class PatchOperation
         throw new IllegalArgumentException("Patch operation contains " +
             "multiple values");
       }
-      return JsonUtils.getObjectReader().treeToValue(
-          value, cls);
+      return JsonUtils.nodeToValue(value, cls);
     }
 
     /**
@@ -151,7 +150,7 @@ public abstract class PatchOperation
       ArrayList<T> objects = new ArrayList<T>(value.size());
       for(JsonNode node : value)
       {
-        objects.add(JsonUtils.getObjectReader().treeToValue(node, cls));
+        objects.add(JsonUtils.nodeToValue(node, cls));
       }
       return objects;
     }
@@ -347,7 +346,7 @@ public abstract class PatchOperation
         throw new IllegalArgumentException("Patch operation contains " +
             "multiple values");
       }
-      return JsonUtils.getObjectReader().treeToValue(value, cls);
+      return JsonUtils.nodeToValue(value, cls);
     }
 
     /**
@@ -360,7 +359,7 @@ public abstract class PatchOperation
       ArrayList<T> objects = new ArrayList<T>(value.size());
       for(JsonNode node : value)
       {
-        objects.add(JsonUtils.getObjectReader().treeToValue(node, cls));
+        objects.add(JsonUtils.nodeToValue(node, cls));
       }
       return objects;
     }
@@ -0,0 +1,330 @@
+/*
+ * Copyright 2015-2019 Ping Identity Corporation
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License (GPLv2 only)
+ * or the terms of the GNU Lesser General Public License (LGPLv2.1 only)
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ */
+
+package com.bettercloud.scim2.common.messages;
+
+import com.bettercloud.scim2.common.utils.JsonUtils;
+import com.bettercloud.scim2.common.utils.StaticUtils;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A reader for SCIM 2 list responses that returns the resources one at a
+ * time as they are parsed instead of binding the whole response to a
+ * {@link ListResponse}. Only one resource is held in memory at a time no
+ * matter how large the response is.
+ * <p>
+ * The {@code totalResults}, {@code startIndex}, {@code itemsPerPage} and
+ * {@code nextCursor} attributes are available as soon as they have been
+ * read. Attributes that appear before {@code Resources} are read when the
+ * reader is created; attributes that appear after it are read once all
+ * resources have been returned. Attribute names are matched
+ * case-insensitively.
+ * <p>
+ * For example:
+ * <pre>
+ *   try (ScimListReader&lt;UserResource&gt; reader =
+ *            new ScimListReader&lt;UserResource&gt;(in, UserResource.class))
+ *   {
+ *     reader.stream().forEach(user -&gt; process(user));
+ *   }
+ * </pre>
+ *
+ * @param <T> The type of the returned resources.
+ */
+public final class ScimListReader<T> implements Iterator<T>, Closeable
+{
+  private final JsonParser parser;
+  private final ObjectReader reader;
+  private Integer totalResults;
+  private Integer startIndex;
+  private Integer itemsPerPage;
+  private String nextCursor;
+  private boolean inResources;
+  private boolean nextReady;
+
+  /**
+   * Create a new reader for the list response in the provided input stream.
+   * The input stream is closed when this reader is closed.
+   *
+   * @param inputStream The input stream containing the list response.
+   * @param resourceType The type of the returned resources.
+   * @throws IOException If an error occurs while reading the attributes
+   *                     preceding the resources.
+   */
+  public ScimListReader(final InputStream inputStream,
+                        final Class<T> resourceType)
+      throws IOException
+  {
+    this(JsonUtils.getConfig().getObjectMapper().getFactory().createParser(
+        inputStream), resourceType);
+  }
+
+  /**
+   * Create a new reader for the list response returned by the provided
+   * parser. The parser must either be positioned before the list response
+   * object or on its start. The parser is closed when this reader is closed.
+   *
+   * @param parser The parser returning the list response.
+   * @param resourceType The type of the returned resources.
+   * @throws IOException If an error occurs while reading the attributes
+   *                     preceding the resources.
+   */
+  public ScimListReader(final JsonParser parser, final Class<T> resourceType)
+      throws IOException
+  {
+    this.parser = parser;
+    this.reader = JsonUtils.getObjectReader(resourceType);
+
+    JsonToken token = parser.hasCurrentToken() ?
+        parser.getCurrentToken() : parser.nextToken();
+    if (token != JsonToken.START_OBJECT)
+    {
+      throw JsonMappingException.from(parser,
+          "Expected the start of a list response object but found " + token);
+    }
+    readAttributes();
+  }
+
+  /**
+   * Retrieves the total number of results returned by the list or query
+   * operation.
+   *
+   * @return The total number of results or {@code null} if it has not been
+   * read yet.
+   */
+  public Integer getTotalResults()
+  {
+    return totalResults;
+  }
+
+  /**
+   * Retrieves the 1-based index of the first result in the current set of
+   * list results.
+   *
+   * @return The 1-based index of the first result or {@code null} if it is
+   * not present or has not been read yet.
+   */
+  public Integer getStartIndex()
+  {
+    return startIndex;
+  }
+
+  /**
+   * Retrieves the number of resources returned in a list response page.
+   *
+   * @return The number of resources returned in a list response page or
+   * {@code null} if it is not present or has not been read yet.
+   */
+  public Integer getItemsPerPage()
+  {
+    return itemsPerPage;
+  }
+
+  /**
+   * Retrieves the cursor identifying the next page of results when using
+   * cursor-based pagination.
+   *
+   * @return The cursor identifying the next page of results or {@code null}
+   * if it is not present or has not been read yet.
+   */
+  public String getNextCursor()
+  {
+    return nextCursor;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @throws UncheckedIOException If an error occurs while reading the
+   *                              response.
+   */
+  @Override
+  public boolean hasNext()
+  {
+    if (nextReady)
+    {
+      return true;
+    }
+    if (!inResources)
+    {
+      return false;
+    }
+
+    try
+    {
+      if (parser.nextToken() == JsonToken.END_ARRAY)
+      {
+        inResources = false;
+        readAttributes();
+        return false;
+      }
+    }
+    catch (IOException e)
+    {
+      throw new UncheckedIOException(e);
+    }
+    nextReady = true;
+    return true;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @throws UncheckedIOException If an error occurs while reading the
+   *                              resource.
+   */
+  @Override
+  public T next()
+  {
+    if (!hasNext())
+    {
+      throw new NoSuchElementException();
+    }
+
+    nextReady = false;
+    try
+    {
+      return reader.readValue(parser);
+    }
+    catch (IOException e)
+    {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Retrieves the remaining resources as a sequential stream. Closing the
+   * stream closes this reader.
+   *
+   * @return The remaining resources.
+   */
+  public Stream<T> stream()
+  {
+    return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this,
+        Spliterator.ORDERED | Spliterator.NONNULL), false).onClose(
+        new Runnable()
+        {
+          public void run()
+          {
+            try
+            {
+              close();
+            }
+            catch (IOException e)
+            {
+              throw new UncheckedIOException(e);
+            }
+          }
+        });
+  }
+
+  /**
+   * Closes the underlying parser.
+   *
+   * @throws IOException If an error occurs while closing the parser.
+   */
+  public void close() throws IOException
+  {
+    parser.close();
+  }
+
+  /**
+   * Read the attributes of the list response up to the start of the
+   * resources or the end of the list response object.
+   *
+   * @throws IOException If an error occurs while reading the attributes.
+   */
+  private void readAttributes() throws IOException
+  {
+    JsonToken token;
+    while ((token = parser.nextToken()) == JsonToken.FIELD_NAME)
+    {
+      String name = parser.getCurrentName();
+      token = parser.nextToken();
+      if (StaticUtils.equalsIgnoreCase(name, "Resources"))
+      {
+        if (token == JsonToken.START_ARRAY)
+        {
+          inResources = true;
+          return;
+        }
+        if (token != JsonToken.VALUE_NULL)
+        {
+          throw JsonMappingException.from(parser,
+              "Expected Resources to be an array but found " + token);
+        }
+      }
+      else if (StaticUtils.equalsIgnoreCase(name, "totalResults"))
+      {
+        totalResults = parser.getValueAsInt();
+      }
+      else if (StaticUtils.equalsIgnoreCase(name, "startIndex"))
+      {
+        startIndex = readInteger();
+      }
+      else if (StaticUtils.equalsIgnoreCase(name, "itemsPerPage"))
+      {
+        itemsPerPage = readInteger();
+      }
+      else if (StaticUtils.equalsIgnoreCase(name, "nextCursor"))
+      {
+        nextCursor = parser.getValueAsString();
+      }
+      else
+      {
+        parser.skipChildren();
+      }
+    }
+
+    if (token != JsonToken.END_OBJECT)
+    {
+      throw JsonMappingException.from(parser,
+          "Expected the end of the list response object but found " + token);
+    }
+    if (totalResults == null)
+    {
+      throw JsonMappingException.from(parser,
+          "Missing required property 'totalResults'");
+    }
+  }
+
+  /**
+   * Read the current value as an optional integer.
+   *
+   * @return The integer value or {@code null} if the value is null.
+   * @throws IOException If an error occurs while reading the value.
+   */
+  private Integer readInteger() throws IOException
+  {
+    return parser.getCurrentToken() == JsonToken.VALUE_NULL ?
+        null : Integer.valueOf(parser.getValueAsInt());
+  }
+}
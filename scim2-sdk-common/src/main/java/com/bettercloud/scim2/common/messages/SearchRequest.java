@@ -27,6 +27,7 @@ import java.util.Set;
 
 import static com.bettercloud.scim2.common.utils.ApiConstants.*;
 import static com.bettercloud.scim2.common.utils.ApiConstants.QUERY_PARAMETER_ATTRIBUTES;
+import static com.bettercloud.scim2.common.utils.ApiConstants.QUERY_PARAMETER_CURSOR;
 import static com.bettercloud.scim2.common.utils.ApiConstants.QUERY_PARAMETER_EXCLUDED_ATTRIBUTES;
 import static com.bettercloud.scim2.common.utils.ApiConstants.QUERY_PARAMETER_FILTER;
 import static com.bettercloud.scim2.common.utils.ApiConstants.QUERY_PARAMETER_PAGE_SIZE;
@@ -81,6 +82,11 @@ public final class SearchRequest extends BaseScimResource
   @JsonProperty
   private final Integer count;
 
+  @Attribute(description = "A string identifying the page of query " +
+      "results to return when using cursor-based pagination")
+  @JsonProperty
+  private final String cursor;
+
   /**
    * Create a new SearchRequest.
    *
@@ -97,6 +103,37 @@ public final class SearchRequest extends BaseScimResource
    * @param startIndex the 1-based index of the first query result.
    * @param count the desired maximum number of query results per page.
    */
+  public SearchRequest(final Set<String> attributes,
+                       final Set<String> excludedAttributes,
+                       final String filter,
+                       final String sortBy,
+                       final SortOrder sortOrder,
+                       final Integer startIndex,
+                       final Integer count)
+  {
+    this(attributes, excludedAttributes, filter, sortBy, sortOrder,
+        startIndex, count, null);
+  }
+
+  /**
+   * Create a new SearchRequest.
+   *
+   * @param attributes the list of strings indicating the names of resource
+   *                   attributes to return in the response overriding the set
+   *                   of attributes that would be returned by default.
+   * @param excludedAttributes the list of strings indicating the names of
+   *                           resource attributes to be removed from the
+   *                           default set of attributes to return.
+   * @param filter the filter string used to request a subset of resources.
+   * @param sortBy the string indicating the attribute whose value shall be used
+   *               to order the returned responses.
+   * @param sortOrder the order in which the sortBy parameter is applied.
+   * @param startIndex the 1-based index of the first query result.
+   * @param count the desired maximum number of query results per page.
+   * @param cursor the cursor identifying the page of query results to return
+   *               when using cursor-based pagination, or an empty string to
+   *               request the first page.
+   */
   @JsonCreator
   public SearchRequest(@JsonProperty(QUERY_PARAMETER_ATTRIBUTES)
                        final Set<String> attributes,
@@ -111,7 +148,9 @@ public final class SearchRequest extends BaseScimResource
                        @JsonProperty(QUERY_PARAMETER_PAGE_START_INDEX)
                        final Integer startIndex,
                        @JsonProperty(QUERY_PARAMETER_PAGE_SIZE)
-                       final Integer count)
+                       final Integer count,
+                       @JsonProperty(QUERY_PARAMETER_CURSOR)
+                       final String cursor)
   {
     this.attributes = attributes;
     this.excludedAttributes = excludedAttributes;
@@ -120,6 +159,7 @@ public final class SearchRequest extends BaseScimResource
     this.sortOrder = sortOrder;
     this.startIndex = startIndex;
     this.count = count;
+    this.cursor = cursor;
   }
 
   /**
@@ -202,6 +242,18 @@ public final class SearchRequest extends BaseScimResource
     return count;
   }
 
+  /**
+   * Retrieves the cursor identifying the page of query results to return when
+   * using cursor-based pagination.
+   *
+   * @return the cursor, an empty string to request the first page, or
+   * {@code null} if cursor-based pagination is not used.
+   */
+  public String getCursor()
+  {
+    return cursor;
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -232,6 +284,10 @@ public final class SearchRequest extends BaseScimResource
     {
       return false;
     }
+    if (cursor != null ? !cursor.equals(that.cursor) : that.cursor != null)
+    {
+      return false;
+    }
     if (excludedAttributes != null ?
         !excludedAttributes.equals(that.excludedAttributes) :
         that.excludedAttributes != null)
@@ -274,6 +330,7 @@ public final class SearchRequest extends BaseScimResource
     result = 31 * result + (sortOrder != null ? sortOrder.hashCode() : 0);
     result = 31 * result + (startIndex != null ? startIndex.hashCode() : 0);
     result = 31 * result + (count != null ? count.hashCode() : 0);
+    result = 31 * result + (cursor != null ? cursor.hashCode() : 0);
     return result;
   }
 }
@@ -86,6 +86,11 @@ public class ServiceProviderConfigResource extends BaseScimResource
       isRequired = true)
   private final ETagConfig etag;
 
+  @Attribute(description = "A complex type that specifies pagination " +
+      "configuration options.",
+      mutability = AttributeDefinition.Mutability.READ_ONLY)
+  private final PaginationConfig pagination;
+
   @Attribute(description = "A complex type that specifies supported " +
       "Authentication Scheme properties.",
       mutability = AttributeDefinition.Mutability.READ_ONLY,
@@ -108,6 +113,37 @@ public class ServiceProviderConfigResource extends BaseScimResource
    * @param authenticationSchemes A complex type that specifies supported
    *                              Authentication Scheme properties.
    */
+  public ServiceProviderConfigResource(
+      final String documentationUri,
+      final PatchConfig patch,
+      final BulkConfig bulk,
+      final FilterConfig filter,
+      final ChangePasswordConfig changePassword,
+      final SortConfig sort,
+      final ETagConfig etag,
+      final List<AuthenticationScheme> authenticationSchemes)
+  {
+    this(documentationUri, patch, bulk, filter, changePassword, sort, etag,
+        null, authenticationSchemes);
+  }
+
+  /**
+   * Create a new ServiceProviderConfig.
+   *
+   * @param documentationUri An HTTP addressable URI pointing to the service
+   *                         provider's human consumable help documentation.
+   * @param patch A complex type that specifies PATCH configuration options.
+   * @param bulk A complex type that specifies Bulk configuration options.
+   * @param filter A complex type that specifies FILTER options.
+   * @param changePassword A complex type that specifies Change Password
+   *                       configuration options.
+   * @param sort A complex type that specifies Sort configuration options.
+   * @param etag A complex type that specifies Etag configuration options.
+   * @param pagination A complex type that specifies pagination configuration
+   *                   options, or {@code null} if not advertised.
+   * @param authenticationSchemes A complex type that specifies supported
+   *                              Authentication Scheme properties.
+   */
   @JsonCreator
   public ServiceProviderConfigResource(
       @JsonProperty(value = "documentationUri") final String documentationUri,
@@ -119,6 +155,7 @@ public class ServiceProviderConfigResource extends BaseScimResource
       final ChangePasswordConfig changePassword,
       @JsonProperty(value = "sort", required = true) final SortConfig sort,
       @JsonProperty(value = "etag", required = true) final ETagConfig etag,
+      @JsonProperty(value = "pagination") final PaginationConfig pagination,
       @JsonProperty(value = "authenticationSchemes", required = true)
       final List<AuthenticationScheme> authenticationSchemes)
   {
@@ -129,6 +166,7 @@ public class ServiceProviderConfigResource extends BaseScimResource
     this.changePassword = changePassword;
     this.sort = sort;
     this.etag = etag;
+    this.pagination = pagination;
     this.authenticationSchemes = authenticationSchemes == null ? null :
         Collections.unmodifiableList(authenticationSchemes);
   }
@@ -207,6 +245,18 @@ public class ServiceProviderConfigResource extends BaseScimResource
     return etag;
   }
 
+  /**
+   * Retrieves the complex type that specifies pagination configuration
+   * options.
+   *
+   * @return The complex type that specifies pagination configuration options
+   * or {@code null} if not advertised.
+   */
+  public PaginationConfig getPagination()
+  {
+    return pagination;
+  }
+
   /**
    * Retrieves the complex type that specifies supported Authentication Scheme
    * properties.
@@ -275,6 +325,11 @@ public class ServiceProviderConfigResource extends BaseScimResource
     {
       return false;
     }
+    if (pagination != null ? !pagination.equals(that.pagination) :
+        that.pagination != null)
+    {
+      return false;
+    }
 
     return true;
   }
@@ -295,6 +350,7 @@ public class ServiceProviderConfigResource extends BaseScimResource
         changePassword.hashCode() : 0);
     result = 31 * result + (sort != null ? sort.hashCode() : 0);
     result = 31 * result + (etag != null ? etag.hashCode() : 0);
+    result = 31 * result + (pagination != null ? pagination.hashCode() : 0);
     result = 31 * result + (authenticationSchemes != null ?
         authenticationSchemes.hashCode() : 0);
     return result;
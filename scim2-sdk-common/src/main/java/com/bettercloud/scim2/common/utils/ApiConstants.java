@@ -94,5 +94,11 @@ public class ApiConstants {
      * a page of results.
      */
     public static final String QUERY_PARAMETER_PAGE_SIZE = "count";
+
+    /**
+     * The HTTP query parameter used in a URI to request a page of results
+     * using cursor-based pagination. An empty value requests the first page.
+     */
+    public static final String QUERY_PARAMETER_CURSOR = "cursor";
 }
 
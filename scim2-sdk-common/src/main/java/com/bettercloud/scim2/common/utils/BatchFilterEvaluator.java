@@ -0,0 +1,303 @@
+/*
+ * Copyright 2015-2019 Ping Identity Corporation
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License (GPLv2 only)
+ * or the terms of the GNU Lesser General Public License (LGPLv2.1 only)
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ */
+
+package com.bettercloud.scim2.common.utils;
+
+import com.bettercloud.scim2.common.Path;
+import com.bettercloud.scim2.common.exceptions.ScimException;
+import com.bettercloud.scim2.common.filters.Filter;
+import com.bettercloud.scim2.common.filters.FilterType;
+import com.bettercloud.scim2.common.types.AttributeDefinition;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Evaluates many filters on each JsonNode in a single pass, for example to
+ * answer {@code userName eq "..."} for every record of a batch with one scan
+ * over the resources instead of one scan per filter. The result for each
+ * filter is the same as with a {@link FilterEvaluator}.
+ * <p>
+ * The candidate values of an attribute path are retrieved once per JsonNode
+ * and shared by all the filters that reference that path. Filters that
+ * compare an attribute with a string or boolean value with {@code eq} are
+ * not evaluated one by one: the candidate values of the attribute are looked
+ * up in a hash table of the filter values instead, so that a batch of
+ * hundreds of such filters costs about as much as a single one. Filter values
+ * that look like dates are compared as dates by the {@link FilterEvaluator}
+ * and are evaluated one by one.
+ * <p>
+ * Instances are not thread safe.
+ */
+public class BatchFilterEvaluator
+{
+  private final List<Filter> filters;
+  private final CachingFilterEvaluator evaluator =
+      new CachingFilterEvaluator();
+  private Map<Path, EqualityIndex> indexes;
+  private List<Integer> otherFilters;
+
+  /**
+   * Create a new batch filter evaluator.
+   *
+   * @param filters The filters to evaluate.
+   */
+  public BatchFilterEvaluator(final List<Filter> filters)
+  {
+    this.filters = Collections.unmodifiableList(new ArrayList<Filter>(filters));
+  }
+
+  /**
+   * Retrieve the filters evaluated by this evaluator.
+   *
+   * @return The filters evaluated by this evaluator, in the order of the
+   * indexes used in the results.
+   */
+  public List<Filter> getFilters()
+  {
+    return filters;
+  }
+
+  /**
+   * Evaluate all the filters against the provided JsonNode.
+   *
+   * @param jsonNode The JsonNode to evaluate the filters against.
+   * @return The indexes of the filters the JsonNode matches.
+   * @throws ScimException If a filter is not valid for matching.
+   */
+  public BitSet evaluate(final JsonNode jsonNode) throws ScimException
+  {
+    if (indexes == null)
+    {
+      buildIndexes();
+    }
+
+    BitSet matches = new BitSet(filters.size());
+    evaluator.root = jsonNode;
+    evaluator.candidateNodes.clear();
+    try
+    {
+      for (Map.Entry<Path, EqualityIndex> entry : indexes.entrySet())
+      {
+        for (JsonNode node : evaluator.getCandidateNodes(entry.getKey(),
+            jsonNode))
+        {
+          entry.getValue().match(node, matches);
+        }
+      }
+      for (int i : otherFilters)
+      {
+        if (filters.get(i).visit(evaluator, jsonNode))
+        {
+          matches.set(i);
+        }
+      }
+    }
+    finally
+    {
+      evaluator.root = null;
+      evaluator.candidateNodes.clear();
+    }
+    return matches;
+  }
+
+  /**
+   * Retrieve the attribute definition for the attribute specified by the path
+   * to determine case sensitivity during string matching.
+   *
+   * @param path The path to the attribute whose definition to retrieve.
+   * @return the attribute definition or {@code null} if not available, in which
+   *         case case insensitive string value matching will be performed.
+   */
+  protected AttributeDefinition getAttributeDefinition(final Path path)
+  {
+    return null;
+  }
+
+  /**
+   * Sort the filters into equality filters that can be looked up by their
+   * value and the other filters.
+   */
+  private void buildIndexes()
+  {
+    Map<Path, EqualityIndex> equalityIndexes =
+        new LinkedHashMap<Path, EqualityIndex>();
+    List<Integer> others = new ArrayList<Integer>();
+    for (int i = 0; i < filters.size(); i++)
+    {
+      Filter filter = filters.get(i);
+      JsonNode value = filter.getFilterType() == FilterType.EQUAL ?
+          filter.getComparisonValue() : null;
+      if (value == null || !(value.isBoolean() ||
+          (value.isTextual() && JsonUtils.dateValue(value) == null)))
+      {
+        others.add(i);
+        continue;
+      }
+
+      EqualityIndex index = equalityIndexes.get(filter.getAttributePath());
+      if (index == null)
+      {
+        index = new EqualityIndex();
+        equalityIndexes.put(filter.getAttributePath(), index);
+      }
+      index.add(value, getAttributeDefinition(filter.getAttributePath()), i);
+    }
+    this.indexes = equalityIndexes;
+    this.otherFilters = others;
+  }
+
+  /**
+   * The equality filters on an attribute, keyed by the values that match
+   * them according to {@link JsonUtils#compareTo}: text values match textual
+   * nodes ignoring case unless the attribute is a case exact string, and
+   * the textual form of other nodes exactly, and boolean values match the
+   * textual form of any node exactly.
+   */
+  private static final class EqualityIndex
+  {
+    private final Map<String, List<Integer>> caseExactText =
+        new HashMap<String, List<Integer>>();
+    private final Map<String, List<Integer>> caseIgnoreText =
+        new HashMap<String, List<Integer>>();
+    private final Map<String, List<Integer>> booleans =
+        new HashMap<String, List<Integer>>();
+    private final Map<String, List<Integer>> exact =
+        new HashMap<String, List<Integer>>();
+
+    /**
+     * Add an equality filter.
+     *
+     * @param value The string or boolean filter value.
+     * @param attributeDefinition The definition of the attribute or
+     *                            {@code null}.
+     * @param filter The index of the filter.
+     */
+    private void add(final JsonNode value,
+                     final AttributeDefinition attributeDefinition,
+                     final int filter)
+    {
+      if (value.isBoolean())
+      {
+        put(booleans, value.asText(), filter);
+      }
+      else if (attributeDefinition != null &&
+          attributeDefinition.getType() == AttributeDefinition.Type.STRING &&
+          attributeDefinition.isCaseExact())
+      {
+        put(caseExactText, value.textValue(), filter);
+      }
+      else
+      {
+        put(caseIgnoreText, StaticUtils.toLowerCase(value.textValue()), filter);
+      }
+      put(exact, value.asText(), filter);
+    }
+
+    /**
+     * Add the filters matched by a candidate node.
+     *
+     * @param node The candidate node.
+     * @param matches The indexes of the matching filters.
+     */
+    private void match(final JsonNode node, final BitSet matches)
+    {
+      if (node.isTextual())
+      {
+        set(caseExactText.get(node.textValue()), matches);
+        set(caseIgnoreText.get(StaticUtils.toLowerCase(node.textValue())),
+            matches);
+        set(booleans.get(node.textValue()), matches);
+      }
+      else
+      {
+        set(exact.get(node.asText()), matches);
+      }
+    }
+
+    private static void put(final Map<String, List<Integer>> map,
+                            final String key, final int filter)
+    {
+      List<Integer> indexes = map.get(key);
+      if (indexes == null)
+      {
+        indexes = new ArrayList<Integer>(1);
+        map.put(key, indexes);
+      }
+      indexes.add(filter);
+    }
+
+    private static void set(final List<Integer> indexes, final BitSet matches)
+    {
+      if (indexes != null)
+      {
+        for (int i : indexes)
+        {
+          matches.set(i);
+        }
+      }
+    }
+  }
+
+  /**
+   * A filter evaluator that retrieves the candidate values of each path of
+   * the JsonNode being evaluated only once.
+   */
+  private final class CachingFilterEvaluator extends FilterEvaluator
+  {
+    private final Map<Path, Iterable<JsonNode>> candidateNodes =
+        new HashMap<Path, Iterable<JsonNode>>();
+    private JsonNode root;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected AttributeDefinition getAttributeDefinition(final Path path)
+    {
+      return BatchFilterEvaluator.this.getAttributeDefinition(path);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected Iterable<JsonNode> getCandidateNodes(final Path path,
+                                                   final JsonNode jsonNode)
+        throws ScimException
+    {
+      if (jsonNode != root)
+      {
+        // Values of complex value filters are only evaluated once.
+        return super.getCandidateNodes(path, jsonNode);
+      }
+      Iterable<JsonNode> nodes = candidateNodes.get(path);
+      if (nodes == null)
+      {
+        nodes = super.getCandidateNodes(path, jsonNode);
+        candidateNodes.put(path, nodes);
+      }
+      return nodes;
+    }
+  }
+}
@@ -27,7 +27,8 @@ import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 
-import static com.bettercloud.scim2.common.utils.StaticUtils.toLowerCase;
+import static com.bettercloud.scim2.common.utils.StaticUtils.equalsIgnoreCase;
+import static com.bettercloud.scim2.common.utils.StaticUtils.hashCodeIgnoreCase;
 
 /**
  * A case-insensitive String to JsonNode map with insertion-order iteration.
@@ -66,14 +67,14 @@ public class CaseIgnoreMap implements Map<String, JsonNode>
 
       CaseIgnoreKey that = (CaseIgnoreKey) o;
 
-      return toLowerCase(key).equals(toLowerCase(that.key));
+      return equalsIgnoreCase(key, that.key);
 
     }
 
     @Override
     public int hashCode()
     {
-      return toLowerCase(key).hashCode();
+      return hashCodeIgnoreCase(key);
     }
   }
 
@@ -28,7 +28,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
-import static com.bettercloud.scim2.common.utils.StaticUtils.toLowerCase;
+import static com.bettercloud.scim2.common.utils.StaticUtils.equalsIgnoreCase;
 
 /**
  * An ObjectNode with case-insensitive field names.
@@ -105,7 +105,7 @@ public class CaseIgnoreObjectNode extends ObjectNode
     List<JsonNode> localFoundSoFar = foundSoFar;
     for (Map.Entry<String, JsonNode> entry : _children.entrySet())
     {
-      if (toLowerCase(fieldName).equals(toLowerCase(entry.getKey())))
+      if (equalsIgnoreCase(fieldName, entry.getKey()))
       {
         if (localFoundSoFar == null)
         {
@@ -130,7 +130,7 @@ public class CaseIgnoreObjectNode extends ObjectNode
     List<String> localFoundSoFar = foundSoFar;
     for (Map.Entry<String, JsonNode> entry : _children.entrySet())
     {
-      if (toLowerCase(fieldName).equals(toLowerCase(entry.getKey())))
+      if (equalsIgnoreCase(fieldName, entry.getKey()))
       {
         if (localFoundSoFar == null)
         {
@@ -154,7 +154,7 @@ public class CaseIgnoreObjectNode extends ObjectNode
   {
     for (Map.Entry<String, JsonNode> entry : _children.entrySet())
     {
-      if (toLowerCase(fieldName).equals(toLowerCase(entry.getKey())))
+      if (equalsIgnoreCase(fieldName, entry.getKey()))
       {
         return this;
       }
@@ -177,7 +177,7 @@ public class CaseIgnoreObjectNode extends ObjectNode
     List<JsonNode> localFoundSoFar = foundSoFar;
     for (Map.Entry<String, JsonNode> entry : _children.entrySet())
     {
-      if (toLowerCase(fieldName).equals(toLowerCase(entry.getKey())))
+      if (equalsIgnoreCase(fieldName, entry.getKey()))
       {
         if (localFoundSoFar == null)
         {
@@ -364,8 +364,8 @@ public class FilterEvaluator implements FilterVisitor<Boolean, JsonNode>
    * @return The JsonNodes to compare against.
    * @throws ScimException If an exception occurs during the operation.
    */
-  private Iterable<JsonNode> getCandidateNodes(final Path path,
-                                               final JsonNode jsonNode)
+  protected Iterable<JsonNode> getCandidateNodes(final Path path,
+                                                 final JsonNode jsonNode)
       throws ScimException
   {
     if(jsonNode.isArray())
@@ -467,27 +467,27 @@ public class FilterEvaluator implements FilterVisitor<Boolean, JsonNode>
             getAttributeDefinition(filter.getAttributePath());
         String nodeValue = node.textValue();
         String comparisonValue = filter.getComparisonValue().textValue();
-        if(attributeDefinition == null || !attributeDefinition.isCaseExact())
-        {
-          nodeValue = StaticUtils.toLowerCase(nodeValue);
-          comparisonValue = StaticUtils.toLowerCase(comparisonValue);
-        }
+        boolean caseExact =
+            attributeDefinition != null && attributeDefinition.isCaseExact();
         switch(filter.getFilterType())
         {
           case CONTAINS:
-            if(nodeValue.contains(comparisonValue))
+            if(caseExact ? nodeValue.contains(comparisonValue) :
+                StaticUtils.containsIgnoreCase(nodeValue, comparisonValue))
             {
               return true;
             }
             break;
           case STARTS_WITH:
-            if(nodeValue.startsWith(comparisonValue))
+            if(caseExact ? nodeValue.startsWith(comparisonValue) :
+                StaticUtils.startsWithIgnoreCase(nodeValue, comparisonValue))
             {
               return true;
             }
             break;
           case ENDS_WITH:
-            if(nodeValue.endsWith(comparisonValue))
+            if(caseExact ? nodeValue.endsWith(comparisonValue) :
+                StaticUtils.endsWithIgnoreCase(nodeValue, comparisonValue))
             {
               return true;
             }
@@ -0,0 +1,626 @@
+/*
+ * Copyright 2015-2019 Ping Identity Corporation
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License (GPLv2 only)
+ * or the terms of the GNU Lesser General Public License (LGPLv2.1 only)
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ */
+
+package com.bettercloud.scim2.common.utils;
+
+import com.bettercloud.scim2.common.Path;
+import com.bettercloud.scim2.common.filters.Filter;
+import com.bettercloud.scim2.common.filters.FilterType;
+import com.bettercloud.scim2.common.types.AttributeDefinition;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Rewrites filters into an equivalent form that is cheaper to evaluate with
+ * a {@link FilterEvaluator}, and renders the rewritten filters in a canonical
+ * form that may be used as a cache key.
+ * <p>
+ * The following rewrites are applied:
+ * <ul>
+ *   <li>
+ *     Nested {@code and} and {@code or} filters are flattened, duplicate
+ *     components are removed, and a logical filter that is left with a single
+ *     component is replaced by that component.
+ *   </li>
+ *   <li>
+ *     {@code not(not(filter))} is replaced by {@code filter}.
+ *   </li>
+ *   <li>
+ *     {@code attr[filter1] or attr[filter2]} is replaced by
+ *     {@code attr[filter1 or filter2]}.
+ *   </li>
+ *   <li>
+ *     The components of logical filters are ordered so that the evaluator can
+ *     short-circuit as early and as cheaply as possible, based on an estimate
+ *     of the cost and selectivity of each component.  Components with the
+ *     same estimate are ordered by their canonical form.
+ *   </li>
+ * </ul>
+ * Ordering filters ({@code gt}, {@code ge}, {@code lt} and {@code le}) fail
+ * the evaluation of boolean and binary values, so they are never moved and
+ * components are never moved across them.  This keeps the outcome of the
+ * evaluation identical, including whether it fails.
+ * <p>
+ * Estimates are more accurate when attribute definitions are available.
+ * Subclasses may provide them by overriding
+ * {@link #getAttributeDefinition(Path)}.
+ */
+public class FilterOptimizer
+{
+  /**
+   * Optimize a filter.
+   *
+   * @param filter The filter to optimize.
+   * @return An equivalent filter that is cheaper to evaluate.
+   */
+  public Filter optimize(final Filter filter)
+  {
+    return optimize(filter, null);
+  }
+
+  /**
+   * Optimize a filter and render it in canonical form.  Filters that only
+   * differ in the order of the components of logical filters, in redundant
+   * nesting or duplication, or in the case of attribute names have the same
+   * canonical form.
+   *
+   * @param filter The filter.
+   * @return The canonical form of the filter.
+   */
+  public String getCanonicalForm(final Filter filter)
+  {
+    final StringBuilder builder = new StringBuilder();
+    appendCanonicalForm(optimize(filter), builder);
+    return builder.toString();
+  }
+
+  /**
+   * Retrieve the attribute definition for the attribute specified by the path
+   * to estimate the cost and selectivity of filters.
+   *
+   * @param path The path to the attribute whose definition to retrieve.
+   * @return the attribute definition or {@code null} if not available.
+   */
+  protected AttributeDefinition getAttributeDefinition(final Path path)
+  {
+    return null;
+  }
+
+  /**
+   * Optimize a filter.
+   *
+   * @param filter The filter to optimize.
+   * @param parentPath The path of the enclosing complex value filter, or
+   *                   {@code null} if there is none.
+   * @return The optimized filter.
+   */
+  private Filter optimize(final Filter filter, final Path parentPath)
+  {
+    if (filter.isNotFilter())
+    {
+      final Filter invertedFilter =
+          optimize(filter.getInvertedFilter(), parentPath);
+      if (invertedFilter.isNotFilter())
+      {
+        return invertedFilter.getInvertedFilter();
+      }
+      return Filter.not(invertedFilter);
+    }
+    if (filter.isComplexValueFilter())
+    {
+      final Path path = resolve(parentPath, filter.getAttributePath());
+      return Filter.hasComplexValue(filter.getAttributePath(),
+          optimize(filter.getValueFilter(), path));
+    }
+    if (!filter.isCombiningFilter())
+    {
+      return filter;
+    }
+
+    final FilterType type = filter.getFilterType();
+    List<Filter> components = new ArrayList<Filter>();
+    for (Filter component : filter.getCombinedFilters())
+    {
+      final Filter optimized = optimize(component, parentPath);
+      if (optimized.getFilterType() == type)
+      {
+        components.addAll(optimized.getCombinedFilters());
+      }
+      else
+      {
+        components.add(optimized);
+      }
+    }
+    if (type == FilterType.OR)
+    {
+      components = mergeComplexValueFilters(components, parentPath);
+    }
+    components = removeDuplicates(components);
+
+    if (components.size() == 1)
+    {
+      return components.get(0);
+    }
+    sort(components, type, parentPath);
+    return type == FilterType.AND ?
+        Filter.and(components) : Filter.or(components);
+  }
+
+  /**
+   * Merge the complex value filters of the components of an {@code or}
+   * filter that have the same attribute path.  The merged filter takes the
+   * place of the first filter with the path.  Filters are never merged
+   * across a component that may fail, so evaluation fails on the same
+   * resources as before.
+   *
+   * @param components The components of the {@code or} filter.
+   * @param parentPath The path of the enclosing complex value filter.
+   * @return The merged components.
+   */
+  private List<Filter> mergeComplexValueFilters(final List<Filter> components,
+                                                final Path parentPath)
+  {
+    final Map<Path, List<Filter>> valueFilters =
+        new LinkedHashMap<Path, List<Filter>>();
+    final Map<Path, Integer> positions = new HashMap<Path, Integer>();
+    final List<Filter> merged = new ArrayList<Filter>(components.size());
+    for (Filter component : components)
+    {
+      if (mayFail(component))
+      {
+        mergeValueFilters(merged, valueFilters, positions, parentPath);
+        merged.add(component);
+        continue;
+      }
+      if (component.isComplexValueFilter())
+      {
+        final Path path = component.getAttributePath();
+        List<Filter> filters = valueFilters.get(path);
+        if (filters != null)
+        {
+          filters.add(component.getValueFilter());
+          continue;
+        }
+        filters = new ArrayList<Filter>();
+        filters.add(component.getValueFilter());
+        valueFilters.put(path, filters);
+        positions.put(path, merged.size());
+      }
+      merged.add(component);
+    }
+    mergeValueFilters(merged, valueFilters, positions, parentPath);
+    return merged;
+  }
+
+  /**
+   * Replace the complex value filters collected for each path with a single
+   * filter that matches any of their value filters.
+   *
+   * @param merged The merged components.
+   * @param valueFilters The value filters collected for each path.
+   * @param positions The position of the first filter with each path.
+   * @param parentPath The path of the enclosing complex value filter.
+   */
+  private void mergeValueFilters(final List<Filter> merged,
+                                 final Map<Path, List<Filter>> valueFilters,
+                                 final Map<Path, Integer> positions,
+                                 final Path parentPath)
+  {
+    for (Map.Entry<Path, List<Filter>> entry : valueFilters.entrySet())
+    {
+      if (entry.getValue().size() > 1)
+      {
+        merged.set(positions.get(entry.getKey()), optimize(
+            Filter.hasComplexValue(entry.getKey(),
+                Filter.or(entry.getValue())), parentPath));
+      }
+    }
+    valueFilters.clear();
+    positions.clear();
+  }
+
+  /**
+   * Remove the components that have the same canonical form as a previous
+   * component.
+   *
+   * @param components The components of a logical filter.
+   * @return The distinct components.
+   */
+  private static List<Filter> removeDuplicates(final List<Filter> components)
+  {
+    final Set<String> canonicalForms = new HashSet<String>();
+    final List<Filter> distinct = new ArrayList<Filter>(components.size());
+    for (Filter component : components)
+    {
+      final StringBuilder builder = new StringBuilder();
+      appendCanonicalForm(component, builder);
+      if (canonicalForms.add(builder.toString()))
+      {
+        distinct.add(component);
+      }
+    }
+    return distinct;
+  }
+
+  /**
+   * Sort the components of a logical filter by rank.  For an {@code and}
+   * filter the rank is the estimated cost divided by the probability that
+   * the component does not match, and for an {@code or} filter the cost
+   * divided by the probability that it matches.  Components that may fail
+   * keep their position.
+   *
+   * @param components The components to sort.
+   * @param type The type of the logical filter.
+   * @param parentPath The path of the enclosing complex value filter.
+   */
+  private void sort(final List<Filter> components, final FilterType type,
+                    final Path parentPath)
+  {
+    final List<Ranked> run = new ArrayList<Ranked>();
+    int start = 0;
+    for (int i = 0; i <= components.size(); i++)
+    {
+      if (i < components.size() && !mayFail(components.get(i)))
+      {
+        final Filter component = components.get(i);
+        final double selectivity = getSelectivity(component, parentPath);
+        final double probability =
+            type == FilterType.AND ? 1 - selectivity : selectivity;
+        run.add(new Ranked(component,
+            getCost(component, parentPath) / Math.max(probability, 0.0001)));
+        continue;
+      }
+
+      Collections.sort(run);
+      for (int j = 0; j < run.size(); j++)
+      {
+        components.set(start + j, run.get(j).filter);
+      }
+      run.clear();
+      start = i + 1;
+    }
+  }
+
+  /**
+   * Estimate the relative cost of evaluating a filter.
+   *
+   * @param filter The filter.
+   * @param parentPath The path of the enclosing complex value filter.
+   * @return The estimated cost.
+   */
+  private double getCost(final Filter filter, final Path parentPath)
+  {
+    if (filter.isCombiningFilter())
+    {
+      double cost = 0;
+      for (Filter component : filter.getCombinedFilters())
+      {
+        cost += getCost(component, parentPath);
+      }
+      return cost;
+    }
+    if (filter.isNotFilter())
+    {
+      return getCost(filter.getInvertedFilter(), parentPath);
+    }
+
+    final Path path = resolve(parentPath, filter.getAttributePath());
+    final AttributeDefinition attributeDefinition =
+        getAttributeDefinition(path);
+    // Unknown attributes may be multi-valued.
+    final double values = attributeDefinition == null ? 2 :
+        attributeDefinition.isMultiValued() ? 4 : 1;
+    if (filter.isComplexValueFilter())
+    {
+      return 1 + values * getCost(filter.getValueFilter(), path);
+    }
+
+    double cost;
+    switch (filter.getFilterType())
+    {
+      case PRESENT:
+        return values;
+      case EQUAL:
+      case NOT_EQUAL:
+        cost = 2;
+        break;
+      case STARTS_WITH:
+      case ENDS_WITH:
+        cost = 4;
+        break;
+      case CONTAINS:
+        cost = 6;
+        break;
+      default:
+        cost = 3;
+        break;
+    }
+    if (filter.getComparisonValue().isTextual() &&
+        (attributeDefinition == null || !attributeDefinition.isCaseExact()))
+    {
+      // Case insensitive matching is more expensive.
+      cost += 1;
+    }
+    return cost * values;
+  }
+
+  /**
+   * Estimate the probability that a filter matches a resource.
+   *
+   * @param filter The filter.
+   * @param parentPath The path of the enclosing complex value filter.
+   * @return The estimated probability, between 0 and 1.
+   */
+  private double getSelectivity(final Filter filter, final Path parentPath)
+  {
+    if (filter.getFilterType() == FilterType.AND)
+    {
+      double selectivity = 1;
+      for (Filter component : filter.getCombinedFilters())
+      {
+        selectivity *= getSelectivity(component, parentPath);
+      }
+      return selectivity;
+    }
+    if (filter.getFilterType() == FilterType.OR)
+    {
+      double selectivity = 1;
+      for (Filter component : filter.getCombinedFilters())
+      {
+        selectivity *= 1 - getSelectivity(component, parentPath);
+      }
+      return 1 - selectivity;
+    }
+    if (filter.isNotFilter())
+    {
+      return 1 - getSelectivity(filter.getInvertedFilter(), parentPath);
+    }
+
+    final Path path = resolve(parentPath, filter.getAttributePath());
+    if (filter.isComplexValueFilter())
+    {
+      return getSelectivity(filter.getValueFilter(), path);
+    }
+
+    switch (filter.getFilterType())
+    {
+      case EQUAL:
+        return isUnique(path) ? 0.001 : 0.1;
+      case NOT_EQUAL:
+        return isUnique(path) ? 0.999 : 0.9;
+      case PRESENT:
+        return 0.5;
+      case CONTAINS:
+        return 0.2;
+      case STARTS_WITH:
+      case ENDS_WITH:
+        return 0.1;
+      default:
+        return 0.33;
+    }
+  }
+
+  /**
+   * Whether the values of an attribute are unique.
+   *
+   * @param path The path of the attribute.
+   * @return Whether the values of the attribute are unique.
+   */
+  private boolean isUnique(final Path path)
+  {
+    if (path.getSchemaUrn() == null && path.size() == 1 &&
+        path.getElement(0).getAttribute().equalsIgnoreCase("id"))
+    {
+      return true;
+    }
+    final AttributeDefinition attributeDefinition =
+        getAttributeDefinition(path);
+    return attributeDefinition != null &&
+        attributeDefinition.getUniqueness() != null &&
+        attributeDefinition.getUniqueness() !=
+            AttributeDefinition.Uniqueness.NONE;
+  }
+
+  /**
+   * Whether the evaluation of a filter may fail, which is the case for
+   * filters containing ordering filters, including in the value filters of
+   * attribute paths.
+   *
+   * @param filter The filter.
+   * @return Whether the evaluation of the filter may fail.
+   */
+  private static boolean mayFail(final Filter filter)
+  {
+    if (filter.isCombiningFilter())
+    {
+      for (Filter component : filter.getCombinedFilters())
+      {
+        if (mayFail(component))
+        {
+          return true;
+        }
+      }
+      return false;
+    }
+    if (filter.isNotFilter())
+    {
+      return mayFail(filter.getInvertedFilter());
+    }
+    for (Path.Element element : filter.getAttributePath())
+    {
+      if (element.getValueFilter() != null && mayFail(element.getValueFilter()))
+      {
+        return true;
+      }
+    }
+    if (filter.isComplexValueFilter())
+    {
+      return mayFail(filter.getValueFilter());
+    }
+    switch (filter.getFilterType())
+    {
+      case GREATER_THAN:
+      case GREATER_OR_EQUAL:
+      case LESS_THAN:
+      case LESS_OR_EQUAL:
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  /**
+   * Resolve the path of an attribute in a value filter against the path of
+   * the complex value filter.
+   *
+   * @param parentPath The path of the complex value filter, or {@code null}.
+   * @param path The path of the attribute.
+   * @return The resolved path.
+   */
+  private static Path resolve(final Path parentPath, final Path path)
+  {
+    if (parentPath == null || path.getSchemaUrn() != null)
+    {
+      return path;
+    }
+    return parentPath.withoutFilters().attribute(path.withoutFilters());
+  }
+
+  /**
+   * Append the canonical form of a filter.  Attribute names and schema URNs
+   * are in lower case, and logical filters are always parenthesized.
+   *
+   * @param filter The filter.
+   * @param builder The buffer to append to.
+   */
+  private static void appendCanonicalForm(final Filter filter,
+                                          final StringBuilder builder)
+  {
+    if (filter.isCombiningFilter())
+    {
+      builder.append('(');
+      for (int i = 0; i < filter.getCombinedFilters().size(); i++)
+      {
+        if (i > 0)
+        {
+          builder.append(' ');
+          builder.append(filter.getFilterType().getStringValue());
+          builder.append(' ');
+        }
+        appendCanonicalForm(filter.getCombinedFilters().get(i), builder);
+      }
+      builder.append(')');
+    }
+    else if (filter.isNotFilter())
+    {
+      builder.append(FilterType.NOT.getStringValue());
+      builder.append('(');
+      appendCanonicalForm(filter.getInvertedFilter(), builder);
+      builder.append(')');
+    }
+    else if (filter.isComplexValueFilter())
+    {
+      appendCanonicalForm(filter.getAttributePath(), builder);
+      builder.append('[');
+      appendCanonicalForm(filter.getValueFilter(), builder);
+      builder.append(']');
+    }
+    else
+    {
+      appendCanonicalForm(filter.getAttributePath(), builder);
+      builder.append(' ');
+      builder.append(filter.getFilterType().getStringValue());
+      if (filter.isComparisonFilter())
+      {
+        builder.append(' ');
+        builder.append(filter.getComparisonValue().toString());
+      }
+    }
+  }
+
+  /**
+   * Append the canonical form of an attribute path.
+   *
+   * @param path The path.
+   * @param builder The buffer to append to.
+   */
+  private static void appendCanonicalForm(final Path path,
+                                          final StringBuilder builder)
+  {
+    if (path.getSchemaUrn() != null)
+    {
+      builder.append(StaticUtils.toLowerCase(path.getSchemaUrn()));
+      builder.append(':');
+    }
+    for (int i = 0; i < path.size(); i++)
+    {
+      if (i > 0)
+      {
+        builder.append('.');
+      }
+      final Path.Element element = path.getElement(i);
+      builder.append(StaticUtils.toLowerCase(element.getAttribute()));
+      if (element.getValueFilter() != null)
+      {
+        builder.append('[');
+        appendCanonicalForm(element.getValueFilter(), builder);
+        builder.append(']');
+      }
+    }
+  }
+
+  /**
+   * A component of a logical filter with its rank.
+   */
+  private static final class Ranked implements Comparable<Ranked>
+  {
+    private final Filter filter;
+    private final double rank;
+    private final String canonicalForm;
+
+    /**
+     * Create a new ranked component.
+     *
+     * @param filter The component.
+     * @param rank The rank of the component.
+     */
+    private Ranked(final Filter filter, final double rank)
+    {
+      this.filter = filter;
+      this.rank = rank;
+      final StringBuilder builder = new StringBuilder();
+      appendCanonicalForm(filter, builder);
+      this.canonicalForm = builder.toString();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int compareTo(final Ranked o)
+    {
+      final int result = Double.compare(rank, o.rank);
+      return result != 0 ? result : canonicalForm.compareTo(o.canonicalForm);
+    }
+  }
+}
@@ -0,0 +1,320 @@
+/*
+ * Copyright 2015-2019 Ping Identity Corporation
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License (GPLv2 only)
+ * or the terms of the GNU Lesser General Public License (LGPLv2.1 only)
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ */
+
+package com.bettercloud.scim2.common.utils;
+
+import com.bettercloud.scim2.common.types.AttributeDefinition;
+import com.bettercloud.scim2.common.types.SchemaResource;
+import com.fasterxml.jackson.databind.node.TextNode;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A SCIM JSON node factory that shares a single immutable {@link TextNode}
+ * instance between all occurrences of the same short textual value.
+ * <p>
+ * Values such as {@code "work"}, {@code "home"}, schema URNs and resource
+ * type names repeat in every resource. Caching large numbers of resources
+ * with the default {@link ScimJsonNodeFactory} keeps one node (and one
+ * string) per occurrence. This factory keeps one per distinct value instead.
+ * <p>
+ * Two kinds of values are interned:
+ * <ul>
+ *   <li>
+ *     Values registered up front, typically the schema URNs and the
+ *     canonical values of the attribute definitions of a schema. These are
+ *     always interned regardless of their length.
+ *   </li>
+ *   <li>
+ *     Any other value no longer than the configured maximum length. Up to
+ *     the configured maximum number of these values are held, and the least
+ *     recently used values are dropped to make room for new ones, so values
+ *     that repeat stay interned while values that occur once, such as ids,
+ *     pass through.
+ *   </li>
+ * </ul>
+ * Looking up a value never takes a lock. The recency of the values is only
+ * tracked approximately, and the cache may briefly hold more values than the
+ * maximum while another thread drops the least recently used ones.
+ * Boolean and small integral values are already shared by Jackson and are
+ * not affected. This factory is opt-in; register it with
+ * {@link MapperFactory#setJsonNodeFactory} before using {@link JsonUtils}.
+ */
+public class InterningScimJsonNodeFactory extends ScimJsonNodeFactory
+{
+  private static final long serialVersionUID = -2467365834291473081L;
+
+  /**
+   * The default maximum length of a value to intern automatically.
+   */
+  public static final int DEFAULT_MAX_VALUE_LENGTH = 16;
+
+  /**
+   * The default maximum number of values to intern automatically.
+   */
+  public static final int DEFAULT_MAX_VALUES = 4096;
+
+  private final ConcurrentHashMap<String, TextNode> registeredNodes =
+      new ConcurrentHashMap<String, TextNode>();
+
+  private final ConcurrentHashMap<String, RecentNode> recentNodes =
+      new ConcurrentHashMap<String, RecentNode>();
+
+  /**
+   * The number of values interned automatically so far, which orders the
+   * uses of the values.
+   */
+  private final AtomicLong clock = new AtomicLong();
+
+  private final AtomicBoolean evicting = new AtomicBoolean();
+
+  private final int maxValueLength;
+
+  private final int maxValues;
+
+  /**
+   * Create a new InterningScimJsonNodeFactory with the default limits.
+   */
+  public InterningScimJsonNodeFactory()
+  {
+    this(DEFAULT_MAX_VALUE_LENGTH, DEFAULT_MAX_VALUES);
+  }
+
+  /**
+   * Create a new InterningScimJsonNodeFactory.
+   *
+   * @param maxValueLength The maximum length of a value to intern
+   *                       automatically or {@code 0} to only intern
+   *                       registered values.
+   * @param maxValues The maximum number of values interned automatically,
+   *                  not counting the registered values.
+   */
+  public InterningScimJsonNodeFactory(final int maxValueLength,
+                                      final int maxValues)
+  {
+    this.maxValueLength = maxValueLength;
+    this.maxValues = maxValues;
+  }
+
+  /**
+   * Register the id of the schema and the canonical values of all of its
+   * attributes and sub-attributes so that they will always be interned.
+   *
+   * @param schemas The schemas to register.
+   * @return this object.
+   */
+  public InterningScimJsonNodeFactory addSchemas(
+      final Collection<SchemaResource> schemas)
+  {
+    for (SchemaResource schema : schemas)
+    {
+      if (schema.getId() != null)
+      {
+        addValues(schema.getId());
+      }
+      if (schema.getAttributes() != null)
+      {
+        addAttributeDefinitions(schema.getAttributes());
+      }
+    }
+    return this;
+  }
+
+  /**
+   * Register the canonical values of the attributes and their sub-attributes
+   * so that they will always be interned.
+   *
+   * @param attributeDefinitions The attribute definitions to register.
+   * @return this object.
+   */
+  public InterningScimJsonNodeFactory addAttributeDefinitions(
+      final Collection<AttributeDefinition> attributeDefinitions)
+  {
+    for (AttributeDefinition attributeDefinition : attributeDefinitions)
+    {
+      if (attributeDefinition.getCanonicalValues() != null)
+      {
+        for (String canonicalValue : attributeDefinition.getCanonicalValues())
+        {
+          addValues(canonicalValue);
+        }
+      }
+      if (attributeDefinition.getSubAttributes() != null)
+      {
+        addAttributeDefinitions(attributeDefinition.getSubAttributes());
+      }
+    }
+    return this;
+  }
+
+  /**
+   * Register values that will always be interned regardless of their length.
+   *
+   * @param values The values to register.
+   * @return this object.
+   */
+  public InterningScimJsonNodeFactory addValues(final String... values)
+  {
+    for (String value : values)
+    {
+      if (value != null && !value.isEmpty())
+      {
+        registeredNodes.putIfAbsent(value, new TextNode(value));
+      }
+    }
+    return this;
+  }
+
+  /**
+   * Retrieve the number of distinct values currently interned.
+   *
+   * @return The number of distinct values currently interned.
+   */
+  public int getInternedValueCount()
+  {
+    return registeredNodes.size() + recentNodes.size();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public TextNode textNode(final String text)
+  {
+    if (text == null || text.isEmpty())
+    {
+      return super.textNode(text);
+    }
+
+    TextNode node = registeredNodes.get(text);
+    if (node != null)
+    {
+      return node;
+    }
+
+    if (text.length() > maxValueLength)
+    {
+      return super.textNode(text);
+    }
+
+    RecentNode recentNode = recentNodes.get(text);
+    if (recentNode != null)
+    {
+      // Only write when the value was last used before the latest new value,
+      // so threads sharing a frequent value rarely write to it.
+      final long now = clock.get();
+      if (recentNode.lastUse < now)
+      {
+        recentNode.lastUse = now;
+      }
+      return recentNode.node;
+    }
+
+    recentNode = new RecentNode(new TextNode(text), clock.getAndIncrement());
+    final RecentNode existing = recentNodes.putIfAbsent(text, recentNode);
+    if (existing != null)
+    {
+      return existing.node;
+    }
+    if (recentNodes.size() > maxValues)
+    {
+      evict();
+    }
+    return recentNode.node;
+  }
+
+  /**
+   * Drop the least recently used values until the cache is below the maximum
+   * number of values, leaving room for some new values so that the cache is
+   * not scanned for every new value.  Only one thread drops values at a time;
+   * the others go on without waiting.
+   */
+  private void evict()
+  {
+    if (!evicting.compareAndSet(false, true))
+    {
+      return;
+    }
+    try
+    {
+      final int excess = recentNodes.size() - maxValues + maxValues / 8;
+      if (excess <= 0)
+      {
+        return;
+      }
+      final long[] lastUses = new long[recentNodes.size()];
+      int count = 0;
+      for (RecentNode recentNode : recentNodes.values())
+      {
+        if (count == lastUses.length)
+        {
+          break;
+        }
+        lastUses[count++] = recentNode.lastUse;
+      }
+      if (count == 0)
+      {
+        return;
+      }
+      Arrays.sort(lastUses, 0, count);
+      final long oldest = lastUses[Math.min(excess, count) - 1];
+
+      int evicted = 0;
+      for (Map.Entry<String, RecentNode> entry : recentNodes.entrySet())
+      {
+        if (evicted == excess)
+        {
+          break;
+        }
+        if (entry.getValue().lastUse <= oldest &&
+            recentNodes.remove(entry.getKey(), entry.getValue()))
+        {
+          evicted++;
+        }
+      }
+    }
+    finally
+    {
+      evicting.set(false);
+    }
+  }
+
+  /**
+   * An automatically interned node and the value of the clock when it was
+   * last used.
+   */
+  private static final class RecentNode implements Serializable
+  {
+    private static final long serialVersionUID = 6245720915370283646L;
+
+    private final TextNode node;
+
+    private volatile long lastUse;
+
+    RecentNode(final TextNode node, final long lastUse)
+    {
+      this.node = node;
+      this.lastUse = lastUse;
+    }
+  }
+}
@@ -18,6 +18,7 @@
 package com.bettercloud.scim2.common.utils;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectReader;
@@ -26,8 +27,6 @@ import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.fasterxml.jackson.databind.node.NullNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
-import com.fasterxml.jackson.databind.type.CollectionType;
-import com.fasterxml.jackson.databind.util.ISO8601Utils;
 import com.bettercloud.scim2.common.Path;
 import com.bettercloud.scim2.common.exceptions.BadRequestException;
 import com.bettercloud.scim2.common.exceptions.ScimException;
@@ -35,9 +34,12 @@ import com.bettercloud.scim2.common.filters.Filter;
 import com.bettercloud.scim2.common.messages.PatchOperation;
 import com.bettercloud.scim2.common.types.AttributeDefinition;
 
-import java.io.IOException;
-import java.text.ParseException;
-import java.text.ParsePosition;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
+import java.time.format.ResolverStyle;
+import java.time.temporal.ChronoField;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.LinkedList;
@@ -49,8 +51,30 @@ import java.util.Map;
  */
 public class JsonUtils
 {
-  private static MapperFactory mapperFactory = new MapperFactory();
-  private static ObjectMapper SDK_OBJECT_MAPPER = createObjectMapper();
+  private static volatile ScimJsonConfig config =
+      new ScimJsonConfig(new MapperFactory());
+
+  /**
+   * The xsd:dateTime format of SCIM dateTime values, with seconds and a
+   * time zone.
+   */
+  private static final DateTimeFormatter DATE_TIME_FORMATTER =
+      new DateTimeFormatterBuilder()
+          .append(DateTimeFormatter.ISO_LOCAL_DATE)
+          .appendLiteral('T')
+          .appendValue(ChronoField.HOUR_OF_DAY, 2)
+          .appendLiteral(':')
+          .appendValue(ChronoField.MINUTE_OF_HOUR, 2)
+          .appendLiteral(':')
+          .appendValue(ChronoField.SECOND_OF_MINUTE, 2)
+          .optionalStart()
+          .appendLiteral('.')
+          .appendFraction(ChronoField.NANO_OF_SECOND, 1, 9, false)
+          .optionalEnd()
+          .appendPattern("[XXX][XX][X]")
+          .toFormatter()
+          .withResolverStyle(ResolverStyle.STRICT);
+
   public abstract static class NodeVisitor
   {
     /**
@@ -756,8 +780,8 @@ public class JsonUtils
         {
           return n1.textValue().compareTo(n2.textValue());
         }
-        return StaticUtils.toLowerCase(n1.textValue()).compareTo(
-            StaticUtils.toLowerCase(n2.textValue()));
+        return StaticUtils.compareToIgnoreCase(n1.textValue(),
+            n2.textValue());
       }
     }
 
@@ -812,29 +836,55 @@ public class JsonUtils
    *
    * @param node The JSON node to parse.
    *
-   * @return A parsed date instance or {@code null} if the text is not an
-   * ISO8601 formatted date and time string.
+   * @return A parsed date instance or {@code null} if the text is not a
+   * dateTime value as defined by {@link #parseDateTime(String)}.
+   */
+  static Date dateValue(final JsonNode node)
+  {
+    return parseDateTime(node.textValue().trim());
+  }
+
+  /**
+   * Parse a SCIM dateTime value: an xsd:dateTime with seconds and a time
+   * zone, for example {@code 2008-01-23T04:56:22Z} or
+   * {@code 2008-01-23T04:56:22.123+01:00}.  A date without a time is not a
+   * dateTime value.
+   *
+   * @param text The text to parse.
+   *
+   * @return The parsed date or {@code null} if the text is not a dateTime
+   * value.
    */
-  private static Date dateValue(final JsonNode node)
+  public static Date parseDateTime(final String text)
   {
-    String text = node.textValue().trim();
-    if (text.length() >= 19 &&
-        Character.isDigit(text.charAt(0)) &&
-        Character.isDigit(text.charAt(1)) &&
-        Character.isDigit(text.charAt(2)) &&
-        Character.isDigit(text.charAt(3)) &&
-        text.charAt(4) == '-')
+    // Most strings are not dates, so reject them without an exception.
+    if (text.length() < 20 ||
+        !Character.isDigit(text.charAt(0)) ||
+        !Character.isDigit(text.charAt(1)) ||
+        !Character.isDigit(text.charAt(2)) ||
+        !Character.isDigit(text.charAt(3)) ||
+        text.charAt(4) != '-')
     {
-      try
-      {
-        return ISO8601Utils.parse(text, new ParsePosition(0));
-      }
-      catch (ParseException e)
-      {
-        // This is not a date after all.
-      }
+      return null;
+    }
+    // The formatter of Java 8 accepts a decimal point without digits.  With a
+    // four digit year the seconds always end at position 19.
+    if (text.charAt(19) == '.' &&
+        (text.length() == 20 || !Character.isDigit(text.charAt(20))))
+    {
+      return null;
+    }
+
+    try
+    {
+      return Date.from(
+          OffsetDateTime.parse(text, DATE_TIME_FORMATTER).toInstant());
+    }
+    catch (DateTimeParseException e)
+    {
+      // This is not a date after all.
+      return null;
     }
-    return null;
   }
 
   /**
@@ -928,7 +978,7 @@ public class JsonUtils
    */
   public static ObjectReader getObjectReader()
   {
-    return SDK_OBJECT_MAPPER.reader();
+    return config.getObjectReader();
   }
 
   /**
@@ -939,7 +989,82 @@ public class JsonUtils
    */
   public static ObjectWriter getObjectWriter()
   {
-    return SDK_OBJECT_MAPPER.writer();
+    return config.getObjectWriter();
+  }
+
+  /**
+   * Retrieve a SCIM compatible Jackson {@link ObjectReader} for the provided
+   * value type. Readers are created once per type with their root
+   * deserializer already resolved and are shared afterwards.
+   *
+   * @param valueType The value type.
+   * @return A Jackson {@link ObjectReader} for the value type.
+   */
+  public static ObjectReader getObjectReader(final Class<?> valueType)
+  {
+    return config.getObjectReader(valueType);
+  }
+
+  /**
+   * Retrieve a SCIM compatible Jackson {@link ObjectReader} for the provided
+   * value type. Readers are created once per type with their root
+   * deserializer already resolved and are shared afterwards.
+   *
+   * @param valueType The value type.
+   * @return A Jackson {@link ObjectReader} for the value type.
+   */
+  public static ObjectReader getObjectReader(final JavaType valueType)
+  {
+    return config.getObjectReader(valueType);
+  }
+
+  /**
+   * Retrieve a SCIM compatible Jackson {@link ObjectWriter} for the provided
+   * value type. Writers are created once per type with their root serializer
+   * already resolved and are shared afterwards.
+   *
+   * @param valueType The value type.
+   * @return A Jackson {@link ObjectWriter} for the value type.
+   */
+  public static ObjectWriter getObjectWriter(final Class<?> valueType)
+  {
+    return config.getObjectWriter(valueType);
+  }
+
+  /**
+   * Retrieve a SCIM compatible Jackson {@link ObjectWriter} for the provided
+   * value type. Writers are created once per type with their root serializer
+   * already resolved and are shared afterwards.
+   *
+   * @param valueType The value type.
+   * @return A Jackson {@link ObjectWriter} for the value type.
+   */
+  public static ObjectWriter getObjectWriter(final JavaType valueType)
+  {
+    return config.getObjectWriter(valueType);
+  }
+
+  /**
+   * Retrieve the Jackson type of a {@code List} of the provided value type.
+   *
+   * @param valueType The type of the list elements.
+   * @return The Jackson type of a list of the value type.
+   */
+  public static JavaType getListType(final Class<?> valueType)
+  {
+    return config.getListType(valueType);
+  }
+
+  /**
+   * Resolve and cache the readers and writers for the provided value types
+   * and lists of them, so that the first request using them does not pay for
+   * serializer and deserializer construction.
+   *
+   * @param valueTypes The value types.
+   */
+  public static void warmUp(final Class<?>... valueTypes)
+  {
+    config.warmUp(valueTypes);
   }
 
   /**
@@ -950,7 +1075,7 @@ public class JsonUtils
    */
   public static JsonNodeFactory getJsonNodeFactory()
   {
-    return SDK_OBJECT_MAPPER.getNodeFactory();
+    return config.getJsonNodeFactory();
   }
 
   /**
@@ -963,7 +1088,7 @@ public class JsonUtils
    */
   public static <T extends JsonNode> T valueToNode(final Object fromValue)
   {
-    return SDK_OBJECT_MAPPER.valueToTree(fromValue);
+    return config.valueToNode(fromValue);
   }
 
   /**
@@ -981,7 +1106,7 @@ public class JsonUtils
                                   final Class<T> valueType)
       throws JsonProcessingException
   {
-    return SDK_OBJECT_MAPPER.treeToValue(fromNode, valueType);
+    return config.nodeToValue(fromNode, valueType);
   }
 
   /**
@@ -998,22 +1123,7 @@ public class JsonUtils
                                          final Class<T> valueType)
       throws JsonProcessingException
   {
-    final CollectionType collectionType =
-        SDK_OBJECT_MAPPER.getTypeFactory().constructCollectionType(
-            List.class, valueType);
-
-    try
-    {
-      return SDK_OBJECT_MAPPER.readValue(
-          SDK_OBJECT_MAPPER.treeAsTokens(fromNode), collectionType);
-    } catch (JsonProcessingException e)
-    {
-      throw e;
-    }
-    catch (IOException e)
-    {
-      throw new IllegalArgumentException(e.getMessage(), e);
-    }
+    return config.nodeToValues(fromNode, valueType);
   }
 
   /**
@@ -1028,21 +1138,51 @@ public class JsonUtils
    */
   public static ObjectMapper createObjectMapper()
   {
-    return mapperFactory.createObjectMapper();
+    return config.newObjectMapper();
+  }
+
+  /**
+   * Retrieve the JSON configuration currently used by the SCIM 2 SDK.
+   * Callers performing several related operations may hold on to the
+   * returned configuration so that all of them use the same settings even
+   * if the configuration is replaced concurrently.
+   *
+   * @return The JSON configuration currently used by the SCIM 2 SDK.
+   */
+  public static ScimJsonConfig getConfig()
+  {
+    return config;
+  }
+
+  /**
+   * Replaces the JSON configuration used by the SCIM 2 SDK. The new
+   * configuration is published atomically: operations already in progress
+   * complete with the previous configuration and all operations started
+   * afterwards use the new one. Readers never block.
+   *
+   * @param newConfig The new JSON configuration.
+   */
+  public static void setConfig(final ScimJsonConfig newConfig)
+  {
+    if (newConfig == null)
+    {
+      throw new NullPointerException("newConfig must not be null");
+    }
+    config = newConfig;
   }
 
   /**
    * Sets the MapperFactory used to create the object mappers used by the SCIM 2
-   * SDK.  If this method is called, it should be called prior to the first use
-   * of any other method that may use an ObjectMapper (most of the methods of
-   * JsonUtils use an object mapper).
+   * SDK. The object mapper, along with its readers and writers, is created
+   * from the mapper factory before being swapped in with
+   * {@link #setConfig(ScimJsonConfig)}, so this method may safely be called
+   * while other threads are using JsonUtils.
    *
    * @param customMapperFactory the custom JSON object mapper.
    */
   public static void setCustomMapperFactory(final MapperFactory customMapperFactory)
   {
-    JsonUtils.mapperFactory = customMapperFactory;
-    SDK_OBJECT_MAPPER = customMapperFactory.createObjectMapper();
+    setConfig(new ScimJsonConfig(customMapperFactory));
   }
 
 }
@@ -24,25 +24,54 @@ import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.MapperFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
  * Class used to customize the object mapper that is used by the SCIM 2 SDK.
+ * Each instance holds its own settings, so several differently configured
+ * factories may be used side by side.
  */
 public class MapperFactory
 {
-  private static Map<DeserializationFeature, Boolean> deserializationCustomFeatures =
+  private Map<DeserializationFeature, Boolean> deserializationCustomFeatures =
       Collections.<DeserializationFeature, Boolean>emptyMap();
-  private static Map<JsonParser.Feature, Boolean> jsonParserCustomFeatures =
+  private Map<JsonParser.Feature, Boolean> jsonParserCustomFeatures =
       Collections.<JsonParser.Feature, Boolean>emptyMap();
-  private static Map<JsonGenerator.Feature, Boolean> jsonGeneratorCustomFeatures =
+  private Map<JsonGenerator.Feature, Boolean> jsonGeneratorCustomFeatures =
       Collections.<JsonGenerator.Feature, Boolean>emptyMap();
-  private static Map<MapperFeature, Boolean> mapperCustomFeatures =
+  private Map<MapperFeature, Boolean> mapperCustomFeatures =
       Collections.<MapperFeature, Boolean>emptyMap();
-  private static Map<SerializationFeature, Boolean> serializationCustomFeatures =
+  private Map<SerializationFeature, Boolean> serializationCustomFeatures =
       Collections.<SerializationFeature, Boolean>emptyMap();
+  private JsonNodeFactory jsonNodeFactory = new ScimJsonNodeFactory();
+
+  /**
+   * Create a new mapper factory with the default settings.
+   */
+  public MapperFactory()
+  {
+  }
+
+  /**
+   * Create a new mapper factory with the same settings as the provided
+   * factory. Changes made to either factory afterwards do not affect the
+   * other.
+   *
+   * @param mapperFactory The mapper factory to copy the settings from.
+   */
+  public MapperFactory(final MapperFactory mapperFactory)
+  {
+    deserializationCustomFeatures = mapperFactory.deserializationCustomFeatures;
+    jsonParserCustomFeatures = mapperFactory.jsonParserCustomFeatures;
+    jsonGeneratorCustomFeatures = mapperFactory.jsonGeneratorCustomFeatures;
+    mapperCustomFeatures = mapperFactory.mapperCustomFeatures;
+    serializationCustomFeatures = mapperFactory.serializationCustomFeatures;
+    jsonNodeFactory = mapperFactory.jsonNodeFactory;
+  }
 
   /**
    * Sets custom deserialization features for any JSON ObjectMapper that is
@@ -56,7 +85,7 @@ public class MapperFactory
   public MapperFactory setDeserializationCustomFeatures(
       final Map<DeserializationFeature, Boolean> customFeatures)
   {
-    deserializationCustomFeatures = customFeatures;
+    deserializationCustomFeatures = copyOf(customFeatures);
     return this;
   }
 
@@ -72,7 +101,7 @@ public class MapperFactory
   public MapperFactory setJsonGeneratorCustomFeatures(
       final Map<JsonGenerator.Feature, Boolean> customFeatures)
   {
-    jsonGeneratorCustomFeatures = customFeatures;
+    jsonGeneratorCustomFeatures = copyOf(customFeatures);
     return this;
   }
 
@@ -88,7 +117,7 @@ public class MapperFactory
   public MapperFactory setJsonParserCustomFeatures(
       final Map<JsonParser.Feature, Boolean> customFeatures)
   {
-    jsonParserCustomFeatures = customFeatures;
+    jsonParserCustomFeatures = copyOf(customFeatures);
     return this;
   }
 
@@ -104,7 +133,7 @@ public class MapperFactory
   public MapperFactory setMapperCustomFeatures(
       final Map<MapperFeature, Boolean> customFeatures)
   {
-    mapperCustomFeatures = customFeatures;
+    mapperCustomFeatures = copyOf(customFeatures);
     return this;
   }
 
@@ -120,7 +149,25 @@ public class MapperFactory
   public MapperFactory setSerializationCustomFeatures(
       final Map<SerializationFeature, Boolean> customFeatures)
   {
-    serializationCustomFeatures = customFeatures;
+    serializationCustomFeatures = copyOf(customFeatures);
+    return this;
+  }
+
+  /**
+   * Sets the JSON node factory for any JSON ObjectMapper that is used and
+   * returned by the SCIM 2 SDK.  The factory must create case-insensitive
+   * object nodes, so it should be or extend {@link ScimJsonNodeFactory}, for
+   * example an {@link InterningScimJsonNodeFactory}.  This class should be
+   * used to configure any object mapper customizations needed prior to using
+   * any method in the JsonUtils class.
+   *
+   * @param nodeFactory The JSON node factory.
+   * @return this object.
+   */
+  public MapperFactory setJsonNodeFactory(
+      final ScimJsonNodeFactory nodeFactory)
+  {
+    jsonNodeFactory = nodeFactory;
     return this;
   }
 
@@ -133,7 +180,7 @@ public class MapperFactory
    * @return an Object Mapper with the correct options set for serializing
    *     and deserializing SCIM JSON objects.
    */
-  public static ObjectMapper createObjectMapper()
+  public ObjectMapper newObjectMapper()
   {
     ObjectMapper mapper = new ObjectMapper(new ScimJsonFactory());
 
@@ -149,7 +196,7 @@ public class MapperFactory
     mapper.configure(MapperFeature.ACCEPT_CASE_INSENSITIVE_PROPERTIES, true);
 
     // Use the case-insensitive JsonNodes.
-    mapper.setNodeFactory(new ScimJsonNodeFactory());
+    mapper.setNodeFactory(jsonNodeFactory);
 
     for (DeserializationFeature feature : deserializationCustomFeatures.keySet())
     {
@@ -178,4 +225,35 @@ public class MapperFactory
 
     return mapper;
   }
+
+  /**
+   * Creates a SCIM compatible Jackson ObjectMapper with the settings of the
+   * mapper factory currently used by the SCIM 2 SDK.
+   *
+   * @return an Object Mapper with the correct options set for serializing
+   *     and deserializing SCIM JSON objects.
+   * @deprecated The settings of a mapper factory are no longer shared by all
+   *     instances. Use {@link #newObjectMapper()} on the configured factory,
+   *     or {@link JsonUtils#createObjectMapper()} for the factory currently
+   *     used by the SCIM 2 SDK.
+   */
+  @Deprecated
+  public static ObjectMapper createObjectMapper()
+  {
+    return JsonUtils.createObjectMapper();
+  }
+
+  /**
+   * Copy the feature settings so later changes to the provided map do not
+   * affect this factory.
+   *
+   * @param customFeatures The feature settings to copy.
+   * @param <F> The feature type.
+   * @return An unmodifiable copy of the feature settings.
+   */
+  private static <F> Map<F, Boolean> copyOf(final Map<F, Boolean> customFeatures)
+  {
+    return Collections.unmodifiableMap(
+        new LinkedHashMap<F, Boolean>(customFeatures));
+  }
 }
@@ -18,6 +18,9 @@
 package com.bettercloud.scim2.common.utils;
 
 import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationConfig;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.fasterxml.jackson.databind.node.ValueNode;
 import com.bettercloud.scim2.common.Path;
 import com.bettercloud.scim2.common.exceptions.BadRequestException;
@@ -26,12 +29,28 @@ import com.bettercloud.scim2.common.filters.FilterType;
 
 import java.io.IOException;
 import java.io.Reader;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.LinkedList;
-import java.util.Stack;
 
 
 /**
  * A parser for SCIM filter expressions.
+ * <p>
+ * Filters and paths are tokenized in a single pass over the string, which is
+ * read through a {@link StringReader} that takes tokens as substrings of the
+ * string.  Comparison values that are plain JSON strings, numbers, booleans
+ * or nulls are decoded in place into the same nodes the SDK object mapper
+ * would create.
+ * <p>
+ * This is not a complete hand-written lexer: malformed values, values that
+ * are only accepted through lenient parser features and values followed by
+ * anything other than a space, {@code ')'} or {@code ']'} are still handed to
+ * a Jackson parser, so that the error messages and positions stay those of
+ * Jackson.  Since those values are either rare or fail the parse, the
+ * Jackson parser is not created for valid filters in practice.
  */
 public class Parser
 {
@@ -131,7 +150,7 @@ public class Parser
         return -1;
       }
       int chars = Math.min(string.length() - pos, len);
-      System.arraycopy(string.toCharArray(), pos, cbuf, off, chars);
+      string.getChars(pos, pos + chars, cbuf, off);
       pos += chars;
       return chars;
     }
@@ -297,7 +316,8 @@ public class Parser
     reader.mark(0);
     int c = reader.read();
 
-    StringBuilder b = new StringBuilder();
+    // Tokens are contiguous so they are taken from the string as is.
+    int end = reader.mark;
     while(c > 0)
     {
       if (c == '.')
@@ -309,17 +329,16 @@ public class Parser
               "Unexpected end of path string");
         }
         // Terminating period. Consume it and return token.
-        return b.toString();
+        return reader.string.substring(reader.mark, end);
       }
       if (c == '[')
       {
         // Terminating opening brace. Consume it and return token.
-        b.append((char)c);
-        return b.toString();
+        return reader.string.substring(reader.mark, reader.pos);
       }
       if (c == '-' || c == '_' || c == '$' || Character.isLetterOrDigit(c))
       {
-        b.append((char)c);
+        end = reader.pos;
       }
       else
       {
@@ -331,9 +350,9 @@ public class Parser
       c = reader.read();
     }
 
-    if(b.length() > 0)
+    if(end > reader.mark)
     {
-      return b.toString();
+      return reader.string.substring(reader.mark, end);
     }
     return null;
   }
@@ -384,50 +403,44 @@ public class Parser
     }
     while(c == ' ');
 
-    StringBuilder b = new StringBuilder();
+    // Tokens are contiguous so they are taken from the string as is.
+    int end = reader.mark;
     while(c > 0)
     {
       if (c == ' ')
       {
         // Terminating space. Consume it and return token.
-        return b.toString();
+        return reader.string.substring(reader.mark, end);
       }
       if (c == '(' || c == ')')
       {
-        if(b.length() > 0)
+        if(end > reader.mark)
         {
           // Do not consume the parenthesis.
           reader.unread();
+          return reader.string.substring(reader.mark, end);
         }
-        else
-        {
-          b.append((char)c);
-        }
-        return b.toString();
+        return c == '(' ? "(" : ")";
       }
       if (!isValueFilter && c == '[')
       {
         // Terminating opening brace. Consume it and return token.
-        b.append((char)c);
-        return b.toString();
+        return reader.string.substring(reader.mark, reader.pos);
       }
       if (isValueFilter && c == ']')
       {
-        if(b.length() > 0)
+        if(end > reader.mark)
         {
           // Do not consume the closing brace.
           reader.unread();
+          return reader.string.substring(reader.mark, end);
         }
-        else
-        {
-          b.append((char)c);
-        }
-        return b.toString();
+        return "]";
       }
       if (c == '-' || c == '_' || c == '.' || c == ':' || c == '$' ||
           Character.isLetterOrDigit(c))
       {
-        b.append((char)c);
+        end = reader.pos;
       }
       else
       {
@@ -439,9 +452,9 @@ public class Parser
       c = reader.read();
     }
 
-    if(b.length() > 0)
+    if(end > reader.mark)
     {
-      return b.toString();
+      return reader.string.substring(reader.mark, end);
     }
     return null;
   }
@@ -458,8 +471,8 @@ public class Parser
                                    final boolean isValueFilter)
       throws BadRequestException
   {
-    final Stack<Filter> outputStack = new Stack<Filter>();
-    final Stack<String> precedenceStack = new Stack<String>();
+    final Deque<Filter> outputStack = new ArrayDeque<Filter>();
+    final Deque<String> precedenceStack = new ArrayDeque<String>();
 
     String token;
     String previousToken = null;
@@ -607,48 +620,7 @@ public class Parser
         }
         else
         {
-          ValueNode valueNode;
-          try
-          {
-            // Mark the beginning of the JSON value so we can later reset back
-            // to this position and skip the actual chars that were consumed
-            // by Jackson. The Jackson parser is buffered and reads everything
-            // until the end of string.
-            reader.mark(0);
-            ScimJsonFactory scimJsonFactory = (ScimJsonFactory)
-                JsonUtils.getObjectReader().getFactory();
-            JsonParser parser = scimJsonFactory.createScimFilterParser(reader);
-            // The object mapper will return a Java null for JSON null.
-            // Have to distinguish between reading a JSON null and encountering
-            // the end of string.
-            if (parser.getCurrentToken() == null && parser.nextToken() == null)
-            {
-              // End of string.
-              valueNode = null;
-            }
-            else
-            {
-              valueNode = parser.readValueAsTree();
-
-              // This is actually a JSON null. Use NullNode.
-              if(valueNode == null)
-              {
-                valueNode = JsonUtils.getJsonNodeFactory().nullNode();
-              }
-            }
-            // Reset back to the beginning of the JSON value.
-            reader.reset();
-            // Skip the number of chars consumed by JSON parser.
-            reader.skip(parser.getCurrentLocation().getCharOffset());
-          }
-          catch (IOException e)
-          {
-            final String msg = String.format(
-                "Invalid comparison value at position %d: %s",
-                reader.mark, e.getMessage());
-            throw BadRequestException.invalidFilter(msg);
-          }
-
+          final ValueNode valueNode = readComparisonValue(reader);
           if (valueNode == null)
           {
             throw BadRequestException.invalidFilter(
@@ -719,6 +691,392 @@ public class Parser
     return outputStack.pop();
   }
 
+  /**
+   * Read the comparison value of an attribute filter.  Plain JSON literals
+   * are decoded directly from the string, everything else is read with
+   * {@link #readJsonValue(StringReader)}.
+   *
+   * @param reader The reader positioned after the filter operator.
+   * @return The comparison value, or {@code null} if the end of the input has
+   *         been reached.
+   * @throws BadRequestException If the value could not be parsed.
+   */
+  private static ValueNode readComparisonValue(final StringReader reader)
+      throws BadRequestException
+  {
+    final String string = reader.string;
+    final int length = string.length();
+
+    // Mark the beginning of the value for error messages and the fallback.
+    reader.mark(0);
+    int start = reader.pos;
+    while(start < length && isJsonWhitespace(string.charAt(start)))
+    {
+      start++;
+    }
+    if(start >= length)
+    {
+      // Let Jackson report the missing value.
+      return readJsonValue(reader);
+    }
+
+    final DeserializationConfig config = JsonUtils.getObjectReader().getConfig();
+    final JsonNodeFactory nodeFactory = config.getNodeFactory();
+    final char c = string.charAt(start);
+    ValueNode valueNode = null;
+    int end = -1;
+    if(c == '"')
+    {
+      end = findStringEnd(string, start);
+      if(end > 0)
+      {
+        valueNode = nodeFactory.textNode(decodeString(string, start + 1, end - 1));
+      }
+    }
+    else if(c == '-' || (c >= '0' && c <= '9'))
+    {
+      end = findNumberEnd(string, start);
+      if(end > 0 && isValueEnd(string, end))
+      {
+        valueNode = numberNode(config, nodeFactory, string.substring(start, end),
+            end - start);
+      }
+    }
+    else if(string.startsWith("true", start) && isValueEnd(string, start + 4))
+    {
+      end = start + 4;
+      valueNode = nodeFactory.booleanNode(true);
+    }
+    else if(string.startsWith("false", start) && isValueEnd(string, start + 5))
+    {
+      end = start + 5;
+      valueNode = nodeFactory.booleanNode(false);
+    }
+    else if(string.startsWith("null", start) && isValueEnd(string, start + 4))
+    {
+      end = start + 4;
+      valueNode = nodeFactory.nullNode();
+    }
+
+    if(valueNode == null)
+    {
+      return readJsonValue(reader);
+    }
+    reader.pos = end;
+    return valueNode;
+  }
+
+  /**
+   * Read a comparison value with a Jackson parser configured like the SDK
+   * object mapper.
+   *
+   * @param reader The reader marked at the beginning of the value.
+   * @return The comparison value, or {@code null} if the end of the input has
+   *         been reached.
+   * @throws BadRequestException If the value could not be parsed.
+   */
+  private static ValueNode readJsonValue(final StringReader reader)
+      throws BadRequestException
+  {
+    ValueNode valueNode;
+    try
+    {
+      // Mark the beginning of the JSON value so we can later reset back
+      // to this position and skip the actual chars that were consumed
+      // by Jackson. The Jackson parser is buffered and reads everything
+      // until the end of string.
+      reader.mark(0);
+      ScimJsonFactory scimJsonFactory = (ScimJsonFactory)
+          JsonUtils.getObjectReader().getFactory();
+      JsonParser parser = scimJsonFactory.createScimFilterParser(reader);
+      // The object mapper will return a Java null for JSON null.
+      // Have to distinguish between reading a JSON null and encountering
+      // the end of string.
+      if (parser.getCurrentToken() == null && parser.nextToken() == null)
+      {
+        // End of string.
+        valueNode = null;
+      }
+      else
+      {
+        valueNode = parser.readValueAsTree();
+
+        // This is actually a JSON null. Use NullNode.
+        if(valueNode == null)
+        {
+          valueNode = JsonUtils.getJsonNodeFactory().nullNode();
+        }
+      }
+      // Reset back to the beginning of the JSON value.
+      reader.reset();
+      // Skip the number of chars consumed by JSON parser.
+      reader.skip(parser.getCurrentLocation().getCharOffset());
+    }
+    catch (IOException e)
+    {
+      final String msg = String.format(
+          "Invalid comparison value at position %d: %s",
+          reader.mark, e.getMessage());
+      throw BadRequestException.invalidFilter(msg);
+    }
+    return valueNode;
+  }
+
+  /**
+   * Find the end of a JSON string that only contains valid escapes and no
+   * control characters.
+   *
+   * @param string The string to search.
+   * @param start The position of the opening quote.
+   * @return The position after the closing quote, or -1 if the string is not
+   *         a plain JSON string.
+   */
+  private static int findStringEnd(final String string, final int start)
+  {
+    final int length = string.length();
+    int i = start + 1;
+    while(i < length)
+    {
+      final char c = string.charAt(i++);
+      if(c == '"')
+      {
+        return i;
+      }
+      if(c < ' ')
+      {
+        return -1;
+      }
+      if(c == '\\')
+      {
+        if(i >= length)
+        {
+          return -1;
+        }
+        final char escaped = string.charAt(i++);
+        if(escaped == 'u')
+        {
+          if(i + 4 > length)
+          {
+            return -1;
+          }
+          for(int j = 0; j < 4; j++)
+          {
+            if(Character.digit(string.charAt(i++), 16) < 0)
+            {
+              return -1;
+            }
+          }
+        }
+        else if("\"\\/bfnrt".indexOf(escaped) < 0)
+        {
+          return -1;
+        }
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Decode the contents of a plain JSON string.
+   *
+   * @param string The string containing the JSON string.
+   * @param start The position after the opening quote.
+   * @param end The position of the closing quote.
+   * @return The decoded string.
+   */
+  private static String decodeString(final String string, final int start,
+                                     final int end)
+  {
+    int escape = string.indexOf('\\', start);
+    if(escape < 0 || escape >= end)
+    {
+      return string.substring(start, end);
+    }
+
+    final StringBuilder b = new StringBuilder(end - start);
+    int i = start;
+    while(escape >= 0 && escape < end)
+    {
+      b.append(string, i, escape);
+      final char escaped = string.charAt(escape + 1);
+      i = escape + 2;
+      switch(escaped)
+      {
+        case 'b':
+          b.append('\b');
+          break;
+        case 'f':
+          b.append('\f');
+          break;
+        case 'n':
+          b.append('\n');
+          break;
+        case 'r':
+          b.append('\r');
+          break;
+        case 't':
+          b.append('\t');
+          break;
+        case 'u':
+          b.append((char) Integer.parseInt(string.substring(i, i + 4), 16));
+          i += 4;
+          break;
+        default:
+          b.append(escaped);
+          break;
+      }
+      escape = string.indexOf('\\', i);
+    }
+    b.append(string, i, end);
+    return b.toString();
+  }
+
+  /**
+   * Find the end of a strict JSON number.
+   *
+   * @param string The string to search.
+   * @param start The position of the first character of the number.
+   * @return The position after the number, or -1 if it is not a strict JSON
+   *         number, for example because of leading zeros.
+   */
+  private static int findNumberEnd(final String string, final int start)
+  {
+    final int length = string.length();
+    int i = start;
+    if(string.charAt(i) == '-')
+    {
+      i++;
+    }
+    if(i >= length || !isDigit(string.charAt(i)))
+    {
+      return -1;
+    }
+    if(string.charAt(i++) == '0')
+    {
+      if(i < length && isDigit(string.charAt(i)))
+      {
+        return -1;
+      }
+    }
+    else
+    {
+      while(i < length && isDigit(string.charAt(i)))
+      {
+        i++;
+      }
+    }
+    if(i < length && string.charAt(i) == '.')
+    {
+      i++;
+      if(i >= length || !isDigit(string.charAt(i)))
+      {
+        return -1;
+      }
+      while(i < length && isDigit(string.charAt(i)))
+      {
+        i++;
+      }
+    }
+    if(i < length && (string.charAt(i) == 'e' || string.charAt(i) == 'E'))
+    {
+      i++;
+      if(i < length && (string.charAt(i) == '+' || string.charAt(i) == '-'))
+      {
+        i++;
+      }
+      if(i >= length || !isDigit(string.charAt(i)))
+      {
+        return -1;
+      }
+      while(i < length && isDigit(string.charAt(i)))
+      {
+        i++;
+      }
+    }
+    return i;
+  }
+
+  /**
+   * Create the node for a strict JSON number the same way the SDK object
+   * mapper does.
+   *
+   * @param config The deserialization config of the object mapper.
+   * @param nodeFactory The node factory of the object mapper.
+   * @param number The number.
+   * @param length The length of the number.
+   * @return The number node, or {@code null} if the number can not be
+   *         represented without the Jackson parser.
+   */
+  private static ValueNode numberNode(final DeserializationConfig config,
+                                      final JsonNodeFactory nodeFactory,
+                                      final String number,
+                                      final int length)
+  {
+    if(number.indexOf('.') >= 0 || number.indexOf('e') >= 0 ||
+        number.indexOf('E') >= 0)
+    {
+      if(config.isEnabled(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS))
+      {
+        return nodeFactory.numberNode(new BigDecimal(number));
+      }
+      return nodeFactory.numberNode(Double.parseDouble(number));
+    }
+
+    if(config.isEnabled(DeserializationFeature.USE_BIG_INTEGER_FOR_INTS))
+    {
+      return nodeFactory.numberNode(new BigInteger(number));
+    }
+    // Up to 18 digits always fit in a long.
+    if(length <= 18)
+    {
+      final long value = Long.parseLong(number);
+      if(value == (int) value &&
+          !config.isEnabled(DeserializationFeature.USE_LONG_FOR_INTS))
+      {
+        return nodeFactory.numberNode((int) value);
+      }
+      return nodeFactory.numberNode(value);
+    }
+    final BigInteger value = new BigInteger(number);
+    if(value.bitLength() < 64)
+    {
+      return nodeFactory.numberNode(value.longValue());
+    }
+    if(config.isEnabled(DeserializationFeature.USE_LONG_FOR_INTS))
+    {
+      return null;
+    }
+    return nodeFactory.numberNode(value);
+  }
+
+  /**
+   * Whether a comparison value may end at a position without the Jackson
+   * parser having a say about the character that follows.
+   *
+   * @param string The string.
+   * @param end The position after the value.
+   * @return Whether the value ends at the position.
+   */
+  private static boolean isValueEnd(final String string, final int end)
+  {
+    if(end >= string.length())
+    {
+      return true;
+    }
+    final char c = string.charAt(end);
+    return c == ' ' || c == ')' || c == ']';
+  }
+
+  private static boolean isDigit(final char c)
+  {
+    return c >= '0' && c <= '9';
+  }
+
+  private static boolean isJsonWhitespace(final char c)
+  {
+    return c == ' ' || c == '\t' || c == '\n' || c == '\r';
+  }
+
   /**
    * Close a grouping of filters enclosed by parenthesis.
    *
@@ -728,8 +1086,8 @@ public class Parser
    * @return The last operator encountered that signaled the end of the group.
    * @throws BadRequestException If the filter string could not be parsed.
    */
-  private static String closeGrouping(final Stack<String> operators,
-                                      final Stack<Filter> output,
+  private static String closeGrouping(final Deque<String> operators,
+                                      final Deque<Filter> output,
                                       final boolean isAtTheEnd)
       throws BadRequestException
   {
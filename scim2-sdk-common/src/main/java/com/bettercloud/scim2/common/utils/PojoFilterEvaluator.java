@@ -0,0 +1,942 @@
+/*
+ * Copyright 2015-2019 Ping Identity Corporation
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License (GPLv2 only)
+ * or the terms of the GNU Lesser General Public License (LGPLv2.1 only)
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ */
+
+package com.bettercloud.scim2.common.utils;
+
+import com.bettercloud.scim2.common.BaseScimResource;
+import com.bettercloud.scim2.common.GenericScimResource;
+import com.bettercloud.scim2.common.Path;
+import com.bettercloud.scim2.common.exceptions.BadRequestException;
+import com.bettercloud.scim2.common.exceptions.ScimException;
+import com.bettercloud.scim2.common.exceptions.ServerErrorException;
+import com.bettercloud.scim2.common.filters.AndFilter;
+import com.bettercloud.scim2.common.filters.ComplexValueFilter;
+import com.bettercloud.scim2.common.filters.ContainsFilter;
+import com.bettercloud.scim2.common.filters.EndsWithFilter;
+import com.bettercloud.scim2.common.filters.EqualFilter;
+import com.bettercloud.scim2.common.filters.Filter;
+import com.bettercloud.scim2.common.filters.FilterVisitor;
+import com.bettercloud.scim2.common.filters.GreaterThanFilter;
+import com.bettercloud.scim2.common.filters.GreaterThanOrEqualFilter;
+import com.bettercloud.scim2.common.filters.LessThanFilter;
+import com.bettercloud.scim2.common.filters.LessThanOrEqualFilter;
+import com.bettercloud.scim2.common.filters.NotEqualFilter;
+import com.bettercloud.scim2.common.filters.NotFilter;
+import com.bettercloud.scim2.common.filters.OrFilter;
+import com.bettercloud.scim2.common.filters.PresentFilter;
+import com.bettercloud.scim2.common.filters.StartsWithFilter;
+import com.bettercloud.scim2.common.types.AttributeDefinition;
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.AnnotationIntrospector;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.introspect.AnnotatedMember;
+import com.fasterxml.jackson.databind.node.NullNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.ser.BeanPropertyWriter;
+import com.fasterxml.jackson.databind.ser.PropertyWriter;
+import com.fasterxml.jackson.databind.ser.impl.UnwrappingBeanPropertyWriter;
+import com.fasterxml.jackson.databind.ser.std.BeanSerializerBase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A filter visitor that will evaluate a filter on a typed object, such as a
+ * {@link BaseScimResource} subclass, and return whether the object matches
+ * the filter. The result is the same as evaluating the filter with a
+ * {@link FilterEvaluator} on the JSON representation of the object, but the
+ * object is not converted to JSON first.
+ * <p>
+ * Attributes are read with the property writers of the Jackson serializer of
+ * each class, which are looked up once per class and cached, so that the
+ * names and values match the serialized form. Only the values that are
+ * compared with a filter value are converted to JSON nodes. Extension
+ * attributes of a {@link BaseScimResource} are read from its
+ * {@link BaseScimResource#getExtensionObjectNode() extension object node},
+ * and JSON nodes and {@link GenericScimResource}s are evaluated as they are.
+ * Objects whose serialized form can not be derived from their properties,
+ * for example because they use a custom serializer, are converted to JSON
+ * when they are reached.
+ */
+public class PojoFilterEvaluator implements FilterVisitor<Boolean, Object>
+{
+  private static final PojoFilterEvaluator SINGLETON =
+      new PojoFilterEvaluator();
+  private static final Path VALUE_PATH = Path.root().attribute("value");
+
+  /**
+   * Complex and multi-valued attribute values are only compared by their
+   * textual value, which is empty, so they are not converted to JSON.
+   */
+  private static final JsonNode STRUCTURED_VALUE =
+      JsonUtils.getJsonNodeFactory().objectNode();
+
+  private static volatile PropertyCache propertyCache;
+
+  /**
+   * Evaluate the provided filter against the provided object.
+   *
+   * @param filter The filter to evaluate.
+   * @param object The object to evaluate the filter against.
+   * @return {@code true} if the object matches the filter or {@code false}
+   * otherwise.
+   * @throws ScimException If the filter is not valid for matching.
+   */
+  public static boolean evaluate(final Filter filter, final Object object)
+      throws ScimException
+  {
+    return filter.visit(SINGLETON, object);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public Boolean visit(final EqualFilter filter, final Object object)
+      throws ScimException
+  {
+    List<Object> values = getCandidateValues(filter.getAttributePath(), object);
+    if (filter.getComparisonValue().isNull() && isEmpty(values))
+    {
+      // Unassigned attributes, the null value, or empty array SHALL be
+      // considered to be equivalent in "state".
+      return true;
+    }
+    for (Object value : values)
+    {
+      if (JsonUtils.compareTo(toNode(value), filter.getComparisonValue(),
+          getAttributeDefinition(filter.getAttributePath())) == 0)
+      {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public Boolean visit(final NotEqualFilter filter, final Object object)
+      throws ScimException
+  {
+    List<Object> values = getCandidateValues(filter.getAttributePath(), object);
+    if (filter.getComparisonValue().isNull() && isEmpty(values))
+    {
+      // Unassigned attributes, the null value, or empty array SHALL be
+      // considered to be equivalent in "state".
+      return false;
+    }
+    for (Object value : values)
+    {
+      if (JsonUtils.compareTo(toNode(value), filter.getComparisonValue(),
+          getAttributeDefinition(filter.getAttributePath())) == 0)
+      {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public Boolean visit(final ContainsFilter filter, final Object object)
+      throws ScimException
+  {
+    return substringMatch(filter, object);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public Boolean visit(final StartsWithFilter filter, final Object object)
+      throws ScimException
+  {
+    return substringMatch(filter, object);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public Boolean visit(final EndsWithFilter filter, final Object object)
+      throws ScimException
+  {
+    return substringMatch(filter, object);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public Boolean visit(final PresentFilter filter, final Object object)
+      throws ScimException
+  {
+    for (Object value : getCandidateValues(filter.getAttributePath(), object))
+    {
+      if (!isEmpty(value))
+      {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public Boolean visit(final GreaterThanFilter filter, final Object object)
+      throws ScimException
+  {
+    for (JsonNode node : getOrderedNodes(filter, object, "Greater than"))
+    {
+      if (JsonUtils.compareTo(node, filter.getComparisonValue(),
+          getAttributeDefinition(filter.getAttributePath())) > 0)
+      {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public Boolean visit(final GreaterThanOrEqualFilter filter,
+                       final Object object)
+      throws ScimException
+  {
+    for (JsonNode node :
+        getOrderedNodes(filter, object, "Greater than or equal"))
+    {
+      if (JsonUtils.compareTo(node, filter.getComparisonValue(),
+          getAttributeDefinition(filter.getAttributePath())) >= 0)
+      {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public Boolean visit(final LessThanFilter filter, final Object object)
+      throws ScimException
+  {
+    for (JsonNode node : getOrderedNodes(filter, object, "Less than or equal"))
+    {
+      if (JsonUtils.compareTo(node, filter.getComparisonValue(),
+          getAttributeDefinition(filter.getAttributePath())) < 0)
+      {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public Boolean visit(final LessThanOrEqualFilter filter,
+                       final Object object)
+      throws ScimException
+  {
+    for (JsonNode node : getOrderedNodes(filter, object, "Less than or equal"))
+    {
+      if (JsonUtils.compareTo(node, filter.getComparisonValue(),
+          getAttributeDefinition(filter.getAttributePath())) <= 0)
+      {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public Boolean visit(final AndFilter filter, final Object object)
+      throws ScimException
+  {
+    for (Filter combinedFilter : filter.getCombinedFilters())
+    {
+      if (!combinedFilter.visit(this, object))
+      {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public Boolean visit(final OrFilter filter, final Object object)
+      throws ScimException
+  {
+    for (Filter combinedFilter : filter.getCombinedFilters())
+    {
+      if (combinedFilter.visit(this, object))
+      {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public Boolean visit(final NotFilter filter, final Object object)
+      throws ScimException
+  {
+    return !filter.getInvertedFilter().visit(this, object);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public Boolean visit(final ComplexValueFilter filter, final Object object)
+      throws ScimException
+  {
+    for (Object value : getCandidateValues(filter.getAttributePath(), object))
+    {
+      if (isArray(value))
+      {
+        // filter each element of the array individually
+        for (Object element : elements(value))
+        {
+          if (filter.getValueFilter().visit(this, element))
+          {
+            return true;
+          }
+        }
+      }
+      else if (filter.getValueFilter().visit(this, value))
+      {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Retrieve the attribute definition for the attribute specified by the path
+   * to determine case sensitivity during string matching.
+   *
+   * @param path The path to the attribute whose definition to retrieve.
+   * @return the attribute definition or {@code null} if not available, in which
+   *         case case insensitive string value matching will be performed.
+   */
+  protected AttributeDefinition getAttributeDefinition(final Path path)
+  {
+    return null;
+  }
+
+  /**
+   * Retrieves the values to compare against, in the same way as the
+   * {@link FilterEvaluator} retrieves the JsonNodes to compare against. Each
+   * value is either a JsonNode, an object whose properties may be read with
+   * its property writers, or a list of values for a multi-valued attribute.
+   *
+   * @param path The path to the value.
+   * @param object The object containing the value.
+   * @return The values to compare against.
+   * @throws ScimException If an exception occurs during the operation.
+   */
+  private List<Object> getCandidateValues(final Path path, final Object object)
+      throws ScimException
+  {
+    Object value = toValue(object);
+    if (isArray(value))
+    {
+      return elements(value);
+    }
+    if (isObject(value))
+    {
+      List<Object> values = new ArrayList<Object>();
+      gatherValues(value, 0, path, values);
+      List<Object> flattenedValues = new ArrayList<Object>(values.size());
+      for (Object gathered : values)
+      {
+        if (isArray(gathered))
+        {
+          flattenedValues.addAll(elements(gathered));
+        }
+        else
+        {
+          flattenedValues.add(gathered);
+        }
+      }
+      return flattenedValues;
+    }
+    if (path.equals(VALUE_PATH))
+    {
+      // Special case for the "value" path to reference the value itself.
+      return Collections.singletonList(value);
+    }
+    return Collections.emptyList();
+  }
+
+  /**
+   * Gathers the values referenced by a path, following the same rules as
+   * {@link JsonUtils#findMatchingPaths}.
+   *
+   * @param parent The object containing the value.
+   * @param index The index of the path element to gather.
+   * @param path The path to the value.
+   * @param values The list to add the values to.
+   * @throws ScimException If an exception occurs during the operation.
+   */
+  private void gatherValues(final Object parent, final int index,
+                            final Path path, final List<Object> values)
+      throws ScimException
+  {
+    String field = null;
+    Filter valueFilter = null;
+    int pathDepth = path.size();
+    if (path.getSchemaUrn() != null)
+    {
+      if (index > 0)
+      {
+        Path.Element element = path.getElement(index - 1);
+        field = element.getAttribute();
+        valueFilter = element.getValueFilter();
+      }
+      else
+      {
+        field = path.getSchemaUrn();
+      }
+      pathDepth += 1;
+    }
+    else if (path.size() > 0)
+    {
+      Path.Element element = path.getElement(index);
+      field = element.getAttribute();
+      valueFilter = element.getValueFilter();
+    }
+
+    Object child = field == null ? null : getField(parent, field);
+    if (child == null)
+    {
+      return;
+    }
+    if (isArray(child) && valueFilter != null)
+    {
+      child = filterValues(child, valueFilter);
+    }
+
+    if (index < pathDepth - 1)
+    {
+      if (isArray(child))
+      {
+        for (Object element : elements(child))
+        {
+          if (isObject(element))
+          {
+            gatherValues(element, index + 1, path, values);
+          }
+        }
+      }
+      else if (isObject(child))
+      {
+        gatherValues(child, index + 1, path, values);
+      }
+    }
+    else if (!isArray(child) || !elements(child).isEmpty())
+    {
+      values.add(child);
+    }
+  }
+
+  /**
+   * Retrieve the values of a multi-valued attribute that match a value
+   * filter of a path. Like {@link JsonUtils#findMatchingPaths}, the value
+   * filter is evaluated without attribute definitions.
+   *
+   * @param array The values of the multi-valued attribute.
+   * @param valueFilter The value filter.
+   * @return The matching values.
+   * @throws ScimException If an exception occurs during the operation.
+   */
+  private static List<Object> filterValues(final Object array,
+                                           final Filter valueFilter)
+      throws ScimException
+  {
+    List<Object> matchingValues = new Values();
+    for (Object element : elements(array))
+    {
+      if (evaluate(valueFilter, element))
+      {
+        matchingValues.add(element);
+      }
+    }
+    return matchingValues;
+  }
+
+  /**
+   * Retrieve the value of a field of an object.
+   *
+   * @param parent The ObjectNode or object with property writers.
+   * @param field The case insensitive name of the field.
+   * @return The value of the field, or {@code null} if the field does not
+   * exist or would not be serialized.
+   * @throws ScimException If the field could not be read.
+   */
+  private static Object getField(final Object parent, final String field)
+      throws ScimException
+  {
+    if (parent instanceof ObjectNode)
+    {
+      return getField((ObjectNode) parent, field);
+    }
+
+    BeanPropertyWriter writer =
+        getProperties(parent.getClass()).get(StaticUtils.toLowerCase(field));
+    if (writer == null)
+    {
+      // Extension attributes are serialized by the any getter of the resource.
+      return parent instanceof BaseScimResource ?
+          getField(((BaseScimResource) parent).getExtensionObjectNode(),
+              field) : null;
+    }
+
+    Object value;
+    try
+    {
+      value = writer.get(parent);
+    }
+    catch (Exception e)
+    {
+      throw new ServerErrorException("Unable to read attribute '" + field +
+          "': " + e.getMessage(), null, e);
+    }
+    if (value == null)
+    {
+      return writer.willSuppressNulls() ? null : NullNode.getInstance();
+    }
+    return toValue(value);
+  }
+
+  /**
+   * Retrieve the value of a field of an ObjectNode. Nodes created by the SCIM
+   * JsonNodeFactory already ignore the case of field names, other nodes are
+   * searched the same way.
+   *
+   * @param parent The ObjectNode.
+   * @param field The case insensitive name of the field.
+   * @return The value of the field, or {@code null} if the field does not
+   * exist.
+   */
+  private static JsonNode getField(final ObjectNode parent, final String field)
+  {
+    JsonNode value = parent.get(field);
+    if (value == null && !(parent instanceof CaseIgnoreObjectNode))
+    {
+      Iterator<Map.Entry<String, JsonNode>> i = parent.fields();
+      while (i.hasNext())
+      {
+        Map.Entry<String, JsonNode> entry = i.next();
+        if (entry.getKey().equalsIgnoreCase(field))
+        {
+          value = entry.getValue();
+        }
+      }
+    }
+    return value == null || value.isMissingNode() ? null : value;
+  }
+
+  /**
+   * Convert an attribute value to a JsonNode, an object whose properties may
+   * be read with its property writers, or a list of values.
+   *
+   * @param value The attribute value.
+   * @return The converted value.
+   */
+  private static Object toValue(final Object value)
+  {
+    if (value == null)
+    {
+      return NullNode.getInstance();
+    }
+    if (value instanceof JsonNode || value instanceof Values)
+    {
+      return value;
+    }
+    if (value instanceof String)
+    {
+      return JsonUtils.getJsonNodeFactory().textNode((String) value);
+    }
+    if (value instanceof Boolean)
+    {
+      return JsonUtils.getJsonNodeFactory().booleanNode((Boolean) value);
+    }
+    if (value instanceof GenericScimResource)
+    {
+      return ((GenericScimResource) value).getObjectNode();
+    }
+    if (value instanceof Collection || value instanceof Object[])
+    {
+      Collection<?> collection = value instanceof Collection ?
+          (Collection<?>) value : Arrays.asList((Object[]) value);
+      List<Object> values = new Values(collection.size());
+      for (Object element : collection)
+      {
+        values.add(toValue(element));
+      }
+      return values;
+    }
+    if (!getProperties(value.getClass()).isEmpty())
+    {
+      return value;
+    }
+    return getPropertyCache().config.valueToNode(value);
+  }
+
+  /**
+   * Retrieve the JsonNode to compare with a filter value.
+   *
+   * @param value The value.
+   * @return The JsonNode to compare.
+   */
+  private static JsonNode toNode(final Object value)
+  {
+    return value instanceof JsonNode ? (JsonNode) value : STRUCTURED_VALUE;
+  }
+
+  /**
+   * Retrieve the JsonNodes to compare against for an ordering filter.
+   *
+   * @param filter The ordering filter.
+   * @param object The object to evaluate.
+   * @param filterName The name of the filter for the error message.
+   * @return The JsonNodes to compare against.
+   * @throws ScimException If a value is a boolean or binary value.
+   */
+  private List<JsonNode> getOrderedNodes(final Filter filter,
+                                         final Object object,
+                                         final String filterName)
+      throws ScimException
+  {
+    List<Object> values = getCandidateValues(filter.getAttributePath(), object);
+    List<JsonNode> nodes = new ArrayList<JsonNode>(values.size());
+    for (Object value : values)
+    {
+      JsonNode node = toNode(value);
+      if (node.isBoolean() || node.isBinary())
+      {
+        throw BadRequestException.invalidFilter(filterName + " filter may " +
+            "not compare boolean or binary attribute values");
+      }
+      nodes.add(node);
+    }
+    return nodes;
+  }
+
+  /**
+   * Evaluate a substring match filter.
+   *
+   * @param filter The filter to operate on.
+   * @param object The object to evaluate.
+   * @return The return value from the operation.
+   * @throws ScimException If an exception occurs during the operation.
+   */
+  private boolean substringMatch(final Filter filter, final Object object)
+      throws ScimException
+  {
+    for (Object value : getCandidateValues(filter.getAttributePath(), object))
+    {
+      JsonNode node = toNode(value);
+      if (node.isTextual() && filter.getComparisonValue().isTextual())
+      {
+        AttributeDefinition attributeDefinition =
+            getAttributeDefinition(filter.getAttributePath());
+        String nodeValue = node.textValue();
+        String comparisonValue = filter.getComparisonValue().textValue();
+        boolean caseExact =
+            attributeDefinition != null && attributeDefinition.isCaseExact();
+        switch(filter.getFilterType())
+        {
+          case CONTAINS:
+            if(caseExact ? nodeValue.contains(comparisonValue) :
+                StaticUtils.containsIgnoreCase(nodeValue, comparisonValue))
+            {
+              return true;
+            }
+            break;
+          case STARTS_WITH:
+            if(caseExact ? nodeValue.startsWith(comparisonValue) :
+                StaticUtils.startsWithIgnoreCase(nodeValue, comparisonValue))
+            {
+              return true;
+            }
+            break;
+          case ENDS_WITH:
+            if(caseExact ? nodeValue.endsWith(comparisonValue) :
+                StaticUtils.endsWithIgnoreCase(nodeValue, comparisonValue))
+            {
+              return true;
+            }
+            break;
+        }
+      }
+      else if (value instanceof JsonNode &&
+          node.equals(filter.getComparisonValue()))
+      {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Return true if the value is either {@code null} or an array of empty
+   * values.
+   *
+   * @param value value to examine
+   * @return boolean
+   */
+  private static boolean isEmpty(final Object value)
+  {
+    if (isArray(value))
+    {
+      return isEmpty(elements(value));
+    }
+    return value instanceof JsonNode && ((JsonNode) value).isNull();
+  }
+
+  /**
+   * Return true if the specified values are all empty.
+   *
+   * @param values values to examine
+   * @return boolean
+   */
+  private static boolean isEmpty(final List<Object> values)
+  {
+    for (Object value : values)
+    {
+      if (!isEmpty(value))
+      {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean isArray(final Object value)
+  {
+    return value instanceof Values ||
+        (value instanceof JsonNode && ((JsonNode) value).isArray());
+  }
+
+  private static boolean isObject(final Object value)
+  {
+    return value instanceof JsonNode ?
+        ((JsonNode) value).isObject() : !(value instanceof Values);
+  }
+
+  private static List<Object> elements(final Object array)
+  {
+    if (array instanceof Values)
+    {
+      return (Values) array;
+    }
+    List<Object> elements = new ArrayList<Object>(((JsonNode) array).size());
+    for (JsonNode element : (JsonNode) array)
+    {
+      elements.add(element);
+    }
+    return elements;
+  }
+
+  /**
+   * Retrieve the property writers of a class, keyed by their lower case
+   * names.
+   *
+   * @param type The class.
+   * @return The property writers, or an empty map if objects of the class
+   * must be converted to JSON to evaluate filters on them.
+   */
+  private static Map<String, BeanPropertyWriter> getProperties(
+      final Class<?> type)
+  {
+    PropertyCache cache = getPropertyCache();
+    Map<String, BeanPropertyWriter> properties = cache.properties.get(type);
+    if (properties == null)
+    {
+      properties = findProperties(cache.config.getObjectMapper(), type);
+      cache.properties.putIfAbsent(type, properties);
+    }
+    return properties;
+  }
+
+  /**
+   * Retrieve the cache of property writers for the current JSON
+   * configuration, replacing the cache if the configuration was replaced.
+   *
+   * @return The cache of property writers.
+   */
+  private static PropertyCache getPropertyCache()
+  {
+    ScimJsonConfig config = JsonUtils.getConfig();
+    PropertyCache cache = propertyCache;
+    if (cache == null || cache.config != config)
+    {
+      cache = new PropertyCache(config);
+      propertyCache = cache;
+    }
+    return cache;
+  }
+
+  /**
+   * Look up the property writers of the bean serializer of a class. Classes
+   * that are not serialized by a bean serializer, or that have properties
+   * whose serialized form differs from the serialized form of their value,
+   * have no usable property writers.
+   *
+   * @param mapper The object mapper.
+   * @param type The class.
+   * @return The property writers, or an empty map if there are none that
+   * may be used.
+   */
+  private static Map<String, BeanPropertyWriter> findProperties(
+      final ObjectMapper mapper, final Class<?> type)
+  {
+    Map<String, BeanPropertyWriter> none = Collections.emptyMap();
+    JsonSerializer<Object> serializer;
+    try
+    {
+      serializer =
+          mapper.getSerializerProviderInstance().findValueSerializer(type);
+    }
+    catch (JsonMappingException e)
+    {
+      return none;
+    }
+    if (!(serializer instanceof BeanSerializerBase) ||
+        ((BeanSerializerBase) serializer).usesObjectId())
+    {
+      return none;
+    }
+
+    BeanDescription description =
+        mapper.getSerializationConfig().introspect(mapper.constructType(type));
+    if (description.findAnyGetter() != null &&
+        !BaseScimResource.class.isAssignableFrom(type))
+    {
+      return none;
+    }
+
+    AnnotationIntrospector introspector =
+        mapper.getSerializationConfig().getAnnotationIntrospector();
+    JsonInclude.Value defaultInclusion =
+        mapper.getSerializationConfig().getDefaultPropertyInclusion(type);
+    Map<String, BeanPropertyWriter> properties =
+        new HashMap<String, BeanPropertyWriter>();
+    Iterator<PropertyWriter> i =
+        ((BeanSerializerBase) serializer).properties();
+    while (i.hasNext())
+    {
+      PropertyWriter writer = i.next();
+      if (!(writer instanceof BeanPropertyWriter) ||
+          writer instanceof UnwrappingBeanPropertyWriter ||
+          isCustomized(introspector, defaultInclusion, writer.getMember()))
+      {
+        return none;
+      }
+      properties.put(StaticUtils.toLowerCase(writer.getName()),
+          (BeanPropertyWriter) writer);
+    }
+    return properties;
+  }
+
+  /**
+   * Determine whether a property is annotated to be serialized differently
+   * than its value on its own.
+   *
+   * @param introspector The annotation introspector.
+   * @param defaultInclusion The default inclusion of the class.
+   * @param member The accessor of the property.
+   * @return {@code true} if the property is serialized differently.
+   */
+  private static boolean isCustomized(
+      final AnnotationIntrospector introspector,
+      final JsonInclude.Value defaultInclusion,
+      final AnnotatedMember member)
+  {
+    if (introspector == null)
+    {
+      return false;
+    }
+    JsonFormat.Value format = introspector.findFormat(member);
+    JsonInclude.Include inclusion = defaultInclusion.withOverrides(
+        introspector.findPropertyInclusion(member)).getValueInclusion();
+    return introspector.findSerializer(member) != null ||
+        introspector.findContentSerializer(member) != null ||
+        introspector.findSerializationConverter(member) != null ||
+        introspector.findSerializationContentConverter(member) != null ||
+        Boolean.TRUE.equals(introspector.hasAsValue(member)) ||
+        (format != null && !format.equals(JsonFormat.Value.empty())) ||
+        inclusion == JsonInclude.Include.NON_EMPTY ||
+        inclusion == JsonInclude.Include.NON_DEFAULT ||
+        inclusion == JsonInclude.Include.CUSTOM;
+  }
+
+  /**
+   * The values of a multi-valued attribute read from a collection or array.
+   */
+  private static final class Values extends ArrayList<Object>
+  {
+    private static final long serialVersionUID = -3521679447214018576L;
+
+    private Values()
+    {
+    }
+
+    private Values(final int initialCapacity)
+    {
+      super(initialCapacity);
+    }
+  }
+
+  /**
+   * The property writers of the classes evaluated with a JSON configuration.
+   */
+  private static final class PropertyCache
+  {
+    private final ScimJsonConfig config;
+    private final ConcurrentMap<Class<?>, Map<String, BeanPropertyWriter>>
+        properties =
+        new ConcurrentHashMap<Class<?>, Map<String, BeanPropertyWriter>>();
+
+    private PropertyCache(final ScimJsonConfig config)
+    {
+      this.config = config;
+    }
+  }
+}
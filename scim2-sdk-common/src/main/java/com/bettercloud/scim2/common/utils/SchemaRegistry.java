@@ -0,0 +1,118 @@
+/*
+ * Copyright 2015-2019 Ping Identity Corporation
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License (GPLv2 only)
+ * or the terms of the GNU Lesser General Public License (LGPLv2.1 only)
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ */
+
+package com.bettercloud.scim2.common.utils;
+
+import com.bettercloud.scim2.common.types.SchemaResource;
+
+import java.beans.IntrospectionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A thread-safe cache of SCIM schemas. Schemas generated from annotated
+ * classes are introspected only once per class and then shared, and every
+ * schema known to the registry may be looked up by its URN.
+ * <p>
+ * The schemas returned by a registry are shared between all callers and
+ * must not be modified.
+ */
+public final class SchemaRegistry
+{
+  private static final SchemaRegistry DEFAULT_REGISTRY = new SchemaRegistry();
+
+  private final ConcurrentMap<Class<?>, SchemaResource> schemasByClass =
+      new ConcurrentHashMap<Class<?>, SchemaResource>();
+  private final ConcurrentMap<String, SchemaResource> schemasByUrn =
+      new ConcurrentHashMap<String, SchemaResource>();
+
+  /**
+   * Retrieve the registry used by {@link SchemaUtils#getSchema(Class)}.
+   *
+   * @return The default registry.
+   */
+  public static SchemaRegistry getDefault()
+  {
+    return DEFAULT_REGISTRY;
+  }
+
+  /**
+   * Gets the schema for a class, introspecting the class the first time it
+   * is requested. The schema is registered under its URN as well.
+   *
+   * @param cls the class to get the schema for.
+   * @return the schema, or {@code null} if the class is not annotated with
+   *         a schema annotation.
+   * @throws IntrospectionException if an exception occurs during
+   *         introspection.
+   */
+  public SchemaResource getSchema(final Class<?> cls)
+      throws IntrospectionException
+  {
+    SchemaResource schema = schemasByClass.get(cls);
+    if(schema != null)
+    {
+      return schema;
+    }
+
+    schema = SchemaUtils.introspectSchema(cls);
+    if(schema == null)
+    {
+      return null;
+    }
+
+    SchemaResource existing = schemasByClass.putIfAbsent(cls, schema);
+    if(existing != null)
+    {
+      return existing;
+    }
+    register(schema);
+    return schema;
+  }
+
+  /**
+   * Gets a previously registered schema by its URN. The URN is matched
+   * case-insensitively.
+   *
+   * @param urn the URN of the schema.
+   * @return the schema, or {@code null} if no schema with this URN is
+   *         registered.
+   */
+  public SchemaResource getSchema(final String urn)
+  {
+    if(urn == null)
+    {
+      return null;
+    }
+    return schemasByUrn.get(StaticUtils.toLowerCase(urn));
+  }
+
+  /**
+   * Registers a schema under its URN, for example one that was read from a
+   * service provider instead of generated from a class. A schema that is
+   * already registered with the same URN is kept.
+   *
+   * @param schema the schema to register.
+   * @return the schema registered under the URN of the provided schema.
+   */
+  public SchemaResource register(final SchemaResource schema)
+  {
+    SchemaResource existing = schemasByUrn.putIfAbsent(
+        StaticUtils.toLowerCase(schema.getId()), schema);
+    return existing == null ? schema : existing;
+  }
+}
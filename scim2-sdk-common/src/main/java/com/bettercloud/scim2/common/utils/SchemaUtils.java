@@ -558,6 +558,12 @@ public class SchemaUtils
    * Gets the schema for a class.  This will walk the inheritance tree looking
    * for information about the SCIM schema of the objects represented. This
    * information comes from annotations and introspection.
+   * <p>
+   * Each class is only introspected once and the schema is cached in the
+   * {@link SchemaRegistry#getDefault() default schema registry}. The returned
+   * schema is a copy of the cached schema that the caller may modify; the
+   * attribute definitions are immutable and shared. Use the registry to
+   * retrieve the shared schema instead.
    *
    * @param cls the class to get the schema for.
    * @return the schema.
@@ -565,6 +571,26 @@ public class SchemaUtils
    */
   public static SchemaResource getSchema(final Class<?> cls)
       throws IntrospectionException
+  {
+    SchemaResource schema = SchemaRegistry.getDefault().getSchema(cls);
+    if(schema == null)
+    {
+      return null;
+    }
+    return new SchemaResource(schema.getId(), schema.getName(),
+        schema.getDescription(), schema.getAttributes());
+  }
+
+  /**
+   * Generates the schema for a class without consulting the schema
+   * registry.
+   *
+   * @param cls the class to generate the schema for.
+   * @return the schema, or {@code null} if the class is not annotated.
+   * @throws IntrospectionException if an exception occurs during introspection.
+   */
+  static SchemaResource introspectSchema(final Class<?> cls)
+      throws IntrospectionException
   {
     Schema schemaAnnotation = cls.getAnnotation(Schema.class);
 
@@ -717,7 +743,7 @@ public class SchemaUtils
    */
   public static boolean isUrn(final String string)
   {
-    return StaticUtils.toLowerCase(string).startsWith("urn:") &&
+    return StaticUtils.startsWithIgnoreCase(string, "urn:") &&
         string.length() > 4;
   }
 
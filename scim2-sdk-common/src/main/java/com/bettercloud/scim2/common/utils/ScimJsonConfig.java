@@ -0,0 +1,344 @@
+/*
+ * Copyright 2015-2019 Ping Identity Corporation
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License (GPLv2 only)
+ * or the terms of the GNU Lesser General Public License (LGPLv2.1 only)
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ */
+
+package com.bettercloud.scim2.common.utils;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.POJONode;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A JSON configuration used by the SCIM 2 SDK: the object mapper created by a
+ * {@link MapperFactory} together with the readers and writers derived from
+ * it. The object mapper is created once when the configuration is built and
+ * never reconfigured afterwards, so a configuration may be shared freely
+ * between threads and several configurations may be used side by side.
+ * <p>
+ * {@link JsonUtils} uses a single configuration that may be replaced at any
+ * time with {@link JsonUtils#setConfig}. Callers that need more than one
+ * configuration, for example to serve different clients with different
+ * settings, may create and hold their own instances instead.
+ */
+public final class ScimJsonConfig
+{
+  private final MapperFactory mapperFactory;
+  private final ObjectMapper objectMapper;
+  private final ObjectReader objectReader;
+  private final ObjectWriter objectWriter;
+  private final ConcurrentMap<JavaType, ObjectReader> objectReaders =
+      new ConcurrentHashMap<JavaType, ObjectReader>();
+  private final ConcurrentMap<JavaType, ObjectWriter> objectWriters =
+      new ConcurrentHashMap<JavaType, ObjectWriter>();
+  private final ConcurrentMap<Class<?>, JavaType> listTypes =
+      new ConcurrentHashMap<Class<?>, JavaType>();
+
+  /**
+   * Create a new configuration using the object mapper created by the
+   * provided mapper factory. Changes made to the mapper factory afterwards
+   * do not affect this configuration.
+   *
+   * @param mapperFactory The mapper factory to use.
+   */
+  public ScimJsonConfig(final MapperFactory mapperFactory)
+  {
+    this.mapperFactory = new MapperFactory(mapperFactory);
+    this.objectMapper = this.mapperFactory.newObjectMapper();
+    this.objectReader = objectMapper.reader();
+    this.objectWriter = objectMapper.writer();
+  }
+
+  /**
+   * Retrieve a copy of the mapper factory this configuration was created
+   * from. Changes made to the returned factory do not affect this
+   * configuration.
+   *
+   * @return A copy of the mapper factory this configuration was created from.
+   */
+  public MapperFactory getMapperFactory()
+  {
+    return new MapperFactory(mapperFactory);
+  }
+
+  /**
+   * Create a new object mapper with the settings of this configuration. The
+   * returned object mapper is not shared and may be reconfigured.
+   *
+   * @return A new object mapper with the settings of this configuration.
+   */
+  public ObjectMapper newObjectMapper()
+  {
+    return mapperFactory.newObjectMapper();
+  }
+
+  /**
+   * Retrieve the object mapper of this configuration. The object mapper must
+   * not be reconfigured since it is shared by all users of this
+   * configuration.
+   *
+   * @return The object mapper of this configuration.
+   */
+  public ObjectMapper getObjectMapper()
+  {
+    return objectMapper;
+  }
+
+  /**
+   * Retrieve the JsonNodeFactory used to create tree model JsonNode
+   * instances.
+   *
+   * @return The Jackson JsonNodeFactory.
+   */
+  public JsonNodeFactory getJsonNodeFactory()
+  {
+    return objectMapper.getNodeFactory();
+  }
+
+  /**
+   * Retrieve an {@link ObjectReader} with default settings. Note that the
+   * resulting instance is NOT usable as is, without defining expected value
+   * type with ObjectReader.forType.
+   *
+   * @return A Jackson {@link ObjectReader} with default settings.
+   */
+  public ObjectReader getObjectReader()
+  {
+    return objectReader;
+  }
+
+  /**
+   * Retrieve an {@link ObjectWriter} with default settings.
+   *
+   * @return A Jackson {@link ObjectWriter} with default settings.
+   */
+  public ObjectWriter getObjectWriter()
+  {
+    return objectWriter;
+  }
+
+  /**
+   * Retrieve an {@link ObjectReader} for the provided value type. Readers are
+   * created once per type with their root deserializer already resolved and
+   * are shared afterwards.
+   *
+   * @param valueType The value type.
+   * @return A Jackson {@link ObjectReader} for the value type.
+   */
+  public ObjectReader getObjectReader(final Class<?> valueType)
+  {
+    return getObjectReader(objectMapper.constructType(valueType));
+  }
+
+  /**
+   * Retrieve an {@link ObjectReader} for the provided value type. Readers are
+   * created once per type with their root deserializer already resolved and
+   * are shared afterwards.
+   *
+   * @param valueType The value type.
+   * @return A Jackson {@link ObjectReader} for the value type.
+   */
+  public ObjectReader getObjectReader(final JavaType valueType)
+  {
+    ObjectReader reader = objectReaders.get(valueType);
+    if (reader == null)
+    {
+      reader = objectMapper.readerFor(valueType);
+      ObjectReader existing = objectReaders.putIfAbsent(valueType, reader);
+      if (existing != null)
+      {
+        reader = existing;
+      }
+    }
+    return reader;
+  }
+
+  /**
+   * Retrieve an {@link ObjectWriter} for the provided value type. Writers are
+   * created once per type with their root serializer already resolved and
+   * are shared afterwards.
+   *
+   * @param valueType The value type.
+   * @return A Jackson {@link ObjectWriter} for the value type.
+   */
+  public ObjectWriter getObjectWriter(final Class<?> valueType)
+  {
+    return getObjectWriter(objectMapper.constructType(valueType));
+  }
+
+  /**
+   * Retrieve an {@link ObjectWriter} for the provided value type. Writers are
+   * created once per type with their root serializer already resolved and
+   * are shared afterwards.
+   *
+   * @param valueType The value type.
+   * @return A Jackson {@link ObjectWriter} for the value type.
+   */
+  public ObjectWriter getObjectWriter(final JavaType valueType)
+  {
+    ObjectWriter writer = objectWriters.get(valueType);
+    if (writer == null)
+    {
+      writer = objectMapper.writerFor(valueType);
+      ObjectWriter existing = objectWriters.putIfAbsent(valueType, writer);
+      if (existing != null)
+      {
+        writer = existing;
+      }
+    }
+    return writer;
+  }
+
+  /**
+   * Retrieve the Jackson type of a {@code List} of the provided value type.
+   *
+   * @param valueType The type of the list elements.
+   * @return The Jackson type of a list of the value type.
+   */
+  public JavaType getListType(final Class<?> valueType)
+  {
+    JavaType listType = listTypes.get(valueType);
+    if (listType == null)
+    {
+      listType = objectMapper.getTypeFactory().constructCollectionType(
+          List.class, valueType);
+      JavaType existing = listTypes.putIfAbsent(valueType, listType);
+      if (existing != null)
+      {
+        listType = existing;
+      }
+    }
+    return listType;
+  }
+
+  /**
+   * Resolve and cache the readers and writers for the provided value types
+   * and lists of them, so that the first request using them does not pay for
+   * serializer and deserializer construction.
+   *
+   * @param valueTypes The value types.
+   * @return this object.
+   */
+  public ScimJsonConfig warmUp(final Class<?>... valueTypes)
+  {
+    for (Class<?> valueType : valueTypes)
+    {
+      getObjectReader(valueType);
+      getObjectWriter(valueType);
+      getObjectReader(getListType(valueType));
+      getObjectWriter(getListType(valueType));
+    }
+    return this;
+  }
+
+  /**
+   * Convert a POJO to a Jackson JSON node. This behaves exactly the same as
+   * Jackson's ObjectMapper.valueToTree.
+   *
+   * @param <T> Actual node type.
+   * @param fromValue POJO to convert.
+   * @return converted JsonNode.
+   */
+  public <T extends JsonNode> T valueToNode(final Object fromValue)
+  {
+    return objectMapper.valueToTree(fromValue);
+  }
+
+  /**
+   * Convert a Jackson JSON node to a POJO. This behaves exactly the same as
+   * Jackson's ObjectMapper.treeToValue.
+   *
+   * @param <T> Actual node type.
+   * @param fromNode node to convert.
+   * @param valueType The value type.
+   * @return converted POJO.
+   * @throws JsonProcessingException if an error occurs while binding the JSON
+   * node to the value type.
+   */
+  public <T> T nodeToValue(final JsonNode fromNode, final Class<T> valueType)
+      throws JsonProcessingException
+  {
+    if (valueType != Object.class && valueType.isInstance(fromNode))
+    {
+      return valueType.cast(fromNode);
+    }
+    if (fromNode instanceof POJONode)
+    {
+      Object pojo = ((POJONode) fromNode).getPojo();
+      if (pojo == null || valueType.isInstance(pojo))
+      {
+        return valueType.cast(pojo);
+      }
+    }
+
+    return readValue(getObjectReader(valueType), fromNode);
+  }
+
+  /**
+   * Convert a Jackson JSON array node to a list of POJOs.
+   *
+   * @param <T> Actual node type.
+   * @param fromNode node to convert.
+   * @param valueType The value type.
+   * @return converted list of POJOs.
+   * @throws JsonProcessingException if an error occurs while binding the JSON
+   * node to the value type.
+   */
+  public <T> List<T> nodeToValues(final ArrayNode fromNode,
+                                  final Class<T> valueType)
+      throws JsonProcessingException
+  {
+    return readValue(getObjectReader(getListType(valueType)), fromNode);
+  }
+
+  /**
+   * Bind a JSON node using the provided reader.
+   *
+   * @param <T> The value type.
+   * @param reader The reader to use.
+   * @param fromNode The node to bind.
+   * @return The bound value.
+   * @throws JsonProcessingException if an error occurs while binding the JSON
+   * node.
+   */
+  private static <T> T readValue(final ObjectReader reader,
+                                 final JsonNode fromNode)
+      throws JsonProcessingException
+  {
+    try
+    {
+      return reader.readValue(reader.treeAsTokens(fromNode));
+    }
+    catch (JsonProcessingException e)
+    {
+      throw e;
+    }
+    catch (IOException e)
+    {
+      throw new IllegalArgumentException(e.getMessage(), e);
+    }
+  }
+}
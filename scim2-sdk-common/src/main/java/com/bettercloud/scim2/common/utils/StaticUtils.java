@@ -44,7 +44,8 @@ public final class StaticUtils
 
 
   /**
-   * Retrieves an all-lowercase version of the provided string.
+   * Retrieves an all-lowercase version of the provided string.  The provided
+   * string is returned as is if it is already all-lowercase ASCII.
    *
    * @param  s  The string for which to retrieve the lowercase version.
    *
@@ -58,96 +59,34 @@ public final class StaticUtils
     }
 
     final int length = s.length();
+    int i = 0;
+    while (i < length)
+    {
+      final char c = s.charAt(i);
+      if (c > 0x7F)
+      {
+        return s.toLowerCase();
+      }
+      if (c >= 'A' && c <= 'Z')
+      {
+        break;
+      }
+      i++;
+    }
+    if (i == length)
+    {
+      return s;
+    }
+
     final char[] charArray = s.toCharArray();
-    for (int i=0; i < length; i++)
+    for (; i < length; i++)
     {
-      switch (charArray[i])
+      final char c = charArray[i];
+      if (c > 0x7F)
       {
-        case 'A':
-          charArray[i] = 'a';
-          break;
-        case 'B':
-          charArray[i] = 'b';
-          break;
-        case 'C':
-          charArray[i] = 'c';
-          break;
-        case 'D':
-          charArray[i] = 'd';
-          break;
-        case 'E':
-          charArray[i] = 'e';
-          break;
-        case 'F':
-          charArray[i] = 'f';
-          break;
-        case 'G':
-          charArray[i] = 'g';
-          break;
-        case 'H':
-          charArray[i] = 'h';
-          break;
-        case 'I':
-          charArray[i] = 'i';
-          break;
-        case 'J':
-          charArray[i] = 'j';
-          break;
-        case 'K':
-          charArray[i] = 'k';
-          break;
-        case 'L':
-          charArray[i] = 'l';
-          break;
-        case 'M':
-          charArray[i] = 'm';
-          break;
-        case 'N':
-          charArray[i] = 'n';
-          break;
-        case 'O':
-          charArray[i] = 'o';
-          break;
-        case 'P':
-          charArray[i] = 'p';
-          break;
-        case 'Q':
-          charArray[i] = 'q';
-          break;
-        case 'R':
-          charArray[i] = 'r';
-          break;
-        case 'S':
-          charArray[i] = 's';
-          break;
-        case 'T':
-          charArray[i] = 't';
-          break;
-        case 'U':
-          charArray[i] = 'u';
-          break;
-        case 'V':
-          charArray[i] = 'v';
-          break;
-        case 'W':
-          charArray[i] = 'w';
-          break;
-        case 'X':
-          charArray[i] = 'x';
-          break;
-        case 'Y':
-          charArray[i] = 'y';
-          break;
-        case 'Z':
-          charArray[i] = 'z';
-          break;
-        default:
-          if (charArray[i] > 0x7F)
-          {
-            return s.toLowerCase();
-          }
-          break;
+        return s.toLowerCase();
       }
+      charArray[i] = toLowerCase(c);
     }
 
     return new String(charArray);
@@ -155,6 +94,284 @@ public final class StaticUtils
 
 
 
+  /**
+   * Indicates whether the provided strings are equal when compared
+   * ignoring case.  This gives the same result as comparing the strings
+   * returned by {@link #toLowerCase(String)} but does not create any objects
+   * if both strings only contain ASCII characters.
+   *
+   * @param  s1  The first string, which may be {@code null}.
+   * @param  s2  The second string, which may be {@code null}.
+   *
+   * @return  {@code true} if the strings are equal ignoring case or both are
+   *          {@code null}.
+   */
+  public static boolean equalsIgnoreCase(final String s1, final String s2)
+  {
+    if (s1 == s2)
+    {
+      return true;
+    }
+    if (s1 == null || s2 == null)
+    {
+      return false;
+    }
+
+    final int length = Math.min(s1.length(), s2.length());
+    for (int i = 0; i < length; i++)
+    {
+      final char c1 = s1.charAt(i);
+      final char c2 = s2.charAt(i);
+      if (c1 > 0x7F || c2 > 0x7F)
+      {
+        return toLowerCase(s1).equals(toLowerCase(s2));
+      }
+      if (c1 != c2 && toLowerCase(c1) != toLowerCase(c2))
+      {
+        return false;
+      }
+    }
+
+    if (s1.length() == s2.length())
+    {
+      return true;
+    }
+    // Lowercasing non-ASCII characters may change the string length.
+    return (!isAscii(s1, length) || !isAscii(s2, length)) &&
+        toLowerCase(s1).equals(toLowerCase(s2));
+  }
+
+
+
+  /**
+   * Retrieves a hash code for the provided string that is consistent with
+   * {@link #equalsIgnoreCase(String, String)}.  This is the same value as
+   * the hash code of the string returned by {@link #toLowerCase(String)} but
+   * it is computed without creating any objects if the string only contains
+   * ASCII characters.
+   *
+   * @param  s  The string for which to compute the hash code.
+   *
+   * @return  The hash code or {@code 0} if the string is {@code null}.
+   */
+  public static int hashCodeIgnoreCase(final String s)
+  {
+    if (s == null)
+    {
+      return 0;
+    }
+
+    int hash = 0;
+    final int length = s.length();
+    for (int i = 0; i < length; i++)
+    {
+      final char c = s.charAt(i);
+      if (c > 0x7F)
+      {
+        return s.toLowerCase().hashCode();
+      }
+      hash = 31 * hash + toLowerCase(c);
+    }
+    return hash;
+  }
+
+
+
+  /**
+   * Compares the provided strings lexicographically ignoring case.  This
+   * gives the same ordering as comparing the strings returned by
+   * {@link #toLowerCase(String)} but does not create any objects if both
+   * strings only contain ASCII characters.
+   *
+   * @param  s1  The first string.
+   * @param  s2  The second string.
+   *
+   * @return  A negative integer, zero, or a positive integer as the first
+   *          string is less than, equal to, or greater than the second.
+   */
+  public static int compareToIgnoreCase(final String s1, final String s2)
+  {
+    final int length = Math.min(s1.length(), s2.length());
+    for (int i = 0; i < length; i++)
+    {
+      final char c1 = s1.charAt(i);
+      final char c2 = s2.charAt(i);
+      if (c1 > 0x7F || c2 > 0x7F)
+      {
+        return toLowerCase(s1).compareTo(toLowerCase(s2));
+      }
+      if (c1 != c2)
+      {
+        final char l1 = toLowerCase(c1);
+        final char l2 = toLowerCase(c2);
+        if (l1 != l2)
+        {
+          return l1 - l2;
+        }
+      }
+    }
+
+    if (!isAscii(s1, length) || !isAscii(s2, length))
+    {
+      return toLowerCase(s1).compareTo(toLowerCase(s2));
+    }
+    return s1.length() - s2.length();
+  }
+
+
+
+  /**
+   * Indicates whether the provided string starts with the provided prefix
+   * ignoring case.  This gives the same result as using the strings returned
+   * by {@link #toLowerCase(String)} but does not create any objects if the
+   * compared characters are all ASCII.
+   *
+   * @param  s       The string to check.
+   * @param  prefix  The prefix to look for.
+   *
+   * @return  {@code true} if the string starts with the prefix ignoring case.
+   */
+  public static boolean startsWithIgnoreCase(final String s,
+                                             final String prefix)
+  {
+    final int length = prefix.length();
+    if (length > s.length())
+    {
+      // Lowercasing non-ASCII characters may change the string length.
+      return (!isAscii(s, 0) || !isAscii(prefix, 0)) &&
+          toLowerCase(s).startsWith(toLowerCase(prefix));
+    }
+
+    for (int i = 0; i < length; i++)
+    {
+      final char c1 = s.charAt(i);
+      final char c2 = prefix.charAt(i);
+      if (c1 > 0x7F || c2 > 0x7F)
+      {
+        return toLowerCase(s).startsWith(toLowerCase(prefix));
+      }
+      if (c1 != c2 && toLowerCase(c1) != toLowerCase(c2))
+      {
+        return false;
+      }
+    }
+    return true;
+  }
+
+
+
+  /**
+   * Indicates whether the provided string ends with the provided suffix
+   * ignoring case.  This gives the same result as using the strings returned
+   * by {@link #toLowerCase(String)} but does not create any objects if the
+   * compared characters are all ASCII.
+   *
+   * @param  s       The string to check.
+   * @param  suffix  The suffix to look for.
+   *
+   * @return  {@code true} if the string ends with the suffix ignoring case.
+   */
+  public static boolean endsWithIgnoreCase(final String s,
+                                           final String suffix)
+  {
+    final int length = suffix.length();
+    final int offset = s.length() - length;
+    if (offset < 0)
+    {
+      // Lowercasing non-ASCII characters may change the string length.
+      return (!isAscii(s, 0) || !isAscii(suffix, 0)) &&
+          toLowerCase(s).endsWith(toLowerCase(suffix));
+    }
+
+    for (int i = length - 1; i >= 0; i--)
+    {
+      final char c1 = s.charAt(offset + i);
+      final char c2 = suffix.charAt(i);
+      if (c1 > 0x7F || c2 > 0x7F)
+      {
+        return toLowerCase(s).endsWith(toLowerCase(suffix));
+      }
+      if (c1 != c2 && toLowerCase(c1) != toLowerCase(c2))
+      {
+        return false;
+      }
+    }
+    return true;
+  }
+
+
+
+  /**
+   * Indicates whether the provided string contains the provided substring
+   * ignoring case.  This gives the same result as using the strings returned
+   * by {@link #toLowerCase(String)} but does not create any objects if both
+   * strings only contain ASCII characters.
+   *
+   * @param  s          The string to check.
+   * @param  substring  The substring to look for.
+   *
+   * @return  {@code true} if the string contains the substring ignoring case.
+   */
+  public static boolean containsIgnoreCase(final String s,
+                                           final String substring)
+  {
+    if (!isAscii(s, 0) || !isAscii(substring, 0))
+    {
+      return toLowerCase(s).contains(toLowerCase(substring));
+    }
+
+    final int length = substring.length();
+    final int last = s.length() - length;
+    for (int i = 0; i <= last; i++)
+    {
+      if (s.regionMatches(true, i, substring, 0, length))
+      {
+        return true;
+      }
+    }
+    return false;
+  }
+
+
+
+  /**
+   * Retrieves the lowercase version of the provided ASCII character.
+   *
+   * @param  c  The ASCII character.
+   *
+   * @return  The lowercase version of the character.
+   */
+  private static char toLowerCase(final char c)
+  {
+    return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+  }
+
+
+
+  /**
+   * Indicates whether the provided string only contains ASCII characters from
+   * the provided index on.
+   *
+   * @param  s     The string to check.
+   * @param  from  The index of the first character to check.
+   *
+   * @return  {@code true} if the remaining characters are all ASCII.
+   */
+  private static boolean isAscii(final String s, final int from)
+  {
+    final int length = s.length();
+    for (int i = from; i < length; i++)
+    {
+      if (s.charAt(i) > 0x7F)
+      {
+        return false;
+      }
+    }
+    return true;
+  }
+
+
+
   /**
    * Creates a string representation of the elements in the
    * <code>list</code> separated by <code>separator</code>.
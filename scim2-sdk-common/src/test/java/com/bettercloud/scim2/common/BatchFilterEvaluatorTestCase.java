@@ -0,0 +1,234 @@
+/*
+ * Copyright 2015-2019 Ping Identity Corporation
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License (GPLv2 only)
+ * or the terms of the GNU Lesser General Public License (LGPLv2.1 only)
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ */
+
+package com.bettercloud.scim2.common;
+
+import com.bettercloud.scim2.common.exceptions.ScimException;
+import com.bettercloud.scim2.common.filters.Filter;
+import com.bettercloud.scim2.common.types.AttributeDefinition;
+import com.bettercloud.scim2.common.utils.BatchFilterEvaluator;
+import com.bettercloud.scim2.common.utils.FilterEvaluator;
+import com.bettercloud.scim2.common.utils.JsonUtils;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Tests for evaluating many SCIM 2 filters at once.
+ */
+public class BatchFilterEvaluatorTestCase
+{
+  private static final AttributeDefinition CASE_EXACT =
+      new AttributeDefinition.Builder().setName("id")
+          .setType(AttributeDefinition.Type.STRING).setCaseExact(true)
+          .build();
+
+  /**
+   * Tests a batch of equality and other filters on a resource.
+   *
+   * @throws Exception if an error occurs.
+   */
+  @Test
+  public void testEvaluate() throws Exception
+  {
+    final JsonNode node = JsonUtils.getObjectReader().readTree(
+        "{\"id\":\"Abc\",\"userName\":\"bjensen\",\"active\":true," +
+        "\"emails\":[{\"value\":\"bjensen@example.com\",\"type\":\"work\"}," +
+        "{\"value\":\"babs@example.com\",\"type\":\"home\"}]}");
+    final List<Filter> filters = Arrays.asList(
+        Filter.fromString("userName eq \"BJENSEN\""),
+        Filter.fromString("userName eq \"jsmith\""),
+        Filter.fromString("id eq \"abc\""),
+        Filter.fromString("id eq \"Abc\""),
+        Filter.fromString("active eq \"true\""),
+        Filter.fromString("emails.type eq \"home\""),
+        Filter.eq(Path.root().attribute("emails",
+            Filter.eq("type", "work")).attribute("value"),
+            JsonUtils.getJsonNodeFactory().textNode("babs@example.com")),
+        Filter.fromString("emails[type eq \"home\" and value sw \"babs\"]"),
+        Filter.fromString("userName eq \"bjensen\" and active eq true"),
+        Filter.fromString("title eq null"));
+
+    final BitSet expected = new BitSet();
+    expected.set(0);
+    expected.set(3);
+    expected.set(4);
+    expected.set(5);
+    expected.set(7);
+    expected.set(8);
+    expected.set(9);
+    assertEquals(new CaseExactIdEvaluator(filters).evaluate(node), expected);
+
+    expected.set(2);
+    assertEquals(new BatchFilterEvaluator(filters).evaluate(node), expected);
+  }
+
+  /**
+   * Tests that random batches of filters evaluate like each filter on its
+   * own, including equality filters on values of other types.
+   *
+   * @throws Exception if an error occurs.
+   */
+  @Test
+  public void testEvaluatesLikeFilterEvaluator() throws Exception
+  {
+    final Random random = new Random(42);
+    final FilterParity parity = new FilterParity(random)
+        .setAttributes("id", "userName", "active", "count", "meta.created",
+            "emails", "emails.value", "emails.type")
+        .setComplexAttributes(new String[] { "emails" }, "value", "type")
+        .setResourceAttributes(new String[] { "id", "userName", "active",
+            "count", "meta.created" }, "emails")
+        .setTexts("a", "A", "b", "true", "TRUE", "false", "1", "2", "null",
+            "2019-06-01T00:00:00Z", "2019-06-01T00:00:00.000Z");
+    final List<ObjectNode> nodes = new ArrayList<ObjectNode>();
+    for (int i = 0; i < 50; i++)
+    {
+      nodes.add(parity.resource());
+    }
+
+    final FilterParity.Matcher<JsonNode> evaluator = matcher(
+        new FilterEvaluator());
+    final FilterParity.Matcher<JsonNode> caseExactEvaluator = matcher(
+        new FilterEvaluator()
+        {
+          @Override
+          protected AttributeDefinition getAttributeDefinition(
+              final Path path)
+          {
+            return CaseExactIdEvaluator.getDefinition(path);
+          }
+        });
+    for (int i = 0; i < 100; i++)
+    {
+      // A batch fails as a whole if one of its filters fails.
+      final List<Filter> filters = new ArrayList<Filter>();
+      for (int j = random.nextInt(50); j >= 0; j--)
+      {
+        final Filter filter = parity.filter(1);
+        if (evaluates(filter, nodes, evaluator) &&
+            evaluates(filter, nodes, caseExactEvaluator))
+        {
+          filters.add(filter);
+        }
+      }
+
+      final BatchFilterEvaluator batchEvaluator =
+          new BatchFilterEvaluator(filters);
+      final BatchFilterEvaluator caseExactBatchEvaluator =
+          new CaseExactIdEvaluator(filters);
+      final List<BitSet> matches = new ArrayList<BitSet>();
+      final List<BitSet> caseExactMatches = new ArrayList<BitSet>();
+      for (JsonNode node : nodes)
+      {
+        matches.add(batchEvaluator.evaluate(node));
+        caseExactMatches.add(caseExactBatchEvaluator.evaluate(node));
+      }
+      for (int j = 0; j < filters.size(); j++)
+      {
+        FilterParity.assertSameSelection(filters.get(j), nodes, evaluator,
+            selector(matches, j));
+        FilterParity.assertSameSelection(filters.get(j), nodes,
+            caseExactEvaluator, selector(caseExactMatches, j));
+      }
+    }
+  }
+
+  private static FilterParity.Matcher<JsonNode> matcher(
+      final FilterEvaluator evaluator)
+  {
+    return new FilterParity.Matcher<JsonNode>()
+    {
+      public boolean matches(final Filter filter, final JsonNode node)
+          throws ScimException
+      {
+        return filter.visit(evaluator, node);
+      }
+    };
+  }
+
+  /**
+   * Select the nodes matching a filter of a batch from the matches of the
+   * batch on each node.
+   */
+  private static FilterParity.Selector selector(final List<BitSet> matches,
+                                                final int index)
+  {
+    return new FilterParity.Selector()
+    {
+      public BitSet select(final Filter filter)
+      {
+        final BitSet selected = new BitSet();
+        for (int i = 0; i < matches.size(); i++)
+        {
+          selected.set(i, matches.get(i).get(index));
+        }
+        return selected;
+      }
+    };
+  }
+
+  private static boolean evaluates(final Filter filter,
+                                   final List<? extends JsonNode> nodes,
+                                   final FilterParity.Matcher<JsonNode> matcher)
+  {
+    try
+    {
+      for (JsonNode node : nodes)
+      {
+        matcher.matches(filter, node);
+      }
+      return true;
+    }
+    catch (ScimException e)
+    {
+      return false;
+    }
+  }
+
+  /**
+   * A batch filter evaluator with a case exact id attribute.
+   */
+  private static final class CaseExactIdEvaluator extends BatchFilterEvaluator
+  {
+    private CaseExactIdEvaluator(final List<Filter> filters)
+    {
+      super(filters);
+    }
+
+    @Override
+    protected AttributeDefinition getAttributeDefinition(final Path path)
+    {
+      return getDefinition(path);
+    }
+
+    private static AttributeDefinition getDefinition(final Path path)
+    {
+      return path.size() == 1 &&
+          path.getElement(0).getAttribute().equalsIgnoreCase("id") ?
+          CASE_EXACT : null;
+    }
+  }
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright 2015-2019 Ping Identity Corporation
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License (GPLv2 only)
+ * or the terms of the GNU Lesser General Public License (LGPLv2.1 only)
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ */
+
+package com.bettercloud.scim2.common;
+
+import com.bettercloud.scim2.common.exceptions.ScimException;
+import com.bettercloud.scim2.common.filters.Filter;
+import com.bettercloud.scim2.common.filters.FilterType;
+import com.bettercloud.scim2.common.types.AttributeDefinition;
+import com.bettercloud.scim2.common.types.SchemaResource;
+import com.bettercloud.scim2.common.types.UserResource;
+import com.bettercloud.scim2.common.utils.FilterEvaluator;
+import com.bettercloud.scim2.common.utils.FilterOptimizer;
+import com.bettercloud.scim2.common.utils.SchemaUtils;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotEquals;
+
+/**
+ * Tests for optimizing SCIM 2 filters.
+ */
+public class FilterOptimizerTestCase
+{
+  private static final FilterParity.Matcher<ObjectNode> EVALUATOR =
+      new FilterParity.Matcher<ObjectNode>()
+      {
+        public boolean matches(final Filter filter, final ObjectNode resource)
+            throws ScimException
+        {
+          return FilterEvaluator.evaluate(filter, resource);
+        }
+      };
+
+  private SchemaResource schema;
+  private FilterOptimizer optimizer;
+
+  /**
+   * Sets up an optimizer that knows the attributes of the user schema.
+   *
+   * @throws Exception if the schema could not be generated.
+   */
+  @BeforeClass
+  public void setup() throws Exception
+  {
+    schema = SchemaUtils.getSchema(UserResource.class);
+    optimizer = new FilterOptimizer()
+    {
+      @Override
+      protected AttributeDefinition getAttributeDefinition(final Path path)
+      {
+        return findAttributeDefinition(path);
+      }
+    };
+  }
+
+  /**
+   * Tests flattening nested logical filters.
+   *
+   * @throws Exception if an error occurs.
+   */
+  @Test
+  public void testFlatten() throws Exception
+  {
+    final Filter filter = optimizer.optimize(Filter.fromString(
+        "title eq \"a\" and (nickName eq \"b\" and (locale eq \"c\" and " +
+            "timezone eq \"d\"))"));
+    assertEquals(filter.getFilterType(), FilterType.AND);
+    assertEquals(filter.getCombinedFilters().size(), 4);
+
+    assertEquals(optimizer.optimize(Filter.fromString(
+        "title eq \"a\" or (title eq \"a\")")),
+        Filter.fromString("title eq \"a\""));
+  }
+
+  /**
+   * Tests removing duplicate components and double negations.
+   *
+   * @throws Exception if an error occurs.
+   */
+  @Test
+  public void testSimplify() throws Exception
+  {
+    assertEquals(optimizer.optimize(Filter.fromString(
+        "title eq \"a\" and TITLE eq \"a\" and title eq \"A\"")),
+        Filter.fromString("title eq \"a\" and title eq \"A\""));
+    assertEquals(optimizer.optimize(Filter.fromString(
+        "not(not(title pr))")), Filter.fromString("title pr"));
+    assertEquals(optimizer.optimize(Filter.fromString(
+        "not(not(not(title pr)))")), Filter.fromString("not(title pr)"));
+  }
+
+  /**
+   * Tests merging complex value filters of the same attribute.
+   *
+   * @throws Exception if an error occurs.
+   */
+  @Test
+  public void testMergeComplexValueFilters() throws Exception
+  {
+    assertEquals(optimizer.optimize(Filter.fromString(
+        "emails[type eq \"work\"] or title pr or " +
+            "emails[value ew \"@example.com\"]")),
+        Filter.fromString("emails[type eq \"work\" or " +
+            "value ew \"@example.com\"] or title pr"));
+
+    // The value filters of an and filter may match different values.
+    final Filter and = Filter.fromString(
+        "emails[type eq \"work\"] and emails[value ew \"@example.com\"]");
+    assertEquals(optimizer.optimize(and).getCombinedFilters().size(), 2);
+
+    // Ordering filters may fail, so merging them could change the outcome.
+    final Filter or = Filter.fromString(
+        "emails[type eq \"work\"] or emails[value gt 1]");
+    assertEquals(optimizer.optimize(or), or);
+  }
+
+  /**
+   * Tests ordering components by cost and selectivity.
+   *
+   * @throws Exception if an error occurs.
+   */
+  @Test
+  public void testReorder() throws Exception
+  {
+    // Unique attributes first, multi-valued substring matches last.
+    assertEquals(optimizer.optimize(Filter.fromString(
+        "emails co \"example\" and title eq \"Manager\" and id eq \"1\"")),
+        Filter.fromString(
+            "id eq \"1\" and title eq \"Manager\" and emails co \"example\""));
+    assertEquals(optimizer.optimize(Filter.fromString(
+        "emails co \"example\" and userName eq \"bjensen\"")),
+        Filter.fromString(
+            "userName eq \"bjensen\" and emails co \"example\""));
+
+    // Likely matches first for or filters.
+    assertEquals(optimizer.optimize(Filter.fromString(
+        "id eq \"1\" or title ne \"Manager\"")),
+        Filter.fromString("title ne \"Manager\" or id eq \"1\""));
+
+    // Nothing moves across ordering filters.
+    final Filter filter = Filter.fromString(
+        "emails co \"example\" and meta.created gt \"2011-05-13T04:42:34Z\" " +
+            "and id eq \"1\"");
+    assertEquals(optimizer.optimize(filter), filter);
+  }
+
+  /**
+   * Tests that equivalent filters have the same canonical form.
+   *
+   * @throws Exception if an error occurs.
+   */
+  @Test
+  public void testCanonicalForm() throws Exception
+  {
+    final String canonicalForm = optimizer.getCanonicalForm(Filter.fromString(
+        "Title eq \"a\" and (nickName pr and title eq \"a\")"));
+    assertEquals(canonicalForm, optimizer.getCanonicalForm(Filter.fromString(
+        "nickname pr and TITLE eq \"a\"")));
+    assertEquals(canonicalForm, "(nickname pr and title eq \"a\")");
+    assertNotEquals(canonicalForm, optimizer.getCanonicalForm(
+        Filter.fromString("nickName pr or title eq \"a\"")));
+    assertNotEquals(canonicalForm, optimizer.getCanonicalForm(
+        Filter.fromString("nickName pr and title eq \"A\"")));
+  }
+
+  /**
+   * Tests that random optimized filters evaluate like the original filters
+   * on random resources, including failing on the same resources.
+   *
+   * @throws Exception if an error occurs.
+   */
+  @Test
+  public void testEvaluatesIdentically() throws Exception
+  {
+    final FilterParity parity = new FilterParity(new Random(42))
+        .setAttributes("id", "title", "Title", "nickName", "active")
+        .setComplexAttributes(new String[] { "emails" },
+            "type", "value", "primary")
+        .setResourceAttributes(
+            new String[] { "id", "title", "nickName", "active" }, "emails")
+        .setAttributeResolver(new FilterParity.AttributeResolver()
+        {
+          public AttributeDefinition getAttributeDefinition(final Path path)
+          {
+            return findAttributeDefinition(path);
+          }
+        });
+    final List<ObjectNode> resources = new ArrayList<ObjectNode>();
+    for (int i = 0; i < 50; i++)
+    {
+      resources.add(parity.resource());
+    }
+
+    for (int i = 0; i < 2000; i++)
+    {
+      final Filter filter = parity.filter(3);
+      final Filter optimized = optimizer.optimize(filter);
+      FilterParity.assertEquivalent(filter, optimized, resources, EVALUATOR);
+      assertEquals(optimizer.getCanonicalForm(optimized),
+          optimizer.getCanonicalForm(filter));
+    }
+  }
+
+  private AttributeDefinition findAttributeDefinition(final Path path)
+  {
+    Collection<AttributeDefinition> attributes = schema.getAttributes();
+    AttributeDefinition attributeDefinition = null;
+    for (Path.Element element : path)
+    {
+      attributeDefinition = null;
+      for (AttributeDefinition attribute : attributes)
+      {
+        if (attribute.getName().equalsIgnoreCase(element.getAttribute()))
+        {
+          attributeDefinition = attribute;
+        }
+      }
+      if (attributeDefinition == null)
+      {
+        return null;
+      }
+      attributes = attributeDefinition.getSubAttributes();
+    }
+    return attributeDefinition;
+  }
+}
@@ -0,0 +1,653 @@
+/*
+ * Copyright 2015-2019 Ping Identity Corporation
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License (GPLv2 only)
+ * or the terms of the GNU Lesser General Public License (LGPLv2.1 only)
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ */
+
+package com.bettercloud.scim2.common;
+
+import com.bettercloud.scim2.common.exceptions.ScimException;
+import com.bettercloud.scim2.common.filters.Filter;
+import com.bettercloud.scim2.common.types.AttributeDefinition;
+import com.bettercloud.scim2.common.utils.JsonUtils;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.ValueNode;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Random filters and resources for tests that check that two ways of
+ * evaluating filters agree, and the assertions of those tests.  The
+ * attributes and values used are configured per test.  Without an {@link
+ * AttributeResolver} the resources have values of every type, so the
+ * evaluators also have to agree on values of unexpected types.  With one the
+ * values have the type of their attribute, and filters can be limited to the
+ * comparisons valid for that type.
+ * <p>
+ * This class does not depend on a test framework so that the tests of other
+ * modules can use it.  Failed assertions throw an {@link AssertionError}.
+ */
+public final class FilterParity
+{
+  /**
+   * Evaluates a filter on a single resource.
+   *
+   * @param <T> The type of the resources.
+   */
+  public interface Matcher<T>
+  {
+    /**
+     * Evaluate a filter on a resource.
+     *
+     * @param filter   The filter.
+     * @param resource The resource.
+     *
+     * @return {@code true} if the resource matches the filter.
+     *
+     * @throws ScimException If the filter can not be evaluated.
+     */
+    boolean matches(Filter filter, T resource) throws ScimException;
+  }
+
+  /**
+   * Selects the resources matching a filter all at once.
+   */
+  public interface Selector
+  {
+    /**
+     * Select the resources matching a filter.
+     *
+     * @param filter The filter.
+     *
+     * @return The positions of the matching resources.
+     *
+     * @throws ScimException If the filter can not be evaluated.
+     */
+    BitSet select(Filter filter) throws ScimException;
+  }
+
+  /**
+   * Resolves the definitions of attributes.
+   */
+  public interface AttributeResolver
+  {
+    /**
+     * Retrieve the definition of an attribute.
+     *
+     * @param path The path of the attribute.
+     *
+     * @return The attribute definition or {@code null} if it is not known.
+     */
+    AttributeDefinition getAttributeDefinition(Path path);
+  }
+
+  private static final JsonNodeFactory FACTORY =
+      JsonUtils.getJsonNodeFactory();
+
+  private final Random random;
+  private String[] attributes = new String[0];
+  private String[] complexAttributes = new String[0];
+  private String[] subAttributes = new String[0];
+  private String[] resourceAttributes = new String[0];
+  private String[] multiValuedAttributes = new String[0];
+  private String[] texts = { "a", "A", "b", "ab" };
+  private AttributeResolver attributeResolver;
+  private boolean typedFilters;
+
+  /**
+   * Create a new generator.
+   *
+   * @param random The source of randomness, seeded for reproducible tests.
+   */
+  public FilterParity(final Random random)
+  {
+    this.random = random;
+  }
+
+  /**
+   * Set the attributes that filters compare.
+   *
+   * @param attributes The attribute paths.
+   *
+   * @return This object.
+   */
+  public FilterParity setAttributes(final String... attributes)
+  {
+    this.attributes = attributes;
+    return this;
+  }
+
+  /**
+   * Set the complex attributes with value filters, and their sub-attributes.
+   *
+   * @param complexAttributes The complex attribute paths.
+   * @param subAttributes     The sub-attributes compared in value filters.
+   *
+   * @return This object.
+   */
+  public FilterParity setComplexAttributes(final String[] complexAttributes,
+                                           final String... subAttributes)
+  {
+    this.complexAttributes = complexAttributes;
+    this.subAttributes = subAttributes;
+    return this;
+  }
+
+  /**
+   * Set the attributes of the generated resources.
+   *
+   * @param resourceAttributes    The paths of single values, which may
+   *                              include sub-attributes and schema URNs.
+   * @param multiValuedAttributes The multi-valued attributes, with values
+   *                              made of the sub-attributes of the complex
+   *                              attributes unless the attribute resolver
+   *                              knows them as simple attributes.  With an
+   *                              attribute resolver only the sub-attributes
+   *                              it knows are used.
+   *
+   * @return This object.
+   */
+  public FilterParity setResourceAttributes(
+      final String[] resourceAttributes, final String... multiValuedAttributes)
+  {
+    this.resourceAttributes = resourceAttributes;
+    this.multiValuedAttributes = multiValuedAttributes;
+    return this;
+  }
+
+  /**
+   * Set the strings used as values.
+   *
+   * @param texts The strings.
+   *
+   * @return This object.
+   */
+  public FilterParity setTexts(final String... texts)
+  {
+    this.texts = texts;
+    return this;
+  }
+
+  /**
+   * Set the resolver of the attribute types.
+   *
+   * @param attributeResolver The attribute resolver.
+   *
+   * @return This object.
+   */
+  public FilterParity setAttributeResolver(
+      final AttributeResolver attributeResolver)
+  {
+    this.attributeResolver = attributeResolver;
+    return this;
+  }
+
+  /**
+   * Set whether filters only make the comparisons that are valid for the
+   * type of the attribute, and only use the sub-attributes of complex
+   * attributes that the attribute resolver knows.
+   *
+   * @param typedFilters Whether filters are typed.
+   *
+   * @return This object.
+   */
+  public FilterParity setTypedFilters(final boolean typedFilters)
+  {
+    this.typedFilters = typedFilters;
+    return this;
+  }
+
+  /**
+   * Generate a random filter.
+   *
+   * @param depth The maximum nesting depth of logical and value filters.
+   *
+   * @return The filter.
+   *
+   * @throws ScimException If a configured path is not valid.
+   */
+  public Filter filter(final int depth) throws ScimException
+  {
+    final boolean complex = depth > 0 && complexAttributes.length > 0;
+    switch (random.nextInt(depth > 0 ? 8 : 5))
+    {
+      case 5:
+        return Filter.not(filter(depth - 1));
+      case 6:
+        return random.nextBoolean() ?
+            Filter.and(filters(depth - 1)) : Filter.or(filters(depth - 1));
+      case 7:
+        if (complex)
+        {
+          final Path path = Path.fromString(pick(complexAttributes));
+          final Filter valueFilter = valueFilter(path, depth - 1);
+          if (random.nextBoolean())
+          {
+            return Filter.hasComplexValue(path, valueFilter);
+          }
+          final String subAttribute = pickSubAttribute(path);
+          return comparison(
+              path.replace(path.size() - 1, valueFilter).attribute(
+                  subAttribute), path.attribute(subAttribute));
+        }
+        return filter(depth - 1);
+      default:
+        final Path path = Path.fromString(pick(attributes));
+        return comparison(path, path);
+    }
+  }
+
+  /**
+   * Generate a random resource.
+   *
+   * @return The resource.
+   *
+   * @throws ScimException If a configured path is not valid.
+   */
+  public ObjectNode resource() throws ScimException
+  {
+    final ObjectNode resource = FACTORY.objectNode();
+    for (String attribute : resourceAttributes)
+    {
+      if (random.nextInt(3) != 0)
+      {
+        final Path path = Path.fromString(attribute);
+        ObjectNode parent = path.getSchemaUrn() == null ?
+            resource : resource.with(path.getSchemaUrn());
+        for (int i = 0; i < path.size() - 1; i++)
+        {
+          parent = parent.with(path.getElement(i).getAttribute());
+        }
+        parent.set(path.getElement(path.size() - 1).getAttribute(),
+            value(path));
+      }
+    }
+    for (String attribute : multiValuedAttributes)
+    {
+      if (random.nextBoolean())
+      {
+        final Path path = Path.fromString(attribute);
+        final AttributeDefinition definition = getDefinition(path);
+        final ArrayNode values = resource.putArray(attribute);
+        for (int i = random.nextInt(4); i > 0; i--)
+        {
+          if (definition != null &&
+              definition.getType() != AttributeDefinition.Type.COMPLEX)
+          {
+            values.add(value(path));
+            continue;
+          }
+          final ObjectNode value = values.addObject();
+          for (String subAttribute : subAttributes)
+          {
+            final Path subAttributePath = path.attribute(subAttribute);
+            if (random.nextInt(3) != 0 && (attributeResolver == null ||
+                getDefinition(subAttributePath) != null))
+            {
+              value.set(subAttribute, value(subAttributePath));
+            }
+          }
+        }
+      }
+    }
+    return resource;
+  }
+
+  /**
+   * Assert that two evaluators match the same resources with a filter, and
+   * fail on the same resources.
+   *
+   * @param filter    The filter.
+   * @param resources The resources.
+   * @param expected  The reference evaluator.
+   * @param actual    The evaluator under test.
+   * @param <T>       The type of the resources.
+   */
+  public static <T> void assertSameMatches(
+      final Filter filter, final List<T> resources,
+      final Matcher<? super T> expected, final Matcher<? super T> actual)
+  {
+    assertEquivalent(filter, filter, resources, expected, actual);
+  }
+
+  /**
+   * Assert that two filters match the same resources, and fail on the same
+   * resources.
+   *
+   * @param expected  The reference filter.
+   * @param actual    The filter under test.
+   * @param resources The resources.
+   * @param matcher   The evaluator.
+   * @param <T>       The type of the resources.
+   */
+  public static <T> void assertEquivalent(
+      final Filter expected, final Filter actual, final List<T> resources,
+      final Matcher<? super T> matcher)
+  {
+    assertEquivalent(expected, actual, resources, matcher, matcher);
+  }
+
+  /**
+   * Assert that a selector selects the resources an evaluator matches with a
+   * filter, or fails like the evaluator.
+   *
+   * @param filter    The filter.
+   * @param resources The resources.
+   * @param expected  The reference evaluator.
+   * @param actual    The selector under test, selecting from the resources.
+   * @param <T>       The type of the resources.
+   */
+  public static <T> void assertSameSelection(
+      final Filter filter, final List<T> resources,
+      final Matcher<? super T> expected, final Selector actual)
+  {
+    String expectedResult;
+    try
+    {
+      final BitSet matches = new BitSet();
+      for (int i = 0; i < resources.size(); i++)
+      {
+        if (expected.matches(filter, resources.get(i)))
+        {
+          matches.set(i);
+        }
+      }
+      expectedResult = matches.toString();
+    }
+    catch (ScimException e)
+    {
+      expectedResult = e.getMessage();
+    }
+
+    String actualResult;
+    try
+    {
+      actualResult = actual.select(filter).toString();
+    }
+    catch (ScimException e)
+    {
+      actualResult = e.getMessage();
+    }
+    assertEquals(expectedResult, actualResult, String.valueOf(filter));
+  }
+
+  private static <T> void assertEquivalent(
+      final Filter expectedFilter, final Filter actualFilter,
+      final List<T> resources, final Matcher<? super T> expected,
+      final Matcher<? super T> actual)
+  {
+    for (T resource : resources)
+    {
+      assertEquals(evaluate(expected, expectedFilter, resource),
+          evaluate(actual, actualFilter, resource),
+          (expectedFilter == actualFilter ? expectedFilter :
+              expectedFilter + " as " + actualFilter) + " on " + resource);
+    }
+  }
+
+  private static <T> String evaluate(final Matcher<? super T> matcher,
+                                     final Filter filter, final T resource)
+  {
+    try
+    {
+      return String.valueOf(matcher.matches(filter, resource));
+    }
+    catch (ScimException e)
+    {
+      return e.getMessage();
+    }
+  }
+
+  private static void assertEquals(final String expected,
+                                   final String actual, final String message)
+  {
+    if (!expected.equals(actual))
+    {
+      throw new AssertionError(
+          message + ": expected " + expected + " but was " + actual);
+    }
+  }
+
+  private List<Filter> filters(final int depth) throws ScimException
+  {
+    final List<Filter> filters = new ArrayList<Filter>();
+    for (int i = 2 + random.nextInt(2); i > 0; i--)
+    {
+      filters.add(filter(depth));
+    }
+    return filters;
+  }
+
+  private Filter valueFilter(final Path parent, final int depth)
+      throws ScimException
+  {
+    switch (random.nextInt(depth > 0 ? 7 : 5))
+    {
+      case 5:
+        return Filter.or(valueFilter(parent, depth - 1),
+            valueFilter(parent, depth - 1));
+      case 6:
+        return Filter.not(valueFilter(parent, depth - 1));
+      default:
+        final String subAttribute = pickSubAttribute(parent);
+        return comparison(Path.root().attribute(subAttribute),
+            parent.attribute(subAttribute));
+    }
+  }
+
+  /**
+   * Generate a comparison filter.
+   *
+   * @param path     The path compared by the filter.
+   * @param typePath The path of the attribute from the resource.
+   */
+  private Filter comparison(final Path path, final Path typePath)
+  {
+    final AttributeDefinition definition =
+        typedFilters ? getDefinition(typePath) : null;
+    final AttributeDefinition.Type type =
+        definition == null ? null : definition.getType();
+    if (type == null)
+    {
+      switch (random.nextInt(9))
+      {
+        case 0:
+          return Filter.eq(path, text());
+        case 1:
+          return random.nextBoolean() ?
+              Filter.co(path, part(false)) : Filter.sw(path, part(false));
+        case 2:
+          return Filter.ew(path, part(true));
+        case 3:
+          return Filter.pr(path);
+        case 4:
+          return random.nextBoolean() ?
+              Filter.gt(path, text()) : Filter.le(path, text());
+        case 5:
+          return Filter.eq(path, random.nextBoolean() ?
+              FACTORY.booleanNode(random.nextBoolean()) : FACTORY.nullNode());
+        case 6:
+          return Filter.ne(path, random.nextBoolean() ?
+              text() : FACTORY.nullNode());
+        case 7:
+          return random.nextBoolean() ?
+              Filter.eq(path, FACTORY.numberNode(random.nextInt(3))) :
+              Filter.ge(path, FACTORY.numberNode(0.5));
+        default:
+          return Filter.eq(path, FACTORY.textNode(dateTime()));
+      }
+    }
+
+    switch (random.nextInt(3))
+    {
+      case 0:
+        return Filter.pr(path);
+      case 1:
+        return random.nextBoolean() ?
+            Filter.eq(path, FACTORY.nullNode()) :
+            Filter.ne(path, FACTORY.nullNode());
+      default:
+        break;
+    }
+    switch (type)
+    {
+      case STRING:
+      case REFERENCE:
+        switch (random.nextInt(6))
+        {
+          case 0:
+            return Filter.eq(path, text());
+          case 1:
+            return Filter.ne(path, text());
+          case 2:
+            return Filter.co(path, part(false));
+          case 3:
+            return Filter.sw(path, part(false));
+          case 4:
+            return Filter.ew(path, part(true));
+          default:
+            return random.nextBoolean() ?
+                Filter.gt(path, text()) : Filter.le(path, text());
+        }
+      case BOOLEAN:
+        return random.nextBoolean() ?
+            Filter.eq(path, FACTORY.booleanNode(random.nextBoolean())) :
+            Filter.ne(path, FACTORY.booleanNode(random.nextBoolean()));
+      case INTEGER:
+      case DECIMAL:
+      case DATETIME:
+        final ValueNode value = value(typePath);
+        switch (random.nextInt(4))
+        {
+          case 0:
+            return Filter.eq(path, value);
+          case 1:
+            return Filter.gt(path, value);
+          case 2:
+            return Filter.ge(path, value);
+          default:
+            return Filter.lt(path, value);
+        }
+      default:
+        return Filter.pr(path);
+    }
+  }
+
+  /**
+   * Generate a value for an attribute, of the type of the attribute if the
+   * attribute resolver knows it.
+   */
+  private ValueNode value(final Path path)
+  {
+    if (attributeResolver == null)
+    {
+      switch (random.nextInt(12))
+      {
+        case 0:
+          return FACTORY.booleanNode(random.nextBoolean());
+        case 1:
+          return FACTORY.numberNode(random.nextInt(3));
+        case 2:
+          return FACTORY.numberNode(random.nextInt(3) * 0.5);
+        case 3:
+          return FACTORY.binaryNode(new byte[] { 1, 2 });
+        case 4:
+          return FACTORY.nullNode();
+        case 5:
+          return FACTORY.textNode(dateTime());
+        default:
+          return text();
+      }
+    }
+
+    final AttributeDefinition definition = getDefinition(path);
+    switch (definition == null ?
+        AttributeDefinition.Type.STRING : definition.getType())
+    {
+      case BOOLEAN:
+        return FACTORY.booleanNode(random.nextBoolean());
+      case INTEGER:
+        return FACTORY.numberNode(random.nextInt(10));
+      case DECIMAL:
+        return FACTORY.numberNode(random.nextInt(10) * 0.5);
+      case DATETIME:
+        return FACTORY.textNode(dateTime());
+      case BINARY:
+        return FACTORY.binaryNode(new byte[] { 1, 2, 3 });
+      default:
+        return text();
+    }
+  }
+
+  private AttributeDefinition getDefinition(final Path path)
+  {
+    return attributeResolver == null ?
+        null : attributeResolver.getAttributeDefinition(path);
+  }
+
+  private ValueNode text()
+  {
+    return FACTORY.textNode(pick(texts));
+  }
+
+  /**
+   * Generate a prefix or suffix of a string value, for substring filters.
+   */
+  private ValueNode part(final boolean suffix)
+  {
+    final String text = pick(texts);
+    final int length = 1 + random.nextInt(Math.min(3, text.length()));
+    return FACTORY.textNode(suffix ?
+        text.substring(text.length() - length) : text.substring(0, length));
+  }
+
+  private String dateTime()
+  {
+    return String.format("2019-06-%02dT%02d:00:00%s", 1 + random.nextInt(3),
+        random.nextInt(24), random.nextBoolean() ? "Z" : ".000Z");
+  }
+
+  /**
+   * Pick a sub-attribute of a complex attribute, only among those the
+   * attribute resolver knows if filters are typed.
+   */
+  private String pickSubAttribute(final Path parent)
+  {
+    if (!typedFilters)
+    {
+      return pick(subAttributes);
+    }
+
+    final List<String> known = new ArrayList<String>();
+    for (String subAttribute : subAttributes)
+    {
+      if (getDefinition(parent.attribute(subAttribute)) != null)
+      {
+        known.add(subAttribute);
+      }
+    }
+    return known.isEmpty() ? pick(subAttributes) :
+        known.get(random.nextInt(known.size()));
+  }
+
+  private String pick(final String[] values)
+  {
+    return values[random.nextInt(values.length)];
+  }
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright 2015-2019 Ping Identity Corporation
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License (GPLv2 only)
+ * or the terms of the GNU Lesser General Public License (LGPLv2.1 only)
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ */
+
+package com.bettercloud.scim2.common;
+
+import com.bettercloud.scim2.common.types.UserResource;
+import com.bettercloud.scim2.common.utils.CaseIgnoreObjectNode;
+import com.bettercloud.scim2.common.utils.InterningScimJsonNodeFactory;
+import com.bettercloud.scim2.common.utils.JsonUtils;
+import com.bettercloud.scim2.common.utils.SchemaUtils;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Test for the interning JSON node factory.
+ */
+public class InterningNodeFactoryTestCase
+{
+  private static final String USER =
+      "{\n" +
+      "  \"schemas\": [\"urn:ietf:params:scim:schemas:core:2.0:User\"],\n" +
+      "  \"userName\": \"%s\",\n" +
+      "  \"displayName\": \"A display name that is too long to intern\",\n" +
+      "  \"active\": true,\n" +
+      "  \"emails\": [\n" +
+      "    {\n" +
+      "      \"type\": \"work\",\n" +
+      "      \"value\": \"%s@example.com\"\n" +
+      "    }\n" +
+      "  ]\n" +
+      "}";
+
+  /**
+   * Test that equal short values parsed from different documents share the
+   * same node and that long values do not.
+   *
+   * @throws Exception If an error occurs.
+   */
+  @Test
+  public void testSharedValues() throws Exception
+  {
+    InterningScimJsonNodeFactory nodeFactory =
+        new InterningScimJsonNodeFactory().addSchemas(Collections.singleton(
+            SchemaUtils.getSchema(UserResource.class)));
+    ObjectMapper mapper = JsonUtils.createObjectMapper();
+    mapper.setNodeFactory(nodeFactory);
+
+    ObjectNode bjensen = (ObjectNode) mapper.readTree(
+        String.format(USER, "bjensen", "bjensen"));
+    ObjectNode jsmith = (ObjectNode) mapper.readTree(
+        String.format(USER, "jsmith", "jsmith"));
+
+    // Object nodes must still be case-insensitive.
+    assertTrue(bjensen instanceof CaseIgnoreObjectNode);
+    assertEquals(bjensen.path("USERNAME").textValue(), "bjensen");
+
+    // The schema URN is registered and always interned.
+    assertSame(bjensen.get("schemas").get(0), jsmith.get("schemas").get(0));
+    // Canonical and short values are interned.
+    assertSame(bjensen.get("emails").get(0).get("type"),
+        jsmith.get("emails").get(0).get("type"));
+    assertSame(bjensen.get("active"), jsmith.get("active"));
+    // Long values are not.
+    assertNotSame(bjensen.get("displayName"), jsmith.get("displayName"));
+    assertEquals(bjensen.get("displayName"), jsmith.get("displayName"));
+
+    // The interned nodes must not change the serialized form.
+    assertEquals(mapper.writeValueAsString(bjensen),
+        JsonUtils.getObjectWriter().writeValueAsString(
+            JsonUtils.getObjectReader().readTree(
+                String.format(USER, "bjensen", "bjensen"))));
+  }
+
+  /**
+   * Test that the least recently used value is dropped once the limit is
+   * reached but registered values are always interned.
+   */
+  @Test
+  public void testLimits()
+  {
+    InterningScimJsonNodeFactory nodeFactory =
+        new InterningScimJsonNodeFactory(4, 2).addValues(
+            "urn:ietf:params:scim:schemas:core:2.0:User");
+
+    assertSame(nodeFactory.textNode("urn:ietf:params:scim:schemas:core:2.0:User"),
+        nodeFactory.textNode("urn:ietf:params:scim:schemas:core:2.0:User"));
+    JsonNode work = nodeFactory.textNode("work");
+    JsonNode home = nodeFactory.textNode("home");
+    assertSame(nodeFactory.textNode("work"), work);
+    assertEquals(nodeFactory.getInternedValueCount(), 3);
+
+    // "home" is the least recently used value and makes room for "fax".
+    JsonNode fax = nodeFactory.textNode("fax");
+    assertSame(nodeFactory.textNode("fax"), fax);
+    assertSame(nodeFactory.textNode("work"), work);
+    assertNotSame(nodeFactory.textNode("home"), home);
+    assertEquals(nodeFactory.textNode("home"), home);
+    assertEquals(nodeFactory.getInternedValueCount(), 3);
+
+    // Long values are not interned.
+    assertNotSame(nodeFactory.textNode("longer"),
+        nodeFactory.textNode("longer"));
+    assertEquals(nodeFactory.textNode("").textValue(), "");
+  }
+
+  /**
+   * Test that values that repeat stay interned while many values that occur
+   * once pass through.
+   */
+  @Test
+  public void testRepeatedValuesStayInterned()
+  {
+    InterningScimJsonNodeFactory nodeFactory =
+        new InterningScimJsonNodeFactory();
+    JsonNode work = nodeFactory.textNode("work");
+    for (int i = 0; i < 100000; i++)
+    {
+      nodeFactory.textNode("id" + i);
+      assertSame(nodeFactory.textNode("work"), work);
+    }
+    assertTrue(nodeFactory.getInternedValueCount() <=
+        InterningScimJsonNodeFactory.DEFAULT_MAX_VALUES);
+  }
+
+  /**
+   * Test that threads interning values at the same time share the nodes of
+   * values that repeat, and that the cache is bounded once they are done.
+   *
+   * @throws Exception If an error occurs.
+   */
+  @Test
+  public void testConcurrentValues() throws Exception
+  {
+    final InterningScimJsonNodeFactory nodeFactory =
+        new InterningScimJsonNodeFactory();
+    final JsonNode work = nodeFactory.textNode("work");
+    final ExecutorService executor = Executors.newFixedThreadPool(4);
+    try
+    {
+      final List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+      for (int t = 0; t < 4; t++)
+      {
+        final String prefix = "t" + t + "-";
+        results.add(executor.submit(new Callable<Boolean>()
+        {
+          public Boolean call()
+          {
+            boolean shared = true;
+            for (int i = 0; i < 50000; i++)
+            {
+              shared &= nodeFactory.textNode(prefix + i).textValue().equals(
+                  prefix + i);
+              shared &= nodeFactory.textNode("work") == work;
+            }
+            return shared;
+          }
+        }));
+      }
+      for (Future<Boolean> result : results)
+      {
+        assertTrue(result.get());
+      }
+    }
+    finally
+    {
+      executor.shutdownNow();
+    }
+
+    nodeFactory.textNode("fax");
+    assertTrue(nodeFactory.getInternedValueCount() <=
+        InterningScimJsonNodeFactory.DEFAULT_MAX_VALUES);
+  }
+}
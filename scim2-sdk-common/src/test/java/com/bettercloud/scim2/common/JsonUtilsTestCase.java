@@ -19,9 +19,14 @@ package com.bettercloud.scim2.common;
 
 import com.fasterxml.jackson.annotation.JsonAnyGetter;
 import com.fasterxml.jackson.annotation.JsonAnySetter;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.fasterxml.jackson.databind.util.ISO8601Utils;
 import com.google.common.collect.ImmutableMap;
@@ -30,6 +35,7 @@ import com.bettercloud.scim2.common.filters.Filter;
 import com.bettercloud.scim2.common.types.Name;
 import com.bettercloud.scim2.common.utils.JsonUtils;
 import com.bettercloud.scim2.common.utils.MapperFactory;
+import com.bettercloud.scim2.common.utils.ScimJsonConfig;
 import org.testng.Assert;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
@@ -41,7 +47,13 @@ import java.util.List;
 import java.util.Map;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
 
 /**
  * Test coverage for the JsonUtil methods.
@@ -1202,4 +1214,192 @@ public class JsonUtilsTestCase
     Assert.assertEquals(name.getGivenName(), "Bob");
     Assert.assertEquals(name.getMiddleName(), "X");
   }
+
+  /**
+   * Test that the deprecated static method creating an object mapper uses
+   * the settings of the mapper factory used by the SDK.
+   *
+   * @throws Exception if an error occurs.
+   */
+  @Test
+  @SuppressWarnings("deprecation")
+  public void testDeprecatedCreateObjectMapper() throws Exception
+  {
+    JsonUtils.setCustomMapperFactory(new MapperFactory()
+        .setSerializationCustomFeatures(
+            ImmutableMap.<SerializationFeature, Boolean>builder().
+                put(SerializationFeature.INDENT_OUTPUT, Boolean.TRUE).build()));
+    try
+    {
+      assertTrue(MapperFactory.createObjectMapper().isEnabled(
+          SerializationFeature.INDENT_OUTPUT));
+    }
+    finally
+    {
+      JsonUtils.setCustomMapperFactory(new MapperFactory());
+    }
+    assertFalse(MapperFactory.createObjectMapper().isEnabled(
+        SerializationFeature.INDENT_OUTPUT));
+  }
+
+  /**
+   * Test that readers and writers are cached per type and discarded when the
+   * mapper factory is replaced.
+   *
+   * @throws Exception if an error occurs.
+   */
+  @Test
+  public void testCachedReadersAndWriters() throws Exception
+  {
+    JsonUtils.warmUp(Name.class);
+    ObjectReader reader = JsonUtils.getObjectReader(Name.class);
+    ObjectWriter writer = JsonUtils.getObjectWriter(Name.class);
+    assertSame(JsonUtils.getObjectReader(Name.class), reader);
+    assertSame(JsonUtils.getObjectWriter(Name.class), writer);
+    assertSame(JsonUtils.getListType(Name.class),
+        JsonUtils.getListType(Name.class));
+
+    ArrayNode names = JsonUtils.getJsonNodeFactory().arrayNode();
+    names.addObject().put("familyName", "Smith");
+    names.addObject().put("givenName", "Bob");
+    List<Name> values = JsonUtils.nodeToValues(names, Name.class);
+    assertEquals(values.size(), 2);
+    assertEquals(values.get(0).getFamilyName(), "Smith");
+    assertEquals(JsonUtils.nodeToValue(names.get(1), Name.class).
+        getGivenName(), "Bob");
+    assertSame(JsonUtils.nodeToValue(names, JsonNode.class), names);
+
+    JsonUtils.setCustomMapperFactory(new MapperFactory());
+    assertNotSame(JsonUtils.getObjectReader(Name.class), reader);
+    assertNotSame(JsonUtils.getObjectWriter(Name.class), writer);
+  }
+
+  /**
+   * Test that differently configured JSON configurations may be used side by
+   * side and that replacing the SDK configuration does not affect
+   * configurations already retrieved.
+   *
+   * @throws Exception if an error occurs.
+   */
+  @Test
+  public void testCoexistingConfigs() throws Exception
+  {
+    ScimJsonConfig strict = new ScimJsonConfig(new MapperFactory());
+    ScimJsonConfig lenient = new ScimJsonConfig(
+        new MapperFactory().setDeserializationCustomFeatures(
+            ImmutableMap.<DeserializationFeature, Boolean>builder().
+                put(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES,
+                    Boolean.FALSE).build()));
+
+    String jsonNameString =
+        "{" +
+        "\"familyName\":\"Smith\"," +
+        "\"bogusField\":\"bogusValue\"" +
+        "}";
+
+    assertEquals(lenient.getObjectReader(Name.class).<Name>readValue(
+        jsonNameString).getFamilyName(), "Smith");
+    try
+    {
+      strict.getObjectReader(Name.class).readValue(jsonNameString);
+      fail("Expected the strict configuration to reject unknown properties");
+    }
+    catch (JsonProcessingException e)
+    {
+      // Expected.
+    }
+
+    JsonUtils.setConfig(strict);
+    ScimJsonConfig current = JsonUtils.getConfig();
+    assertSame(current, strict);
+    assertSame(JsonUtils.getObjectReader(Name.class),
+        strict.getObjectReader(Name.class));
+
+    JsonUtils.setConfig(lenient);
+    assertSame(JsonUtils.getObjectReader(Name.class),
+        lenient.getObjectReader(Name.class));
+    assertNotSame(current.getObjectReader(Name.class),
+        JsonUtils.getObjectReader(Name.class));
+
+    JsonUtils.setCustomMapperFactory(new MapperFactory());
+  }
+
+  /**
+   * Test that changes made to a mapper factory after a configuration was
+   * created from it do not affect the configuration.
+   *
+   * @throws Exception if an error occurs.
+   */
+  @Test
+  public void testConfigCopiesMapperFactory() throws Exception
+  {
+    Map<DeserializationFeature, Boolean> lenient =
+        ImmutableMap.<DeserializationFeature, Boolean>builder().
+            put(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES,
+                Boolean.FALSE).build();
+    MapperFactory mapperFactory = new MapperFactory();
+    ScimJsonConfig config = new ScimJsonConfig(mapperFactory);
+    mapperFactory.setDeserializationCustomFeatures(lenient);
+    config.getMapperFactory().setDeserializationCustomFeatures(lenient);
+
+    assertTrue(config.newObjectMapper().isEnabled(
+        DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES));
+    assertTrue(config.getMapperFactory().newObjectMapper().isEnabled(
+        DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES));
+    assertFalse(new MapperFactory(mapperFactory).newObjectMapper().isEnabled(
+        DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES));
+  }
+
+  /**
+   * Test that SCIM dateTime values are parsed with any fraction of a second
+   * and time zone, and that values without a time or time zone are not.
+   */
+  @Test
+  public void testParseDateTime()
+  {
+    assertEquals(JsonUtils.parseDateTime("2015-02-27T11:28:39Z").getTime(),
+        1425036519000L);
+    assertEquals(
+        JsonUtils.parseDateTime("2015-02-27T11:28:39.042Z").getTime(),
+        1425036519042L);
+    assertEquals(
+        JsonUtils.parseDateTime("2015-02-27T11:28:39.042123456Z").getTime(),
+        1425036519042L);
+    assertEquals(
+        JsonUtils.parseDateTime("2015-02-27T16:58:39+05:30").getTime(),
+        1425036519000L);
+    assertEquals(
+        JsonUtils.parseDateTime("2015-02-27T16:58:39+0530").getTime(),
+        1425036519000L);
+    assertEquals(
+        JsonUtils.parseDateTime("2015-02-27T06:28:39-05").getTime(),
+        1425036519000L);
+
+    for (String value : new String[] { "2015-02-27", "2015-02-27T11:28Z",
+        "2015-02-27T11:28:39", "2015-02-27 11:28:39Z", "2015-02-30T11:28:39Z",
+        "2015-02-27T11:28:39.Z", "2015-02-27T11:28:39.+01:00",
+        "2015-02-27T11:28:39.", "2015-02-27T11:28:39Zjunk", "yesterday", "" })
+    {
+      assertNull(JsonUtils.parseDateTime(value), value);
+    }
+  }
+  /**
+   * Test that text is compared as a date only if it is a SCIM dateTime
+   * value.
+   */
+  @Test
+  public void testCompareDateTimes()
+  {
+    final JsonNodeFactory factory = JsonUtils.getJsonNodeFactory();
+    assertEquals(JsonUtils.compareTo(
+        factory.textNode("2019-06-01T00:00:00Z"),
+        factory.textNode("2019-06-01T01:00:00.000+01:00"), null), 0);
+    assertTrue(JsonUtils.compareTo(
+        factory.textNode("2019-06-01T00:00:00Zjunk"),
+        factory.textNode("2019-06-01T00:00:00Z"), null) > 0);
+    assertTrue(JsonUtils.compareTo(
+        factory.textNode("2019-06-01T00:00+01:00"),
+        factory.textNode("2019-06-01T00:00:00Z"), null) < 0);
+  }
+
 }
@@ -17,19 +17,30 @@
 
 package com.bettercloud.scim2.common;
 
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.bettercloud.scim2.common.messages.ListResponse;
+import com.bettercloud.scim2.common.messages.ScimListReader;
 import com.bettercloud.scim2.common.types.ResourceTypeResource;
+import com.bettercloud.scim2.common.types.UserResource;
 import com.bettercloud.scim2.common.utils.JsonUtils;
 import org.testng.annotations.Test;
 
+import java.io.ByteArrayInputStream;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.stream.Stream;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertTrue;
 import static org.testng.Assert.fail;
 
@@ -124,4 +135,142 @@ public class ListResponseTestCase
             readValue(serialized),
         response);
   }
+
+  /**
+   * Test list responses using cursor-based pagination.
+   *
+   * @throws Exception If an error occurs.
+   */
+  @Test
+  public void testNextCursor()
+      throws Exception
+  {
+    ListResponse<ObjectNode> response =
+        new ListResponse<ObjectNode>(3,
+            Collections.singletonList(JsonUtils.getJsonNodeFactory().
+                objectNode().put("userName", "bjensen")), null, 1, "abc");
+    String serialized =
+        JsonUtils.getObjectWriter().writeValueAsString(response);
+    assertTrue(serialized.contains("\"nextCursor\":\"abc\""), serialized);
+    assertFalse(serialized.contains("startIndex"), serialized);
+
+    ListResponse<ObjectNode> read = JsonUtils.getObjectReader().forType(
+        new TypeReference<ListResponse<ObjectNode>>() {}).readValue(
+        serialized);
+    assertEquals(read.getNextCursor(), "abc");
+    assertNull(read.getStartIndex());
+    assertFalse(read.equals(new ListResponse<ObjectNode>(3,
+        Collections.singletonList(JsonUtils.getJsonNodeFactory().
+            objectNode().put("userName", "bjensen")), null, 1, "def")));
+
+    assertFalse(JsonUtils.getObjectWriter().writeValueAsString(
+        new ListResponse<ObjectNode>(0,
+            Collections.<ObjectNode>emptyList(), 1, 0)).contains(
+        "nextCursor"));
+
+    try (ScimListReader<ObjectNode> reader = new ScimListReader<ObjectNode>(
+        new ByteArrayInputStream(serialized.getBytes("UTF-8")),
+        ObjectNode.class))
+    {
+      while (reader.hasNext())
+      {
+        reader.next();
+      }
+      assertEquals(reader.getNextCursor(), "abc");
+    }
+  }
+
+  /**
+   * Test streaming the resources of a list response.
+   *
+   * @throws Exception If an error occurs.
+   */
+  @Test
+  public void testScimListReader()
+      throws Exception
+  {
+    String json =
+        "{  \n" +
+        "  \"schemas\":[  \n" +
+        "    \"urn:ietf:params:scim:api:messages:2.0:ListResponse\"\n" +
+        "  ],\n" +
+        "  \"startIndex\":1,\n" +
+        "  \"ItemsPerPage\":3,\n" +
+        "  \"Resources\":[  \n" +
+        "    {  \n" +
+        "      \"userName\":\"bjensen\",\n" +
+        "      \"emails\":[{\"value\":\"bjensen@example.com\"}]\n" +
+        "    },\n" +
+        "    {  \n" +
+        "      \"userName\":\"jsmith\"\n" +
+        "    }\n" +
+        "  ],\n" +
+        "  \"extra\":{\"Resources\":[1, 2]},\n" +
+        // Attributes following the resources are read at the end.
+        "  \"totalresults\":2\n" +
+        "}";
+
+    ScimListReader<UserResource> reader = new ScimListReader<UserResource>(
+        new ByteArrayInputStream(json.getBytes("UTF-8")), UserResource.class);
+    assertEquals(reader.getStartIndex(), Integer.valueOf(1));
+    assertEquals(reader.getItemsPerPage(), Integer.valueOf(3));
+    assertNull(reader.getTotalResults());
+
+    assertTrue(reader.hasNext());
+    assertTrue(reader.hasNext());
+    UserResource user = reader.next();
+    assertEquals(user.getUserName(), "bjensen");
+    assertEquals(user.getEmails().get(0).getValue(), "bjensen@example.com");
+    assertEquals(reader.next().getUserName(), "jsmith");
+    assertFalse(reader.hasNext());
+    assertEquals(reader.getTotalResults(), Integer.valueOf(2));
+    try
+    {
+      reader.next();
+      fail("Expected NoSuchElementException");
+    }
+    catch (NoSuchElementException e)
+    {
+      // Expected.
+    }
+    reader.close();
+
+    JsonParser parser = JsonUtils.getObjectReader().getFactory().createParser(
+        "{\"totalResults\":0,\"Resources\":[]}");
+    ScimListReader<ObjectNode> nodeReader =
+        new ScimListReader<ObjectNode>(parser, ObjectNode.class);
+    assertEquals(nodeReader.getTotalResults(), Integer.valueOf(0));
+    try (Stream<ObjectNode> stream = nodeReader.stream())
+    {
+      assertEquals(stream.count(), 0L);
+    }
+    assertTrue(parser.isClosed());
+
+    List<String> userNames = new ArrayList<String>();
+    try (ScimListReader<GenericScimResource> genericReader =
+             new ScimListReader<GenericScimResource>(
+                 JsonUtils.getObjectReader().getFactory().createParser(
+                     json.replace("\"totalresults\":2", "\"totalresults\":3")),
+                 GenericScimResource.class))
+    {
+      for (Iterator<GenericScimResource> i = genericReader; i.hasNext();)
+      {
+        userNames.add(i.next().getObjectNode().path("userName").textValue());
+      }
+      assertEquals(genericReader.getTotalResults(), Integer.valueOf(3));
+    }
+    assertEquals(userNames, Arrays.asList("bjensen", "jsmith"));
+
+    try
+    {
+      new ScimListReader<ObjectNode>(
+          JsonUtils.getObjectReader().getFactory().createParser(
+              "{\"Resources\":null}"), ObjectNode.class);
+      fail("Expected failure for missing required property 'totalResults'");
+    }
+    catch (final JsonMappingException je)
+    {
+      assertTrue(je.getMessage().contains("totalResults"), je.getMessage());
+    }
+  }
 }
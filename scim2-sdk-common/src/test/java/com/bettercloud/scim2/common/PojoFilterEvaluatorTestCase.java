@@ -0,0 +1,241 @@
+/*
+ * Copyright 2015-2019 Ping Identity Corporation
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License (GPLv2 only)
+ * or the terms of the GNU Lesser General Public License (LGPLv2.1 only)
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ */
+
+package com.bettercloud.scim2.common;
+
+import com.bettercloud.scim2.common.exceptions.ScimException;
+import com.bettercloud.scim2.common.filters.Filter;
+import com.bettercloud.scim2.common.types.AttributeDefinition;
+import com.bettercloud.scim2.common.types.Email;
+import com.bettercloud.scim2.common.types.EnterpriseUserExtension;
+import com.bettercloud.scim2.common.types.Manager;
+import com.bettercloud.scim2.common.types.SchemaResource;
+import com.bettercloud.scim2.common.types.UserResource;
+import com.bettercloud.scim2.common.utils.FilterEvaluator;
+import com.bettercloud.scim2.common.utils.JsonUtils;
+import com.bettercloud.scim2.common.utils.PojoFilterEvaluator;
+import com.bettercloud.scim2.common.utils.SchemaUtils;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Tests for evaluating SCIM 2 filters on typed objects.
+ */
+public class PojoFilterEvaluatorTestCase
+{
+  private static final String ENTERPRISE =
+      "urn:ietf:params:scim:schemas:extension:enterprise:2.0:User";
+
+  private static final String[] VALUES = { "a", "A", "b", "ab" };
+
+  private SchemaResource userSchema;
+  private SchemaResource enterpriseSchema;
+  private FilterEvaluator jsonEvaluator;
+  private PojoFilterEvaluator pojoEvaluator;
+
+  /**
+   * Sets up evaluators that know the attributes of the user and enterprise
+   * user schemas.
+   *
+   * @throws Exception if the schemas could not be generated.
+   */
+  @BeforeClass
+  public void setup() throws Exception
+  {
+    userSchema = SchemaUtils.getSchema(UserResource.class);
+    enterpriseSchema = SchemaUtils.getSchema(EnterpriseUserExtension.class);
+    jsonEvaluator = new FilterEvaluator()
+    {
+      @Override
+      protected AttributeDefinition getAttributeDefinition(final Path path)
+      {
+        return findAttributeDefinition(path, userSchema, enterpriseSchema);
+      }
+    };
+    pojoEvaluator = new PojoFilterEvaluator()
+    {
+      @Override
+      protected AttributeDefinition getAttributeDefinition(final Path path)
+      {
+        return findAttributeDefinition(path, userSchema, enterpriseSchema);
+      }
+    };
+  }
+
+  /**
+   * Tests filters on attributes of typed resources, multi-valued attributes
+   * and extensions.
+   *
+   * @throws Exception if an error occurs.
+   */
+  @Test
+  public void testEvaluate() throws Exception
+  {
+    final UserResource user = new UserResource().setUserName("bjensen");
+    user.setEmails(Collections.singletonList(
+        new Email().setType("work").setValue("bjensen@example.com")));
+    user.setExtension(new EnterpriseUserExtension()
+        .setEmployeeNumber("701984")
+        .setManager(new Manager().setValue("26118915")));
+
+    assertTrue(PojoFilterEvaluator.evaluate(
+        Filter.fromString("USERNAME eq \"BJensen\""), user));
+    assertTrue(PojoFilterEvaluator.evaluate(Filter.fromString(
+        "emails[type eq \"work\" and value ew \"@example.com\"]"), user));
+    assertTrue(PojoFilterEvaluator.evaluate(
+        Filter.fromString(ENTERPRISE + ":employeeNumber sw \"70\""), user));
+    assertTrue(PojoFilterEvaluator.evaluate(
+        Filter.fromString(ENTERPRISE + ":manager.value pr"), user));
+    assertTrue(PojoFilterEvaluator.evaluate(
+        Filter.fromString("schemas eq \"" + ENTERPRISE + "\""), user));
+    assertTrue(PojoFilterEvaluator.evaluate(
+        Filter.fromString("title eq null"), user));
+    assertFalse(PojoFilterEvaluator.evaluate(
+        Filter.fromString("emails[type eq \"home\"]"), user));
+    assertFalse(PojoFilterEvaluator.evaluate(
+        Filter.fromString("name pr"), user));
+
+    final GenericScimResource generic = user.asGenericScimResource();
+    assertTrue(PojoFilterEvaluator.evaluate(
+        Filter.fromString("emails.value co \"jensen\""), generic));
+    assertTrue(PojoFilterEvaluator.evaluate(
+        Filter.fromString("emails.value co \"jensen\""),
+        generic.getObjectNode()));
+  }
+
+  /**
+   * Tests that random filters evaluate the same on typed resources as on
+   * their JSON representation, with and without attribute definitions.
+   *
+   * @throws Exception if an error occurs.
+   */
+  @Test
+  public void testEvaluatesLikeJson() throws Exception
+  {
+    final FilterParity parity = new FilterParity(new Random(42))
+        .setAttributes("userName", "title", "NickName", "active", "name",
+            "name.givenName", "emails", "emails.value", "emails.Type",
+            "meta.created", "meta.location", "schemas",
+            "x509Certificates.value", ENTERPRISE + ":employeeNumber",
+            ENTERPRISE + ":manager.value", ENTERPRISE + ":manager")
+        .setComplexAttributes(new String[] { "emails", "name" },
+            "type", "value", "primary", "givenName")
+        .setResourceAttributes(new String[] { "userName", "title", "nickName",
+            "active", "name.givenName", "meta.created", "meta.location",
+            ENTERPRISE + ":employeeNumber", ENTERPRISE + ":manager.value" },
+            "emails", "x509Certificates")
+        .setTexts(VALUES)
+        .setAttributeResolver(new FilterParity.AttributeResolver()
+        {
+          public AttributeDefinition getAttributeDefinition(final Path path)
+          {
+            // The generated resources also need the types of the meta
+            // sub-attributes.
+            final AttributeDefinition definition =
+                findAttributeDefinition(path, userSchema, enterpriseSchema);
+            return definition != null ? definition : findAttributeDefinition(
+                path, SchemaUtils.COMMON_ATTRIBUTE_DEFINITIONS);
+          }
+        });
+    final List<UserResource> resources = new ArrayList<UserResource>();
+    for (int i = 0; i < 50; i++)
+    {
+      resources.add(JsonUtils.nodeToValue(parity.resource(),
+          UserResource.class));
+    }
+
+    for (int i = 0; i < 2000; i++)
+    {
+      final Filter filter = parity.filter(3);
+      FilterParity.assertSameMatches(filter, resources,
+          jsonMatcher(new FilterEvaluator()),
+          pojoMatcher(new PojoFilterEvaluator()));
+      FilterParity.assertSameMatches(filter, resources,
+          jsonMatcher(jsonEvaluator), pojoMatcher(pojoEvaluator));
+    }
+  }
+
+  private static FilterParity.Matcher<UserResource> jsonMatcher(
+      final FilterEvaluator evaluator)
+  {
+    return new FilterParity.Matcher<UserResource>()
+    {
+      public boolean matches(final Filter filter, final UserResource resource)
+          throws ScimException
+      {
+        return filter.visit(evaluator,
+            resource.asGenericScimResource().getObjectNode());
+      }
+    };
+  }
+
+  private static FilterParity.Matcher<UserResource> pojoMatcher(
+      final PojoFilterEvaluator evaluator)
+  {
+    return new FilterParity.Matcher<UserResource>()
+    {
+      public boolean matches(final Filter filter, final UserResource resource)
+          throws ScimException
+      {
+        return filter.visit(evaluator, resource);
+      }
+    };
+  }
+
+  private static AttributeDefinition findAttributeDefinition(
+      final Path path, final SchemaResource userSchema,
+      final SchemaResource enterpriseSchema)
+  {
+    return findAttributeDefinition(path,
+        ENTERPRISE.equalsIgnoreCase(path.getSchemaUrn()) ?
+            enterpriseSchema.getAttributes() : userSchema.getAttributes());
+  }
+
+  private static AttributeDefinition findAttributeDefinition(
+      final Path path, final Collection<AttributeDefinition> topAttributes)
+  {
+    Collection<AttributeDefinition> attributes = topAttributes;
+    AttributeDefinition attributeDefinition = null;
+    for (Path.Element element : path)
+    {
+      attributeDefinition = null;
+      for (AttributeDefinition attribute : attributes == null ?
+          Collections.<AttributeDefinition>emptyList() : attributes)
+      {
+        if (attribute.getName().equalsIgnoreCase(element.getAttribute()))
+        {
+          attributeDefinition = attribute;
+        }
+      }
+      if (attributeDefinition == null)
+      {
+        return null;
+      }
+      attributes = attributeDefinition.getSubAttributes();
+    }
+    return attributeDefinition;
+  }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2015-2019 Ping Identity Corporation
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License (GPLv2 only)
+ * or the terms of the GNU Lesser General Public License (LGPLv2.1 only)
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ */
+
+package com.bettercloud.scim2.common;
+
+import com.bettercloud.scim2.common.utils.StaticUtils;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import static com.bettercloud.scim2.common.utils.StaticUtils.toLowerCase;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Test for the case-insensitive string utilities of StaticUtils.
+ */
+public class StaticUtilsTestCase
+{
+  /**
+   * Pairs of strings to compare, including non-ASCII strings whose lowercase
+   * version has a different length.
+   *
+   * @return The pairs of strings to compare.
+   */
+  @DataProvider(name = "stringPairs")
+  public Object[][] getStringPairs()
+  {
+    return new Object[][]
+        {
+            new Object[] { "userName", "USERNAME" },
+            new Object[] { "userName", "userName" },
+            new Object[] { "userName", "userNames" },
+            new Object[] { "userName", "user" },
+            new Object[] { "", "" },
+            new Object[] { "", "a" },
+            new Object[] { "@[]{}", "@[]{}" },
+            new Object[] { "@", "`" },
+            new Object[] { "urn:x", "URN:" },
+            new Object[] { "Straße", "STRAßE" },
+            new Object[] { "École", "éCOLE" },
+            new Object[] { "École", "ecole" },
+            new Object[] { "İ", "i̇" },
+            new Object[] { "İx", "i" },
+            new Object[] { "K", "k" },
+            new Object[] { "abcÉ", "ABC" },
+        };
+  }
+
+  /**
+   * Test that the case-insensitive comparisons give the same results as
+   * comparing lowercase versions of the strings.
+   *
+   * @param s1 The first string.
+   * @param s2 The second string.
+   */
+  @Test(dataProvider = "stringPairs")
+  public void testIgnoreCase(final String s1, final String s2)
+  {
+    String l1 = toLowerCase(s1);
+    String l2 = toLowerCase(s2);
+
+    assertEquals(StaticUtils.equalsIgnoreCase(s1, s2), l1.equals(l2));
+    assertEquals(StaticUtils.equalsIgnoreCase(s2, s1), l1.equals(l2));
+    assertEquals(StaticUtils.hashCodeIgnoreCase(s1), l1.hashCode());
+    assertEquals(StaticUtils.hashCodeIgnoreCase(s2), l2.hashCode());
+    assertEquals(Integer.signum(StaticUtils.compareToIgnoreCase(s1, s2)),
+        Integer.signum(l1.compareTo(l2)));
+    assertEquals(Integer.signum(StaticUtils.compareToIgnoreCase(s2, s1)),
+        Integer.signum(l2.compareTo(l1)));
+    assertEquals(StaticUtils.startsWithIgnoreCase(s1, s2), l1.startsWith(l2));
+    assertEquals(StaticUtils.startsWithIgnoreCase(s2, s1), l2.startsWith(l1));
+    assertEquals(StaticUtils.endsWithIgnoreCase(s1, s2), l1.endsWith(l2));
+    assertEquals(StaticUtils.endsWithIgnoreCase(s2, s1), l2.endsWith(l1));
+    assertEquals(StaticUtils.containsIgnoreCase(s1, s2), l1.contains(l2));
+    assertEquals(StaticUtils.containsIgnoreCase(s2, s1), l2.contains(l1));
+  }
+
+  /**
+   * Test substring matching and null handling.
+   */
+  @Test
+  public void testSubstrings()
+  {
+    assertTrue(StaticUtils.containsIgnoreCase("bjensen@EXAMPLE.com", "example"));
+    assertTrue(StaticUtils.startsWithIgnoreCase("bjensen@EXAMPLE.com", "BJ"));
+    assertTrue(StaticUtils.endsWithIgnoreCase("bjensen@EXAMPLE.com", ".COM"));
+    assertFalse(StaticUtils.containsIgnoreCase("bjensen@EXAMPLE.com", "ex.com"));
+    assertFalse(StaticUtils.startsWithIgnoreCase("bjensen@EXAMPLE.com", "jensen"));
+    assertFalse(StaticUtils.endsWithIgnoreCase("bjensen@EXAMPLE.com", "example"));
+    assertTrue(StaticUtils.containsIgnoreCase("abc", ""));
+
+    assertTrue(StaticUtils.equalsIgnoreCase(null, null));
+    assertFalse(StaticUtils.equalsIgnoreCase("a", null));
+    assertFalse(StaticUtils.equalsIgnoreCase(null, "a"));
+    assertEquals(StaticUtils.hashCodeIgnoreCase(null), 0);
+  }
+
+  /**
+   * Test that lowercase strings are not copied.
+   */
+  @Test
+  public void testToLowerCase()
+  {
+    String lower = "urn:ietf:params:scim:schemas:core:2.0:user";
+    assertSame(toLowerCase(lower), lower);
+    assertEquals(toLowerCase("urn:ietf:params:scim:schemas:core:2.0:User"),
+        lower);
+    assertEquals(toLowerCase("ÉCOLE"), "école");
+    assertEquals(toLowerCase(null), null);
+  }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2015-2019 Ping Identity Corporation
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License (GPLv2 only)
+ * or the terms of the GNU Lesser General Public License (LGPLv2.1 only)
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ */
+
+package com.bettercloud.scim2.common.schema;
+
+import com.bettercloud.scim2.common.schema.testobjects.TestObject1;
+import com.bettercloud.scim2.common.types.AttributeDefinition;
+import com.bettercloud.scim2.common.types.SchemaResource;
+import com.bettercloud.scim2.common.types.UserResource;
+import com.bettercloud.scim2.common.utils.JsonUtils;
+import com.bettercloud.scim2.common.utils.SchemaRegistry;
+import com.bettercloud.scim2.common.utils.SchemaUtils;
+import org.testng.annotations.Test;
+
+import java.util.Collections;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+
+/**
+ * Test cases for the schema registry.
+ */
+public class SchemaRegistryTestCase
+{
+  /**
+   * Test that a class is introspected once and its schema shared.
+   *
+   * @throws Exception if an error occurs.
+   */
+  @Test
+  public void testSchemaIsCachedPerClass() throws Exception
+  {
+    SchemaRegistry registry = new SchemaRegistry();
+
+    SchemaResource schema = registry.getSchema(TestObject1.class);
+    assertEquals(schema.getId(), "urn:id:junit");
+    assertSame(registry.getSchema(TestObject1.class), schema);
+    assertEquals(SchemaUtils.getSchema(TestObject1.class), schema);
+  }
+
+  /**
+   * Test that SchemaUtils returns copies that may be modified without
+   * affecting the shared schema.
+   *
+   * @throws Exception if an error occurs.
+   */
+  @Test
+  public void testSchemaUtilsReturnsCopies() throws Exception
+  {
+    SchemaResource shared =
+        SchemaRegistry.getDefault().getSchema(TestObject1.class);
+    SchemaResource copy = SchemaUtils.getSchema(TestObject1.class);
+    assertNotSame(copy, shared);
+    assertEquals(copy, shared);
+
+    copy.setExternalId("modified");
+    assertNull(shared.getExternalId());
+    assertNull(SchemaUtils.getSchema(TestObject1.class).getExternalId());
+    assertSame(SchemaRegistry.getDefault().getSchema(TestObject1.class),
+        shared);
+    assertNull(SchemaUtils.getSchema(String.class));
+  }
+
+  /**
+   * Test looking up schemas by URN.
+   *
+   * @throws Exception if an error occurs.
+   */
+  @Test
+  public void testLookupByUrn() throws Exception
+  {
+    SchemaRegistry registry = new SchemaRegistry();
+    assertNull(registry.getSchema("urn:id:junit"));
+    assertNull(registry.getSchema((String) null));
+
+    SchemaResource schema = registry.getSchema(TestObject1.class);
+    assertSame(registry.getSchema("urn:id:junit"), schema);
+    assertSame(registry.getSchema("URN:ID:JUNIT"), schema);
+
+    SchemaResource other = new SchemaResource("urn:id:junit", "other", null,
+        Collections.<AttributeDefinition>emptyList());
+    assertSame(registry.register(other), schema);
+  }
+
+  /**
+   * Test that classes without a schema annotation are not registered.
+   *
+   * @throws Exception if an error occurs.
+   */
+  @Test
+  public void testUnannotatedClass() throws Exception
+  {
+    SchemaRegistry registry = new SchemaRegistry();
+    assertNull(registry.getSchema(String.class));
+  }
+
+  /**
+   * Test that extensions are accepted under the URN of a registered schema
+   * even if it does not begin with "{@code urn:}".
+   *
+   * @throws Exception if an error occurs.
+   */
+  @Test
+  public void testRegisteredExtension() throws Exception
+  {
+    SchemaRegistry.getDefault().register(new SchemaResource(
+        "example:registry:extension", "extension", null,
+        Collections.<AttributeDefinition>emptyList()));
+
+    UserResource user = JsonUtils.getObjectReader().forType(
+        UserResource.class).readValue(
+        "{\"schemas\":[\"urn:ietf:params:scim:schemas:core:2.0:User\"]," +
+        "\"userName\":\"bjensen\"," +
+        "\"example:registry:extension\":{\"level\":\"gold\"}}");
+
+    assertEquals(user.getExtensionObjectNode().path(
+        "example:registry:extension").path("level").textValue(), "gold");
+  }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2015-2019 Ping Identity Corporation
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License (GPLv2 only)
+ * or the terms of the GNU Lesser General Public License (LGPLv2.1 only)
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ */
+
+package com.bettercloud.scim2.common.utils;
+
+import com.bettercloud.scim2.common.exceptions.BadRequestException;
+import com.bettercloud.scim2.common.filters.Filter;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Tests {@link Parser} on a corpus of valid, invalid and randomly mutated
+ * filter and path strings.  The corpus holds the filter trees, paths and
+ * error messages produced by the Jackson based parser that {@link Parser}
+ * replaced, so the parse results and the error messages and positions are
+ * checked to be unchanged.
+ */
+public class ParserFuzzTestCase
+{
+  private static final String CORPUS = "parser-corpus.json";
+
+  /**
+   * Retrieves the filter strings of the corpus.
+   *
+   * @return The filter strings and their expected descriptions.
+   * @throws IOException if the corpus could not be read.
+   */
+  @DataProvider(name = "filters")
+  public Object[][] getFilters() throws IOException
+  {
+    return readCorpus("filters");
+  }
+
+  /**
+   * Retrieves the path strings of the corpus.
+   *
+   * @return The path strings and their expected descriptions.
+   * @throws IOException if the corpus could not be read.
+   */
+  @DataProvider(name = "paths")
+  public Object[][] getPaths() throws IOException
+  {
+    return readCorpus("paths");
+  }
+
+  /**
+   * Tests that a filter is parsed to the expected filter tree, with
+   * comparison values of the expected types, or fails with the expected
+   * message.
+   *
+   * @param filterString The filter string.
+   * @param expected     The expected description of the filter or error.
+   */
+  @Test(dataProvider = "filters")
+  public void testParseFilter(final String filterString, final String expected)
+  {
+    String actual;
+    try
+    {
+      actual = describe(Parser.parseFilter(filterString));
+    }
+    catch (Exception e)
+    {
+      actual = describe(e);
+    }
+    assertEquals(actual, expected, filterString);
+  }
+
+  /**
+   * Tests that a path is parsed to the expected path, or fails with the
+   * expected message.
+   *
+   * @param pathString The path string.
+   * @param expected   The expected description of the path or error.
+   */
+  @Test(dataProvider = "paths")
+  public void testParsePath(final String pathString, final String expected)
+  {
+    String actual;
+    try
+    {
+      actual = Parser.parsePath(pathString).toString();
+    }
+    catch (Exception e)
+    {
+      actual = describe(e);
+    }
+    assertEquals(actual, expected, pathString);
+  }
+
+  /**
+   * Describe a filter tree like its string representation, with the type of
+   * each comparison value.
+   *
+   * @param filter The filter.
+   * @return The description.
+   */
+  static String describe(final Filter filter)
+  {
+    if (filter.isCombiningFilter())
+    {
+      final StringBuilder builder = new StringBuilder("(");
+      for (Filter combinedFilter : filter.getCombinedFilters())
+      {
+        if (builder.length() > 1)
+        {
+          builder.append(' ').append(filter.getFilterType()).append(' ');
+        }
+        builder.append(describe(combinedFilter));
+      }
+      return builder.append(')').toString();
+    }
+    if (filter.isNotFilter())
+    {
+      return "not(" + describe(filter.getInvertedFilter()) + ")";
+    }
+    if (filter.isComplexValueFilter())
+    {
+      return filter.getAttributePath() + "[" +
+          describe(filter.getValueFilter()) + "]";
+    }
+    final JsonNode value = filter.getComparisonValue();
+    return value == null ? filter.toString() : filter + " (" +
+        value.getClass().getSimpleName() + ")";
+  }
+
+  /**
+   * Describe a parse error by its SCIM type and message.
+   *
+   * @param e The exception.
+   * @return The description.
+   */
+  static String describe(final Exception e)
+  {
+    if (e instanceof BadRequestException)
+    {
+      return ((BadRequestException) e).getScimError().getScimType() + ": " +
+          e.getMessage();
+    }
+    return e.getClass().getName();
+  }
+
+  private Object[][] readCorpus(final String field) throws IOException
+  {
+    final InputStream inputStream = getClass().getResourceAsStream(CORPUS);
+    try
+    {
+      final JsonNode entries =
+          JsonUtils.getObjectReader().readTree(inputStream).path(field);
+      final Object[][] data = new Object[entries.size()][];
+      for (int i = 0; i < entries.size(); i++)
+      {
+        data[i] = new Object[] { entries.get(i).get(0).textValue(),
+            entries.get(i).get(1).textValue() };
+      }
+      return data;
+    }
+    finally
+    {
+      inputStream.close();
+    }
+  }
+}
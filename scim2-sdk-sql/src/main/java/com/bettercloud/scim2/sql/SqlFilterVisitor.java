@@ -0,0 +1,462 @@
+package com.bettercloud.scim2.sql;
+
+import com.bettercloud.scim2.common.Path;
+import com.bettercloud.scim2.common.exceptions.BadRequestException;
+import com.bettercloud.scim2.common.exceptions.ScimException;
+import com.bettercloud.scim2.common.filters.AndFilter;
+import com.bettercloud.scim2.common.filters.ComplexValueFilter;
+import com.bettercloud.scim2.common.filters.ContainsFilter;
+import com.bettercloud.scim2.common.filters.EndsWithFilter;
+import com.bettercloud.scim2.common.filters.EqualFilter;
+import com.bettercloud.scim2.common.filters.Filter;
+import com.bettercloud.scim2.common.filters.FilterVisitor;
+import com.bettercloud.scim2.common.filters.GreaterThanFilter;
+import com.bettercloud.scim2.common.filters.GreaterThanOrEqualFilter;
+import com.bettercloud.scim2.common.filters.LessThanFilter;
+import com.bettercloud.scim2.common.filters.LessThanOrEqualFilter;
+import com.bettercloud.scim2.common.filters.NotEqualFilter;
+import com.bettercloud.scim2.common.filters.NotFilter;
+import com.bettercloud.scim2.common.filters.OrFilter;
+import com.bettercloud.scim2.common.filters.PresentFilter;
+import com.bettercloud.scim2.common.filters.StartsWithFilter;
+import com.bettercloud.scim2.common.types.AttributeDefinition;
+import com.bettercloud.scim2.common.utils.FilterEvaluator;
+import com.bettercloud.scim2.common.utils.JsonUtils;
+import com.bettercloud.scim2.common.utils.StaticUtils;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Translates SCIM filters to parameterized SQL conditions, so that backends can select the matching resources in the database
+ * instead of loading every resource and evaluating the filter with {@link FilterEvaluator}:
+ * <pre>
+ * SqlFragment where = new SqlFilterVisitor(mapping).translate(Filter.fromString(filter), "u");
+ * PreparedStatement statement = connection.prepareStatement("SELECT u.* FROM users u WHERE " + where.getSql());
+ * </pre>
+ * The conditions select the same resources as {@link FilterEvaluator}:
+ * <ul>
+ * <li>Unassigned attributes, the null value and empty multi-valued attributes are equivalent, so both {@code attr eq null} and
+ * {@code attr ne "value"} match resources without a value.</li>
+ * <li>Multi-valued attributes are matched with {@code EXISTS} subqueries on the table of their values, so a resource is selected
+ * once no matter how many of its values match, and the value filter of {@code emails[type eq "work" and value co "example"]}
+ * applies to each value individually.</li>
+ * <li>Strings are compared ignoring case with {@code LOWER} unless the attribute is {@code caseExact}, so an index on
+ * {@code LOWER(column)} is needed to use an index for those attributes.</li>
+ * <li>Text values of dateTime attributes are compared as timestamps.</li>
+ * <li>A single-valued complex attribute is unassigned when all of its mapped sub-attributes are null, so value filters like
+ * {@code name[givenName eq null]} only match resources with another sub-attribute of {@code name}.  The value filters of
+ * single-valued attributes in attribute paths are ignored, so {@code name[givenName eq "Barbara"].familyName pr} is
+ * {@code name.familyName pr}.</li>
+ * </ul>
+ * Every condition evaluates to true or false and never to SQL's unknown, so negated filters select exactly the resources that the
+ * filter does not select.
+ * <p>
+ * Override {@link #getAttributeDefinition(Path)} to honor the schema of the resource type.
+ */
+public class SqlFilterVisitor implements FilterVisitor<SqlFragment, SqlFilterVisitor.Scope> {
+
+    private static final SqlFragment TRUE = new SqlFragment("1 = 1");
+
+    private static final SqlFragment FALSE = new SqlFragment("1 = 0");
+
+    private static final Path VALUE_PATH = Path.root().attribute("value");
+
+    private static final ColumnCondition PRESENT = (column, path) -> new SqlFragment(column + " IS NOT NULL");
+
+    private final SqlMapping mapping;
+
+    /**
+     * Create a new SQL filter visitor.
+     *
+     * @param mapping The mapping of the resource table.
+     */
+    public SqlFilterVisitor(final SqlMapping mapping) {
+        this.mapping = mapping;
+    }
+
+    /**
+     * Translate a filter to an SQL condition.
+     *
+     * @param filter The filter.
+     * @param alias  The alias of the resource table in the query.
+     *
+     * @return The condition that selects the resources matching the filter.
+     *
+     * @throws ScimException If an attribute of the filter is not mapped or the filter is not valid for an attribute.
+     */
+    public SqlFragment translate(final Filter filter, final String alias) throws ScimException {
+        return filter.visit(this, new Scope(mapping, alias, Path.root(), Path.root(), null));
+    }
+
+    @Override
+    public SqlFragment visit(final EqualFilter filter, final Scope scope) throws ScimException {
+        if (filter.getComparisonValue().isNull()) {
+            return not(match(filter.getAttributePath(), scope, PRESENT));
+        }
+        return compare(filter, "=", null, scope);
+    }
+
+    @Override
+    public SqlFragment visit(final NotEqualFilter filter, final Scope scope) throws ScimException {
+        if (filter.getComparisonValue().isNull()) {
+            return match(filter.getAttributePath(), scope, PRESENT);
+        }
+        return not(compare(filter, "=", null, scope));
+    }
+
+    @Override
+    public SqlFragment visit(final ContainsFilter filter, final Scope scope) throws ScimException {
+        return substring(filter, "%", "%", scope);
+    }
+
+    @Override
+    public SqlFragment visit(final StartsWithFilter filter, final Scope scope) throws ScimException {
+        return substring(filter, "", "%", scope);
+    }
+
+    @Override
+    public SqlFragment visit(final EndsWithFilter filter, final Scope scope) throws ScimException {
+        return substring(filter, "%", "", scope);
+    }
+
+    @Override
+    public SqlFragment visit(final PresentFilter filter, final Scope scope) throws ScimException {
+        return match(filter.getAttributePath(), scope, PRESENT);
+    }
+
+    @Override
+    public SqlFragment visit(final GreaterThanFilter filter, final Scope scope) throws ScimException {
+        return compare(filter, ">", "Greater than", scope);
+    }
+
+    @Override
+    public SqlFragment visit(final GreaterThanOrEqualFilter filter, final Scope scope) throws ScimException {
+        return compare(filter, ">=", "Greater than or equal", scope);
+    }
+
+    @Override
+    public SqlFragment visit(final LessThanFilter filter, final Scope scope) throws ScimException {
+        return compare(filter, "<", "Less than", scope);
+    }
+
+    @Override
+    public SqlFragment visit(final LessThanOrEqualFilter filter, final Scope scope) throws ScimException {
+        return compare(filter, "<=", "Less than or equal", scope);
+    }
+
+    @Override
+    public SqlFragment visit(final AndFilter filter, final Scope scope) throws ScimException {
+        return combine(filter.getCombinedFilters(), " AND ", scope);
+    }
+
+    @Override
+    public SqlFragment visit(final OrFilter filter, final Scope scope) throws ScimException {
+        return combine(filter.getCombinedFilters(), " OR ", scope);
+    }
+
+    @Override
+    public SqlFragment visit(final NotFilter filter, final Scope scope) throws ScimException {
+        return not(filter.getInvertedFilter().visit(this, scope));
+    }
+
+    @Override
+    public SqlFragment visit(final ComplexValueFilter filter, final Scope scope) throws ScimException {
+        final Path path = scope.resolve(filter.getAttributePath());
+        return match(path.replace(path.size() - 1, filter.getValueFilter()), scope.prefix.size(), scope, null);
+    }
+
+    /**
+     * Retrieve the attribute definition for a specified path.
+     *
+     * @param path The path of the attribute from the resource, without value filters.
+     *
+     * @return The attribute definition or {@code null} if not available, in which case strings are compared ignoring case.
+     */
+    protected AttributeDefinition getAttributeDefinition(final Path path) {
+        return null;
+    }
+
+    /**
+     * Compare the values of an attribute.
+     *
+     * @param filter   The comparison filter.
+     * @param operator The SQL comparison operator.
+     * @param ordering The name of the filter if it orders values, which is not valid for boolean and binary attributes.
+     * @param scope    The scope.
+     *
+     * @return The SQL condition.
+     *
+     * @throws ScimException If the attribute is not mapped or the filter is not valid for the attribute.
+     */
+    private SqlFragment compare(final Filter filter, final String operator, final String ordering, final Scope scope)
+            throws ScimException {
+        final JsonNode value = filter.getComparisonValue();
+        return match(filter.getAttributePath(), scope, (column, path) -> {
+            final AttributeDefinition attributeDefinition = getAttributeDefinition(path);
+            if (ordering != null && attributeDefinition != null
+                && (attributeDefinition.getType() == AttributeDefinition.Type.BOOLEAN
+                    || attributeDefinition.getType() == AttributeDefinition.Type.BINARY)) {
+                throw BadRequestException.invalidFilter(ordering + " filter may not compare boolean or binary attribute values");
+            }
+            if (!value.isTextual()) {
+                return condition(column, column + " " + operator + " ?", toParameter(value));
+            }
+
+            final Date date = toDate(value, attributeDefinition, path);
+            if (date != null) {
+                return condition(column, column + " " + operator + " ?", new Timestamp(date.getTime()));
+            }
+            if (attributeDefinition != null && attributeDefinition.getType() == AttributeDefinition.Type.STRING
+                && attributeDefinition.isCaseExact()) {
+                return condition(column, column + " " + operator + " ?", value.textValue());
+            }
+            return condition(column, "LOWER(" + column + ") " + operator + " ?", StaticUtils.toLowerCase(value.textValue()));
+        });
+    }
+
+    private SqlFragment substring(final Filter filter, final String prefix, final String suffix, final Scope scope)
+            throws ScimException {
+        final JsonNode value = filter.getComparisonValue();
+        return match(filter.getAttributePath(), scope, (column, path) -> {
+            if (!value.isTextual()) {
+                return condition(column, column + " = ?", toParameter(value));
+            }
+
+            final AttributeDefinition attributeDefinition = getAttributeDefinition(path);
+            if (attributeDefinition != null) {
+                switch (attributeDefinition.getType()) {
+                    case BOOLEAN:
+                    case INTEGER:
+                    case DECIMAL:
+                        // Only text values contain text
+                        return FALSE;
+                    case DATETIME:
+                        throw BadRequestException.invalidFilter("Substring filters are not supported for dateTime attribute '" + path
+                                                                + "'");
+                    default:
+                        break;
+                }
+            }
+
+            final String pattern = prefix + escapeLike(value.textValue()) + suffix;
+            if (attributeDefinition != null && attributeDefinition.isCaseExact()) {
+                return condition(column, column + " LIKE ? ESCAPE '\\'", pattern);
+            }
+            return condition(column, "LOWER(" + column + ") LIKE ? ESCAPE '\\'", StaticUtils.toLowerCase(pattern));
+        });
+    }
+
+    private SqlFragment combine(final List<Filter> filters, final String operator, final Scope scope) throws ScimException {
+        final List<SqlFragment> fragments = new ArrayList<>(filters.size());
+        for (Filter filter : filters) {
+            fragments.add(filter.visit(this, scope));
+        }
+        return join(fragments, operator);
+    }
+
+    /**
+     * Match the values of an attribute path with a condition.  The value filters of the path are applied to the values of the
+     * attributes they follow, and multi-valued attributes stored in their own table are matched with {@code EXISTS} subqueries.
+     *
+     * @param path      The attribute path relative to the scope.
+     * @param scope     The scope.
+     * @param condition The condition for the column of the attribute.
+     *
+     * @return The SQL condition.
+     *
+     * @throws ScimException If the attribute is not mapped.
+     */
+    private SqlFragment match(final Path path, final Scope scope, final ColumnCondition condition) throws ScimException {
+        return match(scope.resolve(path), scope.prefix.size(), scope, condition);
+    }
+
+    private SqlFragment match(final Path path, final int start, final Scope scope, final ColumnCondition condition)
+            throws ScimException {
+        final List<SqlFragment> conditions = new ArrayList<>();
+        for (int i = start; i < path.size(); i++) {
+            final Path attributePath = path.subPath(i + 1).withoutFilters();
+            final Filter valueFilter = path.getElement(i).getValueFilter();
+            final SqlMapping values = scope.mapping.getMultiValuedAttribute(scope.relativize(attributePath));
+            if (values != null) {
+                final Scope valueScope = scope.values(values, attributePath);
+                final List<SqlFragment> valueConditions = new ArrayList<>();
+                valueConditions.add(new SqlFragment(valueScope.alias + "." + values.getKeyColumn() + " = " + scope.alias + "."
+                                                    + scope.mapping.getKeyColumn()));
+                if (valueFilter != null) {
+                    valueConditions.add(valueFilter.visit(this, valueScope));
+                }
+                if (i + 1 < path.size()) {
+                    valueConditions.add(match(path, i + 1, valueScope, condition));
+                } else if (condition != null && condition != PRESENT) {
+                    // The values of a multi-valued simple attribute
+                    valueConditions.add(condition.apply(valueScope.column(attributePath.attribute(VALUE_PATH)), attributePath));
+                }
+
+                final SqlFragment where = join(valueConditions, " AND ");
+                conditions.add(new SqlFragment("EXISTS (SELECT 1 FROM " + values.getTable() + " " + valueScope.alias + " WHERE "
+                                               + where.getSql() + ")", where.getParameters()));
+                return join(conditions, " AND ");
+            }
+            if (valueFilter != null && condition == null && i == path.size() - 1) {
+                // Like FilterEvaluator, the value filter of a single-valued attribute only applies in a complex value filter and
+                // not in attribute paths.  A complex value without any sub-attribute is unassigned and matches no value filter.
+                conditions.add(scope.present(attributePath));
+                conditions.add(valueFilter.visit(this, scope.withPrefix(attributePath)));
+            }
+        }
+
+        if (condition != null) {
+            final Path attributePath = path.withoutFilters();
+            conditions.add(condition.apply(scope.column(attributePath), attributePath));
+        }
+        return conditions.isEmpty() ? TRUE : join(conditions, " AND ");
+    }
+
+    private static SqlFragment condition(final String column, final String sql, final Object parameter) {
+        // A comparison with a null column is unknown instead of false, which would not be true when negated either
+        return new SqlFragment("(" + column + " IS NOT NULL AND " + sql + ")", parameter);
+    }
+
+    private static SqlFragment not(final SqlFragment fragment) {
+        return new SqlFragment("NOT (" + fragment.getSql() + ")", fragment.getParameters());
+    }
+
+    private static SqlFragment join(final List<SqlFragment> fragments, final String operator) {
+        if (fragments.size() == 1) {
+            return fragments.get(0);
+        }
+
+        final StringBuilder sql = new StringBuilder("(");
+        final List<Object> parameters = new ArrayList<>();
+        for (SqlFragment fragment : fragments) {
+            if (sql.length() > 1) {
+                sql.append(operator);
+            }
+            sql.append(fragment.getSql());
+            parameters.addAll(fragment.getParameters());
+        }
+        return new SqlFragment(sql.append(')').toString(), parameters);
+    }
+
+    private static String escapeLike(final String value) {
+        final StringBuilder builder = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c == '%' || c == '_' || c == '\\') {
+                builder.append('\\');
+            }
+            builder.append(c);
+        }
+        return builder.toString();
+    }
+
+    private static Object toParameter(final JsonNode value) {
+        if (value.isBoolean()) {
+            return value.booleanValue();
+        }
+        if (value.isBigInteger() || value.isBigDecimal()) {
+            return value.decimalValue();
+        }
+        if (value.isIntegralNumber()) {
+            return value.longValue();
+        }
+        if (value.isNumber()) {
+            return value.doubleValue();
+        }
+        return value.asText();
+    }
+
+    private static Date toDate(final JsonNode value, final AttributeDefinition attributeDefinition, final Path path)
+            throws BadRequestException {
+        final boolean dateTime = attributeDefinition != null && attributeDefinition.getType() == AttributeDefinition.Type.DATETIME;
+        if (attributeDefinition != null && !dateTime) {
+            return null;
+        }
+
+        // Like FilterEvaluator, text that looks like a date is compared as a date
+        final String text = value.textValue().trim();
+        final Date date = JsonUtils.parseDateTime(text);
+        if (date == null && dateTime) {
+            throw BadRequestException.invalidFilter("Invalid dateTime value '" + text + "' for attribute '" + path + "'");
+        }
+        return date;
+    }
+
+    /**
+     * A condition for the column of an attribute.
+     */
+    @FunctionalInterface
+    private interface ColumnCondition {
+
+        SqlFragment apply(String column, Path path) throws ScimException;
+    }
+
+    /**
+     * The table and the complex attribute that the attribute paths of a filter are relative to.
+     */
+    public static final class Scope {
+
+        private final SqlMapping mapping;
+
+        private final String alias;
+
+        private final Path table;
+
+        private final Path prefix;
+
+        private final Scope resource;
+
+        private int aliases;
+
+        private Scope(final SqlMapping mapping, final String alias, final Path table, final Path prefix, final Scope resource) {
+            this.mapping = mapping;
+            this.alias = alias;
+            this.table = table;
+            this.prefix = prefix;
+            this.resource = resource == null ? this : resource;
+        }
+
+        private Scope withPrefix(final Path path) {
+            return new Scope(mapping, alias, table, path, resource);
+        }
+
+        private Scope values(final SqlMapping values, final Path path) {
+            return new Scope(values, resource.alias + "_" + ++resource.aliases, path, path, resource);
+        }
+
+        private Path resolve(final Path path) {
+            return prefix.isRoot() && prefix.getSchemaUrn() == null ? path : prefix.attribute(path);
+        }
+
+        private Path relativize(final Path path) {
+            if (table.isRoot()) {
+                return path;
+            }
+            Path relative = Path.root();
+            for (int i = table.size(); i < path.size(); i++) {
+                relative = relative.attribute(path.getElement(i).getAttribute());
+            }
+            return relative;
+        }
+
+        private SqlFragment present(final Path path) {
+            final List<SqlFragment> present = new ArrayList<>();
+            for (String column : mapping.getSubAttributeColumns(relativize(path))) {
+                present.add(new SqlFragment(alias + "." + column + " IS NOT NULL"));
+            }
+            return present.isEmpty() ? FALSE : join(present, " OR ");
+        }
+
+        private String column(final Path path) throws BadRequestException {
+            final String column = mapping.getColumn(relativize(path));
+            if (column == null) {
+                throw BadRequestException.invalidFilter("Attribute '" + path + "' is not mapped to a column");
+            }
+            return alias + "." + column;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.bettercloud.scim2.sql;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A parameterized SQL condition.  The values of the filter are never written into the SQL, they are bound in order to the
+ * {@code ?} placeholders, for example with {@link java.sql.PreparedStatement#setObject(int, Object)}.
+ */
+@Getter
+@EqualsAndHashCode
+public final class SqlFragment {
+
+    private final String sql;
+
+    private final List<Object> parameters;
+
+    /**
+     * Create a new SQL fragment.
+     *
+     * @param sql        The SQL condition.
+     * @param parameters The values of the placeholders of the condition.
+     */
+    public SqlFragment(final String sql, final Object... parameters) {
+        this(sql, Arrays.asList(parameters));
+    }
+
+    /**
+     * Create a new SQL fragment.
+     *
+     * @param sql        The SQL condition.
+     * @param parameters The values of the placeholders of the condition.
+     */
+    public SqlFragment(final String sql, final List<?> parameters) {
+        this.sql = sql;
+        this.parameters = Collections.unmodifiableList(new ArrayList<>(parameters));
+    }
+
+    @Override
+    public String toString() {
+        return parameters.isEmpty() ? sql : sql + " " + parameters;
+    }
+}
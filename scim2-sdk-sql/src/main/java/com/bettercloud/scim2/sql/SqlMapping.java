@@ -0,0 +1,133 @@
+package com.bettercloud.scim2.sql;
+
+import com.bettercloud.scim2.common.Path;
+import com.bettercloud.scim2.common.exceptions.BadRequestException;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The mapping of the attributes of a resource type to the tables and columns that store them.
+ * <p>
+ * Single-valued attributes, including the sub-attributes of single-valued complex attributes like {@code name.givenName}, are
+ * columns of the resource table.  Multi-valued attributes are stored in their own table with one row per value, that references
+ * the resource with a foreign key.  The sub-attributes of a multi-valued complex attribute are columns of that table, and the
+ * values of a multi-valued simple attribute are its {@code value} column:
+ * <pre>
+ * SqlMapping mapping = new SqlMapping("users", "id")
+ *         .column("id", "id")
+ *         .column("userName", "user_name")
+ *         .column("name.givenName", "given_name")
+ *         .column("meta.created", "created")
+ *         .multiValued("emails", new SqlMapping("user_emails", "user_id")
+ *                 .column("value", "value")
+ *                 .column("type", "type")
+ *                 .column("primary", "is_primary"));
+ * </pre>
+ * Table and column names are written into the SQL as they are, they must never come from a client.
+ */
+public class SqlMapping {
+
+    @Getter
+    private final String table;
+
+    @Getter
+    private final String keyColumn;
+
+    private final Map<Path, String> columns = new LinkedHashMap<>();
+
+    private final Map<Path, SqlMapping> multiValuedAttributes = new HashMap<>();
+
+    /**
+     * Create a new mapping.
+     *
+     * @param table     The name of the table.
+     * @param keyColumn The primary key of the resource table, or the column that references it for the table of a multi-valued
+     *                  attribute.
+     */
+    public SqlMapping(final String table, final String keyColumn) {
+        this.table = table;
+        this.keyColumn = keyColumn;
+    }
+
+    /**
+     * Map an attribute to a column of this table.
+     *
+     * @param attribute The path of the attribute, relative to the multi-valued attribute for the table of a multi-valued attribute.
+     * @param column    The name of the column.
+     *
+     * @return This mapping.
+     */
+    public SqlMapping column(final String attribute, final String column) {
+        columns.put(toPath(attribute), column);
+        return this;
+    }
+
+    /**
+     * Map a multi-valued attribute to a table.
+     *
+     * @param attribute The path of the attribute.
+     * @param values    The mapping of the table that stores the values, with the column that references this table as its key.
+     *
+     * @return This mapping.
+     */
+    public SqlMapping multiValued(final String attribute, final SqlMapping values) {
+        if (!values.multiValuedAttributes.isEmpty()) {
+            throw new IllegalArgumentException("The values of multi-valued attribute '" + attribute + "' may not have multi-valued "
+                                               + "attributes");
+        }
+        multiValuedAttributes.put(toPath(attribute), values);
+        return this;
+    }
+
+    /**
+     * Get the column of an attribute.
+     *
+     * @param path The path of the attribute without value filters.
+     *
+     * @return The name of the column, or {@code null} if the attribute is not mapped to a column of this table.
+     */
+    public String getColumn(final Path path) {
+        return columns.get(path);
+    }
+
+    /**
+     * Get the mapping of a multi-valued attribute.
+     *
+     * @param path The path of the attribute without value filters.
+     *
+     * @return The mapping of the table that stores the values, or {@code null} if the attribute is not mapped to a table.
+     */
+    public SqlMapping getMultiValuedAttribute(final Path path) {
+        return multiValuedAttributes.get(path);
+    }
+
+    /**
+     * Get the columns of the sub-attributes of a single-valued complex attribute.
+     *
+     * @param path The path of the complex attribute without value filters.
+     *
+     * @return The names of the columns of the sub-attributes.
+     */
+    List<String> getSubAttributeColumns(final Path path) {
+        final List<String> subAttributeColumns = new ArrayList<>();
+        for (Map.Entry<Path, String> entry : columns.entrySet()) {
+            if (entry.getKey().size() > path.size() && entry.getKey().subPath(path.size()).equals(path)) {
+                subAttributeColumns.add(entry.getValue());
+            }
+        }
+        return subAttributeColumns;
+    }
+
+    private static Path toPath(final String attribute) {
+        try {
+            return Path.fromString(attribute).withoutFilters();
+        } catch (BadRequestException e) {
+            throw new IllegalArgumentException("Invalid attribute path '" + attribute + "'", e);
+        }
+    }
+}
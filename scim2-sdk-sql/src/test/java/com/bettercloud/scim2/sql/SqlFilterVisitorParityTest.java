@@ -0,0 +1,271 @@
+package com.bettercloud.scim2.sql;
+
+import com.bettercloud.scim2.common.FilterParity;
+import com.bettercloud.scim2.common.Path;
+import com.bettercloud.scim2.common.exceptions.ScimException;
+import com.bettercloud.scim2.common.filters.Filter;
+import com.bettercloud.scim2.common.types.AttributeDefinition;
+import com.bettercloud.scim2.common.utils.FilterEvaluator;
+import com.bettercloud.scim2.common.utils.JsonUtils;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Checks that the translated filters select the same resources from an embedded database as {@link FilterEvaluator} selects from the
+ * same resources in memory.
+ */
+@RunWith(Parameterized.class)
+public class SqlFilterVisitorParityTest {
+
+    private static final String[] FILTERS = {
+            "userName eq \"bjensen\"",
+            "userName eq \"BJENSEN\"",
+            "userName ne \"bjensen\"",
+            "userName eq null",
+            "userName ne null",
+            "userName pr",
+            "not(userName pr)",
+            "userName co \"_\"",
+            "userName co \"%\"",
+            "userName sw \"j_\"",
+            "userName ew \"SEN\"",
+            "userName gt \"j\"",
+            "userName le \"jsmith\"",
+            "id eq \"a1\"",
+            "id eq \"A1\"",
+            "id sw \"A\"",
+            "id ge \"a\"",
+            "name.givenName eq \"Barbara\"",
+            "name.familyName co \"ENS\" or name.givenName sw \"b\"",
+            "name[givenName eq \"barbara\" and familyName pr]",
+            "name[givenName eq null]",
+            "title pr and not(title eq \"Tour Guide\")",
+            "active eq true",
+            "active eq false",
+            "active ne true",
+            "loginCount gt 5",
+            "loginCount le 5 or loginCount eq null",
+            "loginCount eq 7",
+            "meta.created gt \"2019-06-01T00:00:00Z\"",
+            "meta.created le \"2019-06-15T12:00:00Z\"",
+            "meta.created eq null",
+            "emails pr",
+            "not(emails pr)",
+            "emails eq null",
+            "emails.value co \"example\"",
+            "emails.value ew \"@EXAMPLE.COM\"",
+            "emails.value ne \"bjensen@example.com\"",
+            "emails.type eq null",
+            "emails.type ne null",
+            "emails.primary eq true",
+            "emails[type eq \"work\"]",
+            "emails[type eq \"work\" and value co \"example.org\"]",
+            "emails[type eq \"work\" or primary eq true]",
+            "emails[not(type eq \"work\")]",
+            "emails[type eq \"work\" and value sw \"b\"]",
+            "emails[primary eq true and value pr]",
+            "not(emails[type eq \"home\"])",
+            "emails[type eq \"work\"] and emails[type eq \"home\"]",
+            "tags eq \"Red\"",
+            "tags co \"e\"",
+            "tags ne \"red\"",
+            "tags pr",
+            "tags eq null",
+            "tags[value sw \"b\"]",
+            "not(tags[value sw \"b\"] or userName sw \"b\") and (title pr or emails[type eq \"home\"])",
+    };
+
+    private static final String[] TEXT = {"bjensen", "BJensen", "jsmith", "j_smith", "100%", "Barbara", "barbara", "Jensen", "red",
+                                          "Red", "blue", "Tour Guide", "bjensen@example.com", "BJensen@Example.COM",
+                                          "jsmith@example.org", "work", "home"};
+
+    private static final AttributeDefinition LOGIN_COUNT = new AttributeDefinition.Builder().setName("loginCount")
+                                                                                            .setType(AttributeDefinition.Type.INTEGER)
+                                                                                            .build();
+
+    private static final AttributeDefinition TAGS = new AttributeDefinition.Builder().setName("tags")
+                                                                                     .setType(AttributeDefinition.Type.STRING)
+                                                                                     .setMultiValued(true)
+                                                                                     .build();
+
+    private static final AttributeDefinition TAG = new AttributeDefinition.Builder().setName("value")
+                                                                                    .setType(AttributeDefinition.Type.STRING)
+                                                                                    .build();
+
+    private final String url;
+
+    private Connection connection;
+
+    private List<ObjectNode> users;
+
+    public SqlFilterVisitorParityTest(final String name, final String url) {
+        this.url = url;
+    }
+
+    @Parameterized.Parameters(name = "{0}")
+    public static Collection<Object[]> databases() {
+        return Arrays.asList(new Object[]{"H2", "jdbc:h2:mem:scim"},
+                             new Object[]{"HSQLDB", "jdbc:hsqldb:mem:scim"});
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        connection = DriverManager.getConnection(url, "sa", "");
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE users (id VARCHAR(64) PRIMARY KEY, user_name VARCHAR(255), given_name VARCHAR(255), "
+                              + "family_name VARCHAR(255), title VARCHAR(255), active BOOLEAN, login_count INTEGER, created TIMESTAMP)");
+            statement.execute("CREATE TABLE user_emails (user_id VARCHAR(64), address VARCHAR(255), kind VARCHAR(255), "
+                              + "is_primary BOOLEAN)");
+            statement.execute("CREATE TABLE user_tags (user_id VARCHAR(64), tag VARCHAR(255))");
+        }
+
+        final FilterParity parity = newParity(new Random(42));
+        users = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            final ObjectNode user = parity.resource();
+            user.put("id", new String[]{"a", "A", "b"}[i % 3] + i);
+            users.add(user);
+            insert(user);
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE user_tags");
+            statement.execute("DROP TABLE user_emails");
+            statement.execute("DROP TABLE users");
+        }
+        connection.close();
+    }
+
+    @Test
+    public void filtersSelectTheSameResources() throws Exception {
+        for (String filter : FILTERS) {
+            assertParity(Filter.fromString(filter));
+        }
+    }
+
+    @Test
+    public void randomFiltersSelectTheSameResources() throws Exception {
+        final FilterParity parity = newParity(new Random(7));
+        for (int i = 0; i < 500; i++) {
+            assertParity(parity.filter(3));
+        }
+    }
+
+    private void assertParity(final Filter filter) {
+        final FilterEvaluator evaluator = new FilterEvaluator() {
+            @Override
+            protected AttributeDefinition getAttributeDefinition(final Path path) {
+                return SqlFilterVisitorTest.getUserAttributeDefinition(path);
+            }
+        };
+        FilterParity.assertSameSelection(filter, users, (f, user) -> f.visit(evaluator, user), this::select);
+    }
+
+    private BitSet select(final Filter filter) throws ScimException {
+        final SqlFragment where = SqlFilterVisitorTest.newUserVisitor().translate(filter, "u");
+        final Map<String, Integer> positions = new HashMap<>();
+        for (int i = 0; i < users.size(); i++) {
+            positions.put(users.get(i).get("id").textValue(), i);
+        }
+
+        final BitSet selected = new BitSet();
+        try (PreparedStatement statement = connection.prepareStatement("SELECT u.id FROM users u WHERE " + where.getSql())) {
+            for (int i = 0; i < where.getParameters().size(); i++) {
+                statement.setObject(i + 1, where.getParameters().get(i));
+            }
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    selected.set(positions.get(resultSet.getString(1)));
+                }
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException(filter + " translated to " + where, e);
+        }
+        return selected;
+    }
+
+    private void insert(final ObjectNode user) throws Exception {
+        final String id = user.get("id").textValue();
+        try (PreparedStatement statement = connection.prepareStatement("INSERT INTO users VALUES (?, ?, ?, ?, ?, ?, ?, ?)")) {
+            statement.setString(1, id);
+            statement.setObject(2, text(user.path("userName")));
+            statement.setObject(3, text(user.path("name").path("givenName")));
+            statement.setObject(4, text(user.path("name").path("familyName")));
+            statement.setObject(5, text(user.path("title")));
+            statement.setObject(6, user.path("active").isBoolean() ? user.get("active").booleanValue() : null);
+            statement.setObject(7, user.path("loginCount").isInt() ? user.get("loginCount").intValue() : null);
+            final String created = text(user.path("meta").path("created"));
+            statement.setTimestamp(8, created == null ? null : new Timestamp(JsonUtils.parseDateTime(created).getTime()));
+            statement.executeUpdate();
+        }
+
+        for (JsonNode email : user.path("emails")) {
+            try (PreparedStatement statement = connection.prepareStatement("INSERT INTO user_emails VALUES (?, ?, ?, ?)")) {
+                statement.setString(1, id);
+                statement.setObject(2, text(email.path("value")));
+                statement.setObject(3, text(email.path("type")));
+                statement.setObject(4, email.path("primary").isBoolean() ? email.get("primary").booleanValue() : null);
+                statement.executeUpdate();
+            }
+        }
+
+        for (JsonNode tag : user.path("tags")) {
+            try (PreparedStatement statement = connection.prepareStatement("INSERT INTO user_tags VALUES (?, ?)")) {
+                statement.setString(1, id);
+                statement.setString(2, tag.textValue());
+                statement.executeUpdate();
+            }
+        }
+    }
+
+    private static String text(final JsonNode node) {
+        return node.isTextual() ? node.textValue() : null;
+    }
+
+    /**
+     * Generate users and filters with the mapped attributes, with values of their type so that every filter can be translated.
+     */
+    private static FilterParity newParity(final Random random) {
+        return new FilterParity(random)
+                .setAttributes("userName", "name.givenName", "name.familyName", "title", "active", "loginCount", "meta.created",
+                               "emails", "emails.value", "emails.type", "emails.primary", "tags", "id")
+                .setComplexAttributes(new String[]{"emails", "name"}, "value", "type", "primary", "givenName", "familyName")
+                .setResourceAttributes(new String[]{"userName", "name.givenName", "name.familyName", "title", "active", "loginCount",
+                                                    "meta.created"}, "emails", "tags")
+                .setTexts(TEXT)
+                .setAttributeResolver(path -> {
+                    final String attribute = path.getElement(0).getAttribute();
+                    if (path.size() == 1 && attribute.equalsIgnoreCase("loginCount")) {
+                        return LOGIN_COUNT;
+                    } else if (attribute.equalsIgnoreCase("tags")) {
+                        return path.size() == 1 ? TAGS : TAG;
+                    }
+                    return SqlFilterVisitorTest.getUserAttributeDefinition(path);
+                })
+                .setTypedFilters(true);
+    }
+}
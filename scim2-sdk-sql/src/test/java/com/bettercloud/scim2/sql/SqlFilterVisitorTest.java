@@ -0,0 +1,153 @@
+package com.bettercloud.scim2.sql;
+
+import com.bettercloud.scim2.common.Path;
+import com.bettercloud.scim2.common.exceptions.BadRequestException;
+import com.bettercloud.scim2.common.filters.Filter;
+import com.bettercloud.scim2.common.types.AttributeDefinition;
+import com.bettercloud.scim2.common.types.SchemaResource;
+import com.bettercloud.scim2.common.types.UserResource;
+import com.bettercloud.scim2.common.utils.SchemaUtils;
+import org.junit.Test;
+
+import java.beans.IntrospectionException;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+public class SqlFilterVisitorTest {
+
+    private static final SchemaResource USER_SCHEMA;
+
+    private static final AttributeDefinition ID = new AttributeDefinition.Builder().setName("id")
+                                                                                   .setType(AttributeDefinition.Type.STRING)
+                                                                                   .setCaseExact(true)
+                                                                                   .build();
+
+    private static final AttributeDefinition CREATED = new AttributeDefinition.Builder().setName("created")
+                                                                                        .setType(AttributeDefinition.Type.DATETIME)
+                                                                                        .build();
+
+    static {
+        try {
+            USER_SCHEMA = SchemaUtils.getSchema(UserResource.class);
+        } catch (IntrospectionException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Test
+    public void comparisonsAreParameterized() throws Exception {
+        assertTranslation("userName eq \"BJensen\"", "(u.user_name IS NOT NULL AND LOWER(u.user_name) = ?)", "bjensen");
+        assertTranslation("id eq \"A1\"", "(u.id IS NOT NULL AND u.id = ?)", "A1");
+        assertTranslation("loginCount gt 5", "(u.login_count IS NOT NULL AND u.login_count > ?)", 5L);
+        assertTranslation("meta.created ge \"2019-06-01T00:00:00Z\"", "(u.created IS NOT NULL AND u.created >= ?)",
+                          new Timestamp(1559347200000L));
+        assertTranslation("userName pr and not(title eq null)", "(u.user_name IS NOT NULL AND NOT (NOT (u.title IS NOT NULL)))");
+
+        final SqlFragment fragment = newUserVisitor().translate(Filter.fromString("userName eq \"x' OR '1' = '1\""), "u");
+        assertFalse(fragment.getSql().contains("'1'"));
+        assertEquals(Collections.singletonList("x' or '1' = '1"), fragment.getParameters());
+    }
+
+    @Test
+    public void substringPatternsAreEscaped() throws Exception {
+        assertTranslation("userName co \"100%_\\\\\"", "(u.user_name IS NOT NULL AND LOWER(u.user_name) LIKE ? ESCAPE '\\')",
+                          "%100\\%\\_\\\\%");
+        assertTranslation("id sw \"A\"", "(u.id IS NOT NULL AND u.id LIKE ? ESCAPE '\\')", "A%");
+        assertTranslation("active co \"true\"", "1 = 0");
+    }
+
+    @Test
+    public void multiValuedAttributesUseExists() throws Exception {
+        assertTranslation("emails[type eq \"work\" and primary eq true]",
+                          "EXISTS (SELECT 1 FROM user_emails u_1 WHERE (u_1.user_id = u.id AND ((u_1.kind IS NOT NULL AND LOWER(u_1.kind) = ?) "
+                          + "AND (u_1.is_primary IS NOT NULL AND u_1.is_primary = ?))))", "work", true);
+        assertTranslation("emails.value ew \"@example.com\" or tags eq \"red\"",
+                          "(EXISTS (SELECT 1 FROM user_emails u_1 WHERE (u_1.user_id = u.id "
+                          + "AND (u_1.address IS NOT NULL AND LOWER(u_1.address) LIKE ? ESCAPE '\\'))) OR "
+                          + "EXISTS (SELECT 1 FROM user_tags u_2 WHERE (u_2.user_id = u.id AND (u_2.tag IS NOT NULL AND LOWER(u_2.tag) = ?))))",
+                          "%@example.com", "red");
+        assertTranslation("name[givenName eq \"barbara\"]",
+                          "((u.given_name IS NOT NULL OR u.family_name IS NOT NULL) "
+                          + "AND (u.given_name IS NOT NULL AND LOWER(u.given_name) = ?))", "barbara");
+        assertEquals("u.family_name IS NOT NULL", newUserVisitor().translate(Filter.pr(
+                Path.root().attribute("name", Filter.eq("givenName", "barbara")).attribute("familyName")), "u").getSql());
+        assertTranslation("emails eq null", "NOT (EXISTS (SELECT 1 FROM user_emails u_1 WHERE u_1.user_id = u.id))");
+    }
+
+    @Test
+    public void invalidFilters() throws Exception {
+        for (String filter : new String[]{"nickName eq \"bjensen\"", "emails.display pr", "name pr",
+                                          "active gt true", "meta.created sw \"2019\"", "meta.created eq \"yesterday\"",
+                                          "meta.created eq \"2019-06-01\""}) {
+            try {
+                newUserVisitor().translate(Filter.fromString(filter), "u");
+                fail("Expected invalid filter " + filter);
+            } catch (BadRequestException e) {
+                assertEquals(BadRequestException.INVALID_FILTER, e.getScimError().getScimType());
+            }
+        }
+    }
+
+    private static void assertTranslation(final String filter, final String sql, final Object... parameters) throws Exception {
+        final SqlFragment fragment = newUserVisitor().translate(Filter.fromString(filter), "u");
+        assertEquals(sql, fragment.getSql());
+        assertEquals(Arrays.asList(parameters), fragment.getParameters());
+    }
+
+    static SqlFilterVisitor newUserVisitor() {
+        final SqlMapping mapping = new SqlMapping("users", "id")
+                .column("id", "id")
+                .column("userName", "user_name")
+                .column("name.givenName", "given_name")
+                .column("name.familyName", "family_name")
+                .column("title", "title")
+                .column("active", "active")
+                .column("loginCount", "login_count")
+                .column("meta.created", "created")
+                .multiValued("emails", new SqlMapping("user_emails", "user_id")
+                        .column("value", "address")
+                        .column("type", "kind")
+                        .column("primary", "is_primary"))
+                .multiValued("tags", new SqlMapping("user_tags", "user_id")
+                        .column("value", "tag"));
+
+        return new SqlFilterVisitor(mapping) {
+            @Override
+            protected AttributeDefinition getAttributeDefinition(final Path path) {
+                return getUserAttributeDefinition(path);
+            }
+        };
+    }
+
+    static AttributeDefinition getUserAttributeDefinition(final Path path) {
+        if (path.size() == 1 && path.getElement(0).getAttribute().equalsIgnoreCase("id")) {
+            return ID;
+        }
+        if (path.size() == 2 && path.getElement(0).getAttribute().equalsIgnoreCase("meta")
+            && path.getElement(1).getAttribute().equalsIgnoreCase("created")) {
+            return CREATED;
+        }
+
+        Collection<AttributeDefinition> attributes = USER_SCHEMA.getAttributes();
+        AttributeDefinition attributeDefinition = null;
+        for (Path.Element element : path) {
+            attributeDefinition = null;
+            for (AttributeDefinition attribute : attributes == null ? Collections.<AttributeDefinition>emptyList() : attributes) {
+                if (attribute.getName().equalsIgnoreCase(element.getAttribute())) {
+                    attributeDefinition = attribute;
+                }
+            }
+            if (attributeDefinition == null) {
+                return null;
+            }
+            attributes = attributeDefinition.getSubAttributes();
+        }
+        return attributeDefinition;
+    }
+}
@@ -0,0 +1,209 @@
+package com.bettercloud.scim2.server;
+
+import com.bettercloud.scim2.common.Path;
+import com.bettercloud.scim2.common.filters.Filter;
+import com.bettercloud.scim2.common.types.AttributeDefinition;
+import com.bettercloud.scim2.common.types.SchemaResource;
+import com.bettercloud.scim2.common.utils.SchemaUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Computes the attributes of a resource that are needed to answer a query, so that a service provider can load only those
+ * attributes from its backend, for example only the columns or document fields they are stored in, instead of whole resources.
+ * <p>
+ * The attributes needed are those referenced by the filter, the sort attribute together with the {@code primary} sub-attribute
+ * when sorting by a sub-attribute of a multi-valued attribute, and the attributes returned to the client according to the
+ * {@code attributes} or {@code excludedAttributes} parameter, including the attributes that are always returned.  The paths are
+ * normalized, without value filters and with the attribute names of the schema, and minimal: the sub-attributes of an attribute
+ * that is needed as a whole are not listed, and a complex attribute is listed as a whole when all of its sub-attributes are
+ * needed.  The path of a sub-attribute of a multi-valued attribute means that sub-attribute of every value.
+ * <p>
+ * Only the attributes defined by the schemas of the resource type are returned to the client this way, attributes that are
+ * not in the schemas are not listed.
+ */
+public class AttributeDependencyAnalyzer {
+
+    private static final String VALUE = "value";
+
+    private final ResourceTypeDefinition resourceType;
+
+    /**
+     * Create a new attribute dependency analyzer.
+     *
+     * @param resourceType The resource type definition of the resources to query.
+     */
+    public AttributeDependencyAnalyzer(final ResourceTypeDefinition resourceType) {
+        this.resourceType = resourceType;
+    }
+
+    /**
+     * Get the attributes needed to answer a query.
+     *
+     * @param filter   The filter, or {@code null} if the resources are not filtered.
+     * @param sortBy   The path of the attribute to sort by, or {@code null} if the resources are not sorted.
+     * @param preparer The preparer of the returned resources, with the {@code attributes} or {@code excludedAttributes}
+     *                 parameter of the query, or {@code null} if no resources are returned.
+     *
+     * @return The minimal set of normalized paths of the attributes needed.
+     */
+    public Set<Path> getRequiredAttributes(final Filter filter, final Path sortBy, final ResourcePreparer<?> preparer) {
+        final Set<Path> paths = new LinkedHashSet<>();
+        if (filter != null) {
+            addFilterAttributes(filter, null, paths);
+        }
+        if (sortBy != null) {
+            final Path path = sortBy.withoutFilters();
+            addAttribute(path, paths);
+            final AttributeDefinition parent = path.size() > 1 ? resourceType.getAttributeDefinition(path.subPath(1)) : null;
+            if (parent != null && parent.isMultiValued()) {
+                // The value of a multi-valued attribute is taken from the primary value if there is one.
+                addAttribute(path.subPath(1).attribute("primary"), paths);
+            }
+        }
+        if (preparer != null) {
+            addReturnedAttributes(preparer, Path.root(), SchemaUtils.COMMON_ATTRIBUTE_DEFINITIONS, paths);
+            if (resourceType.getCoreSchema() != null) {
+                addReturnedAttributes(preparer, Path.root(), resourceType.getCoreSchema().getAttributes(), paths);
+            }
+            for (SchemaResource schemaExtension : resourceType.getSchemaExtensions().keySet()) {
+                addReturnedAttributes(preparer, Path.root(schemaExtension.getId()), schemaExtension.getAttributes(), paths);
+            }
+        }
+        return Collections.unmodifiableSet(minimize(paths));
+    }
+
+    /**
+     * Add the attributes referenced by a filter, including the attributes referenced by value filters in attribute paths.
+     *
+     * @param filter The filter.
+     * @param parent The path of the complex attribute of a value filter, or {@code null} for a top level filter.
+     * @param paths  The paths to add to.
+     */
+    private void addFilterAttributes(final Filter filter, final Path parent, final Set<Path> paths) {
+        if (filter.isCombiningFilter()) {
+            for (Filter combinedFilter : filter.getCombinedFilters()) {
+                addFilterAttributes(combinedFilter, parent, paths);
+            }
+            return;
+        }
+        if (filter.isNotFilter()) {
+            addFilterAttributes(filter.getInvertedFilter(), parent, paths);
+            return;
+        }
+
+        final Path path = parent == null ? filter.getAttributePath() : parent.attribute(filter.getAttributePath());
+        for (int i = 0; i < path.size(); i++) {
+            final Filter valueFilter = path.getElement(i).getValueFilter();
+            if (valueFilter != null) {
+                addFilterAttributes(valueFilter, path.subPath(i + 1).withoutFilters(), paths);
+            }
+        }
+        if (filter.isComplexValueFilter()) {
+            addFilterAttributes(filter.getValueFilter(), path.withoutFilters(), paths);
+        } else {
+            addAttribute(path.withoutFilters(), paths);
+        }
+    }
+
+    /**
+     * Add the attributes of a schema, or the sub-attributes of a complex attribute, that are returned to the client.
+     *
+     * @param preparer   The preparer of the returned resources.
+     * @param parent     The path of the schema root or of the complex attribute.
+     * @param attributes The attribute definitions.
+     * @param paths      The paths to add to.
+     *
+     * @return {@code true} if all the attributes are returned.
+     */
+    private boolean addReturnedAttributes(final ResourcePreparer<?> preparer,
+                                          final Path parent,
+                                          final Collection<AttributeDefinition> attributes,
+                                          final Set<Path> paths) {
+        boolean all = true;
+        for (AttributeDefinition attribute : attributes) {
+            final Path path = parent.attribute(attribute.getName());
+            if (!preparer.isReturned(path)) {
+                all = false;
+            } else if (attribute.getSubAttributes() == null || attribute.getSubAttributes().isEmpty()) {
+                paths.add(path);
+            } else {
+                final Set<Path> subAttributes = new LinkedHashSet<>();
+                if (addReturnedAttributes(preparer, path, attribute.getSubAttributes(), subAttributes)) {
+                    paths.add(path);
+                } else {
+                    all = false;
+                    paths.addAll(subAttributes);
+                }
+            }
+        }
+        return all;
+    }
+
+    /**
+     * Add the normalized path of an attribute, with the attribute names of the schema.  The {@code value} path of a simple
+     * multi-valued attribute, used in value filters like {@code emails[value ew "example.com"]}, is the attribute itself.
+     *
+     * @param path  The path of the attribute without value filters.
+     * @param paths The paths to add to.
+     */
+    private void addAttribute(final Path path, final Set<Path> paths) {
+        final Path normalizedPath = resourceType.normalizePath(path);
+        Path result = normalizedPath.getSchemaUrn() == null ? Path.root() : Path.root(normalizedPath.getSchemaUrn());
+        int id = resourceType.getSchemaId(normalizedPath.getSchemaUrn());
+        AttributeDefinition definition = null;
+        for (Path.Element element : normalizedPath) {
+            if (definition != null && definition.getType() != AttributeDefinition.Type.COMPLEX
+                && VALUE.equalsIgnoreCase(element.getAttribute())) {
+                break;
+            }
+            id = resourceType.getAttributeId(id, element.getAttribute());
+            definition = resourceType.getAttributeDefinition(id);
+            result = result.attribute(definition == null ? element.getAttribute() : definition.getName());
+        }
+        if (result.size() > 0) {
+            paths.add(result);
+        }
+    }
+
+    /**
+     * Remove the paths of sub-attributes whose parent attribute is needed as a whole.
+     *
+     * @param paths The paths.
+     *
+     * @return The paths without sub-attributes of other paths, in the original order.
+     */
+    private static Set<Path> minimize(final Set<Path> paths) {
+        final List<Path> shortestFirst = new ArrayList<>(paths);
+        shortestFirst.sort(Comparator.comparingInt(Path::size));
+        final Set<Path> parents = new LinkedHashSet<>();
+        for (Path path : shortestFirst) {
+            if (!hasParent(parents, path)) {
+                parents.add(path);
+            }
+        }
+
+        final Set<Path> minimized = new LinkedHashSet<>();
+        for (Path path : paths) {
+            if (parents.contains(path)) {
+                minimized.add(path);
+            }
+        }
+        return minimized;
+    }
+
+    private static boolean hasParent(final Set<Path> paths, final Path path) {
+        for (int i = 1; i < path.size(); i++) {
+            if (paths.contains(path.subPath(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,147 @@
+package com.bettercloud.scim2.server;
+
+import com.bettercloud.scim2.common.types.AttributeDefinition;
+import com.bettercloud.scim2.common.utils.StaticUtils;
+
+import java.util.Arrays;
+
+/**
+ * Assigns every attribute of a resource type a dense integer id and resolves child attributes by parent id and
+ * case-insensitive name.  The table is filled while the resource type is defined and only read afterwards, so lookups
+ * need no locking and no {@link com.bettercloud.scim2.common.Path} allocation.
+ * <p>
+ * Children are stored in a single open-addressing hash table keyed by parent id and lower-cased name.
+ */
+final class AttributeSymbolTable {
+
+    static final int NO_ATTRIBUTE = -1;
+
+    private String[] names = new String[16];
+
+    private int[] parentIds = new int[16];
+
+    private AttributeDefinition[] definitions = new AttributeDefinition[16];
+
+    private int size;
+
+    /**
+     * The ids of the attributes plus one, zero marks an empty slot.
+     */
+    private int[] slots = new int[32];
+
+    /**
+     * Add an attribute.  If the parent already has an attribute with the same name, that attribute keeps its id and the
+     * definition is replaced.
+     *
+     * @param parentId   The id of the parent, or {@link #NO_ATTRIBUTE} for a root.
+     * @param name       The name of the attribute.
+     * @param definition The attribute definition, or {@code null} for a root.
+     *
+     * @return The id of the attribute.
+     */
+    int add(final int parentId, final String name, final AttributeDefinition definition) {
+        int slot = slot(parentId, name);
+        while (slots[slot] != 0) {
+            final int id = slots[slot] - 1;
+            if (parentIds[id] == parentId && StaticUtils.equalsIgnoreCase(names[id], name)) {
+                definitions[id] = definition;
+                return id;
+            }
+            slot = (slot + 1) & (slots.length - 1);
+        }
+
+        if (size == names.length) {
+            names = Arrays.copyOf(names, size * 2);
+            parentIds = Arrays.copyOf(parentIds, size * 2);
+            definitions = Arrays.copyOf(definitions, size * 2);
+        }
+        final int id = size++;
+        names[id] = name;
+        parentIds[id] = parentId;
+        definitions[id] = definition;
+        slots[slot] = id + 1;
+
+        if (size * 2 > slots.length) {
+            rehash();
+        }
+        return id;
+    }
+
+    /**
+     * Find the id of a child attribute.
+     *
+     * @param parentId The id of the parent, or {@link #NO_ATTRIBUTE} for a root.
+     * @param name     The name of the child, matched case-insensitively.
+     *
+     * @return The id of the child or {@link #NO_ATTRIBUTE} if there is no such child.
+     */
+    int getId(final int parentId, final String name) {
+        if (name == null) {
+            return NO_ATTRIBUTE;
+        }
+
+        int slot = slot(parentId, name);
+        while (slots[slot] != 0) {
+            final int id = slots[slot] - 1;
+            if (parentIds[id] == parentId && StaticUtils.equalsIgnoreCase(names[id], name)) {
+                return id;
+            }
+            slot = (slot + 1) & (slots.length - 1);
+        }
+        return NO_ATTRIBUTE;
+    }
+
+    /**
+     * Retrieve the definition of an attribute.
+     *
+     * @param id The id of the attribute.
+     *
+     * @return The attribute definition or {@code null} if the id is unknown or belongs to a root.
+     */
+    AttributeDefinition getDefinition(final int id) {
+        return id < 0 || id >= size ? null : definitions[id];
+    }
+
+    /**
+     * Retrieve the name of an attribute.
+     *
+     * @param id The id of the attribute.
+     *
+     * @return The name of the attribute, or the URN of the schema for a root.
+     */
+    String getName(final int id) {
+        return names[id];
+    }
+
+    /**
+     * Retrieve the parent of an attribute.  Parents always have a lower id than their children.
+     *
+     * @param id The id of the attribute.
+     *
+     * @return The id of the parent, or {@link #NO_ATTRIBUTE} for a root.
+     */
+    int getParentId(final int id) {
+        return parentIds[id];
+    }
+
+    int size() {
+        return size;
+    }
+
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        for (int id = 0; id < size; id++) {
+            int slot = slot(parentIds[id], names[id]);
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & (slots.length - 1);
+            }
+            slots[slot] = id + 1;
+        }
+    }
+
+    private int slot(final int parentId, final String name) {
+        int hash = 31 * parentId + StaticUtils.hashCodeIgnoreCase(name);
+        hash ^= hash >>> 16;
+        return hash & (slots.length - 1);
+    }
+}
@@ -0,0 +1,783 @@
+package com.bettercloud.scim2.server;
+
+import com.bettercloud.scim2.common.GenericScimResource;
+import com.bettercloud.scim2.common.Path;
+import com.bettercloud.scim2.common.exceptions.ScimException;
+import com.bettercloud.scim2.common.filters.Filter;
+import com.bettercloud.scim2.common.filters.FilterType;
+import com.bettercloud.scim2.common.messages.ListResponse;
+import com.bettercloud.scim2.common.types.AttributeDefinition;
+import com.bettercloud.scim2.common.types.SchemaResource;
+import com.bettercloud.scim2.common.utils.CaseIgnoreObjectNode;
+import com.bettercloud.scim2.common.utils.FilterEvaluator;
+import com.bettercloud.scim2.common.utils.JsonUtils;
+import com.bettercloud.scim2.common.utils.SchemaUtils;
+import com.bettercloud.scim2.server.evaluator.SchemaAwareFilterEvaluator;
+import com.bettercloud.scim2.server.evaluator.SchemaAwareFilterOptimizer;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.ValueNode;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An in-memory store of the resources of a resource type that keeps attribute values in columns instead of JSON trees, for
+ * read-heavy services that hold all their resources in memory.  Filters are evaluated a column at a time into {@link BitSet}s
+ * of matching resources, and resources are only turned back into {@link GenericScimResource}s when they are returned.
+ * <p>
+ * The columns are keyed by the attribute ids of the {@link ResourceTypeDefinition}.  Each simple attribute, and each
+ * sub-attribute of a complex attribute, has a {@link ValueColumn} with dictionary-encoded strings and primitive numbers and
+ * booleans.  Multi-valued attributes are stored as offset arrays into their values, the sub-attributes of a multi-valued
+ * complex attribute have one cell per value of the complex attribute so that complex value filters compare the
+ * sub-attributes of the same value.
+ * <p>
+ * Filters match the same resources as with a {@link SchemaAwareFilterEvaluator}.  Resources that the columns can not
+ * represent exactly, for example with attributes that are not defined by the schemas, attribute names that differ in case
+ * from the schemas, {@code null} values or empty arrays, are kept as JSON trees and evaluated as such.  Filters that can not
+ * be evaluated on the columns, like value filters in attribute paths, are evaluated on the materialized resources.
+ * <p>
+ * The attributes of returned resources are in the order of the schemas.  Resources must not be added concurrently with other
+ * calls, queries may run concurrently.
+ */
+public class ColumnarResourceStore {
+
+    private static final Path VALUE = Path.root().attribute("value");
+
+    private final ResourceTypeDefinition resourceTypeDefinition;
+
+    private final SchemaAwareFilterEvaluator filterEvaluator;
+
+    private final SchemaAwareFilterOptimizer filterOptimizer;
+
+    private final int maxResults;
+
+    private final List<SchemaColumns> schemas = new ArrayList<>();
+
+    private final BitSet irregularRows = new BitSet();
+
+    private final Map<Integer, ObjectNode> irregularResources = new HashMap<>();
+
+    private int size;
+
+    /**
+     * Create a new empty store.
+     *
+     * @param resourceTypeDefinition The resource type definition of the resources to store.
+     * @param maxResults             The maximum number of resources returned in a response, usually
+     *                               {@code scim2.service-provider-config.filter.maxResults}.
+     */
+    public ColumnarResourceStore(final ResourceTypeDefinition resourceTypeDefinition, final int maxResults) {
+        this.resourceTypeDefinition = resourceTypeDefinition;
+        this.filterEvaluator = new SchemaAwareFilterEvaluator(resourceTypeDefinition);
+        this.filterOptimizer = new SchemaAwareFilterOptimizer(resourceTypeDefinition);
+        this.maxResults = maxResults;
+
+        final SchemaColumns core = new SchemaColumns(null, resourceTypeDefinition.getSchemaId(null));
+        core.addAttributes(SchemaUtils.COMMON_ATTRIBUTE_DEFINITIONS);
+        if (resourceTypeDefinition.getCoreSchema() != null) {
+            core.addAttributes(resourceTypeDefinition.getCoreSchema().getAttributes());
+        }
+        schemas.add(core);
+        for (SchemaResource schemaExtension : resourceTypeDefinition.getSchemaExtensions().keySet()) {
+            final SchemaColumns extension = new SchemaColumns(schemaExtension.getId(),
+                                                              resourceTypeDefinition.getSchemaId(schemaExtension.getId()));
+            extension.addAttributes(schemaExtension.getAttributes());
+            schemas.add(extension);
+        }
+    }
+
+    /**
+     * Add a resource.  The resource is copied, later changes to it are not seen by the store.
+     *
+     * @param resource The resource to add.
+     *
+     * @return The index of the resource in the store.
+     */
+    public int add(final GenericScimResource resource) {
+        final ObjectNode node = resource.getObjectNode();
+        final int row = size++;
+        if (isRegular(node)) {
+            for (Iterator<Map.Entry<String, JsonNode>> fields = node.fields(); fields.hasNext(); ) {
+                final Map.Entry<String, JsonNode> field = fields.next();
+                final SchemaColumns extension = getExtension(field.getKey());
+                if (extension == null) {
+                    schemas.get(0).getAttribute(field.getKey()).add(row, field.getValue());
+                } else {
+                    extension.add(row, (ObjectNode) field.getValue());
+                }
+            }
+        } else {
+            irregularRows.set(row);
+            irregularResources.put(row, node.deepCopy());
+        }
+        return row;
+    }
+
+    /**
+     * Add resources.
+     *
+     * @param resources The resources to add.
+     */
+    public void addAll(final Iterable<GenericScimResource> resources) {
+        for (GenericScimResource resource : resources) {
+            add(resource);
+        }
+    }
+
+    /**
+     * Retrieve the number of resources in the store.
+     *
+     * @return The number of resources in the store.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Retrieve a resource.
+     *
+     * @param index The index of the resource.
+     *
+     * @return A new copy of the resource.
+     */
+    public GenericScimResource get(final int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        if (irregularRows.get(index)) {
+            return new GenericScimResource(irregularResources.get(index).deepCopy());
+        }
+
+        final ObjectNode node = JsonUtils.getJsonNodeFactory().objectNode();
+        for (SchemaColumns schema : schemas) {
+            schema.write(index, node);
+        }
+        return new GenericScimResource(node);
+    }
+
+    /**
+     * Find the resources matching a filter.
+     *
+     * @param filter The filter.
+     *
+     * @return The indexes of the matching resources.
+     *
+     * @throws ScimException If the filter can not be evaluated.
+     */
+    public BitSet filter(final Filter filter) throws ScimException {
+        BitSet result;
+        try {
+            result = evaluate(filter);
+        } catch (ScimException e) {
+            // The evaluator fails on the first value it can not compare, which may be skipped when resources are evaluated one
+            // at a time.
+            result = evaluateResources(filter);
+        }
+
+        result.andNot(irregularRows);
+        for (Map.Entry<Integer, ObjectNode> resource : irregularResources.entrySet()) {
+            if (filter.visit(filterEvaluator, resource.getValue())) {
+                result.set(resource.getKey());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Query resources in the order in which they were added.  A missing or non-positive start index starts at the first
+     * resource.  The count is capped at the maximum number of results, which is also used when no count is requested.  Only the
+     * resources of the requested page are materialized.
+     *
+     * @param filter     The filter, or {@code null} to match all resources.
+     * @param startIndex The 1-based index of the first resource to return, may be {@code null}.
+     * @param count      The maximum number of resources to return, may be {@code null}.
+     *
+     * @return The requested page of matching resources, with the total number of matching resources.
+     *
+     * @throws ScimException If the filter is invalid or can not be evaluated.
+     */
+    public ListResponse<GenericScimResource> query(final String filter,
+                                                   final Integer startIndex,
+                                                   final Integer count) throws ScimException {
+        final BitSet matches;
+        if (StringUtils.isEmpty(filter)) {
+            matches = new BitSet(size);
+            matches.set(0, size);
+        } else {
+            matches = filter(filterOptimizer.optimize(Filter.fromString(filter)));
+        }
+        final int offset = startIndex == null || startIndex < 1 ? 0 : startIndex - 1;
+        final int pageSize = count == null ? maxResults : Math.max(0, Math.min(count, maxResults));
+
+        final List<GenericScimResource> page = new ArrayList<>();
+        int index = 0;
+        for (int row = matches.nextSetBit(0); row >= 0 && page.size() < pageSize; row = matches.nextSetBit(row + 1)) {
+            if (index++ >= offset) {
+                page.add(get(row));
+            }
+        }
+        return new ListResponse<>(matches.cardinality(), page, offset + 1, page.size());
+    }
+
+    /**
+     * Evaluate a filter on the columns of the resources that are stored in columns.
+     */
+    private BitSet evaluate(final Filter filter) throws ScimException {
+        switch (filter.getFilterType()) {
+            case AND:
+            case OR:
+                final boolean and = filter.getFilterType() == FilterType.AND;
+                BitSet result = null;
+                for (Filter combinedFilter : filter.getCombinedFilters()) {
+                    if (result == null) {
+                        result = evaluate(combinedFilter);
+                    } else if (and ? !result.isEmpty() : result.cardinality() < size) {
+                        // Like the evaluator, combined filters are only evaluated while the result is undecided.
+                        final BitSet next = evaluate(combinedFilter);
+                        if (and) {
+                            result.and(next);
+                        } else {
+                            result.or(next);
+                        }
+                    }
+                }
+                return result == null ? new BitSet() : result;
+            case NOT:
+                final BitSet inverted = evaluate(filter.getInvertedFilter());
+                inverted.flip(0, size);
+                return inverted;
+            case COMPLEX_VALUE:
+                final BitSet complexMatches = evaluateComplexValue(filter);
+                return complexMatches == null ? evaluateResources(filter) : complexMatches;
+            default:
+                final BitSet matches = evaluateAttribute(filter);
+                return matches == null ? evaluateResources(filter) : matches;
+        }
+    }
+
+    /**
+     * Evaluate a comparison or presence filter on the columns.
+     *
+     * @return The matching resources or {@code null} if the filter can not be evaluated on the columns.
+     */
+    private BitSet evaluateAttribute(final Filter filter) throws ScimException {
+        final Path path = filter.getAttributePath();
+        if (path.size() == 0 || hasValueFilter(path)) {
+            return null;
+        }
+
+        // Resources stored in columns only have the attributes of the schemas, any other attribute has no values.
+        final SchemaColumns schema = path.getSchemaUrn() == null ? schemas.get(0) : getExtension(path.getSchemaUrn());
+        final AttributeColumns attribute = schema == null ? null : schema.getAttribute(path.getElement(0).getAttribute());
+        if (attribute == null || path.size() > 2 || path.size() == 2 && attribute.subAttributes == null) {
+            return matchValues(filter, null, size);
+        }
+        if (path.size() == 1) {
+            return matchAttribute(filter, attribute, size);
+        }
+
+        return matchValues(filter, attribute.getSubAttribute(path.getElement(1).getAttribute()),
+                           attribute.elements == null ? null : attribute);
+    }
+
+    /**
+     * Evaluate a complex value filter on the columns.
+     *
+     * @return The matching resources or {@code null} if the filter can not be evaluated on the columns.
+     */
+    private BitSet evaluateComplexValue(final Filter filter) throws ScimException {
+        final Path path = filter.getAttributePath();
+        if (path.size() != 1 || hasValueFilter(path)) {
+            return null;
+        }
+
+        final SchemaColumns schema = path.getSchemaUrn() == null ? schemas.get(0) : getExtension(path.getSchemaUrn());
+        final AttributeColumns attribute = schema == null ? null : schema.getAttribute(path.getElement(0).getAttribute());
+        if (attribute == null) {
+            return new BitSet();
+        }
+        if (attribute.subAttributes == null) {
+            return null;
+        }
+
+        if (attribute.elements == null) {
+            final BitSet matches = evaluateValueFilter(filter.getValueFilter(), attribute, size);
+            if (matches != null) {
+                matches.and(attribute.present);
+            }
+            return matches;
+        }
+        final BitSet matches = evaluateValueFilter(filter.getValueFilter(), attribute, attribute.elementCount);
+        return matches == null ? null : attribute.toOwners(matches, size);
+    }
+
+    /**
+     * Evaluate the value filter of a complex value filter on the values of a complex attribute.
+     *
+     * @return The matching values or {@code null} if the filter can not be evaluated on the columns.
+     */
+    private BitSet evaluateValueFilter(final Filter filter, final AttributeColumns attribute, final int owners)
+            throws ScimException {
+        switch (filter.getFilterType()) {
+            case AND:
+            case OR:
+                BitSet result = null;
+                for (Filter combinedFilter : filter.getCombinedFilters()) {
+                    final BitSet next = evaluateValueFilter(combinedFilter, attribute, owners);
+                    if (next == null) {
+                        return null;
+                    }
+                    if (result == null) {
+                        result = next;
+                    } else if (filter.getFilterType() == FilterType.AND) {
+                        result.and(next);
+                    } else {
+                        result.or(next);
+                    }
+                }
+                return result == null ? new BitSet() : result;
+            case NOT:
+                final BitSet inverted = evaluateValueFilter(filter.getInvertedFilter(), attribute, owners);
+                if (inverted != null) {
+                    inverted.flip(0, owners);
+                }
+                return inverted;
+            case COMPLEX_VALUE:
+                return null;
+            default:
+                final Path path = filter.getAttributePath();
+                if (path.getSchemaUrn() != null || path.size() != 1 || hasValueFilter(path)) {
+                    return null;
+                }
+                return matchValues(filter, attribute.getSubAttribute(path.getElement(0).getAttribute()), owners);
+        }
+    }
+
+    /**
+     * Evaluate a comparison or presence filter on the values of a simple attribute.
+     *
+     * @param filter The filter.
+     * @param column The values of the attribute or {@code null} if the owners have no values.
+     * @param owners The number of owners.
+     */
+    private BitSet matchValues(final Filter filter, final ValueColumn column, final int owners) throws ScimException {
+        final BitSet matching = new BitSet();
+        final BitSet nonEmpty = new BitSet();
+        match(filter, column, owners, matching, nonEmpty);
+        return combine(filter, matching, nonEmpty, owners);
+    }
+
+    /**
+     * Evaluate a comparison or presence filter on a sub-attribute of a complex attribute.  The values of the sub-attribute in
+     * all the values of a multi-valued complex attribute are the values of a resource.
+     *
+     * @param filter  The filter.
+     * @param column  The values of the sub-attribute or {@code null} if the resources have no values.
+     * @param complex The multi-valued complex attribute, or {@code null} if the complex attribute is single-valued.
+     */
+    private BitSet matchValues(final Filter filter, final ValueColumn column, final AttributeColumns complex)
+            throws ScimException {
+        if (complex == null) {
+            return matchValues(filter, column, size);
+        }
+        final BitSet matching = new BitSet();
+        final BitSet nonEmpty = new BitSet();
+        match(filter, column, complex.elementCount, matching, nonEmpty);
+        return combine(filter, complex.toOwners(matching, size), complex.toOwners(nonEmpty, size), size);
+    }
+
+    private void match(final Filter filter, final ValueColumn column, final int owners, final BitSet matching, final BitSet nonEmpty)
+            throws ScimException {
+        if (column != null) {
+            final boolean present = filter.getFilterType() == FilterType.PRESENT;
+            column.match(present ? null : toValueFilter(filter), present ? null : valueEvaluator(filter),
+                         JsonUtils.getJsonNodeFactory().objectNode(), owners, matching, nonEmpty);
+        }
+    }
+
+    /**
+     * Evaluate a comparison or presence filter on a complex attribute, whose values all compare like empty objects.
+     */
+    private BitSet matchAttribute(final Filter filter, final AttributeColumns attribute, final int owners) throws ScimException {
+        if (attribute.subAttributes == null) {
+            return matchValues(filter, attribute.values, owners);
+        }
+
+        final BitSet nonEmpty = attribute.elements == null ? (BitSet) attribute.present.clone() : attribute.toOwners(null, owners);
+        BitSet matching = new BitSet();
+        if (filter.getFilterType() != FilterType.PRESENT && !nonEmpty.isEmpty()) {
+            final ObjectNode wrapper = JsonUtils.getJsonNodeFactory().objectNode();
+            wrapper.putObject("value");
+            if (toValueFilter(filter).visit(valueEvaluator(filter), wrapper)) {
+                matching = (BitSet) nonEmpty.clone();
+            }
+        }
+        return combine(filter, matching, nonEmpty, owners);
+    }
+
+    /**
+     * Combine the owners with a matching value and the owners with values into the result of a filter, like the
+     * {@link FilterEvaluator} treats missing values and {@code null}.
+     */
+    private static BitSet combine(final Filter filter, final BitSet matching, final BitSet nonEmpty, final int owners) {
+        switch (filter.getFilterType()) {
+            case PRESENT:
+                return nonEmpty;
+            case EQUAL:
+                if (filter.getComparisonValue().isNull()) {
+                    nonEmpty.flip(0, owners);
+                    matching.or(nonEmpty);
+                }
+                return matching;
+            case NOT_EQUAL:
+                matching.flip(0, owners);
+                if (filter.getComparisonValue().isNull()) {
+                    matching.and(nonEmpty);
+                }
+                return matching;
+            default:
+                return matching;
+        }
+    }
+
+    /**
+     * Evaluate a filter on each resource stored in columns.
+     */
+    private BitSet evaluateResources(final Filter filter) throws ScimException {
+        final BitSet matches = new BitSet();
+        for (int row = 0; row < size; row++) {
+            if (!irregularRows.get(row) && filter.visit(filterEvaluator, get(row).getObjectNode())) {
+                matches.set(row);
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Create the filter that a single value matches if the attribute of a filter has that value.  The {@code eq} filter is
+     * used for {@code ne} filters.
+     */
+    private static Filter toValueFilter(final Filter filter) {
+        final ValueNode value = filter.getComparisonValue();
+        switch (filter.getFilterType()) {
+            case CONTAINS:
+                return Filter.co(VALUE, value);
+            case STARTS_WITH:
+                return Filter.sw(VALUE, value);
+            case ENDS_WITH:
+                return Filter.ew(VALUE, value);
+            case GREATER_THAN:
+                return Filter.gt(VALUE, value);
+            case GREATER_OR_EQUAL:
+                return Filter.ge(VALUE, value);
+            case LESS_THAN:
+                return Filter.lt(VALUE, value);
+            case LESS_OR_EQUAL:
+                return Filter.le(VALUE, value);
+            default:
+                return Filter.eq(VALUE, value);
+        }
+    }
+
+    /**
+     * Create an evaluator for the filter created by {@link #toValueFilter(Filter)} that compares strings with the case
+     * sensitivity the {@link SchemaAwareFilterEvaluator} uses for the original filter.
+     */
+    private FilterEvaluator valueEvaluator(final Filter filter) {
+        final AttributeDefinition attributeDefinition = resourceTypeDefinition.getAttributeDefinition(filter.getAttributePath());
+        return new FilterEvaluator() {
+            @Override
+            protected AttributeDefinition getAttributeDefinition(final Path path) {
+                return attributeDefinition;
+            }
+        };
+    }
+
+    private boolean isRegular(final JsonNode node) {
+        if (!(node instanceof CaseIgnoreObjectNode)) {
+            return false;
+        }
+        for (Iterator<Map.Entry<String, JsonNode>> fields = node.fields(); fields.hasNext(); ) {
+            final Map.Entry<String, JsonNode> field = fields.next();
+            final SchemaColumns extension = getExtension(field.getKey());
+            if (extension == null ? !schemas.get(0).accepts(field.getKey(), field.getValue())
+                                  : !extension.id.equals(field.getKey()) || !extension.accepts(field.getValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private SchemaColumns getExtension(final String schemaUrn) {
+        for (int i = 1; i < schemas.size(); i++) {
+            if (schemas.get(i).id.equalsIgnoreCase(schemaUrn)) {
+                return schemas.get(i);
+            }
+        }
+        return null;
+    }
+
+    private static boolean hasValueFilter(final Path path) {
+        for (Path.Element element : path) {
+            if (element.getValueFilter() != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The columns of the attributes of a schema.  The core schema includes the common attributes.
+     */
+    private final class SchemaColumns {
+
+        private final String id;
+
+        private final int schemaId;
+
+        private final Map<Integer, AttributeColumns> attributes = new LinkedHashMap<>();
+
+        /**
+         * The resources with an object for the schema extension.
+         */
+        private final BitSet present = new BitSet();
+
+        private SchemaColumns(final String id, final int schemaId) {
+            this.id = id;
+            this.schemaId = schemaId;
+        }
+
+        private void addAttributes(final Collection<AttributeDefinition> attributeDefinitions) {
+            for (AttributeDefinition attributeDefinition : attributeDefinitions) {
+                final int attributeId = resourceTypeDefinition.getAttributeId(schemaId, attributeDefinition.getName());
+                attributes.put(attributeId, new AttributeColumns(attributeId, attributeDefinition));
+            }
+        }
+
+        private AttributeColumns getAttribute(final String name) {
+            return attributes.get(resourceTypeDefinition.getAttributeId(schemaId, name));
+        }
+
+        private boolean accepts(final String name, final JsonNode value) {
+            final AttributeColumns attribute = getAttribute(name);
+            return attribute != null && attribute.definition.getName().equals(name) && attribute.accepts(value);
+        }
+
+        private boolean accepts(final JsonNode value) {
+            if (!(value instanceof CaseIgnoreObjectNode)) {
+                return false;
+            }
+            for (Iterator<Map.Entry<String, JsonNode>> fields = value.fields(); fields.hasNext(); ) {
+                final Map.Entry<String, JsonNode> field = fields.next();
+                if (!accepts(field.getKey(), field.getValue())) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void add(final int row, final ObjectNode value) {
+            present.set(row);
+            for (Iterator<Map.Entry<String, JsonNode>> fields = value.fields(); fields.hasNext(); ) {
+                final Map.Entry<String, JsonNode> field = fields.next();
+                getAttribute(field.getKey()).add(row, field.getValue());
+            }
+        }
+
+        private void write(final int row, final ObjectNode node) {
+            ObjectNode target = node;
+            if (id != null) {
+                if (!present.get(row)) {
+                    return;
+                }
+                target = node.putObject(id);
+            }
+            for (AttributeColumns attribute : attributes.values()) {
+                attribute.write(row, target);
+            }
+        }
+    }
+
+    /**
+     * The columns of an attribute.  Complex attributes whose sub-attributes are not all simple and single-valued have no
+     * columns, resources with values for them are kept as JSON trees.
+     */
+    private final class AttributeColumns {
+
+        private final int attributeId;
+
+        private final AttributeDefinition definition;
+
+        /**
+         * The values of a simple attribute.
+         */
+        private final ValueColumn values;
+
+        /**
+         * The sub-attributes of a complex attribute.
+         */
+        private final Map<Integer, ValueColumn> subAttributes;
+
+        /**
+         * The resources with a value for a single-valued complex attribute.
+         */
+        private final BitSet present;
+
+        /**
+         * The values of each resource for a multi-valued complex attribute.
+         */
+        private final ValueColumn.Offsets elements;
+
+        private int elementCount;
+
+        private AttributeColumns(final int attributeId, final AttributeDefinition definition) {
+            this.attributeId = attributeId;
+            this.definition = definition;
+            if (definition.getType() != AttributeDefinition.Type.COMPLEX) {
+                this.values = new ValueColumn(definition.isMultiValued());
+                this.subAttributes = null;
+                this.present = null;
+                this.elements = null;
+                return;
+            }
+
+            this.values = null;
+            this.present = definition.isMultiValued() ? null : new BitSet();
+            this.elements = definition.isMultiValued() ? new ValueColumn.Offsets() : null;
+            Map<Integer, ValueColumn> columns = new LinkedHashMap<>();
+            for (AttributeDefinition subAttribute : definition.getSubAttributes() == null
+                                                    ? new ArrayList<AttributeDefinition>()
+                                                    : definition.getSubAttributes()) {
+                if (subAttribute.getType() == AttributeDefinition.Type.COMPLEX || subAttribute.isMultiValued()) {
+                    columns = null;
+                    break;
+                }
+                columns.put(resourceTypeDefinition.getAttributeId(attributeId, subAttribute.getName()), new ValueColumn(false));
+            }
+            this.subAttributes = columns;
+        }
+
+        private ValueColumn getSubAttribute(final String name) {
+            return subAttributes.get(resourceTypeDefinition.getAttributeId(attributeId, name));
+        }
+
+        private boolean accepts(final JsonNode value) {
+            if (values != null) {
+                return values.accepts(value);
+            }
+            if (subAttributes == null) {
+                return false;
+            }
+            if (present != null) {
+                return acceptsComplexValue(value);
+            }
+            if (!value.isArray() || value.size() == 0) {
+                return false;
+            }
+            for (JsonNode element : value) {
+                if (!acceptsComplexValue(element)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean acceptsComplexValue(final JsonNode value) {
+            if (!(value instanceof CaseIgnoreObjectNode)) {
+                return false;
+            }
+            for (Iterator<Map.Entry<String, JsonNode>> fields = value.fields(); fields.hasNext(); ) {
+                final Map.Entry<String, JsonNode> field = fields.next();
+                final int subAttributeId = resourceTypeDefinition.getAttributeId(attributeId, field.getKey());
+                final ValueColumn column = subAttributes.get(subAttributeId);
+                if (column == null
+                    || !resourceTypeDefinition.getAttributeDefinition(subAttributeId).getName().equals(field.getKey())
+                    || !column.accepts(field.getValue())) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void add(final int row, final JsonNode value) {
+            if (values != null) {
+                values.add(row, value);
+            } else if (present != null) {
+                present.set(row);
+                addComplexValue(row, value);
+            } else {
+                elements.add(row, elementCount);
+                for (JsonNode element : value) {
+                    addComplexValue(elementCount++, element);
+                }
+            }
+        }
+
+        private void addComplexValue(final int owner, final JsonNode value) {
+            for (Iterator<Map.Entry<String, JsonNode>> fields = value.fields(); fields.hasNext(); ) {
+                final Map.Entry<String, JsonNode> field = fields.next();
+                getSubAttribute(field.getKey()).add(owner, field.getValue());
+            }
+        }
+
+        private void write(final int row, final ObjectNode node) {
+            if (values != null) {
+                final JsonNode value = values.get(row);
+                if (value != null) {
+                    node.set(definition.getName(), value);
+                }
+            } else if (present != null) {
+                if (present.get(row)) {
+                    writeComplexValue(row, node.putObject(definition.getName()));
+                }
+            } else if (elements != null) {
+                final int start = elements.start(row, elementCount);
+                final int end = elements.end(row, elementCount);
+                if (start < end) {
+                    final ArrayNode array = node.putArray(definition.getName());
+                    for (int element = start; element < end; element++) {
+                        writeComplexValue(element, array.addObject());
+                    }
+                }
+            }
+        }
+
+        private void writeComplexValue(final int owner, final ObjectNode node) {
+            for (Map.Entry<Integer, ValueColumn> subAttribute : subAttributes.entrySet()) {
+                final JsonNode value = subAttribute.getValue().get(owner);
+                if (value != null) {
+                    node.set(resourceTypeDefinition.getAttributeDefinition(subAttribute.getKey()).getName(), value);
+                }
+            }
+        }
+
+        /**
+         * Map values of a multi-valued complex attribute to the resources they belong to.
+         *
+         * @param values The values, or {@code null} for all values.
+         * @param owners The number of resources.
+         *
+         * @return The resources with at least one of the values.
+         */
+        private BitSet toOwners(final BitSet values, final int owners) {
+            final BitSet result = new BitSet();
+            for (int row = 0; row < owners; row++) {
+                final int start = elements.start(row, elementCount);
+                final int end = elements.end(row, elementCount);
+                if (start < end && (values == null || values.nextSetBit(start) >= 0 && values.nextSetBit(start) < end)) {
+                    result.set(row);
+                }
+            }
+            return result;
+        }
+    }
+}
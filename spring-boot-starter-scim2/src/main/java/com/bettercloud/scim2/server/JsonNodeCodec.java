@@ -0,0 +1,243 @@
+package com.bettercloud.scim2.server;
+
+import com.bettercloud.scim2.common.utils.JsonUtils;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.POJONode;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Encodes JSON nodes in a compact binary form that is decoded without a JSON parser: a tag byte per node, lengths and counts
+ * as unsigned variable-length integers, strings in UTF-8 and numbers in binary.  Decoded nodes are created with the SDK node
+ * factory, so objects are {@link com.bettercloud.scim2.common.utils.CaseIgnoreObjectNode}s, and have the same node types as
+ * the encoded nodes.
+ */
+final class JsonNodeCodec {
+
+    private static final byte NULL = 0;
+    private static final byte TRUE = 1;
+    private static final byte FALSE = 2;
+    private static final byte TEXT = 3;
+    private static final byte INT = 4;
+    private static final byte LONG = 5;
+    private static final byte DOUBLE = 6;
+    private static final byte FLOAT = 7;
+    private static final byte SHORT = 8;
+    private static final byte BIG_INTEGER = 9;
+    private static final byte BIG_DECIMAL = 10;
+    private static final byte BINARY = 11;
+    private static final byte ARRAY = 12;
+    private static final byte OBJECT = 13;
+
+    private JsonNodeCodec() {
+    }
+
+    /**
+     * Encode a JSON node.  POJO nodes are encoded as the JSON tree of their value.
+     *
+     * @param node The node to encode.
+     * @param out  The output to write to.
+     *
+     * @throws IOException If the node can not be written.
+     */
+    static void write(final JsonNode node, final DataOutputStream out) throws IOException {
+        switch (node.getNodeType()) {
+            case OBJECT:
+                out.writeByte(OBJECT);
+                writeVarInt(node.size(), out);
+                for (Iterator<Map.Entry<String, JsonNode>> fields = node.fields(); fields.hasNext(); ) {
+                    final Map.Entry<String, JsonNode> field = fields.next();
+                    writeString(field.getKey(), out);
+                    write(field.getValue(), out);
+                }
+                break;
+            case ARRAY:
+                out.writeByte(ARRAY);
+                writeVarInt(node.size(), out);
+                for (JsonNode value : node) {
+                    write(value, out);
+                }
+                break;
+            case STRING:
+                out.writeByte(TEXT);
+                writeString(node.textValue(), out);
+                break;
+            case BOOLEAN:
+                out.writeByte(node.booleanValue() ? TRUE : FALSE);
+                break;
+            case NUMBER:
+                writeNumber(node, out);
+                break;
+            case BINARY:
+                out.writeByte(BINARY);
+                writeBytes(node.binaryValue(), out);
+                break;
+            case POJO:
+                write(JsonUtils.valueToNode(((POJONode) node).getPojo()), out);
+                break;
+            default:
+                out.writeByte(NULL);
+                break;
+        }
+    }
+
+    /**
+     * Decode a JSON node.
+     *
+     * @param in The buffer to read from, positioned at the node.  The position is moved after the node.
+     *
+     * @return The decoded node.
+     */
+    static JsonNode read(final ByteBuffer in) {
+        final JsonNodeFactory factory = JsonUtils.getJsonNodeFactory();
+        final byte tag = in.get();
+        switch (tag) {
+            case NULL:
+                return factory.nullNode();
+            case TRUE:
+                return factory.booleanNode(true);
+            case FALSE:
+                return factory.booleanNode(false);
+            case TEXT:
+                return factory.textNode(readString(in));
+            case INT:
+                return factory.numberNode(in.getInt());
+            case LONG:
+                return factory.numberNode(in.getLong());
+            case DOUBLE:
+                return factory.numberNode(in.getDouble());
+            case FLOAT:
+                return factory.numberNode(in.getFloat());
+            case SHORT:
+                return factory.numberNode(in.getShort());
+            case BIG_INTEGER:
+                return factory.numberNode(new BigInteger(readBytes(in)));
+            case BIG_DECIMAL:
+                final int scale = in.getInt();
+                return factory.numberNode(new BigDecimal(new BigInteger(readBytes(in)), scale));
+            case BINARY:
+                return factory.binaryNode(readBytes(in));
+            case ARRAY:
+                final ArrayNode array = factory.arrayNode();
+                for (int i = readVarInt(in); i > 0; i--) {
+                    array.add(read(in));
+                }
+                return array;
+            case OBJECT:
+                final ObjectNode object = factory.objectNode();
+                for (int i = readVarInt(in); i > 0; i--) {
+                    final String key = readString(in);
+                    object.set(key, read(in));
+                }
+                return object;
+            default:
+                throw new IllegalStateException("Unknown node tag " + tag);
+        }
+    }
+
+    /**
+     * Write a string as its UTF-8 length and bytes.
+     */
+    static void writeString(final String value, final DataOutputStream out) throws IOException {
+        writeBytes(value.getBytes(StandardCharsets.UTF_8), out);
+    }
+
+    /**
+     * Read a string written by {@link #writeString(String, DataOutputStream)}.
+     */
+    static String readString(final ByteBuffer in) {
+        final int length = readVarInt(in);
+        final String value;
+        if (in.hasArray()) {
+            value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+            in.position(in.position() + length);
+        } else {
+            final byte[] bytes = new byte[length];
+            in.get(bytes);
+            value = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return value;
+    }
+
+    /**
+     * Write a non-negative integer in 7-bit groups, least significant first.
+     */
+    static void writeVarInt(final int value, final DataOutputStream out) throws IOException {
+        int remaining = value;
+        while ((remaining & ~0x7F) != 0) {
+            out.writeByte((remaining & 0x7F) | 0x80);
+            remaining >>>= 7;
+        }
+        out.writeByte(remaining);
+    }
+
+    /**
+     * Read an integer written by {@link #writeVarInt(int, DataOutputStream)}.
+     */
+    static int readVarInt(final ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            final byte b = in.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    private static void writeNumber(final JsonNode node, final DataOutputStream out) throws IOException {
+        switch (node.numberType()) {
+            case INT:
+                if (node.isShort()) {
+                    out.writeByte(SHORT);
+                    out.writeShort(node.shortValue());
+                } else {
+                    out.writeByte(INT);
+                    out.writeInt(node.intValue());
+                }
+                break;
+            case LONG:
+                out.writeByte(LONG);
+                out.writeLong(node.longValue());
+                break;
+            case BIG_INTEGER:
+                out.writeByte(BIG_INTEGER);
+                writeBytes(node.bigIntegerValue().toByteArray(), out);
+                break;
+            case FLOAT:
+                out.writeByte(FLOAT);
+                out.writeFloat(node.floatValue());
+                break;
+            case DOUBLE:
+                out.writeByte(DOUBLE);
+                out.writeDouble(node.doubleValue());
+                break;
+            default:
+                out.writeByte(BIG_DECIMAL);
+                out.writeInt(node.decimalValue().scale());
+                writeBytes(node.decimalValue().unscaledValue().toByteArray(), out);
+                break;
+        }
+    }
+
+    private static void writeBytes(final byte[] bytes, final DataOutputStream out) throws IOException {
+        writeVarInt(bytes.length, out);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(final ByteBuffer in) {
+        final byte[] bytes = new byte[readVarInt(in)];
+        in.get(bytes);
+        return bytes;
+    }
+}
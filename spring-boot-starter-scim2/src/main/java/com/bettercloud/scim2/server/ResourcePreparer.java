@@ -13,6 +13,7 @@ import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.springframework.web.util.UriComponentsBuilder;
 
 import java.net.URI;
+import java.net.URISyntaxException;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
@@ -40,6 +41,7 @@ import java.util.Set;
 public class ResourcePreparer<T extends ScimResource> {
     private final ResourceTypeDefinition resourceType;
     private final URI baseUri;
+    private final String locationPrefix;
     private final Set<Path> queryAttributes;
     private final boolean excluded;
 
@@ -93,6 +95,7 @@ public class ResourcePreparer<T extends ScimResource> {
         }
         this.resourceType = resourceType;
         this.baseUri = baseUri;
+        this.locationPrefix = getLocationPrefix(baseUri);
     }
 
     /**
@@ -149,6 +152,20 @@ public class ResourcePreparer<T extends ScimResource> {
         return trimReturned(returnedResource, null, patchOperations);
     }
 
+    /**
+     * Determine whether an attribute of a resource returned from a search or
+     * retrieve operation is returned to the client, based on schema and the
+     * request parameters.
+     *
+     * @param path The normalized path of the attribute without value filters.
+     *
+     * @return {@code true} if the attribute is returned, or if one of its
+     * sub-attributes is returned for a complex attribute.
+     */
+    public boolean isReturned(final Path path) {
+        return new ScimResourceTrimmer(resourceType, Collections.emptySet(), queryAttributes, excluded).shouldReturn(path);
+    }
+
     /**
      * Sets the meta.resourceType and meta.location metadata attribute values.
      *
@@ -170,10 +187,7 @@ public class ResourcePreparer<T extends ScimResource> {
         if (meta.getLocation() == null) {
             String id = returnedResource.getId();
             if (id != null) {
-                UriComponentsBuilder builder = UriComponentsBuilder.fromUri(baseUri);
-                builder.path("/");
-                builder.path(id);
-                meta.setLocation(builder.build().toUri());
+                meta.setLocation(getLocation(id));
             } else {
                 meta.setLocation(baseUri);
             }
@@ -185,6 +199,82 @@ public class ResourcePreparer<T extends ScimResource> {
         }
     }
 
+    /**
+     * Build the location of a resource from its id.  Resource type base URIs
+     * are usually plain paths, so the location is the base URI string followed
+     * by the encoded id rather than a new {@link UriComponentsBuilder} for
+     * every resource.
+     *
+     * @param id The id of the resource.
+     *
+     * @return The location of the resource.
+     */
+    private URI getLocation(final String id) {
+        if (locationPrefix == null) {
+            UriComponentsBuilder builder = UriComponentsBuilder.fromUri(baseUri);
+            builder.path("/");
+            builder.path(id);
+            return builder.build().toUri();
+        }
+
+        try {
+            // Quote the id the same way UriComponentsBuilder does.
+            final String path = appendPath(new StringBuilder(id.length() + 1).append('/'), id).toString();
+            return new URI(locationPrefix + new URI(null, null, path, null).getRawPath());
+        } catch (URISyntaxException e) {
+            throw new IllegalArgumentException("Invalid resource id '" + id + "'", e);
+        }
+    }
+
+    /**
+     * Get the string that resource ids are appended to in order to build their
+     * locations.
+     *
+     * @param baseUri The resource type base URI.
+     *
+     * @return The base URI with repeated and trailing slashes removed from its
+     * path or {@code null} if it can not be extended by concatenation.
+     */
+    private static String getLocationPrefix(final URI baseUri) {
+        // UriComponentsBuilder quotes escaped octets of the base URI again so leave those to it.
+        if (baseUri == null || baseUri.isOpaque() || baseUri.getRawQuery() != null || baseUri.getRawFragment() != null ||
+            (baseUri.getScheme() != null && baseUri.getRawAuthority() == null) || baseUri.toString().indexOf('%') >= 0) {
+            return null;
+        }
+
+        final StringBuilder prefix = new StringBuilder();
+        if (baseUri.getScheme() != null) {
+            prefix.append(baseUri.getScheme()).append(':');
+        }
+        if (baseUri.getRawAuthority() != null) {
+            prefix.append("//").append(baseUri.getRawAuthority());
+        }
+        appendPath(prefix, baseUri.getRawPath());
+        if (prefix.length() > 0 && prefix.charAt(prefix.length() - 1) == '/') {
+            prefix.setLength(prefix.length() - 1);
+        }
+        return prefix.toString();
+    }
+
+    /**
+     * Append a path without repeated slashes, like UriComponentsBuilder does
+     * when it builds a path.
+     *
+     * @param builder The builder to append to.
+     * @param path    The path to append.
+     *
+     * @return The builder.
+     */
+    private static StringBuilder appendPath(final StringBuilder builder, final String path) {
+        for (int i = 0; i < path.length(); i++) {
+            final char c = path.charAt(i);
+            if (c != '/' || builder.length() == 0 || builder.charAt(builder.length() - 1) != '/') {
+                builder.append(c);
+            }
+        }
+        return builder;
+    }
+
     /**
      * Trim attributes of the resources to return based on schema and the client
      * request.
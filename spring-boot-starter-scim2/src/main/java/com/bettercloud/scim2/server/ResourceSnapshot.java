@@ -0,0 +1,577 @@
+package com.bettercloud.scim2.server;
+
+import com.bettercloud.scim2.common.GenericScimResource;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A collection of resources keyed by id that is persisted to a memory-mapped file, so that an in-memory resource cache can be
+ * restored after a restart without fetching and parsing the resources again.
+ * <p>
+ * Opening a snapshot maps the file and only reads the ids and positions of the resources, each resource is decoded from the
+ * mapped file when it is read.  Changes are kept in memory until the next {@link #checkpoint() checkpoint}, which appends them
+ * to the file in a compact binary encoding of their JSON tree.  A checkpoint is only seen when the snapshot is opened again if
+ * it was written completely, so the file always holds the resources as of a checkpoint.  {@link #compact() Compacting}
+ * rewrites the file with only the current resources.
+ * <p>
+ * All methods may be called concurrently.
+ */
+@Slf4j
+public class ResourceSnapshot implements Closeable {
+
+    private static final int FILE_MAGIC = 0x53434d53;
+    private static final int VERSION = 1;
+    private static final int FILE_HEADER_SIZE = 8;
+
+    private static final int SEGMENT_MAGIC = 0x5345474d;
+    private static final int SEGMENT_HEADER_SIZE = 20;
+    private static final int COMMIT_MAGIC = 0x434f4d54;
+    private static final int TRAILER_SIZE = 13;
+
+    /**
+     * The maximum size of the body of a segment, which is mapped as a whole.  A checkpoint is split into several segments.
+     */
+    private static final int MAX_SEGMENT_SIZE = 1 << 30;
+
+    private static final byte PUT = 1;
+    private static final byte REMOVE = 2;
+
+    /**
+     * Marks removed resources in the pending changes.
+     */
+    private static final ObjectNode REMOVED = JsonNodeFactory.instance.objectNode();
+
+    private final Path file;
+
+    private final int maxSegmentSize;
+
+    private final ConcurrentMap<String, ObjectNode> pendingChanges = new ConcurrentHashMap<>();
+
+    private volatile State state;
+
+    private FileChannel channel;
+
+    private long end;
+
+    private long checkpointNumber;
+
+    /**
+     * Open a snapshot file, or create it if it does not exist.
+     *
+     * @param file The snapshot file.
+     *
+     * @return The snapshot with the resources of the last complete checkpoint in the file.
+     *
+     * @throws IOException If the file can not be read or is not a snapshot file.
+     */
+    public static ResourceSnapshot open(final Path file) throws IOException {
+        return new ResourceSnapshot(file, MAX_SEGMENT_SIZE);
+    }
+
+    ResourceSnapshot(final Path file, final int maxSegmentSize) throws IOException {
+        this.file = file;
+        this.maxSegmentSize = maxSegmentSize;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            load();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Retrieve a resource.
+     *
+     * @param id The id of the resource.
+     *
+     * @return A new copy of the resource, or {@code null} if there is no resource with that id.
+     */
+    public GenericScimResource get(final String id) {
+        final ObjectNode pending = pendingChanges.get(id);
+        if (pending != null) {
+            return pending == REMOVED ? null : new GenericScimResource(pending.deepCopy());
+        }
+
+        State current = state;
+        final Long location = current.locations.get(id);
+        if (location == null) {
+            return null;
+        }
+        if (segment(location) >= current.segments.length) {
+            // The location was added by a checkpoint after the state was read.
+            current = state;
+        }
+        final ByteBuffer in = current.segments[segment(location)].duplicate();
+        in.position(offset(location));
+        JsonNodeCodec.readVarInt(in);
+        return new GenericScimResource((ObjectNode) JsonNodeCodec.read(in));
+    }
+
+    /**
+     * Add or replace a resource.  The resource is copied, later changes to it are not seen by the snapshot.
+     *
+     * @param resource The resource, with an id.
+     */
+    public void put(final GenericScimResource resource) {
+        final String id = resource.getId();
+        if (id == null) {
+            throw new IllegalArgumentException("resource must have an id");
+        }
+        pendingChanges.put(id, resource.getObjectNode().deepCopy());
+    }
+
+    /**
+     * Add or replace resources.
+     *
+     * @param resources The resources, with ids.
+     */
+    public void putAll(final Iterable<GenericScimResource> resources) {
+        for (GenericScimResource resource : resources) {
+            put(resource);
+        }
+    }
+
+    /**
+     * Remove a resource.
+     *
+     * @param id The id of the resource.
+     */
+    public void remove(final String id) {
+        pendingChanges.put(id, REMOVED);
+    }
+
+    /**
+     * Retrieve the ids of the resources.
+     *
+     * @return A new set with the ids of the resources.
+     */
+    public Set<String> getIds() {
+        final Set<String> ids = new HashSet<>(state.locations.keySet());
+        for (Map.Entry<String, ObjectNode> change : pendingChanges.entrySet()) {
+            if (change.getValue() == REMOVED) {
+                ids.remove(change.getKey());
+            } else {
+                ids.add(change.getKey());
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Retrieve the number of resources.
+     *
+     * @return The number of resources.
+     */
+    public int size() {
+        return getIds().size();
+    }
+
+    /**
+     * Retrieve the resources.  Each resource is decoded when the iteration reaches it, resources removed during the iteration
+     * are skipped.
+     *
+     * @return The resources, in no particular order.
+     */
+    public Iterable<GenericScimResource> getResources() {
+        return () -> new Iterator<GenericScimResource>() {
+
+            private final Iterator<String> ids = getIds().iterator();
+
+            private GenericScimResource next;
+
+            @Override
+            public boolean hasNext() {
+                while (next == null && ids.hasNext()) {
+                    next = get(ids.next());
+                }
+                return next != null;
+            }
+
+            @Override
+            public GenericScimResource next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                final GenericScimResource result = next;
+                next = null;
+                return result;
+            }
+        };
+    }
+
+    /**
+     * Append the changes made since the last checkpoint to the file.  The changes are durable when this method returns.
+     *
+     * @throws IOException If the changes can not be written, they are kept for the next checkpoint.
+     */
+    public synchronized void checkpoint() throws IOException {
+        ensureOpen();
+        if (pendingChanges.isEmpty()) {
+            return;
+        }
+
+        final Map<String, ObjectNode> changes = new LinkedHashMap<>(pendingChanges);
+        final State current = state;
+        final SegmentWriter writer = new SegmentWriter(channel, end, ++checkpointNumber, current.segments);
+        final Map<String, Long> locations = new LinkedHashMap<>();
+        try {
+            for (Map.Entry<String, ObjectNode> change : changes.entrySet()) {
+                if (change.getValue() == REMOVED) {
+                    writer.remove(change.getKey());
+                } else {
+                    locations.put(change.getKey(), writer.put(change.getKey(), encode(change.getValue())));
+                }
+            }
+            writer.finish();
+        } catch (IOException | RuntimeException e) {
+            channel.truncate(end);
+            throw e;
+        }
+
+        end = writer.position;
+        state = new State(writer.getSegments(), current.locations);
+        for (Map.Entry<String, ObjectNode> change : changes.entrySet()) {
+            if (change.getValue() == REMOVED) {
+                current.locations.remove(change.getKey());
+            } else {
+                current.locations.put(change.getKey(), locations.get(change.getKey()));
+            }
+            pendingChanges.remove(change.getKey(), change.getValue());
+        }
+    }
+
+    /**
+     * Write a checkpoint and rewrite the file with only the current resources, dropping replaced and removed resources.
+     *
+     * @throws IOException If the file can not be rewritten.
+     */
+    public synchronized void compact() throws IOException {
+        checkpoint();
+
+        final State current = state;
+        final Path temporaryFile = file.resolveSibling(file.getFileName() + ".tmp");
+        final FileChannel temporaryChannel = FileChannel.open(temporaryFile, StandardOpenOption.CREATE,
+                                                              StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ,
+                                                              StandardOpenOption.WRITE);
+        final ConcurrentMap<String, Long> locations = new ConcurrentHashMap<>();
+        final SegmentWriter writer;
+        try {
+            writeFileHeader(temporaryChannel);
+            writer = new SegmentWriter(temporaryChannel, FILE_HEADER_SIZE, ++checkpointNumber, new ByteBuffer[0]);
+            for (Map.Entry<String, Long> location : current.locations.entrySet()) {
+                final ByteBuffer in = current.segments[segment(location.getValue())].duplicate();
+                in.position(offset(location.getValue()));
+                final byte[] bytes = new byte[JsonNodeCodec.readVarInt(in)];
+                in.get(bytes);
+                locations.put(location.getKey(), writer.put(location.getKey(), bytes));
+            }
+            writer.finish();
+            temporaryChannel.close();
+            Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            temporaryChannel.close();
+            Files.deleteIfExists(temporaryFile);
+            throw e;
+        }
+
+        // The mapped segments stay valid after the channel of the replaced file is closed.
+        channel.close();
+        channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        end = writer.position;
+        state = new State(writer.getSegments(), locations);
+    }
+
+    /**
+     * Write checkpoints periodically.  Failed checkpoints are logged and retried at the next period.
+     *
+     * @param executor The executor to run the checkpoints.
+     * @param period   The time between checkpoints.
+     * @param unit     The unit of the period.
+     *
+     * @return The future to cancel the checkpoints.
+     */
+    public ScheduledFuture<?> scheduleCheckpoints(final ScheduledExecutorService executor, final long period, final TimeUnit unit) {
+        return executor.scheduleWithFixedDelay(() -> {
+            try {
+                checkpoint();
+            } catch (IOException e) {
+                log.warn("Failed to write a checkpoint of the resource snapshot {}", file, e);
+            }
+        }, period, period, unit);
+    }
+
+    /**
+     * Write a checkpoint and close the file.  Resources can not be read after closing.
+     *
+     * @throws IOException If the checkpoint can not be written.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel.isOpen()) {
+            try {
+                checkpoint();
+            } finally {
+                channel.close();
+                state = new State(new ByteBuffer[0], new ConcurrentHashMap<>());
+            }
+        }
+    }
+
+    private void load() throws IOException {
+        final long fileSize = channel.size();
+        if (fileSize == 0) {
+            writeFileHeader(channel);
+            end = FILE_HEADER_SIZE;
+            state = new State(new ByteBuffer[0], new ConcurrentHashMap<>());
+            return;
+        }
+
+        final ByteBuffer header = read(channel, 0, FILE_HEADER_SIZE, fileSize);
+        if (header == null || header.getInt() != FILE_MAGIC || header.getInt() != VERSION) {
+            throw new IOException(file + " is not a resource snapshot");
+        }
+
+        final List<ByteBuffer> segments = new ArrayList<>();
+        final List<ByteBuffer> uncommitted = new ArrayList<>();
+        final List<Integer> uncommittedEntries = new ArrayList<>();
+        final ConcurrentMap<String, Long> locations = new ConcurrentHashMap<>();
+        long position = FILE_HEADER_SIZE;
+        long committedEnd = position;
+        while (true) {
+            final ByteBuffer segmentHeader = read(channel, position, SEGMENT_HEADER_SIZE, fileSize);
+            if (segmentHeader == null || segmentHeader.getInt() != SEGMENT_MAGIC) {
+                break;
+            }
+            final long number = segmentHeader.getLong();
+            final int entries = segmentHeader.getInt();
+            final int length = segmentHeader.getInt();
+            final long bodyStart = position + SEGMENT_HEADER_SIZE;
+            final ByteBuffer trailer = length < 0 ? null : read(channel, bodyStart + length, TRAILER_SIZE, fileSize);
+            if (trailer == null || trailer.getInt() != COMMIT_MAGIC || trailer.getLong() != number
+                || number <= checkpointNumber) {
+                break;
+            }
+
+            // A checkpoint split into several segments is complete when its last segment is.
+            uncommitted.add(channel.map(FileChannel.MapMode.READ_ONLY, bodyStart, length));
+            uncommittedEntries.add(entries);
+            position = bodyStart + length + TRAILER_SIZE;
+            if (trailer.get() != 0) {
+                for (int i = 0; i < uncommitted.size(); i++) {
+                    index(uncommitted.get(i), segments.size(), uncommittedEntries.get(i), locations);
+                    segments.add(uncommitted.get(i));
+                }
+                uncommitted.clear();
+                uncommittedEntries.clear();
+                committedEnd = position;
+                checkpointNumber = number;
+            }
+        }
+
+        // Drop an incomplete checkpoint, the file is appended to from the end of the last complete one.
+        channel.truncate(committedEnd);
+        end = committedEnd;
+        state = new State(segments.toArray(new ByteBuffer[0]), locations);
+    }
+
+    private static void index(final ByteBuffer segment, final int segmentIndex, final int entries, final Map<String, Long> locations) {
+        final ByteBuffer in = segment.duplicate();
+        for (int i = 0; i < entries; i++) {
+            final byte kind = in.get();
+            final String id = JsonNodeCodec.readString(in);
+            if (kind == PUT) {
+                final int offset = in.position();
+                final int length = JsonNodeCodec.readVarInt(in);
+                in.position(in.position() + length);
+                locations.put(id, location(segmentIndex, offset));
+            } else {
+                locations.remove(id);
+            }
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (!channel.isOpen()) {
+            throw new IOException("The resource snapshot " + file + " is closed");
+        }
+    }
+
+    private static byte[] encode(final ObjectNode node) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        JsonNodeCodec.write(node, new DataOutputStream(bytes));
+        return bytes.toByteArray();
+    }
+
+    private static void writeFileHeader(final FileChannel channel) throws IOException {
+        final ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+        header.putInt(FILE_MAGIC).putInt(VERSION).flip();
+        write(channel, 0, header);
+        channel.force(true);
+    }
+
+    /**
+     * Read bytes at a position of a file.
+     *
+     * @return The bytes or {@code null} if the file ends before.
+     */
+    private static ByteBuffer read(final FileChannel channel, final long position, final int length, final long fileSize)
+            throws IOException {
+        if (position + length > fileSize) {
+            return null;
+        }
+        final ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                return null;
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static void write(final FileChannel channel, final long position, final ByteBuffer buffer) throws IOException {
+        final long start = position - buffer.position();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, start + buffer.position());
+        }
+    }
+
+    private static long location(final int segment, final int offset) {
+        return (long) segment << 32 | offset;
+    }
+
+    private static int segment(final long location) {
+        return (int) (location >>> 32);
+    }
+
+    private static int offset(final long location) {
+        return (int) location;
+    }
+
+    /**
+     * The mapped segments of the file and the location of each resource in them.
+     */
+    private static final class State {
+
+        private final ByteBuffer[] segments;
+
+        private final ConcurrentMap<String, Long> locations;
+
+        private State(final ByteBuffer[] segments, final ConcurrentMap<String, Long> locations) {
+            this.segments = segments;
+            this.locations = locations;
+        }
+    }
+
+    /**
+     * Appends the entries of a checkpoint to a file, in segments of at most the maximum segment size.  Each segment is a header
+     * with the checkpoint number, the number of entries and the length of the body, the entries, and a trailer with the
+     * checkpoint number and whether it is the last segment of the checkpoint.  The trailer is written after the body is
+     * durable.
+     */
+    private final class SegmentWriter {
+
+        private final FileChannel channel;
+
+        private final long checkpoint;
+
+        private final List<ByteBuffer> segments;
+
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+        private final DataOutputStream out = new DataOutputStream(body);
+
+        private int entries;
+
+        private long position;
+
+        private SegmentWriter(final FileChannel channel, final long position, final long checkpoint, final ByteBuffer[] segments) {
+            this.channel = channel;
+            this.position = position;
+            this.checkpoint = checkpoint;
+            this.segments = new ArrayList<>(Arrays.asList(segments));
+        }
+
+        /**
+         * Add a resource.
+         *
+         * @return The location of the resource.
+         */
+        private long put(final String id, final byte[] node) throws IOException {
+            startEntry();
+            out.writeByte(PUT);
+            JsonNodeCodec.writeString(id, out);
+            final long location = location(segments.size(), body.size());
+            JsonNodeCodec.writeVarInt(node.length, out);
+            out.write(node);
+            return location;
+        }
+
+        private void remove(final String id) throws IOException {
+            startEntry();
+            out.writeByte(REMOVE);
+            JsonNodeCodec.writeString(id, out);
+        }
+
+        private void finish() throws IOException {
+            writeSegment(true);
+        }
+
+        private ByteBuffer[] getSegments() {
+            return segments.toArray(new ByteBuffer[0]);
+        }
+
+        private void startEntry() throws IOException {
+            if (body.size() >= maxSegmentSize && entries > 0) {
+                writeSegment(false);
+            }
+            entries++;
+        }
+
+        private void writeSegment(final boolean last) throws IOException {
+            final ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_SIZE);
+            header.putInt(SEGMENT_MAGIC).putLong(checkpoint).putInt(entries).putInt(body.size()).flip();
+            write(channel, position, header);
+            final long bodyStart = position + SEGMENT_HEADER_SIZE;
+            write(channel, bodyStart, ByteBuffer.wrap(body.toByteArray()));
+            channel.force(false);
+
+            final ByteBuffer trailer = ByteBuffer.allocate(TRAILER_SIZE);
+            trailer.putInt(COMMIT_MAGIC).putLong(checkpoint).put((byte) (last ? 1 : 0)).flip();
+            write(channel, bodyStart + body.size(), trailer);
+            channel.force(false);
+
+            segments.add(channel.map(FileChannel.MapMode.READ_ONLY, bodyStart, body.size()));
+            position = bodyStart + body.size() + TRAILER_SIZE;
+            body.reset();
+            entries = 0;
+        }
+    }
+}
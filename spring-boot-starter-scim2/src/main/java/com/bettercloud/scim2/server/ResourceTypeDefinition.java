@@ -4,8 +4,10 @@ import com.bettercloud.scim2.common.Path;
 import com.bettercloud.scim2.common.types.AttributeDefinition;
 import com.bettercloud.scim2.common.types.ResourceTypeResource;
 import com.bettercloud.scim2.common.types.SchemaResource;
+import com.bettercloud.scim2.common.utils.SchemaRegistry;
 import com.bettercloud.scim2.common.utils.SchemaUtils;
 import com.bettercloud.scim2.server.annotation.ScimResource;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -25,13 +27,22 @@ import java.util.Map;
 @Slf4j
 @Getter
 public final class ResourceTypeDefinition {
+
+    /**
+     * The id returned for attributes that are not defined by the resource type.
+     */
+    public static final int NO_ATTRIBUTE = AttributeSymbolTable.NO_ATTRIBUTE;
+
     private final String id;
     private final String name;
     private final String description;
     private final String endpoint;
     private final SchemaResource coreSchema;
     private final Map<SchemaResource, Boolean> schemaExtensions;
-    private final Map<Path, AttributeDefinition> attributeNotationMap;
+    @Getter(AccessLevel.NONE)
+    private final AttributeSymbolTable attributes = new AttributeSymbolTable();
+    @Getter(AccessLevel.NONE)
+    private final int coreRootId;
     private final boolean discoverable;
 
     /**
@@ -68,34 +79,59 @@ public final class ResourceTypeDefinition {
         this.coreSchema = coreSchema;
         this.schemaExtensions = Collections.unmodifiableMap(schemaExtensions);
         this.discoverable = discoverable;
-        this.attributeNotationMap = new HashMap<>();
+
+        // The schema roots are children of NO_ATTRIBUTE, named by their URN
+        this.coreRootId = attributes.add(NO_ATTRIBUTE, coreSchema == null ? "" : coreSchema.getId(), null);
 
         // Add the common attributes
-        buildAttributeNotationMap(Path.root(), SchemaUtils.COMMON_ATTRIBUTE_DEFINITIONS);
+        addAttributes(coreRootId, SchemaUtils.COMMON_ATTRIBUTE_DEFINITIONS);
 
         // Add the core attributes
         if (coreSchema != null) {
-            buildAttributeNotationMap(Path.root(), coreSchema.getAttributes());
+            addAttributes(coreRootId, coreSchema.getAttributes());
         }
 
         // Add the extension attributes
         for (SchemaResource schemaExtension : schemaExtensions.keySet()) {
-            buildAttributeNotationMap(Path.root(schemaExtension.getId()), schemaExtension.getAttributes());
+            addAttributes(attributes.add(NO_ATTRIBUTE, schemaExtension.getId(), null), schemaExtension.getAttributes());
         }
     }
 
-    void buildAttributeNotationMap(final Path parentPath, final Collection<AttributeDefinition> attributes) {
-        for (AttributeDefinition attribute : attributes) {
-            Path path = parentPath.attribute(attribute.getName());
-            attributeNotationMap.put(path, attribute);
+    private void addAttributes(final int parentId, final Collection<AttributeDefinition> attributeDefinitions) {
+        for (AttributeDefinition attribute : attributeDefinitions) {
+            int id = attributes.add(parentId, attribute.getName(), attribute);
             if (attribute.getSubAttributes() != null) {
-                buildAttributeNotationMap(path, attribute.getSubAttributes());
+                addAttributes(id, attribute.getSubAttributes());
+            }
+        }
+    }
+
+    /**
+     * Retrieve the attribute definitions of this resource type by their path.  The map is built on every call.
+     *
+     * @return A map of the path of every attribute to its definition.
+     *
+     * @deprecated Use {@link #getAttributeDefinition(Path)}, or {@link #getAttributeId(int, String)} and
+     * {@link #getAttributeDefinition(int)}, which resolve attributes without building paths.
+     */
+    @Deprecated
+    public Map<Path, AttributeDefinition> getAttributeNotationMap() {
+        final Path[] paths = new Path[attributes.size()];
+        final Map<Path, AttributeDefinition> attributeNotationMap = new HashMap<>();
+        for (int id = 0; id < attributes.size(); id++) {
+            final int parentId = attributes.getParentId(id);
+            if (parentId != NO_ATTRIBUTE) {
+                paths[id] = paths[parentId].attribute(attributes.getName(id));
+                attributeNotationMap.put(paths[id], attributes.getDefinition(id));
+            } else {
+                paths[id] = id == coreRootId ? Path.root() : Path.root(attributes.getName(id));
             }
         }
+        return attributeNotationMap;
     }
 
     /**
-     * Retrieve the attribute definition for the attribute in the path.
+     * Retrieve the attribute definition for the attribute in the path.  Value filters in the path are ignored.
      *
      * @param path The attribute path.
      *
@@ -103,7 +139,53 @@ public final class ResourceTypeDefinition {
      * defined for the path.
      */
     public AttributeDefinition getAttributeDefinition(final Path path) {
-        return attributeNotationMap.get(normalizePath(path).withoutFilters());
+        if (path.size() == 0) {
+            return null;
+        }
+
+        int id = getSchemaId(path.getSchemaUrn());
+        for (int i = 0; i < path.size() && id != NO_ATTRIBUTE; i++) {
+            id = attributes.getId(id, path.getElement(i).getAttribute());
+        }
+        return attributes.getDefinition(id);
+    }
+
+    /**
+     * Retrieve the id of the root of a schema, which is the parent of the top level attributes of that schema.
+     *
+     * @param schemaUrn The URN of the core schema or of one of the schema extensions, or {@code null} for the core schema.
+     *
+     * @return The id of the schema root or {@link #NO_ATTRIBUTE} if the schema is not part of this resource type.
+     */
+    public int getSchemaId(final String schemaUrn) {
+        if (schemaUrn == null) {
+            return coreRootId;
+        }
+        return attributes.getId(NO_ATTRIBUTE, schemaUrn);
+    }
+
+    /**
+     * Retrieve the id of a sub-attribute.  Ids are assigned densely when the resource type is defined and never change, so
+     * they may be cached and used to walk a resource without building {@link Path}s.
+     *
+     * @param parentId  The id of the parent attribute or schema root.
+     * @param attribute The name of the sub-attribute, matched case-insensitively.
+     *
+     * @return The id of the sub-attribute or {@link #NO_ATTRIBUTE} if it is not defined.
+     */
+    public int getAttributeId(final int parentId, final String attribute) {
+        return parentId == NO_ATTRIBUTE ? NO_ATTRIBUTE : attributes.getId(parentId, attribute);
+    }
+
+    /**
+     * Retrieve the attribute definition for an attribute id.
+     *
+     * @param attributeId The attribute id.
+     *
+     * @return The attribute definition or {@code null} if the id is {@link #NO_ATTRIBUTE} or a schema root.
+     */
+    public AttributeDefinition getAttributeDefinition(final int attributeId) {
+        return attributes.getDefinition(attributeId);
     }
 
     /**
@@ -171,15 +253,15 @@ public final class ResourceTypeDefinition {
             Map<SchemaResource, Boolean> schemaExtensions = new HashMap<>();
 
             for (Class<?> optionalSchemaExtension : resourceType.optionalSchemaExtensions()) {
-                schemaExtensions.put(SchemaUtils.getSchema(optionalSchemaExtension), false);
+                schemaExtensions.put(SchemaRegistry.getDefault().getSchema(optionalSchemaExtension), false);
             }
 
             for (Class<?> requiredSchemaExtension : resourceType.requiredSchemaExtensions()) {
-                schemaExtensions.put(SchemaUtils.getSchema(requiredSchemaExtension), true);
+                schemaExtensions.put(SchemaRegistry.getDefault().getSchema(requiredSchemaExtension), true);
             }
 
             return new ResourceTypeDefinition(null, resourceType.name(), resourceType.description(), mapping.value()[0],
-                                              SchemaUtils.getSchema(resourceType.schema()), schemaExtensions, resourceType.discoverable());
+                                              SchemaRegistry.getDefault().getSchema(resourceType.schema()), schemaExtensions, resourceType.discoverable());
         } catch (Exception e) {
             throw new IllegalArgumentException(e);
         }
@@ -195,15 +277,15 @@ public final class ResourceTypeDefinition {
             Map<SchemaResource, Boolean> schemaExtensions = new HashMap<>();
 
             for (Class<?> optionalSchemaExtension : resourceType.optionalSchemaExtensions()) {
-                schemaExtensions.put(SchemaUtils.getSchema(optionalSchemaExtension), false);
+                schemaExtensions.put(SchemaRegistry.getDefault().getSchema(optionalSchemaExtension), false);
             }
 
             for (Class<?> requiredSchemaExtension : resourceType.requiredSchemaExtensions()) {
-                schemaExtensions.put(SchemaUtils.getSchema(requiredSchemaExtension), true);
+                schemaExtensions.put(SchemaRegistry.getDefault().getSchema(requiredSchemaExtension), true);
             }
 
             return new ResourceTypeDefinition(null, resourceType.name(), resourceType.description(), mapping.value()[0],
-                                              SchemaUtils.getSchema(resourceType.schema()), schemaExtensions, resourceType.discoverable());
+                                              SchemaRegistry.getDefault().getSchema(resourceType.schema()), schemaExtensions, resourceType.discoverable());
         } catch (Exception e) {
             throw new IllegalArgumentException(e);
         }
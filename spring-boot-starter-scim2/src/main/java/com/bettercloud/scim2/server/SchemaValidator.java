@@ -0,0 +1,617 @@
+package com.bettercloud.scim2.server;
+
+import com.bettercloud.scim2.common.Path;
+import com.bettercloud.scim2.common.exceptions.BadRequestException;
+import com.bettercloud.scim2.common.exceptions.ScimException;
+import com.bettercloud.scim2.common.messages.PatchOpType;
+import com.bettercloud.scim2.common.messages.PatchOperation;
+import com.bettercloud.scim2.common.messages.PatchRequest;
+import com.bettercloud.scim2.common.types.AttributeDefinition;
+import com.bettercloud.scim2.common.types.SchemaResource;
+import com.bettercloud.scim2.common.utils.JsonUtils;
+import com.bettercloud.scim2.common.utils.SchemaUtils;
+import com.bettercloud.scim2.common.utils.StaticUtils;
+import com.fasterxml.jackson.core.Base64Variants;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.MissingNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.time.Month;
+import java.time.Year;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Validates the resources of create and replace requests and the operations of patch requests against the schemas of a
+ * resource type: the type and multiplicity of each value, required attributes, mutability and, optionally, canonical values.
+ * <p>
+ * The attribute definitions are compiled once into a tree of validators matching the attributes by name, so a request is
+ * validated in a single walk of its JSON tree and all violations are reported, as {@link BadRequestException}s with the SCIM
+ * error type.  Attributes that are not defined by the schemas are not validated.
+ * <p>
+ * Read-only attributes in resources are stripped from the resource or reported, as configured.  Patch operations may not
+ * target read-only attributes or remove immutable attributes, and may only replace an immutable attribute with its current
+ * value, so such replace operations are rejected when the current resource is not given.
+ */
+public class SchemaValidator {
+
+    /**
+     * How read-only attributes in the resources of create and replace requests are handled.
+     */
+    public enum ReadOnlyAttributes {
+        /**
+         * Remove read-only attributes from the resource, which is how RFC 7644 says they are ignored.
+         */
+        STRIP,
+        /**
+         * Report read-only attributes as mutability errors.
+         */
+        REJECT
+    }
+
+    private enum Request {
+        CREATE, REPLACE, PATCH_ADD, PATCH_REPLACE;
+
+        boolean isPatch() {
+            return this == PATCH_ADD || this == PATCH_REPLACE;
+        }
+    }
+
+    /**
+     * The lexical form of xsd:dateTime values.  A decimal point must be followed by a digit and the time zone is optional.
+     */
+    private static final Pattern DATE_TIME = Pattern.compile(
+            "(-?(?:[1-9][0-9]{3,8}|0[0-9]{3}))-([0-9]{2})-([0-9]{2})T([0-9]{2}):([0-9]{2}):([0-9]{2})(\\.[0-9]+)?"
+            + "(Z|[+-]([0-9]{2}):([0-9]{2}))?");
+
+    private final ReadOnlyAttributes readOnlyAttributes;
+
+    private final boolean restrictCanonicalValues;
+
+    private final String coreSchemaUrn;
+
+    private final ObjectValidator core;
+
+    private final Map<String, ObjectValidator> extensions = new HashMap<>();
+
+    private final Map<String, String> extensionUrns = new HashMap<>();
+
+    private final Set<String> requiredExtensions = new HashSet<>();
+
+    /**
+     * Create a new schema validator that strips read-only attributes and allows values other than the canonical values.
+     *
+     * @param resourceType The resource type of the validated resources.
+     */
+    public SchemaValidator(final ResourceTypeDefinition resourceType) {
+        this(resourceType, ReadOnlyAttributes.STRIP, false);
+    }
+
+    /**
+     * Create a new schema validator.
+     *
+     * @param resourceType            The resource type of the validated resources.
+     * @param readOnlyAttributes      How read-only attributes in resources are handled.
+     * @param restrictCanonicalValues Whether string values of attributes with canonical values must be one of them.
+     */
+    public SchemaValidator(final ResourceTypeDefinition resourceType,
+                           final ReadOnlyAttributes readOnlyAttributes,
+                           final boolean restrictCanonicalValues) {
+        this.readOnlyAttributes = readOnlyAttributes;
+        this.restrictCanonicalValues = restrictCanonicalValues;
+
+        final SchemaResource coreSchema = resourceType.getCoreSchema();
+        this.coreSchemaUrn = coreSchema == null ? null : coreSchema.getId();
+        final List<AttributeDefinition> coreAttributes = new ArrayList<>(SchemaUtils.COMMON_ATTRIBUTE_DEFINITIONS);
+        if (coreSchema != null) {
+            coreAttributes.addAll(coreSchema.getAttributes());
+        }
+        this.core = new ObjectValidator(Path.root(), coreAttributes);
+
+        for (Map.Entry<SchemaResource, Boolean> schemaExtension : resourceType.getSchemaExtensions().entrySet()) {
+            final String urn = schemaExtension.getKey().getId();
+            final String key = StaticUtils.toLowerCase(urn);
+            extensions.put(key, new ObjectValidator(Path.root(urn), schemaExtension.getKey().getAttributes()));
+            extensionUrns.put(key, urn);
+            if (schemaExtension.getValue()) {
+                requiredExtensions.add(key);
+            }
+        }
+    }
+
+    /**
+     * Validate the resource of a create request.
+     *
+     * @param resource The resource, from which read-only attributes are stripped if configured.
+     *
+     * @return The violations, empty if the resource is valid.
+     */
+    public List<BadRequestException> validateCreate(final ObjectNode resource) {
+        final List<BadRequestException> errors = new ArrayList<>();
+        validateResource(resource, null, Request.CREATE, errors);
+        return errors;
+    }
+
+    /**
+     * Validate the resource of a replace request.
+     *
+     * @param resource The replacing resource, from which read-only attributes are stripped if configured.
+     * @param current  The current resource to check that immutable attributes are not changed, or {@code null} to not check
+     *                 them.
+     *
+     * @return The violations, empty if the resource is valid.
+     */
+    public List<BadRequestException> validateReplace(final ObjectNode resource, final ObjectNode current) {
+        final List<BadRequestException> errors = new ArrayList<>();
+        validateResource(resource, current, Request.REPLACE, errors);
+        return errors;
+    }
+
+    /**
+     * Validate the operations of a patch request without the current resource, so every replace operation of an immutable
+     * attribute is a violation.
+     *
+     * @param patchRequest The patch request.
+     *
+     * @return The violations, empty if the operations are valid.
+     */
+    public List<BadRequestException> validatePatch(final PatchRequest patchRequest) {
+        return validatePatch(patchRequest, null);
+    }
+
+    /**
+     * Validate the operations of a patch request.
+     *
+     * @param patchRequest The patch request.
+     * @param current      The current resource to allow replacing immutable attributes that have no value or the same value,
+     *                     or {@code null} to reject every replace operation of an immutable attribute.
+     *
+     * @return The violations, empty if the operations are valid.
+     */
+    public List<BadRequestException> validatePatch(final PatchRequest patchRequest, final ObjectNode current) {
+        final List<BadRequestException> errors = new ArrayList<>();
+        for (PatchOperation operation : patchRequest) {
+            validateOperation(operation, current, errors);
+        }
+        return errors;
+    }
+
+    private void validateResource(final ObjectNode resource,
+                                  final ObjectNode current,
+                                  final Request request,
+                                  final List<BadRequestException> errors) {
+        final Set<String> schemas = new HashSet<>();
+        final Set<String> presentExtensions = new HashSet<>();
+        final BitSet present = new BitSet();
+        for (Iterator<Map.Entry<String, JsonNode>> fields = resource.fields(); fields.hasNext(); ) {
+            final Map.Entry<String, JsonNode> field = fields.next();
+            final String key = StaticUtils.toLowerCase(field.getKey());
+            final ObjectValidator extension = extensions.get(key);
+            if (extension == null) {
+                validateField(core, field, fields, current, request, present, errors);
+                if (key.equals("schemas") && field.getValue().isArray()) {
+                    for (JsonNode schema : field.getValue()) {
+                        schemas.add(StaticUtils.toLowerCase(schema.asText()));
+                    }
+                }
+            } else if (field.getValue().isObject()) {
+                presentExtensions.add(key);
+                final ObjectNode currentExtension = current == null ? null : currentObject(current.get(field.getKey()));
+                validateObject(extension, (ObjectNode) field.getValue(), currentExtension, request, errors);
+            } else if (!field.getValue().isNull()) {
+                errors.add(BadRequestException.invalidValue("The value of " + extensionUrns.get(key) + " must be an object"));
+            }
+        }
+
+        if (!request.isPatch()) {
+            checkRequired(core, present, errors);
+            if (coreSchemaUrn != null && !schemas.contains(StaticUtils.toLowerCase(coreSchemaUrn))) {
+                errors.add(BadRequestException.invalidValue("The schemas attribute must contain " + coreSchemaUrn));
+            }
+            for (String extension : presentExtensions) {
+                if (!schemas.contains(extension)) {
+                    errors.add(BadRequestException.invalidValue("The schemas attribute must contain " + extensionUrns.get(extension)));
+                }
+            }
+            for (String extension : requiredExtensions) {
+                if (!presentExtensions.contains(extension)) {
+                    errors.add(BadRequestException.invalidValue("The schema extension " + extensionUrns.get(extension) + " is required"));
+                }
+            }
+        }
+    }
+
+    private void validateObject(final ObjectValidator validator,
+                                final ObjectNode object,
+                                final ObjectNode current,
+                                final Request request,
+                                final List<BadRequestException> errors) {
+        final BitSet present = new BitSet();
+        for (Iterator<Map.Entry<String, JsonNode>> fields = object.fields(); fields.hasNext(); ) {
+            validateField(validator, fields.next(), fields, current, request, present, errors);
+        }
+        if (!request.isPatch()) {
+            checkRequired(validator, present, errors);
+        }
+    }
+
+    /**
+     * Validate an attribute of an object.
+     *
+     * @param validator The validator of the object.
+     * @param field     The attribute.
+     * @param fields    The iterator of the attributes of the object, to strip a read-only attribute.
+     * @param current   The current value of the object, which is empty if the object has no value, or {@code null} if it is
+     *                  unknown.
+     * @param request   The validated request.
+     * @param present   The indexes of the required attributes with a value are added to this set.
+     * @param errors    The violations are added to this list.
+     */
+    private void validateField(final ObjectValidator validator,
+                               final Map.Entry<String, JsonNode> field,
+                               final Iterator<Map.Entry<String, JsonNode>> fields,
+                               final ObjectNode current,
+                               final Request request,
+                               final BitSet present,
+                               final List<BadRequestException> errors) {
+        final AttributeValidator attribute = validator.get(field.getKey());
+        if (attribute == null) {
+            return;
+        }
+
+        final JsonNode value = field.getValue();
+        if (attribute.isReadOnly()) {
+            if (request.isPatch() || readOnlyAttributes == ReadOnlyAttributes.REJECT) {
+                errors.add(BadRequestException.mutability("Attribute " + attribute.path + " is read-only"));
+            } else {
+                fields.remove();
+            }
+            return;
+        }
+        if (value.isNull() || (value.isArray() && value.size() == 0)) {
+            return;
+        }
+        if (attribute.requiredIndex >= 0) {
+            present.set(attribute.requiredIndex);
+        }
+
+        JsonNode currentValue = null;
+        if (current != null) {
+            currentValue = current.get(field.getKey());
+            if (currentValue == null) {
+                currentValue = current.get(attribute.definition.getName());
+            }
+            if (currentValue == null) {
+                currentValue = MissingNode.getInstance();
+            }
+        }
+        if (attribute.isImmutable() && isChanged(attribute, value, currentValue, request)) {
+            errors.add(BadRequestException.mutability("Attribute " + attribute.path + " is immutable"));
+            return;
+        }
+        validateValue(attribute, value, currentValue, request, errors);
+    }
+
+    private void validateValue(final AttributeValidator attribute,
+                               final JsonNode value,
+                               final JsonNode current,
+                               final Request request,
+                               final List<BadRequestException> errors) {
+        if (attribute.definition.isMultiValued()) {
+            if (!value.isArray()) {
+                errors.add(BadRequestException.invalidValue("Attribute " + attribute.path + " must be an array"));
+                return;
+            }
+            for (JsonNode element : value) {
+                validateSingleValue(attribute, element, null, request, errors);
+            }
+        } else if (value.isArray()) {
+            errors.add(BadRequestException.invalidValue("Attribute " + attribute.path + " must have a single value"));
+        } else {
+            validateSingleValue(attribute, value, current, request, errors);
+        }
+    }
+
+    private void validateSingleValue(final AttributeValidator attribute,
+                                     final JsonNode value,
+                                     final JsonNode current,
+                                     final Request request,
+                                     final List<BadRequestException> errors) {
+        if (value.isNull()) {
+            return;
+        }
+
+        final boolean valid;
+        switch (attribute.definition.getType()) {
+            case BOOLEAN:
+                valid = value.isBoolean();
+                break;
+            case INTEGER:
+                valid = value.isIntegralNumber();
+                break;
+            case DECIMAL:
+                valid = value.isNumber();
+                break;
+            case DATETIME:
+                valid = value.isTextual() && isDateTime(value.textValue());
+                break;
+            case BINARY:
+                valid = value.isTextual() && isBase64(value.textValue());
+                break;
+            case COMPLEX:
+                valid = value.isObject();
+                if (valid) {
+                    validateObject(attribute.subAttributes, (ObjectNode) value, current == null ? null : currentObject(current), request,
+                                   errors);
+                }
+                break;
+            default:
+                valid = value.isTextual();
+                if (valid && restrictCanonicalValues && attribute.canonicalValues != null
+                    && !attribute.canonicalValues.contains(attribute.definition.isCaseExact() ? value.textValue()
+                                                                                              : StaticUtils.toLowerCase(value.textValue()))) {
+                    errors.add(BadRequestException.invalidValue("Attribute " + attribute.path + " must be one of "
+                                                                + attribute.definition.getCanonicalValues()));
+                }
+                break;
+        }
+        if (!valid) {
+            errors.add(BadRequestException.invalidValue("Attribute " + attribute.path + " must be a "
+                                                        + attribute.definition.getType().getName() + " value"));
+        }
+    }
+
+    private void validateOperation(final PatchOperation operation, final ObjectNode current, final List<BadRequestException> errors) {
+        final Request request = operation.getOpType() == PatchOpType.ADD ? Request.PATCH_ADD : Request.PATCH_REPLACE;
+        final Path path = operation.getPath();
+        final JsonNode value = operation.getJsonNode();
+        if (path == null || (path.isRoot() && path.getSchemaUrn() == null)) {
+            if (value != null && value.isObject()) {
+                validateResource((ObjectNode) value, current, request, errors);
+            }
+            return;
+        }
+
+        ObjectValidator object = core;
+        if (path.getSchemaUrn() != null && !path.getSchemaUrn().equalsIgnoreCase(coreSchemaUrn)) {
+            object = extensions.get(StaticUtils.toLowerCase(path.getSchemaUrn()));
+            if (object == null) {
+                errors.add(BadRequestException.invalidPath("The schema of the path " + path + " is not defined"));
+                return;
+            }
+        }
+        if (path.size() == 0) {
+            // All the attributes of the core schema or a schema extension.
+            if (value != null && value.isObject()) {
+                final ObjectNode currentObject;
+                if (current == null || object == core) {
+                    currentObject = current;
+                } else {
+                    currentObject = currentObject(current.get(path.getSchemaUrn()));
+                }
+                validateObject(object, (ObjectNode) value, currentObject, request, errors);
+            }
+            return;
+        }
+
+        AttributeValidator attribute = null;
+        for (int i = 0; i < path.size(); i++) {
+            attribute = object == null ? null : object.get(path.getElement(i).getAttribute());
+            if (attribute == null) {
+                errors.add(BadRequestException.invalidPath("The attribute " + path + " is not defined"));
+                return;
+            }
+            if (path.getElement(i).getValueFilter() != null && !attribute.definition.isMultiValued()) {
+                errors.add(BadRequestException.invalidPath("The value filter of " + path + " must be on a multi-valued attribute"));
+                return;
+            }
+            if (attribute.isReadOnly()) {
+                errors.add(BadRequestException.mutability("Attribute " + attribute.path + " is read-only"));
+                return;
+            }
+            object = attribute.subAttributes;
+        }
+
+        if (operation.getOpType() == PatchOpType.REMOVE) {
+            if (attribute.isImmutable()) {
+                errors.add(BadRequestException.mutability("Attribute " + attribute.path + " is immutable"));
+            }
+            return;
+        }
+        final boolean filtered = path.getElement(path.size() - 1).getValueFilter() != null;
+        final JsonNode currentValue = filtered ? null : currentValue(path, current);
+        if (attribute.isImmutable() && request == Request.PATCH_REPLACE && isChanged(attribute, value, currentValue, request)) {
+            errors.add(BadRequestException.mutability("Attribute " + attribute.path + " is immutable"));
+            return;
+        }
+        if (value == null || value.isNull()) {
+            return;
+        }
+
+        if (attribute.definition.isMultiValued() && (filtered || !value.isArray())) {
+            // A value of the attribute, either replacing the filtered values or added to the values.
+            validateSingleValue(attribute, value, null, request, errors);
+        } else {
+            validateValue(attribute, value, currentValue, request, errors);
+        }
+    }
+
+    /**
+     * Whether a request changes the value of an immutable attribute.
+     *
+     * @param attribute The attribute.
+     * @param value     The new value.
+     * @param current   The current value, which is missing if the attribute has no value, or {@code null} if it is unknown.
+     * @param request   The request.
+     *
+     * @return {@code true} if the value is changed or may be changed.
+     */
+    private static boolean isChanged(final AttributeValidator attribute,
+                                     final JsonNode value,
+                                     final JsonNode current,
+                                     final Request request) {
+        if (current == null) {
+            return request == Request.PATCH_REPLACE;
+        }
+        if (current.isMissingNode() || current.isNull() || current.equals(value)) {
+            return false;
+        }
+        // Adding values to a multi-valued attribute keeps its current values.
+        return request != Request.PATCH_ADD || !attribute.definition.isMultiValued();
+    }
+
+    /**
+     * Get the current value of the attribute at a path without value filters.
+     *
+     * @return The value, a missing node if the attribute has no value, or {@code null} if the value is unknown or the path
+     * matches several values.
+     */
+    private static JsonNode currentValue(final Path path, final ObjectNode current) {
+        if (current == null) {
+            return null;
+        }
+        final List<JsonNode> values;
+        try {
+            values = JsonUtils.findMatchingPaths(path, current);
+        } catch (ScimException e) {
+            return null;
+        }
+        if (values.isEmpty()) {
+            return MissingNode.getInstance();
+        }
+        return values.size() == 1 ? values.get(0) : null;
+    }
+
+    /**
+     * Get the current value of an object that is known, which is empty if the object has no value.
+     */
+    private static ObjectNode currentObject(final JsonNode current) {
+        return current != null && current.isObject() ? (ObjectNode) current : JsonUtils.getJsonNodeFactory().objectNode();
+    }
+
+    private static void checkRequired(final ObjectValidator validator, final BitSet present, final List<BadRequestException> errors) {
+        for (int i = present.nextClearBit(0); i < validator.required.size(); i = present.nextClearBit(i + 1)) {
+            errors.add(BadRequestException.invalidValue("Attribute " + validator.required.get(i).path + " is required"));
+        }
+    }
+
+    /**
+     * Whether a value is an xsd:dateTime value, which RFC 7643 requires of dateTime attributes.  Unlike the values the SDK
+     * compares as instants, the time zone is optional and the year may have more than four digits.
+     */
+    private static boolean isDateTime(final String value) {
+        final Matcher matcher = DATE_TIME.matcher(value);
+        if (!matcher.matches()) {
+            return false;
+        }
+        final long year = Long.parseLong(matcher.group(1));
+        final int month = Integer.parseInt(matcher.group(2));
+        final int day = Integer.parseInt(matcher.group(3));
+        final int hour = Integer.parseInt(matcher.group(4));
+        final int minute = Integer.parseInt(matcher.group(5));
+        final int second = Integer.parseInt(matcher.group(6));
+        if (month < 1 || month > 12 || day < 1 || day > Month.of(month).length(Year.isLeap(year))) {
+            return false;
+        }
+        // The end of a day may be written as 24:00:00.
+        final boolean endOfDay = hour == 24 && minute == 0 && second == 0
+                                 && (matcher.group(7) == null || matcher.group(7).matches("\\.0+"));
+        if ((hour > 23 && !endOfDay) || minute > 59 || second > 59) {
+            return false;
+        }
+        if (matcher.group(9) != null) {
+            final int zoneHours = Integer.parseInt(matcher.group(9));
+            final int zoneMinutes = Integer.parseInt(matcher.group(10));
+            return zoneMinutes <= 59 && (zoneHours < 14 || (zoneHours == 14 && zoneMinutes == 0));
+        }
+        return true;
+    }
+
+    private static boolean isBase64(final String value) {
+        try {
+            Base64Variants.getDefaultVariant().decode(value);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * The validators of the attributes of a schema or the sub-attributes of a complex attribute, by lower case name.
+     */
+    private static final class ObjectValidator {
+
+        private final Map<String, AttributeValidator> attributes = new HashMap<>();
+
+        /**
+         * The required attributes that are not read-only, in the order of their {@link AttributeValidator#requiredIndex}.
+         */
+        private final List<AttributeValidator> required = new ArrayList<>();
+
+        private ObjectValidator(final Path parent, final Collection<AttributeDefinition> attributeDefinitions) {
+            for (AttributeDefinition definition : attributeDefinitions) {
+                final boolean isRequired = definition.isRequired()
+                                           && definition.getMutability() != AttributeDefinition.Mutability.READ_ONLY;
+                final AttributeValidator attribute = new AttributeValidator(parent.attribute(definition.getName()), definition,
+                                                                            isRequired ? required.size() : -1);
+                attributes.put(StaticUtils.toLowerCase(definition.getName()), attribute);
+                if (isRequired) {
+                    required.add(attribute);
+                }
+            }
+        }
+
+        private AttributeValidator get(final String name) {
+            return attributes.get(StaticUtils.toLowerCase(name));
+        }
+    }
+
+    /**
+     * The compiled definition of an attribute.
+     */
+    private static final class AttributeValidator {
+
+        private final Path path;
+
+        private final AttributeDefinition definition;
+
+        private final int requiredIndex;
+
+        private final ObjectValidator subAttributes;
+
+        private final Set<String> canonicalValues;
+
+        private AttributeValidator(final Path path, final AttributeDefinition definition, final int requiredIndex) {
+            this.path = path;
+            this.definition = definition;
+            this.requiredIndex = requiredIndex;
+            this.subAttributes = definition.getSubAttributes() == null ? null
+                                                                       : new ObjectValidator(path, definition.getSubAttributes());
+            if (definition.getCanonicalValues() == null || definition.getCanonicalValues().isEmpty()) {
+                this.canonicalValues = null;
+            } else {
+                this.canonicalValues = new HashSet<>();
+                for (String canonicalValue : definition.getCanonicalValues()) {
+                    canonicalValues.add(definition.isCaseExact() ? canonicalValue : StaticUtils.toLowerCase(canonicalValue));
+                }
+            }
+        }
+
+        private boolean isReadOnly() {
+            return definition.getMutability() == AttributeDefinition.Mutability.READ_ONLY;
+        }
+
+        private boolean isImmutable() {
+            return definition.getMutability() == AttributeDefinition.Mutability.IMMUTABLE;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.bettercloud.scim2.server;
+
+import com.bettercloud.scim2.common.Path;
+import com.bettercloud.scim2.common.exceptions.BadRequestException;
+import com.bettercloud.scim2.common.filters.Filter;
+import com.bettercloud.scim2.common.messages.SortOrder;
+import com.bettercloud.scim2.common.utils.JsonUtils;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import org.springframework.util.DigestUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * The position of a page for cursor-based pagination: the sort value and id of the last resource of the previous page.  The
+ * next page starts with the first resource ordered after that position, so a cursor needs no server side state and backends
+ * can resume with a seek, for example {@code WHERE (sort_key, id) > (?, ?)}, instead of skipping the preceding results.
+ * <p>
+ * Cursors are sent to clients as opaque URL safe strings.  A cursor also carries a hash of the filter and sort order of its
+ * query, so a cursor is not silently applied to a query that orders the resources differently.
+ */
+@Getter
+@EqualsAndHashCode
+public final class ScimCursor {
+
+    private final JsonNode sortValue;
+
+    private final String id;
+
+    private final String queryHash;
+
+    /**
+     * Create a new cursor that is not bound to a query.
+     *
+     * @param sortValue The sort value of the last resource of the page, or {@code null} if the results are not sorted or the
+     *                  resource has no value.
+     * @param id        The id of the last resource of the page.
+     */
+    public ScimCursor(final JsonNode sortValue, final String id) {
+        this(sortValue, id, null);
+    }
+
+    /**
+     * Create a new cursor.
+     *
+     * @param sortValue The sort value of the last resource of the page, or {@code null} if the results are not sorted or the
+     *                  resource has no value.
+     * @param id        The id of the last resource of the page.
+     * @param queryHash The {@link #hashQuery(Filter, Path, SortOrder) hash} of the query of the page, or {@code null}.
+     */
+    public ScimCursor(final JsonNode sortValue, final String id, final String queryHash) {
+        this.sortValue = sortValue == null || sortValue.isNull() ? null : sortValue;
+        this.id = id;
+        this.queryHash = queryHash;
+    }
+
+    /**
+     * Hash the parameters of a query that determine which resources a cursor position refers to.
+     *
+     * @param filter    The filter of the query, or {@code null}.
+     * @param sortBy    The sortBy path of the query, or {@code null}.
+     * @param sortOrder The sort order of the query, or {@code null} for ascending.
+     *
+     * @return The query hash.
+     */
+    public static String hashQuery(final Filter filter, final Path sortBy, final SortOrder sortOrder) {
+        final String query = (filter == null ? "" : filter.toString()) + '\n' +
+                             (sortBy == null ? "" : sortBy.toString()) + '\n' +
+                             (sortOrder == null ? SortOrder.ASCENDING : sortOrder).getName();
+        return DigestUtils.md5DigestAsHex(query.getBytes(StandardCharsets.UTF_8)).substring(0, 16);
+    }
+
+    /**
+     * Encode this cursor for a list response.
+     *
+     * @return The opaque cursor string.
+     */
+    public String encode() {
+        final ArrayNode position = JsonUtils.getJsonNodeFactory().arrayNode();
+        position.add(sortValue);
+        position.add(id);
+        position.add(queryHash);
+        try {
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(JsonUtils.getObjectWriter().writeValueAsBytes(position));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unable to encode cursor", e);
+        }
+    }
+
+    /**
+     * Decode a cursor sent by a client.
+     *
+     * @param cursor The opaque cursor string.
+     *
+     * @return The decoded cursor.
+     *
+     * @throws BadRequestException If the cursor was not created by {@link #encode()}.
+     */
+    public static ScimCursor decode(final String cursor) throws BadRequestException {
+        final JsonNode position;
+        try {
+            position = JsonUtils.getObjectReader().forType(JsonNode.class).readValue(Base64.getUrlDecoder().decode(cursor));
+        } catch (IllegalArgumentException | IOException e) {
+            throw BadRequestException.invalidCursor("Invalid cursor '" + cursor + "'");
+        }
+
+        if (position == null || !position.isArray() || position.size() != 3 || !isTextOrNull(position.get(1)) ||
+            !isTextOrNull(position.get(2))) {
+            throw BadRequestException.invalidCursor("Invalid cursor '" + cursor + "'");
+        }
+        return new ScimCursor(position.get(0), position.get(1).textValue(), position.get(2).textValue());
+    }
+
+    private static boolean isTextOrNull(final JsonNode node) {
+        return node.isTextual() || node.isNull();
+    }
+}
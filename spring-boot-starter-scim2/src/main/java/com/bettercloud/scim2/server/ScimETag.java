@@ -0,0 +1,122 @@
+package com.bettercloud.scim2.server;
+
+import com.bettercloud.scim2.common.ScimResource;
+import com.bettercloud.scim2.common.exceptions.NotModifiedException;
+import com.bettercloud.scim2.common.exceptions.PreconditionFailedException;
+import com.bettercloud.scim2.common.types.Meta;
+import com.bettercloud.scim2.common.utils.JsonUtils;
+import com.google.common.io.BaseEncoding;
+import com.google.common.io.ByteStreams;
+import org.springframework.http.HttpMethod;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Entity tags of SCIM resources.  The version of a resource is its {@code meta.version} when the backend provides one, which costs
+ * nothing to compute.  Otherwise it is a weak entity tag of the hash of the serialized resource, computed while serializing into the
+ * digest so the serialized bytes are never buffered.
+ */
+public final class ScimETag {
+
+    private ScimETag() {
+    }
+
+    /**
+     * Get the entity tag of a resource.
+     *
+     * @param resource The resource.
+     *
+     * @return The {@code meta.version} of the resource as an entity tag, or a weak entity tag of the serialized resource if it has no
+     * version.
+     */
+    public static String of(final ScimResource resource) {
+        final Meta meta = resource.getMeta();
+        if (meta != null && !StringUtils.isEmpty(meta.getVersion())) {
+            return toETag(meta.getVersion());
+        }
+
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 is not supported", e);
+        }
+
+        try {
+            JsonUtils.getObjectWriter().writeValue(new DigestOutputStream(ByteStreams.nullOutputStream(), digest), resource);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to compute the version of resource " + resource.getId(), e);
+        }
+        return "W/\"" + BaseEncoding.base16().lowerCase().encode(digest.digest()) + "\"";
+    }
+
+    /**
+     * Check whether an entity tag matches one of the entity tags of an If-Match or If-None-Match header.  SCIM versions are weak
+     * entity tags, so weak comparison is used for both headers.
+     *
+     * @param eTag   The entity tag of the current resource.
+     * @param header The value of the header, may be null.
+     *
+     * @return true if the header contains the entity tag or "*".
+     */
+    public static boolean matches(final String eTag, final String header) {
+        if (StringUtils.isEmpty(header)) {
+            return false;
+        }
+
+        final String opaqueTag = opaqueTag(eTag);
+        for (String entityTag : StringUtils.commaDelimitedListToStringArray(header)) {
+            entityTag = entityTag.trim();
+            if (entityTag.equals("*") || opaqueTag(entityTag).equals(opaqueTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Evaluate the preconditions of a request against the current resource before the request is processed.  A modification with an
+     * If-Match header that does not match the current version fails, and a retrieval with an If-None-Match header that matches the
+     * current version is answered with 304 Not Modified before the resource is converted or serialized.
+     *
+     * @param current     The current resource.
+     * @param method      The method of the request.
+     * @param ifMatch     The value of the If-Match header, may be null.
+     * @param ifNoneMatch The value of the If-None-Match header, may be null.
+     *
+     * @throws PreconditionFailedException If the If-Match header of a PUT, PATCH or DELETE request does not match.
+     * @throws NotModifiedException        If the If-None-Match header of a GET or HEAD request matches.
+     */
+    public static void checkPreconditions(final ScimResource current,
+                                          final HttpMethod method,
+                                          final String ifMatch,
+                                          final String ifNoneMatch) throws PreconditionFailedException, NotModifiedException {
+        if (method == HttpMethod.PUT || method == HttpMethod.PATCH || method == HttpMethod.DELETE) {
+            if (!StringUtils.isEmpty(ifMatch)) {
+                final String eTag = of(current);
+                if (!matches(eTag, ifMatch)) {
+                    throw new PreconditionFailedException("Resource " + current.getId() + " has been modified", null, eTag, null);
+                }
+            }
+        } else if (method == HttpMethod.GET || method == HttpMethod.HEAD) {
+            if (!StringUtils.isEmpty(ifNoneMatch)) {
+                final String eTag = of(current);
+                if (matches(eTag, ifNoneMatch)) {
+                    throw new NotModifiedException("Resource " + current.getId() + " has not been modified", null, eTag, null);
+                }
+            }
+        }
+    }
+
+    private static String toETag(final String version) {
+        return version.startsWith("\"") || version.startsWith("W/\"") ? version : "W/\"" + version + "\"";
+    }
+
+    private static String opaqueTag(final String entityTag) {
+        return entityTag.startsWith("W/") ? entityTag.substring(2) : entityTag;
+    }
+}
@@ -0,0 +1,462 @@
+package com.bettercloud.scim2.server;
+
+import com.bettercloud.scim2.common.Path;
+import com.bettercloud.scim2.common.ScimResource;
+import com.bettercloud.scim2.common.exceptions.BadRequestException;
+import com.bettercloud.scim2.common.exceptions.ScimException;
+import com.bettercloud.scim2.common.filters.Filter;
+import com.bettercloud.scim2.common.messages.ListResponse;
+import com.bettercloud.scim2.common.messages.SearchRequest;
+import com.bettercloud.scim2.common.messages.SortOrder;
+import com.bettercloud.scim2.common.types.AttributeDefinition;
+import com.bettercloud.scim2.common.types.PaginationConfig;
+import com.bettercloud.scim2.common.utils.JsonUtils;
+import com.bettercloud.scim2.server.evaluator.SchemaAwareBatchFilterEvaluator;
+import com.bettercloud.scim2.server.evaluator.SchemaAwarePojoFilterEvaluator;
+import com.bettercloud.scim2.server.evaluator.SchemaAwareFilterOptimizer;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Filters, sorts and pages resources held by the service provider as described in RFC 7644 section 3.4.2, using either
+ * index-based pagination with {@code startIndex} or cursor-based pagination with a {@link ScimCursor}.  The supported pagination
+ * methods and the page sizes follow the {@link PaginationConfig} of the service provider.
+ * <p>
+ * The resources are read once.  When sorting, only the {@code startIndex + count - 1} smallest resources are kept in a bounded
+ * heap, so retrieving the first page of a large result set does not sort the whole set.  Resources with the same sort value
+ * keep the order in which they were read.
+ *
+ * @param <RESOURCE> The resource type.
+ */
+public class ScimQueryEngine<RESOURCE extends ScimResource> {
+
+    private static final int MAX_INITIAL_CAPACITY = 1024;
+
+    private final ResourceTypeDefinition resourceTypeDefinition;
+
+    private final SchemaAwarePojoFilterEvaluator filterEvaluator;
+
+    private final SchemaAwareFilterOptimizer filterOptimizer;
+
+    private final boolean cursorSupported;
+
+    private final boolean indexSupported;
+
+    private final boolean cursorByDefault;
+
+    private final int defaultPageSize;
+
+    private final int maxPageSize;
+
+    /**
+     * Create a new query engine that only supports index-based pagination.
+     *
+     * @param resourceTypeDefinition The resource type definition of the resources to query.
+     * @param maxResults             The maximum number of resources returned in a response, usually
+     *                               {@code scim2.service-provider-config.filter.maxResults}.
+     */
+    public ScimQueryEngine(final ResourceTypeDefinition resourceTypeDefinition, final int maxResults) {
+        this(resourceTypeDefinition, maxResults, null);
+    }
+
+    /**
+     * Create a new query engine.
+     *
+     * @param resourceTypeDefinition The resource type definition of the resources to query.
+     * @param maxResults             The maximum number of resources returned in a response, usually
+     *                               {@code scim2.service-provider-config.filter.maxResults}.
+     * @param pagination             The pagination configuration of the service provider, usually
+     *                               {@code scim2.service-provider-config.pagination}, or {@code null} to only support index-based
+     *                               pagination.  The maximum page size further limits the number of resources in a response, and
+     *                               the default page size is used when no count is requested.  Cursor-based pagination is the
+     *                               default if it is the default pagination method or index-based pagination is not supported.
+     */
+    public ScimQueryEngine(final ResourceTypeDefinition resourceTypeDefinition, final int maxResults, final PaginationConfig pagination) {
+        this.resourceTypeDefinition = resourceTypeDefinition;
+        this.filterEvaluator = new SchemaAwarePojoFilterEvaluator(resourceTypeDefinition);
+        this.filterOptimizer = new SchemaAwareFilterOptimizer(resourceTypeDefinition);
+        this.cursorSupported = pagination != null && pagination.isCursor();
+        this.indexSupported = pagination == null || pagination.isIndex();
+        this.cursorByDefault = cursorSupported && (!indexSupported || "cursor".equalsIgnoreCase(pagination.getDefaultPaginationMethod()));
+        this.maxPageSize = pagination == null || pagination.getMaxPageSize() == null
+                           ? maxResults
+                           : Math.min(maxResults, pagination.getMaxPageSize());
+        this.defaultPageSize = pagination == null || pagination.getDefaultPageSize() == null
+                               ? maxPageSize
+                               : Math.min(maxPageSize, pagination.getDefaultPageSize());
+    }
+
+    /**
+     * Query resources with the parameters of a search request.  Cursor-based pagination is used if the search request has a
+     * cursor, or if it has neither a cursor nor a start index and cursor-based pagination is the default.
+     *
+     * @param resources     The resources to query.
+     * @param searchRequest The search request.
+     *
+     * @return The requested page of matching resources.
+     *
+     * @throws ScimException If the filter, sortBy or cursor parameter is invalid, the request has a cursor or start index but
+     *                       that pagination method is not supported, or the resources can not be evaluated.
+     */
+    public ListResponse<RESOURCE> query(final Iterable<RESOURCE> resources, final SearchRequest searchRequest) throws ScimException {
+        if (searchRequest.getCursor() != null || cursorByDefault && searchRequest.getStartIndex() == null) {
+            return queryByCursor(resources,
+                                 searchRequest.getFilter(),
+                                 searchRequest.getSortBy(),
+                                 searchRequest.getSortOrder(),
+                                 searchRequest.getCursor() == null ? "" : searchRequest.getCursor(),
+                                 searchRequest.getCount());
+        }
+        return query(resources,
+                     searchRequest.getFilter(),
+                     searchRequest.getSortBy(),
+                     searchRequest.getSortOrder(),
+                     searchRequest.getStartIndex(),
+                     searchRequest.getCount());
+    }
+
+    /**
+     * Query resources.  A missing or non-positive start index starts at the first resource, and a start index is rejected if
+     * index-based pagination is not supported.  The count is capped at the maximum page size, and the default page size is used
+     * when no count is requested.
+     *
+     * @param resources  The resources to query.
+     * @param filter     The filter, or {@code null} to match all resources.
+     * @param sortBy     The path of the attribute to sort by, or {@code null} to keep the order of the resources.
+     * @param sortOrder  The sort order, or {@code null} to sort ascending.
+     * @param startIndex The 1-based index of the first resource to return, may be {@code null}.
+     * @param count      The maximum number of resources to return, may be {@code null}.
+     *
+     * @return The requested page of matching resources, with the total number of matching resources.
+     *
+     * @throws ScimException If the filter or sortBy parameter is invalid, the query has a start index but index-based pagination
+     *                       is not supported, or the resources can not be evaluated.
+     */
+    public ListResponse<RESOURCE> query(final Iterable<RESOURCE> resources,
+                                        final String filter,
+                                        final String sortBy,
+                                        final SortOrder sortOrder,
+                                        final Integer startIndex,
+                                        final Integer count) throws ScimException {
+        if (startIndex != null && !indexSupported) {
+            throw BadRequestException.invalidValue("Index-based pagination is not supported");
+        }
+
+        final Filter parsedFilter = parseFilter(filter);
+        final Sort sort = StringUtils.isEmpty(sortBy) ? null : new Sort(Path.fromString(sortBy), sortOrder == SortOrder.DESCENDING, false);
+        final int offset = startIndex == null || startIndex < 1 ? 0 : startIndex - 1;
+        final int pageSize = getPageSize(count);
+        final long limit = (long) offset + pageSize;
+
+        final List<RESOURCE> page = new ArrayList<>();
+        final PriorityQueue<Entry<RESOURCE>> heap = sort == null || pageSize == 0 ? null : createHeap(sort, limit);
+        int totalResults = 0;
+        for (RESOURCE resource : resources) {
+            if (!matches(parsedFilter, resource)) {
+                continue;
+            }
+
+            final int index = totalResults++;
+            if (heap == null) {
+                if (index >= offset && index < limit) {
+                    page.add(resource);
+                }
+            } else {
+                offer(heap, sort, limit, new Entry<>(resource, sort.getValue(resource), index));
+            }
+        }
+
+        if (heap != null) {
+            final List<Entry<RESOURCE>> entries = sorted(heap, sort);
+            for (int i = offset; i < entries.size(); i++) {
+                page.add(entries.get(i).resource);
+            }
+        }
+
+        return new ListResponse<>(totalResults, page, offset + 1, page.size());
+    }
+
+    /**
+     * Query resources using cursor-based pagination.  The resources are ordered by the sort value and then by id, and each
+     * page starts after the position encoded in the cursor, so pages stay consistent while resources are added or removed.
+     * A cursor is only valid for the filter, sortBy and sortOrder of the query that returned it.  The count is capped at the
+     * maximum page size, and the default page size is used when no count is requested.
+     *
+     * @param resources The resources to query.
+     * @param filter    The filter, or {@code null} to match all resources.
+     * @param sortBy    The path of the attribute to sort by, or {@code null} to order by id only.
+     * @param sortOrder The sort order, or {@code null} to sort ascending.
+     * @param cursor    The {@link ListResponse#getNextCursor() next cursor} of the previous page, or {@code null} or an empty
+     *                  string for the first page.
+     * @param count     The maximum number of resources to return, may be {@code null}.
+     *
+     * @return The requested page of matching resources, with the total number of matching resources and the cursor of the next
+     * page if there are more resources.
+     *
+     * @throws ScimException If the filter, sortBy or cursor parameter is invalid, cursor-based pagination is not supported, or
+     *                       the resources can not be evaluated.
+     */
+    public ListResponse<RESOURCE> queryByCursor(final Iterable<RESOURCE> resources,
+                                                final String filter,
+                                                final String sortBy,
+                                                final SortOrder sortOrder,
+                                                final String cursor,
+                                                final Integer count) throws ScimException {
+        if (!cursorSupported) {
+            throw BadRequestException.invalidCursor("Cursor-based pagination is not supported");
+        }
+
+        final Filter parsedFilter = StringUtils.isEmpty(filter) ? null : Filter.fromString(filter);
+        final Path sortPath = StringUtils.isEmpty(sortBy) ? null : Path.fromString(sortBy);
+        final Sort sort = new Sort(sortPath, sortOrder == SortOrder.DESCENDING, true);
+        final String queryHash = ScimCursor.hashQuery(parsedFilter, sortPath, sortOrder);
+        Entry<RESOURCE> after = null;
+        if (!StringUtils.isEmpty(cursor)) {
+            final ScimCursor decoded = ScimCursor.decode(cursor);
+            if (!queryHash.equals(decoded.getQueryHash())) {
+                throw BadRequestException.invalidCursor("The cursor '" + cursor + "' was returned for a different filter or sort order");
+            }
+            after = Entry.after(decoded);
+        }
+        final Filter optimizedFilter = optimize(parsedFilter);
+        final int pageSize = getPageSize(count);
+
+        final PriorityQueue<Entry<RESOURCE>> heap = pageSize == 0 ? null : createHeap(sort, pageSize);
+        int totalResults = 0;
+        int remaining = 0;
+        for (RESOURCE resource : resources) {
+            if (!matches(optimizedFilter, resource)) {
+                continue;
+            }
+
+            final Entry<RESOURCE> entry = new Entry<>(resource, sort.getValue(resource), totalResults++);
+            if (after == null || sort.compareKeys(entry, after) > 0) {
+                remaining++;
+                if (heap != null) {
+                    offer(heap, sort, pageSize, entry);
+                }
+            }
+        }
+
+        final List<RESOURCE> page = new ArrayList<>();
+        String nextCursor = null;
+        if (heap != null) {
+            final List<Entry<RESOURCE>> entries = sorted(heap, sort);
+            for (Entry<RESOURCE> entry : entries) {
+                page.add(entry.resource);
+            }
+            if (remaining > entries.size()) {
+                final Entry<RESOURCE> last = entries.get(entries.size() - 1);
+                nextCursor = new ScimCursor(last.sortValue, last.id, queryHash).encode();
+            }
+        }
+
+        return new ListResponse<>(totalResults, page, null, page.size(), nextCursor);
+    }
+
+    /**
+     * Find the resources matching each of many filters with a single pass over the resources, for example to look up the
+     * resources matching {@code userName eq "..."} for each record of a batch.  The attribute values referenced by several
+     * filters are retrieved once per resource, and {@code eq} filters comparing an attribute with a string or boolean value are
+     * answered with hash lookups instead of being evaluated one by one.
+     *
+     * @param resources The resources to query.
+     * @param filters   The filters, a {@code null} or empty filter matches all resources.
+     *
+     * @return The matching resources for each filter, in the order of the filters, each in the order of the resources.
+     *
+     * @throws ScimException If a filter is invalid or the resources can not be evaluated.
+     */
+    public List<List<RESOURCE>> queryBatch(final Iterable<RESOURCE> resources, final List<String> filters) throws ScimException {
+        final List<Filter> parsedFilters = new ArrayList<>();
+        final List<Integer> filterIndexes = new ArrayList<>();
+        final List<List<RESOURCE>> results = new ArrayList<>(filters.size());
+        final List<Integer> matchAll = new ArrayList<>();
+        for (int i = 0; i < filters.size(); i++) {
+            results.add(new ArrayList<>());
+            final Filter parsedFilter = parseFilter(filters.get(i));
+            if (parsedFilter == null) {
+                matchAll.add(i);
+            } else {
+                parsedFilters.add(parsedFilter);
+                filterIndexes.add(i);
+            }
+        }
+
+        final SchemaAwareBatchFilterEvaluator batchEvaluator = new SchemaAwareBatchFilterEvaluator(resourceTypeDefinition, parsedFilters);
+        for (RESOURCE resource : resources) {
+            for (int i : matchAll) {
+                results.get(i).add(resource);
+            }
+            if (parsedFilters.isEmpty()) {
+                continue;
+            }
+            final BitSet matches = batchEvaluator.evaluate(resource.asGenericScimResource().getObjectNode());
+            for (int i = matches.nextSetBit(0); i >= 0; i = matches.nextSetBit(i + 1)) {
+                results.get(filterIndexes.get(i)).add(resource);
+            }
+        }
+        return results;
+    }
+
+    private int getPageSize(final Integer count) {
+        return count == null ? defaultPageSize : Math.max(0, Math.min(count, maxPageSize));
+    }
+
+    private Filter parseFilter(final String filter) throws ScimException {
+        return optimize(StringUtils.isEmpty(filter) ? null : Filter.fromString(filter));
+    }
+
+    private Filter optimize(final Filter filter) throws ScimException {
+        // Every resource is matched against the filter, so cheap and selective components are moved first once per query.
+        return filter == null ? null : filterOptimizer.optimize(filter);
+    }
+
+    private boolean matches(final Filter filter, final RESOURCE resource) throws ScimException {
+        // Typed resources are evaluated without converting them to JSON, only sorting needs the JSON representation.
+        return filter == null || filter.visit(filterEvaluator, resource);
+    }
+
+    private PriorityQueue<Entry<RESOURCE>> createHeap(final Sort sort, final long limit) {
+        return new PriorityQueue<>((int) Math.min(limit, MAX_INITIAL_CAPACITY), sort.reversed());
+    }
+
+    /**
+     * Add an entry to a heap holding the smallest entries seen so far.
+     */
+    private void offer(final PriorityQueue<Entry<RESOURCE>> heap, final Sort sort, final long limit, final Entry<RESOURCE> entry) {
+        if (heap.size() < limit) {
+            heap.add(entry);
+        } else if (sort.compare(entry, heap.peek()) < 0) {
+            heap.poll();
+            heap.add(entry);
+        }
+    }
+
+    private List<Entry<RESOURCE>> sorted(final PriorityQueue<Entry<RESOURCE>> heap, final Sort sort) {
+        final List<Entry<RESOURCE>> entries = new ArrayList<>(heap);
+        entries.sort(sort);
+        return entries;
+    }
+
+    private static final class Entry<RESOURCE extends ScimResource> {
+
+        private final RESOURCE resource;
+
+        private final JsonNode sortValue;
+
+        private final String id;
+
+        private final int index;
+
+        private Entry(final RESOURCE resource, final JsonNode sortValue, final int index) {
+            this(resource, sortValue, resource.getId(), index);
+        }
+
+        private Entry(final RESOURCE resource, final JsonNode sortValue, final String id, final int index) {
+            this.resource = resource;
+            this.sortValue = sortValue;
+            this.id = id;
+            this.index = index;
+        }
+
+        private static <RESOURCE extends ScimResource> Entry<RESOURCE> after(final ScimCursor cursor) {
+            return new Entry<>(null, cursor.getSortValue(), cursor.getId(), -1);
+        }
+    }
+
+    /**
+     * Orders entries by their sort value.  Resources without a value are ordered last when sorting ascending and first when
+     * sorting descending.  Ties are broken by id for cursor-based pagination, and then by the order in which the resources were
+     * read.
+     */
+    private final class Sort implements Comparator<Entry<RESOURCE>> {
+
+        private final Path path;
+
+        private final Path primaryPath;
+
+        private final AttributeDefinition attributeDefinition;
+
+        private final boolean descending;
+
+        private final boolean byId;
+
+        private Sort(final Path path, final boolean descending, final boolean byId) throws ScimException {
+            this.path = path;
+            this.attributeDefinition = path == null ? null : resourceTypeDefinition.getAttributeDefinition(path);
+            this.descending = descending;
+            this.byId = byId;
+
+            // The value of a multi-valued attribute is taken from the primary value if there is one.
+            final AttributeDefinition parent = path != null && path.size() > 1
+                                               ? resourceTypeDefinition.getAttributeDefinition(path.subPath(1))
+                                               : null;
+            this.primaryPath = parent != null && parent.isMultiValued() ? path.replace(0, Filter.eq("primary", true)) : null;
+        }
+
+        private JsonNode getValue(final RESOURCE resource) throws ScimException {
+            if (path == null) {
+                return null;
+            }
+
+            final ObjectNode objectNode = resource.asGenericScimResource().getObjectNode();
+            List<JsonNode> values = primaryPath == null ? null : JsonUtils.findMatchingPaths(primaryPath, objectNode);
+            if (values == null || values.isEmpty()) {
+                values = JsonUtils.findMatchingPaths(path, objectNode);
+            }
+
+            for (JsonNode value : values) {
+                if (value.isArray()) {
+                    value = getPrimaryValue(value);
+                }
+                if (value != null && !value.isNull() && !value.isMissingNode()) {
+                    return value;
+                }
+            }
+            return null;
+        }
+
+        private JsonNode getPrimaryValue(final JsonNode values) {
+            JsonNode result = values.size() == 0 ? null : values.get(0);
+            for (JsonNode value : values) {
+                if (value.path("primary").asBoolean()) {
+                    result = value;
+                    break;
+                }
+            }
+            return result != null && result.isObject() ? result.get("value") : result;
+        }
+
+        @Override
+        public int compare(final Entry<RESOURCE> e1, final Entry<RESOURCE> e2) {
+            final int result = compareKeys(e1, e2);
+            return result != 0 ? result : Integer.compare(e1.index, e2.index);
+        }
+
+        private int compareKeys(final Entry<RESOURCE> e1, final Entry<RESOURCE> e2) {
+            int result;
+            if (e1.sortValue == null || e2.sortValue == null) {
+                result = e1.sortValue == null ? (e2.sortValue == null ? 0 : 1) : -1;
+            } else {
+                result = JsonUtils.compareTo(e1.sortValue, e2.sortValue, attributeDefinition);
+            }
+            if (descending) {
+                result = -result;
+            }
+            if (result == 0 && byId) {
+                result = e1.id == null || e2.id == null
+                         ? (e1.id == null ? (e2.id == null ? 0 : 1) : -1)
+                         : e1.id.compareTo(e2.id);
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,374 @@
+package com.bettercloud.scim2.server;
+
+import com.bettercloud.scim2.common.GenericScimResource;
+import com.bettercloud.scim2.common.Path;
+import com.bettercloud.scim2.common.exceptions.BadRequestException;
+import com.bettercloud.scim2.common.exceptions.ResourceConflictException;
+import com.bettercloud.scim2.common.exceptions.ScimException;
+import com.bettercloud.scim2.common.filters.Filter;
+import com.bettercloud.scim2.common.types.AttributeDefinition;
+import com.bettercloud.scim2.common.types.SchemaResource;
+import com.bettercloud.scim2.common.utils.JsonUtils;
+import com.bettercloud.scim2.common.utils.SchemaUtils;
+import com.bettercloud.scim2.common.utils.StaticUtils;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ValueNode;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Checks the uniqueness of the attribute values of new or replaced resources, with a local Bloom filter of the values in use
+ * for each unique attribute so that the backend is only queried for values that may be in use.
+ * <p>
+ * The unique attributes are the attributes of the resource type with a uniqueness of {@code server} or {@code global} that
+ * are set by clients: single-valued simple attributes that are not read-only, including sub-attributes of single-valued
+ * complex attributes.  Values are compared like the filter evaluator does, strings of attributes that are not case exact are
+ * compared ignoring case.
+ * <p>
+ * The Bloom filters grow with the number of values, keeping the false positive rate at about the configured rate, but values
+ * can not be removed from them.  The values of removed or modified resources only cost a backend query when they are checked,
+ * and {@link #rebuild(Iterable)} drops them.  Until the guard is rebuilt for the first time every value is checked against
+ * the backend.
+ * <p>
+ * All methods may be called concurrently.
+ */
+public class UniquenessGuard {
+
+    /**
+     * Queries the backend for resources matching a filter.
+     */
+    @FunctionalInterface
+    public interface Lookup {
+
+        /**
+         * Check whether any resource matches a filter.
+         *
+         * @param filter An equality filter on a unique attribute, combined with an inequality filter on the {@code id} when
+         *               the checked resource has an id.
+         *
+         * @return {@code true} if a resource matches the filter.
+         *
+         * @throws ScimException If the backend can not be queried.
+         */
+        boolean exists(Filter filter) throws ScimException;
+    }
+
+    /**
+     * The default maximum false positive rate of the Bloom filters.
+     */
+    public static final double DEFAULT_FALSE_POSITIVE_RATE = 0.01;
+
+    private static final int INITIAL_CAPACITY = 1 << 12;
+
+    private static final Path ID = Path.root().attribute("id");
+
+    private final Lookup lookup;
+
+    private final double falsePositiveRate;
+
+    private final Map<Path, AttributeDefinition> attributes = new LinkedHashMap<>();
+
+    private volatile Map<Path, ScalableBloomFilter> filters;
+
+    private volatile Map<Path, ScalableBloomFilter> rebuiltFilters;
+
+    private final LongAdder checks = new LongAdder();
+
+    private final LongAdder possibleMatches = new LongAdder();
+
+    private final LongAdder conflicts = new LongAdder();
+
+    /**
+     * Create a new uniqueness guard with the {@link #DEFAULT_FALSE_POSITIVE_RATE default false positive rate}.
+     *
+     * @param resourceType The resource type of the checked resources.
+     * @param lookup       The lookup of values in the backend.
+     */
+    public UniquenessGuard(final ResourceTypeDefinition resourceType, final Lookup lookup) {
+        this(resourceType, DEFAULT_FALSE_POSITIVE_RATE, lookup);
+    }
+
+    /**
+     * Create a new uniqueness guard.
+     *
+     * @param resourceType      The resource type of the checked resources.
+     * @param falsePositiveRate The maximum rate of values not in use that are checked against the backend, between 0 and 1.
+     * @param lookup            The lookup of values in the backend.
+     */
+    public UniquenessGuard(final ResourceTypeDefinition resourceType, final double falsePositiveRate, final Lookup lookup) {
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("falsePositiveRate must be between 0 and 1");
+        }
+        this.lookup = lookup;
+        this.falsePositiveRate = falsePositiveRate;
+
+        addAttributes(Path.root(), SchemaUtils.COMMON_ATTRIBUTE_DEFINITIONS);
+        if (resourceType.getCoreSchema() != null) {
+            addAttributes(Path.root(), resourceType.getCoreSchema().getAttributes());
+        }
+        for (SchemaResource schemaExtension : resourceType.getSchemaExtensions().keySet()) {
+            addAttributes(Path.root(schemaExtension.getId()), schemaExtension.getAttributes());
+        }
+    }
+
+    /**
+     * Retrieve the paths of the unique attributes.
+     *
+     * @return The paths of the unique attributes checked by this guard.
+     */
+    public Collection<Path> getUniqueAttributes() {
+        return Collections.unmodifiableSet(attributes.keySet());
+    }
+
+    /**
+     * Check that the values of the unique attributes of a resource are not in use by another resource.
+     *
+     * @param resource The new resource, or the replacement of a resource with its id.
+     *
+     * @throws ResourceConflictException If a value is in use by another resource.
+     * @throws ScimException             If the backend can not be queried.
+     */
+    public void checkUniqueness(final GenericScimResource resource) throws ScimException {
+        final Map<Path, ScalableBloomFilter> current = filters;
+        for (Map.Entry<Path, AttributeDefinition> attribute : attributes.entrySet()) {
+            for (JsonNode value : JsonUtils.findMatchingPaths(attribute.getKey(), resource.getObjectNode())) {
+                if (!value.isValueNode() || value.isNull()) {
+                    continue;
+                }
+
+                final String key = key(value, attribute.getValue());
+                if (current != null && key != null) {
+                    checks.increment();
+                    if (!current.get(attribute.getKey()).mightContain(key)) {
+                        continue;
+                    }
+                    possibleMatches.increment();
+                }
+
+                Filter filter = Filter.eq(attribute.getKey(), (ValueNode) value);
+                if (resource.getId() != null) {
+                    filter = Filter.and(filter, Filter.ne(ID, JsonUtils.getJsonNodeFactory().textNode(resource.getId())));
+                }
+                if (lookup.exists(filter)) {
+                    if (current != null && key != null) {
+                        conflicts.increment();
+                    }
+                    throw new ResourceConflictException("The value of " + attribute.getKey() + " is already in use",
+                                                        BadRequestException.UNIQUENESS, null);
+                }
+            }
+        }
+    }
+
+    /**
+     * Add the values of the unique attributes of a created or modified resource.  Call this after the resource is stored.
+     *
+     * @param resource The stored resource.
+     *
+     * @throws ScimException If the values can not be read from the resource.
+     */
+    public void add(final GenericScimResource resource) throws ScimException {
+        // Read the filters being rebuilt first: rebuild() publishes them before it clears them, so either they are seen here or
+        // the current filters read next are already the rebuilt ones, or the rebuild starts later and reads the resource itself.
+        final Map<Path, ScalableBloomFilter> rebuilt = rebuiltFilters;
+        final Map<Path, ScalableBloomFilter> current = filters;
+        if (rebuilt != null) {
+            add(resource, rebuilt);
+        }
+        if (current != null && current != rebuilt) {
+            add(resource, current);
+        }
+    }
+
+    /**
+     * Replace the Bloom filters with filters of the values of the stored resources, dropping the values that are no longer in
+     * use.  The guard keeps using the current filters until the new filters are complete.  Resources stored while rebuilding
+     * are added to both.
+     *
+     * @param resources All stored resources, read after this method is called.
+     *
+     * @throws ScimException If the values can not be read from a resource.
+     */
+    public synchronized void rebuild(final Iterable<GenericScimResource> resources) throws ScimException {
+        final int capacity = resources instanceof Collection ? Math.max(((Collection<?>) resources).size(), INITIAL_CAPACITY)
+                                                             : INITIAL_CAPACITY;
+        final Map<Path, ScalableBloomFilter> rebuilt = new LinkedHashMap<>();
+        for (Path path : attributes.keySet()) {
+            rebuilt.put(path, new ScalableBloomFilter(capacity, falsePositiveRate));
+        }
+
+        rebuiltFilters = rebuilt;
+        try {
+            for (GenericScimResource resource : resources) {
+                add(resource, rebuilt);
+            }
+            filters = rebuilt;
+        } finally {
+            rebuiltFilters = null;
+        }
+        checks.reset();
+        possibleMatches.reset();
+        conflicts.reset();
+    }
+
+    /**
+     * Retrieve the rate of values not in use that were checked against the backend since the last rebuild.
+     *
+     * @return The measured false positive rate, or 0 if no value not in use was checked.
+     */
+    public double getFalsePositiveRate() {
+        final long conflicts = this.conflicts.sum();
+        final long negatives = checks.sum() - conflicts;
+        return negatives == 0 ? 0 : (double) (possibleMatches.sum() - conflicts) / negatives;
+    }
+
+    /**
+     * Retrieve the false positive rate expected from the number of values in the Bloom filters, which increases with the
+     * values of removed or modified resources.
+     *
+     * @return The expected false positive rate of the Bloom filter with the highest rate, or 1 before the first rebuild.
+     */
+    public double getExpectedFalsePositiveRate() {
+        final Map<Path, ScalableBloomFilter> current = filters;
+        if (current == null) {
+            return 1;
+        }
+        double rate = 0;
+        for (ScalableBloomFilter filter : current.values()) {
+            rate = Math.max(rate, filter.expectedFalsePositiveRate());
+        }
+        return rate;
+    }
+
+    /**
+     * Retrieve the number of values checked with the Bloom filters since the last rebuild.
+     *
+     * @return The number of checked values.
+     */
+    public long getChecks() {
+        return checks.sum();
+    }
+
+    /**
+     * Retrieve the number of values checked with the Bloom filters since the last rebuild that were looked up in the backend.
+     *
+     * @return The number of values that may have been in use.
+     */
+    public long getLookups() {
+        return possibleMatches.sum();
+    }
+
+    private void add(final GenericScimResource resource, final Map<Path, ScalableBloomFilter> target) throws ScimException {
+        for (Map.Entry<Path, AttributeDefinition> attribute : attributes.entrySet()) {
+            for (JsonNode value : JsonUtils.findMatchingPaths(attribute.getKey(), resource.getObjectNode())) {
+                final String key = value.isValueNode() && !value.isNull() ? key(value, attribute.getValue()) : null;
+                if (key != null) {
+                    target.get(attribute.getKey()).put(key);
+                }
+            }
+        }
+    }
+
+    private void addAttributes(final Path parent, final Collection<AttributeDefinition> attributeDefinitions) {
+        for (AttributeDefinition attribute : attributeDefinitions) {
+            if (attribute.isMultiValued() || attribute.getMutability() == AttributeDefinition.Mutability.READ_ONLY) {
+                continue;
+            }
+            if (attribute.getType() == AttributeDefinition.Type.COMPLEX) {
+                if (attribute.getSubAttributes() != null) {
+                    addAttributes(parent.attribute(attribute.getName()), attribute.getSubAttributes());
+                }
+            } else if (attribute.getUniqueness() != null && attribute.getUniqueness() != AttributeDefinition.Uniqueness.NONE) {
+                attributes.put(parent.attribute(attribute.getName()), attribute);
+            }
+        }
+    }
+
+    /**
+     * Get the key of a value in the Bloom filter, which is the same for all values the filter evaluator considers equal.
+     *
+     * Like {@link JsonUtils#compareTo}, text that parses as a date-time is compared as an instant whatever the attribute type,
+     * and only string attributes are compared case exact.
+     *
+     * @return The key or {@code null} if the value is always looked up, which is the case for date-time values that may be
+     * written differently.
+     */
+    private static String key(final JsonNode value, final AttributeDefinition attribute) {
+        if (value.isNumber()) {
+            return value.decimalValue().stripTrailingZeros().toPlainString();
+        }
+        if (!value.isTextual()) {
+            return value.asText();
+        }
+        if (JsonUtils.parseDateTime(value.textValue().trim()) != null) {
+            return null;
+        }
+        return attribute.getType() == AttributeDefinition.Type.STRING && attribute.isCaseExact()
+                ? value.textValue() : StaticUtils.toLowerCase(value.textValue());
+    }
+
+    /**
+     * A Bloom filter that adds a larger filter with a lower false positive rate whenever the last filter is full, so that the
+     * false positive rate of all the filters together stays at about the configured rate however many values are added.
+     */
+    private static final class ScalableBloomFilter {
+
+        private static final int GROWTH = 2;
+
+        private static final double TIGHTENING = 0.5;
+
+        private final List<BloomFilter<CharSequence>> filters = new ArrayList<>();
+
+        private double falsePositiveRate;
+
+        private int capacity;
+
+        private int size;
+
+        private ScalableBloomFilter(final int capacity, final double falsePositiveRate) {
+            // The rates of the filters form a geometric series summing to the configured rate.
+            this.falsePositiveRate = falsePositiveRate * (1 - TIGHTENING);
+            this.capacity = capacity;
+            filters.add(BloomFilter.create(Funnels.unencodedCharsFunnel(), capacity, this.falsePositiveRate));
+        }
+
+        synchronized void put(final String key) {
+            if (mightContain(key)) {
+                return;
+            }
+            if (size >= capacity) {
+                capacity *= GROWTH;
+                falsePositiveRate *= TIGHTENING;
+                filters.add(BloomFilter.create(Funnels.unencodedCharsFunnel(), capacity, falsePositiveRate));
+                size = 0;
+            }
+            filters.get(filters.size() - 1).put(key);
+            size++;
+        }
+
+        synchronized boolean mightContain(final String key) {
+            for (int i = filters.size() - 1; i >= 0; i--) {
+                if (filters.get(i).mightContain(key)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        synchronized double expectedFalsePositiveRate() {
+            double trueNegativeRate = 1;
+            for (BloomFilter<CharSequence> filter : filters) {
+                trueNegativeRate *= 1 - filter.expectedFpp();
+            }
+            return 1 - trueNegativeRate;
+        }
+    }
+}
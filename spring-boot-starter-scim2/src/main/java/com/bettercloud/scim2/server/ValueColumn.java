@@ -0,0 +1,332 @@
+package com.bettercloud.scim2.server;
+
+import com.bettercloud.scim2.common.exceptions.ScimException;
+import com.bettercloud.scim2.common.filters.Filter;
+import com.bettercloud.scim2.common.utils.FilterEvaluator;
+import com.bettercloud.scim2.common.utils.JsonUtils;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.BooleanNode;
+import com.fasterxml.jackson.databind.node.DoubleNode;
+import com.fasterxml.jackson.databind.node.IntNode;
+import com.fasterxml.jackson.databind.node.LongNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * The values of a simple attribute, one cell per value, for the owners of the attribute in a {@link ColumnarResourceStore}:
+ * resources, or the values of a complex attribute.  Strings are dictionary-encoded, integers, doubles and booleans are stored
+ * as primitives, and other values are kept as nodes.  The cells of a single-valued attribute are indexed by owner, those of a
+ * multi-valued attribute are stored contiguously and located by an offset array.
+ * <p>
+ * Owners must be added in increasing order.  The dictionary is a single open-addressing hash table of codes, like the
+ * {@link AttributeSymbolTable}.
+ */
+final class ValueColumn {
+
+    private static final byte MISSING = 0;
+    private static final byte TEXT = 1;
+    private static final byte INT = 2;
+    private static final byte LONG = 3;
+    private static final byte DOUBLE = 4;
+    private static final byte BOOLEAN = 5;
+    private static final byte OTHER = 6;
+
+    private static final byte UNKNOWN = 0;
+    private static final byte MATCH = 1;
+    private static final byte NO_MATCH = 2;
+
+    private final Offsets offsets;
+
+    private byte[] types = new byte[16];
+
+    private long[] values = new long[16];
+
+    private int size;
+
+    private String[] dictionary = new String[16];
+
+    private int dictionarySize;
+
+    /**
+     * The codes of the strings plus one, zero marks an empty slot.
+     */
+    private int[] slots = new int[32];
+
+    private final List<JsonNode> others = new ArrayList<>();
+
+    /**
+     * Create a new column.
+     *
+     * @param multiValued Whether the attribute is multi-valued.
+     */
+    ValueColumn(final boolean multiValued) {
+        this.offsets = multiValued ? new Offsets() : null;
+    }
+
+    /**
+     * Check whether a JSON value of the attribute can be stored in the column: a value node other than {@code null}, or a
+     * non-empty array of those for a multi-valued attribute.
+     *
+     * @param node The JSON value of the attribute.
+     *
+     * @return {@code true} if the value can be stored.
+     */
+    boolean accepts(final JsonNode node) {
+        if (offsets == null) {
+            return isValue(node);
+        }
+        if (!node.isArray() || node.size() == 0) {
+            return false;
+        }
+        for (JsonNode value : node) {
+            if (!isValue(value)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Add the value of the attribute for an owner.
+     *
+     * @param owner The index of the owner, not less than the index of the previous owner.
+     * @param node  A JSON value {@link #accepts(JsonNode) accepted} by the column.
+     */
+    void add(final int owner, final JsonNode node) {
+        if (offsets == null) {
+            ensureCapacity(owner + 1);
+            set(owner, node);
+            size = owner + 1;
+        } else {
+            offsets.add(owner, size);
+            ensureCapacity(size + node.size());
+            for (JsonNode value : node) {
+                set(size++, value);
+            }
+        }
+    }
+
+    /**
+     * Retrieve the value of the attribute for an owner.
+     *
+     * @param owner The index of the owner.
+     *
+     * @return The JSON value or {@code null} if the owner has no value.
+     */
+    JsonNode get(final int owner) {
+        final int start = start(owner);
+        final int end = end(owner);
+        if (start == end) {
+            return null;
+        }
+        if (offsets == null) {
+            return getCell(start);
+        }
+        final List<JsonNode> cells = new ArrayList<>(end - start);
+        for (int cell = start; cell < end; cell++) {
+            cells.add(getCell(cell));
+        }
+        return JsonUtils.getJsonNodeFactory().arrayNode().addAll(cells);
+    }
+
+    /**
+     * Evaluate a filter on every value of the attribute.  Each distinct string or boolean is evaluated once.
+     *
+     * @param filter    A filter on the {@code value} attribute of the {@code wrapper}, or {@code null} to only find the
+     *                  owners with values.
+     * @param evaluator The filter evaluator.
+     * @param wrapper   An object node to evaluate the filter on, the {@code value} attribute is set to each value.
+     * @param owners    The number of owners.
+     * @param matching  The owners with a matching value are added to this set.
+     * @param nonEmpty  The owners with at least one value are added to this set.
+     *
+     * @throws ScimException If the filter can not be evaluated on a value.
+     */
+    void match(final Filter filter,
+               final FilterEvaluator evaluator,
+               final ObjectNode wrapper,
+               final int owners,
+               final BitSet matching,
+               final BitSet nonEmpty) throws ScimException {
+        final byte[] textResults = new byte[dictionarySize];
+        final byte[] booleanResults = new byte[2];
+        for (int owner = 0; owner < owners; owner++) {
+            final int end = end(owner);
+            int cell = start(owner);
+            if (cell == end) {
+                continue;
+            }
+            nonEmpty.set(owner);
+            for (; filter != null && cell < end; cell++) {
+                final boolean match;
+                if (types[cell] == TEXT || types[cell] == BOOLEAN) {
+                    final byte[] results = types[cell] == TEXT ? textResults : booleanResults;
+                    final int code = (int) values[cell];
+                    if (results[code] == UNKNOWN) {
+                        wrapper.set("value", getCell(cell));
+                        results[code] = filter.visit(evaluator, wrapper) ? MATCH : NO_MATCH;
+                    }
+                    match = results[code] == MATCH;
+                } else {
+                    wrapper.set("value", getCell(cell));
+                    match = filter.visit(evaluator, wrapper);
+                }
+                if (match) {
+                    matching.set(owner);
+                    break;
+                }
+            }
+        }
+    }
+
+    private int start(final int owner) {
+        return offsets == null ? owner : offsets.start(owner, size);
+    }
+
+    private int end(final int owner) {
+        if (offsets == null) {
+            return owner < size && types[owner] != MISSING ? owner + 1 : owner;
+        }
+        return offsets.end(owner, size);
+    }
+
+    private void set(final int cell, final JsonNode node) {
+        if (node.isTextual()) {
+            types[cell] = TEXT;
+            values[cell] = encode(node.textValue());
+        } else if (node.isInt()) {
+            types[cell] = INT;
+            values[cell] = node.intValue();
+        } else if (node.isLong()) {
+            types[cell] = LONG;
+            values[cell] = node.longValue();
+        } else if (node.isDouble()) {
+            types[cell] = DOUBLE;
+            values[cell] = Double.doubleToRawLongBits(node.doubleValue());
+        } else if (node.isBoolean()) {
+            types[cell] = BOOLEAN;
+            values[cell] = node.booleanValue() ? 1 : 0;
+        } else {
+            types[cell] = OTHER;
+            values[cell] = others.size();
+            others.add(node);
+        }
+    }
+
+    private JsonNode getCell(final int cell) {
+        switch (types[cell]) {
+            case TEXT:
+                return JsonUtils.getJsonNodeFactory().textNode(dictionary[(int) values[cell]]);
+            case INT:
+                return IntNode.valueOf((int) values[cell]);
+            case LONG:
+                return LongNode.valueOf(values[cell]);
+            case DOUBLE:
+                return DoubleNode.valueOf(Double.longBitsToDouble(values[cell]));
+            case BOOLEAN:
+                return BooleanNode.valueOf(values[cell] != 0);
+            default:
+                return others.get((int) values[cell]);
+        }
+    }
+
+    private void ensureCapacity(final int capacity) {
+        if (capacity > types.length) {
+            final int length = Math.max(capacity, types.length * 2);
+            types = Arrays.copyOf(types, length);
+            values = Arrays.copyOf(values, length);
+        }
+    }
+
+    private int encode(final String value) {
+        int slot = value.hashCode() & (slots.length - 1);
+        while (slots[slot] != 0) {
+            final int code = slots[slot] - 1;
+            if (dictionary[code].equals(value)) {
+                return code;
+            }
+            slot = (slot + 1) & (slots.length - 1);
+        }
+
+        if (dictionarySize == dictionary.length) {
+            dictionary = Arrays.copyOf(dictionary, dictionarySize * 2);
+        }
+        final int code = dictionarySize++;
+        dictionary[code] = value;
+        slots[slot] = code + 1;
+
+        if (dictionarySize * 2 > slots.length) {
+            rehash();
+        }
+        return code;
+    }
+
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        for (int code = 0; code < dictionarySize; code++) {
+            int slot = dictionary[code].hashCode() & (slots.length - 1);
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & (slots.length - 1);
+            }
+            slots[slot] = code + 1;
+        }
+    }
+
+    private static boolean isValue(final JsonNode node) {
+        return node.isValueNode() && !node.isNull();
+    }
+
+    /**
+     * Locates the values of each owner in values stored contiguously in owner order.
+     */
+    static final class Offsets {
+
+        private int[] starts = new int[16];
+
+        private int owners;
+
+        /**
+         * Start the values of an owner.
+         *
+         * @param owner The index of the owner, greater than the index of the previous owner.
+         * @param start The index of the first value of the owner.
+         */
+        void add(final int owner, final int start) {
+            if (owner >= starts.length) {
+                starts = Arrays.copyOf(starts, Math.max(owner + 1, starts.length * 2));
+            }
+            for (int i = owners; i <= owner; i++) {
+                starts[i] = start;
+            }
+            owners = owner + 1;
+        }
+
+        /**
+         * Retrieve the index of the first value of an owner.
+         *
+         * @param owner The index of the owner.
+         * @param size  The number of values.
+         *
+         * @return The index of the first value.
+         */
+        int start(final int owner, final int size) {
+            return owner < owners ? starts[owner] : size;
+        }
+
+        /**
+         * Retrieve the index after the last value of an owner.
+         *
+         * @param owner The index of the owner.
+         * @param size  The number of values.
+         *
+         * @return The index after the last value.
+         */
+        int end(final int owner, final int size) {
+            return owner + 1 < owners ? starts[owner + 1] : size;
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.bettercloud.scim2.server.config;
 
 
+import com.bettercloud.scim2.common.utils.JsonUtils;
 import com.bettercloud.scim2.server.ResourceTypeDefinition;
 import com.bettercloud.scim2.server.annotation.ScimResource;
 import lombok.extern.slf4j.Slf4j;
@@ -8,38 +9,118 @@ import org.springframework.beans.factory.config.BeanDefinition;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.core.type.classreading.MetadataReader;
 import org.springframework.core.type.filter.AnnotationTypeFilter;
 import org.springframework.core.type.filter.TypeFilter;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.RequestMapping;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Enumeration;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Set;
 
 /**
  * This configuration is designed to be a registry of all the existing SCIM resources in the system.
  * All beans annotated with the {@link ScimResource} and {@link RequestMapping} will be loaded as resource type definitions.
+ * <p>
+ * The resource classes are found by scanning {@code scim2.resourcesPackage}, or, with {@code scim2.useResourceIndex} enabled, read from
+ * the {@value #INDEX_LOCATION} files generated at build time by the scim2-annotation-processor.
  */
 @Configuration
 @Slf4j
 public class ResourceTypeRegistry {
 
+    /**
+     * The location of the resource index generated by the scim2-annotation-processor.
+     */
+    public static final String INDEX_LOCATION = "META-INF/scim2.resources";
+
     @Bean
-    public Set<ResourceTypeDefinition> getResourceDefinitions(final Scim2Properties scim2Properties) throws ClassNotFoundException {
+    public Set<ResourceTypeDefinition> getResourceDefinitions(final Scim2Properties scim2Properties) throws ClassNotFoundException, IOException {
+        final Set<String> classNames = scim2Properties.isUseResourceIndex()
+                                       ? getIndexedClassNames(scim2Properties.getResourcesPackage())
+                                       : getScannedClassNames(scim2Properties.getResourcesPackage());
+
+        final Set<ResourceTypeDefinition> resourceTypeDefinitions = new HashSet<>();
+        for (final String className : classNames) {
+            final Class<?> resourceClass = ClassUtils.forName(className, getClass().getClassLoader());
+            final ScimResource scimResource = resourceClass.getAnnotation(ScimResource.class);
+            final RequestMapping requestMapping = AnnotatedElementUtils.findMergedAnnotation(resourceClass, RequestMapping.class);
+            resourceTypeDefinitions.add(ResourceTypeDefinition.fromScimResource(scimResource, requestMapping));
+            warmUp(scimResource);
+        }
+
+        return resourceTypeDefinitions;
+    }
+
+    private Set<String> getScannedClassNames(final String resourcesPackage) {
         final TypeFilter scimResourceFilter = new AnnotationTypeFilter(ScimResource.class);
         final TypeFilter requestMappingFilter = new AnnotationTypeFilter(RequestMapping.class);
         final TypeFilter andFilter = (metadataReader, metadataReaderFactory) -> scimResourceFilter.match(metadataReader, metadataReaderFactory)
                                                                                 && requestMappingFilter.match(metadataReader, metadataReaderFactory);
 
-        final ClassPathScanningCandidateComponentProvider provider = new ClassPathScanningCandidateComponentProvider(false);
-        provider.addIncludeFilter(andFilter);
+        // Resource types do not depend on the web stack, so ignore conditions such as @ConditionalOnWebApplication.
+        final ClassPathScanningCandidateComponentProvider provider = new ClassPathScanningCandidateComponentProvider(false) {
+            @Override
+            protected boolean isCandidateComponent(final MetadataReader metadataReader) throws IOException {
+                return andFilter.match(metadataReader, getMetadataReaderFactory());
+            }
+        };
 
-        final Set<ResourceTypeDefinition> resourceTypeDefinitions = new HashSet<>();
-        for (final BeanDefinition beanDefinition : provider.findCandidateComponents(scim2Properties.getResourcesPackage())) {
-            final Class<?> className = Class.forName(beanDefinition.getBeanClassName());
-            resourceTypeDefinitions.add(ResourceTypeDefinition.fromScimResource(className.getAnnotation(ScimResource.class),
-                                                                                className.getAnnotation(RequestMapping.class)));
+        final Set<String> classNames = new LinkedHashSet<>();
+        for (final BeanDefinition beanDefinition : provider.findCandidateComponents(resourcesPackage)) {
+            classNames.add(beanDefinition.getBeanClassName());
         }
+        return classNames;
+    }
 
-        return resourceTypeDefinitions;
+    /**
+     * Read the resource classes within the resources package from all resource indexes on the classpath.
+     *
+     * @param resourcesPackage The package containing the resource controllers.  All indexed classes are used if this is empty.
+     *
+     * @return The names of the resource classes.
+     *
+     * @throws IOException If an index cannot be read.
+     */
+    private Set<String> getIndexedClassNames(final String resourcesPackage) throws IOException {
+        final String prefix = StringUtils.isEmpty(resourcesPackage) ? "" : resourcesPackage + ".";
+
+        final Set<String> classNames = new LinkedHashSet<>();
+        final Enumeration<URL> indexes = getClass().getClassLoader().getResources(INDEX_LOCATION);
+        if (!indexes.hasMoreElements()) {
+            log.warn("scim2.useResourceIndex is enabled but no {} was found on the classpath.", INDEX_LOCATION);
+        }
+        while (indexes.hasMoreElements()) {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(indexes.nextElement().openStream(), StandardCharsets.UTF_8))) {
+                String className;
+                while ((className = reader.readLine()) != null) {
+                    className = className.trim();
+                    if (!className.isEmpty() && className.startsWith(prefix)) {
+                        classNames.add(className);
+                    }
+                }
+            }
+        }
+        return classNames;
+    }
+
+    /**
+     * Resolve the JSON readers and writers of the resource and extension classes up front so the first requests do not pay for it.
+     *
+     * @param scimResource The SCIM resource annotation.
+     */
+    private void warmUp(final ScimResource scimResource) {
+        JsonUtils.warmUp(scimResource.schema());
+        JsonUtils.warmUp(scimResource.requiredSchemaExtensions());
+        JsonUtils.warmUp(scimResource.optionalSchemaExtensions());
     }
-}
\ No newline at end of file
+}
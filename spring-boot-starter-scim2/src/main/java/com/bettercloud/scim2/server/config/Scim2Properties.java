@@ -5,6 +5,7 @@ import com.bettercloud.scim2.common.types.BulkConfig;
 import com.bettercloud.scim2.common.types.ChangePasswordConfig;
 import com.bettercloud.scim2.common.types.ETagConfig;
 import com.bettercloud.scim2.common.types.FilterConfig;
+import com.bettercloud.scim2.common.types.PaginationConfig;
 import com.bettercloud.scim2.common.types.PatchConfig;
 import com.bettercloud.scim2.common.types.ServiceProviderConfigResource;
 import com.bettercloud.scim2.common.types.SortConfig;
@@ -13,14 +14,17 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.http.CacheControl;
 import org.springframework.util.StringUtils;
 
 import javax.validation.constraints.Min;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.NotNull;
 import java.net.URI;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 @Data
@@ -33,12 +37,18 @@ public class Scim2Properties {
     @NotNull
     private String resourcesPackage;
 
+    private boolean useResourceIndex = false;
+
     @NotBlank
     private String baseUrl;
 
     @NotNull
     private ServiceProviderConfigProperties serviceProviderConfig;
 
+    private DiscoveryProperties discovery = new DiscoveryProperties();
+
+    private ConversionProperties conversion = new ConversionProperties();
+
     public void setResourcesPackage(final String resourcesPackage) {
         if (StringUtils.isEmpty(resourcesPackage)) {
             log.warn("scim2.resourcesPackage was not set. This can slow down server initialization significantly.");
@@ -47,6 +57,29 @@ public class Scim2Properties {
         this.resourcesPackage = resourcesPackage;
     }
 
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class DiscoveryProperties {
+
+        private Duration cacheMaxAge = Duration.ofMinutes(5);
+
+        public CacheControl getCacheControl() {
+            return CacheControl.maxAge(cacheMaxAge.getSeconds(), TimeUnit.SECONDS);
+        }
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ConversionProperties {
+
+        private boolean parallel = false;
+
+        @Min(1)
+        private int parallelThreshold = 500;
+    }
+
     @Data
     @NoArgsConstructor
     @AllArgsConstructor
@@ -72,6 +105,8 @@ public class Scim2Properties {
         @NotNull
         private ETagConfigProperties etag;
 
+        private PaginationConfigProperties pagination = new PaginationConfigProperties();
+
         private List<AuthenticationSchemeProperties> authenticationSchemes = new ArrayList<>();
 
         public ServiceProviderConfigResource getServiceProviderConfiguration() {
@@ -82,6 +117,7 @@ public class Scim2Properties {
                                                      getChangePassword().getChangePasswordConfig(),
                                                      getSort().getSortConfig(),
                                                      getEtag().getETagConfig(),
+                                                     pagination == null ? null : pagination.getPaginationConfig(),
                                                      authenticationSchemes.stream()
                                                                           .map(AuthenticationSchemeProperties::getAuthenticationScheme)
                                                                           .collect(Collectors.toList()));
@@ -168,6 +204,31 @@ public class Scim2Properties {
             }
         }
 
+        @Data
+        @NoArgsConstructor
+        @AllArgsConstructor
+        public static class PaginationConfigProperties {
+
+            private boolean cursor = false;
+
+            private boolean index = true;
+
+            private String defaultPaginationMethod = "index";
+
+            @Min(1)
+            private Integer defaultPageSize;
+
+            @Min(1)
+            private Integer maxPageSize;
+
+            @Min(1)
+            private Integer cursorTimeout;
+
+            public PaginationConfig getPaginationConfig() {
+                return new PaginationConfig(cursor, index, defaultPaginationMethod, defaultPageSize, maxPageSize, cursorTimeout);
+            }
+        }
+
         @Data
         @NoArgsConstructor
         @AllArgsConstructor
@@ -1,16 +1,32 @@
 package com.bettercloud.scim2.server.controller;
 
+import com.bettercloud.scim2.common.Path;
 import com.bettercloud.scim2.common.ScimResource;
+import com.bettercloud.scim2.common.exceptions.BadRequestException;
+import com.bettercloud.scim2.common.exceptions.NotModifiedException;
+import com.bettercloud.scim2.common.exceptions.PreconditionFailedException;
+import com.bettercloud.scim2.common.filters.Filter;
+import com.bettercloud.scim2.common.messages.SearchRequest;
 import com.bettercloud.scim2.common.types.AttributeDefinition;
+import com.bettercloud.scim2.common.types.PaginationConfig;
+import com.bettercloud.scim2.server.AttributeDependencyAnalyzer;
+import com.bettercloud.scim2.server.ResourcePreparer;
 import com.bettercloud.scim2.server.ResourceTypeDefinition;
+import com.bettercloud.scim2.server.ScimETag;
+import com.bettercloud.scim2.server.ScimQueryEngine;
 import com.bettercloud.scim2.server.config.Scim2Properties;
 import com.bettercloud.scim2.server.converter.GenericScimResourceConverter;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
 import org.springframework.util.CollectionUtils;
 import org.springframework.util.StringUtils;
 
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Collectors;
 
 public abstract class BaseResourceController<RESOURCE extends ScimResource> {
@@ -19,8 +35,94 @@ public abstract class BaseResourceController<RESOURCE extends ScimResource> {
 
     protected GenericScimResourceConverter<RESOURCE> genericScimResourceConverter;
 
+    protected ScimQueryEngine<RESOURCE> scimQueryEngine;
+
+    protected AttributeDependencyAnalyzer attributeDependencyAnalyzer;
+
     public BaseResourceController(final Scim2Properties scim2Properties) {
-        genericScimResourceConverter = new GenericScimResourceConverter<>(resourceTypeDefinition, scim2Properties.getBaseUrl());
+        this(scim2Properties, scim2Properties.getConversion() != null && scim2Properties.getConversion().isParallel()
+                              ? ForkJoinPool.commonPool() : null);
+    }
+
+    /**
+     * Create a controller that converts large result lists with the given executor.
+     *
+     * @param scim2Properties The SCIM properties.
+     * @param executor        The executor for converting lists of at least {@code scim2.conversion.parallelThreshold} resources, or
+     *                        {@code null} to convert every list on the request thread.
+     */
+    public BaseResourceController(final Scim2Properties scim2Properties, final Executor executor) {
+        final Scim2Properties.ConversionProperties conversion = scim2Properties.getConversion() == null
+                                                                ? new Scim2Properties.ConversionProperties()
+                                                                : scim2Properties.getConversion();
+        genericScimResourceConverter = new GenericScimResourceConverter<>(resourceTypeDefinition, scim2Properties.getBaseUrl(), executor,
+                                                                          conversion.getParallelThreshold(), isETagSupported(scim2Properties));
+        scimQueryEngine = new ScimQueryEngine<>(resourceTypeDefinition, getMaxResults(scim2Properties), getPaginationConfig(scim2Properties));
+        attributeDependencyAnalyzer = new AttributeDependencyAnalyzer(resourceTypeDefinition);
+    }
+
+    private static boolean isETagSupported(final Scim2Properties scim2Properties) {
+        final Scim2Properties.ServiceProviderConfigProperties serviceProviderConfig = scim2Properties.getServiceProviderConfig();
+        return serviceProviderConfig != null && serviceProviderConfig.getEtag() != null && serviceProviderConfig.getEtag().isSupported();
+    }
+
+    private static int getMaxResults(final Scim2Properties scim2Properties) {
+        final Scim2Properties.ServiceProviderConfigProperties serviceProviderConfig = scim2Properties.getServiceProviderConfig();
+        return serviceProviderConfig == null || serviceProviderConfig.getFilter() == null
+               ? new Scim2Properties.ServiceProviderConfigProperties.FilterConfigProperties().getMaxResults()
+               : serviceProviderConfig.getFilter().getMaxResults();
+    }
+
+    private static PaginationConfig getPaginationConfig(final Scim2Properties scim2Properties) {
+        final Scim2Properties.ServiceProviderConfigProperties serviceProviderConfig = scim2Properties.getServiceProviderConfig();
+        return serviceProviderConfig == null || serviceProviderConfig.getPagination() == null
+               ? new Scim2Properties.ServiceProviderConfigProperties.PaginationConfigProperties().getPaginationConfig()
+               : serviceProviderConfig.getPagination().getPaginationConfig();
+    }
+
+    /**
+     * Evaluate the If-Match and If-None-Match headers of a request against the current version of the resource it targets.  PUT,
+     * PATCH and DELETE handlers call this with the stored resource before modifying it, and GET handlers may call it to answer
+     * unchanged resources before converting them.
+     *
+     * @param current The current resource.
+     * @param method  The method of the request.
+     * @param headers The headers of the request.
+     *
+     * @throws PreconditionFailedException If the resource was modified since the client retrieved the version in If-Match.
+     * @throws NotModifiedException        If the client already has the current version of the resource.
+     * @see ScimETag#checkPreconditions(ScimResource, HttpMethod, String, String)
+     */
+    protected void checkPreconditions(final RESOURCE current, final HttpMethod method, final HttpHeaders headers)
+            throws PreconditionFailedException, NotModifiedException {
+        ScimETag.checkPreconditions(current, method, getHeader(headers, HttpHeaders.IF_MATCH), getHeader(headers, HttpHeaders.IF_NONE_MATCH));
+    }
+
+    /**
+     * Get the attributes needed to answer a search request, so that handlers can load only those attributes of the resources
+     * from their backend before querying them with the {@link #scimQueryEngine}.
+     *
+     * @param searchRequest The search request.
+     *
+     * @return The minimal set of normalized paths of the attributes needed to filter, sort and return the resources.
+     *
+     * @throws BadRequestException If the filter, sortBy, attributes or excludedAttributes parameter is invalid.
+     * @see AttributeDependencyAnalyzer
+     */
+    protected Set<Path> getRequiredAttributes(final SearchRequest searchRequest) throws BadRequestException {
+        final Filter filter = StringUtils.isEmpty(searchRequest.getFilter()) ? null : Filter.fromString(searchRequest.getFilter());
+        final Path sortBy = StringUtils.isEmpty(searchRequest.getSortBy()) ? null : Path.fromString(searchRequest.getSortBy());
+        final ResourcePreparer<RESOURCE> preparer = new ResourcePreparer<>(
+                resourceTypeDefinition,
+                StringUtils.collectionToCommaDelimitedString(searchRequest.getAttributes()),
+                StringUtils.collectionToCommaDelimitedString(searchRequest.getExcludedAttributes()),
+                null);
+        return attributeDependencyAnalyzer.getRequiredAttributes(filter, sortBy, preparer);
+    }
+
+    private static String getHeader(final HttpHeaders headers, final String name) {
+        final List<String> values = headers.get(name);
+        return values == null ? null : StringUtils.collectionToCommaDelimitedString(values);
     }
 
     protected Set<String> getValidSortPaths() {
@@ -0,0 +1,74 @@
+package com.bettercloud.scim2.server.controller;
+
+import com.bettercloud.scim2.common.utils.ApiConstants;
+import com.bettercloud.scim2.common.utils.JsonUtils;
+import com.bettercloud.scim2.server.ScimETag;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import lombok.Getter;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.DigestUtils;
+
+/**
+ * A response body that is serialized once and then served as is, along with a strong ETag computed from its content.
+ */
+@Getter
+public final class PreRenderedResponse {
+
+    private static final MediaType SCIM_MEDIA_TYPE = MediaType.parseMediaType(ApiConstants.MEDIA_TYPE_SCIM);
+
+    private final byte[] body;
+
+    private final String eTag;
+
+    private PreRenderedResponse(final byte[] body) {
+        this.body = body;
+        this.eTag = "\"" + DigestUtils.md5DigestAsHex(body) + "\"";
+    }
+
+    /**
+     * Serialize a value with the SDK object mapper.
+     *
+     * @param value The value to serialize.
+     *
+     * @return The pre-rendered response.
+     */
+    public static PreRenderedResponse render(final Object value) {
+        try {
+            return new PreRenderedResponse(JsonUtils.getObjectWriter().writeValueAsBytes(value));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unable to render " + value.getClass().getSimpleName(), e);
+        }
+    }
+
+    /**
+     * Check whether the ETag of this response matches one of the entity tags of an If-None-Match header.  Weak comparison is
+     * used as required for If-None-Match.
+     *
+     * @param ifNoneMatch The value of the If-None-Match header, may be null.
+     *
+     * @return true if the client already has this response.
+     */
+    public boolean matches(final String ifNoneMatch) {
+        return ScimETag.matches(eTag, ifNoneMatch);
+    }
+
+    /**
+     * Create the response entity for this response.  If the client already has this response a 304 Not Modified response without
+     * a body is returned instead.
+     *
+     * @param ifNoneMatch  The value of the If-None-Match header, may be null.
+     * @param cacheControl The Cache-Control directives to return.
+     *
+     * @return The response entity.
+     */
+    public ResponseEntity<byte[]> toResponseEntity(final String ifNoneMatch, final CacheControl cacheControl) {
+        if (matches(ifNoneMatch)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).cacheControl(cacheControl).build();
+        }
+
+        return ResponseEntity.ok().contentType(SCIM_MEDIA_TYPE).eTag(eTag).cacheControl(cacheControl).body(body);
+    }
+}
@@ -0,0 +1,92 @@
+package com.bettercloud.scim2.server.controller;
+
+import com.bettercloud.scim2.common.GenericScimResource;
+import com.bettercloud.scim2.common.ScimResource;
+import com.bettercloud.scim2.common.exceptions.BadRequestException;
+import com.bettercloud.scim2.server.config.Scim2Properties;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.util.function.BiConsumer;
+
+/**
+ * Base class for SCIM resource controllers on Spring WebFlux.  Request URIs are taken from the {@link ServerHttpRequest} instead of
+ * the thread bound servlet request, and lists are streamed to the client as the backend emits the resources.
+ *
+ * @param <RESOURCE> The resource type of the controller.
+ */
+public abstract class ReactiveResourceController<RESOURCE extends ScimResource> extends BaseResourceController<RESOURCE> {
+
+    public ReactiveResourceController(final Scim2Properties scim2Properties) {
+        // Streams are converted as the resources arrive, so there are no lists to convert in parallel.
+        super(scim2Properties, null);
+    }
+
+    /**
+     * Convert a resource and trim the result based on the attributes string.
+     *
+     * @param request            The current request.
+     * @param attributes         Attributes filter. ex type,schemaBlob
+     * @param excludedAttributes Exclude attributes filter. ex type,schemaBlob  This is not used if the attributes filter is defined.
+     * @param resource           The resource to be converted.
+     * @param prepareResource    A BiConsumer that will prepare the resource.  Usually used to set the references of {@link
+     *                           com.bettercloud.scim2.common.ComplexRef}
+     *
+     * @return The converted resource, or a {@link BadRequestException} error if the attributes parameter is invalid.
+     */
+    protected Mono<GenericScimResource> convert(final ServerHttpRequest request,
+                                                final String attributes,
+                                                final String excludedAttributes,
+                                                final Mono<RESOURCE> resource,
+                                                final BiConsumer<RESOURCE, URI> prepareResource) {
+        final URI baseUri = getBaseUri(request);
+        final URI locationUri = getLocationUri(request);
+        return resource.flatMap(r -> Mono.fromCallable(() -> genericScimResourceConverter.convert(baseUri, locationUri, attributes,
+                                                                                                  excludedAttributes, r, prepareResource)));
+    }
+
+    /**
+     * Convert a stream of resources and write them as a list response.
+     *
+     * @param request            The current request.
+     * @param attributes         Attributes filter. ex type,schemaBlob
+     * @param excludedAttributes Excluded attributes filter. ex type,schemaBlob
+     * @param resources          The resources of the page.
+     * @param totalResults       The total number of results or {@code null} if it is the number of resources in the stream.
+     * @param startIndex         The 1-based index of the first resource or {@code null} if not using index-based pagination.
+     * @param prepareResource    A BiConsumer that will prepare the resource.  Usually used to set the references of {@link
+     *                           com.bettercloud.scim2.common.ComplexRef}
+     *
+     * @return The streaming list response.
+     *
+     * @throws BadRequestException This can be thrown if the attributes parameter is invalid.
+     */
+    protected ResponseEntity<Flux<DataBuffer>> listResponse(final ServerHttpRequest request,
+                                                            final String attributes,
+                                                            final String excludedAttributes,
+                                                            final Flux<RESOURCE> resources,
+                                                            final Integer totalResults,
+                                                            final Integer startIndex,
+                                                            final BiConsumer<RESOURCE, URI> prepareResource) throws BadRequestException {
+        return StreamingListResponse.toResponseEntity(resources.map(genericScimResourceConverter.getConverter(getBaseUri(request),
+                                                                                                               getLocationUri(request),
+                                                                                                               attributes,
+                                                                                                               excludedAttributes,
+                                                                                                               prepareResource)),
+                                                      totalResults,
+                                                      startIndex);
+    }
+
+    protected URI getBaseUri(final ServerHttpRequest request) {
+        return genericScimResourceConverter.getBaseUri(request.getPath().contextPath().value());
+    }
+
+    protected URI getLocationUri(final ServerHttpRequest request) {
+        return genericScimResourceConverter.getLocationUri(request.getPath().contextPath().value(),
+                                                           request.getPath().pathWithinApplication().value());
+    }
+}
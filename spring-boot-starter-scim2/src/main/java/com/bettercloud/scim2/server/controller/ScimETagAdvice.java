@@ -0,0 +1,119 @@
+package com.bettercloud.scim2.server.controller;
+
+import com.bettercloud.scim2.common.ScimResource;
+import com.bettercloud.scim2.common.exceptions.NotModifiedException;
+import com.bettercloud.scim2.common.exceptions.PreconditionFailedException;
+import com.bettercloud.scim2.common.messages.ErrorResponse;
+import com.bettercloud.scim2.common.messages.ListResponse;
+import com.bettercloud.scim2.common.types.Meta;
+import com.bettercloud.scim2.common.utils.ApiConstants;
+import com.bettercloud.scim2.server.ScimETag;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpResponse;
+import org.springframework.util.StringUtils;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+/**
+ * Versions the resources returned by resource controllers when {@code scim2.service-provider-config.etag.supported} is enabled.
+ * Every resource is returned with an ETag header and a {@code meta.version}, and a GET of a resource the client already has is
+ * answered with 304 Not Modified without serializing the resource.
+ * <p>
+ * Handlers of PUT, PATCH and DELETE requests enforce If-Match with
+ * {@link BaseResourceController#checkPreconditions(ScimResource, HttpMethod, HttpHeaders)}; the resulting
+ * {@link PreconditionFailedException} and {@link NotModifiedException} are turned into 412 and 304 responses here.
+ */
+@ControllerAdvice(assignableTypes = BaseResourceController.class)
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@ConditionalOnProperty(prefix = "scim2.service-provider-config.etag", name = "supported", havingValue = "true")
+public class ScimETagAdvice implements ResponseBodyAdvice<Object> {
+
+    private static final MediaType SCIM_MEDIA_TYPE = MediaType.parseMediaType(ApiConstants.MEDIA_TYPE_SCIM);
+
+    @Override
+    public boolean supports(final MethodParameter returnType, final Class<? extends HttpMessageConverter<?>> converterType) {
+        return true;
+    }
+
+    @Override
+    public Object beforeBodyWrite(final Object body,
+                                  final MethodParameter returnType,
+                                  final MediaType selectedContentType,
+                                  final Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  final ServerHttpRequest request,
+                                  final ServerHttpResponse response) {
+        if (!(body instanceof ScimResource) || body instanceof ListResponse || body instanceof ErrorResponse) {
+            return body;
+        }
+
+        final ScimResource resource = (ScimResource) body;
+        final String eTag = ScimETag.of(resource);
+        response.getHeaders().setETag(eTag);
+
+        if ((request.getMethod() == HttpMethod.GET || request.getMethod() == HttpMethod.HEAD) && isOk(response)
+            && ScimETag.matches(eTag, getIfNoneMatch(request))) {
+            response.setStatusCode(HttpStatus.NOT_MODIFIED);
+            flush(response);
+            return null;
+        }
+
+        final Meta meta = resource.getMeta();
+        if (meta != null && StringUtils.isEmpty(meta.getVersion())) {
+            meta.setVersion(eTag);
+            resource.setMeta(meta);
+        }
+        return resource;
+    }
+
+    @ExceptionHandler(PreconditionFailedException.class)
+    public ResponseEntity<ErrorResponse> preconditionFailed(final PreconditionFailedException e) {
+        final ResponseEntity.BodyBuilder builder = ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).contentType(SCIM_MEDIA_TYPE);
+        if (e.getVersion() != null) {
+            builder.eTag(e.getVersion());
+        }
+        return builder.body(e.getScimError());
+    }
+
+    @ExceptionHandler(NotModifiedException.class)
+    public ResponseEntity<Void> notModified(final NotModifiedException e) {
+        final ResponseEntity.HeadersBuilder<?> builder = ResponseEntity.status(HttpStatus.NOT_MODIFIED);
+        if (e.getVersion() != null) {
+            builder.eTag(e.getVersion());
+        }
+        return builder.build();
+    }
+
+    private static void flush(final ServerHttpResponse response) {
+        // Nothing is written for a null body, so the headers have to be sent here.
+        try {
+            response.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static boolean isOk(final ServerHttpResponse response) {
+        return !(response instanceof ServletServerHttpResponse)
+               || ((ServletServerHttpResponse) response).getServletResponse().getStatus() == HttpStatus.OK.value();
+    }
+
+    private static String getIfNoneMatch(final ServerHttpRequest request) {
+        final List<String> values = request.getHeaders().get(HttpHeaders.IF_NONE_MATCH);
+        return values == null ? null : StringUtils.collectionToCommaDelimitedString(values);
+    }
+}
@@ -0,0 +1,110 @@
+package com.bettercloud.scim2.server.controller;
+
+import com.bettercloud.scim2.common.GenericScimResource;
+import com.bettercloud.scim2.common.messages.ListResponse;
+import com.bettercloud.scim2.common.utils.ApiConstants;
+import com.bettercloud.scim2.common.utils.JsonUtils;
+import com.bettercloud.scim2.common.utils.SchemaUtils;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Writes a list response for a stream of resources.  Each resource is serialized as soon as it is emitted instead of collecting the
+ * whole page first, so the response starts before a slow backend has returned every resource.  The total number of results is
+ * written after the resources when it is not known up front.
+ * <p>
+ * Once the first bytes are sent the status can no longer change, so an error in the stream ends the response early.
+ */
+public final class StreamingListResponse {
+
+    private static final MediaType SCIM_MEDIA_TYPE = MediaType.parseMediaType(ApiConstants.MEDIA_TYPE_SCIM);
+
+    private static final DataBufferFactory BUFFER_FACTORY = new DefaultDataBufferFactory();
+
+    private static final String SCHEMAS = "{\"schemas\":[\"" + SchemaUtils.getSchemaUrn(ListResponse.class) + "\"]";
+
+    private StreamingListResponse() {
+    }
+
+    /**
+     * Create the response entity for a stream of resources.
+     *
+     * @param resources    The converted resources of the page.
+     * @param totalResults The total number of results or {@code null} if it is the number of resources in the stream.
+     * @param startIndex   The 1-based index of the first resource or {@code null} if not using index-based pagination.
+     *
+     * @return The response entity.
+     */
+    public static ResponseEntity<Flux<DataBuffer>> toResponseEntity(final Flux<GenericScimResource> resources,
+                                                                    final Integer totalResults,
+                                                                    final Integer startIndex) {
+        return ResponseEntity.ok().contentType(SCIM_MEDIA_TYPE).body(write(resources, totalResults, startIndex, BUFFER_FACTORY));
+    }
+
+    /**
+     * Serialize a list response for a stream of resources.
+     *
+     * @param resources     The converted resources of the page.
+     * @param totalResults  The total number of results or {@code null} if it is the number of resources in the stream.
+     * @param startIndex    The 1-based index of the first resource or {@code null} if not using index-based pagination.
+     * @param bufferFactory The factory for the buffers of the response.
+     *
+     * @return The serialized list response.
+     */
+    public static Flux<DataBuffer> write(final Flux<GenericScimResource> resources,
+                                         final Integer totalResults,
+                                         final Integer startIndex,
+                                         final DataBufferFactory bufferFactory) {
+        return Flux.defer(() -> {
+            final AtomicInteger count = new AtomicInteger();
+            final StringBuilder header = new StringBuilder(SCHEMAS);
+            if (totalResults != null) {
+                header.append(",\"totalResults\":").append(totalResults);
+            }
+            if (startIndex != null) {
+                header.append(",\"startIndex\":").append(startIndex);
+            }
+            header.append(",\"Resources\":[");
+
+            return Flux.concat(Mono.fromSupplier(() -> write(bufferFactory, null, header.toString())),
+                               resources.map(resource -> write(bufferFactory, count.getAndIncrement() == 0 ? null : ",", render(resource))),
+                               Mono.fromSupplier(() -> {
+                                   final StringBuilder footer = new StringBuilder("]");
+                                   if (totalResults == null) {
+                                       footer.append(",\"totalResults\":").append(count.get());
+                                   }
+                                   footer.append(",\"itemsPerPage\":").append(count.get()).append('}');
+                                   return write(bufferFactory, null, footer.toString());
+                               }));
+        });
+    }
+
+    private static byte[] render(final GenericScimResource resource) {
+        try {
+            return JsonUtils.getObjectWriter().writeValueAsBytes(resource);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unable to render resource " + resource.getId(), e);
+        }
+    }
+
+    private static DataBuffer write(final DataBufferFactory bufferFactory, final String prefix, final String value) {
+        return write(bufferFactory, prefix, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static DataBuffer write(final DataBufferFactory bufferFactory, final String prefix, final byte[] value) {
+        final DataBuffer buffer = bufferFactory.allocateBuffer(value.length + 1);
+        if (prefix != null) {
+            buffer.write(prefix.getBytes(StandardCharsets.UTF_8));
+        }
+        return buffer.write(value);
+    }
+}
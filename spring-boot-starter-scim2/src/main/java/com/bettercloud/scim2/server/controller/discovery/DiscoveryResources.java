@@ -0,0 +1,310 @@
+package com.bettercloud.scim2.server.controller.discovery;
+
+import com.bettercloud.scim2.common.GenericScimResource;
+import com.bettercloud.scim2.common.Path;
+import com.bettercloud.scim2.common.exceptions.ResourceNotFoundException;
+import com.bettercloud.scim2.common.exceptions.ScimException;
+import com.bettercloud.scim2.common.filters.Filter;
+import com.bettercloud.scim2.common.filters.FilterType;
+import com.bettercloud.scim2.common.messages.ListResponse;
+import com.bettercloud.scim2.common.utils.StaticUtils;
+import com.bettercloud.scim2.server.ResourcePreparer;
+import com.bettercloud.scim2.server.ResourceTypeDefinition;
+import com.bettercloud.scim2.server.controller.PreRenderedResponse;
+import com.bettercloud.scim2.server.evaluator.SchemaAwareFilterEvaluator;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.springframework.util.StringUtils;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Discovery resources that never change after startup, rendered once per context path.  Shared by the Spring MVC and the WebFlux
+ * discovery controllers.
+ * <p>
+ * Filters are evaluated with an index of the top-level string values of the resources: equality filters on those attributes,
+ * and combinations of them, only evaluate the resources that have the value.  The list responses of all resources, of no
+ * resource and of every single resource are rendered up front, so the usual lookups by id or name are served without any
+ * serialization.
+ */
+final class DiscoveryResources {
+
+    private final ResourceTypeDefinition resourceTypeDefinition;
+
+    private final List<GenericScimResource> resources;
+
+    private final String baseUrl;
+
+    private final SchemaAwareFilterEvaluator filterEvaluator;
+
+    /**
+     * The positions of the resources by lower case attribute name and lower case string value.  Attributes that also have other
+     * values are mapped to {@code null}.
+     */
+    private final Map<String, Map<String, BitSet>> index = new HashMap<>();
+
+    private final ConcurrentMap<String, RenderedResources> renderedResources = new ConcurrentHashMap<>();
+
+    DiscoveryResources(final ResourceTypeDefinition resourceTypeDefinition, final List<GenericScimResource> resources, final String baseUrl) {
+        this.resourceTypeDefinition = resourceTypeDefinition;
+        this.resources = resources;
+        this.baseUrl = baseUrl;
+        this.filterEvaluator = new SchemaAwareFilterEvaluator(resourceTypeDefinition);
+
+        final Set<String> unindexed = new HashSet<>();
+        for (int i = 0; i < resources.size(); i++) {
+            for (Iterator<Map.Entry<String, JsonNode>> fields = resources.get(i).getObjectNode().fields(); fields.hasNext(); ) {
+                final Map.Entry<String, JsonNode> field = fields.next();
+                final String name = StaticUtils.toLowerCase(field.getKey());
+                final Iterable<JsonNode> values = field.getValue().isArray() ? field.getValue() : Collections.singletonList(field.getValue());
+                for (JsonNode value : values) {
+                    if (value.isTextual()) {
+                        index.computeIfAbsent(name, key -> new HashMap<>())
+                             .computeIfAbsent(StaticUtils.toLowerCase(value.textValue()), key -> new BitSet())
+                             .set(i);
+                    } else if (!value.isNull()) {
+                        // Filters on complex or other values may match in ways the index does not capture.
+                        unindexed.add(name);
+                    }
+                }
+            }
+        }
+        for (String name : unindexed) {
+            index.put(name, null);
+        }
+    }
+
+    /**
+     * Render the resources for a context path, so the first request for that context path does not have to.
+     *
+     * @param contextPath The context path.
+     */
+    void prepare(final String contextPath) {
+        try {
+            getRenderedResources(contextPath);
+        } catch (ScimException e) {
+            throw new IllegalStateException("Unable to render the " + resourceTypeDefinition.getName() + " resources", e);
+        }
+    }
+
+    /**
+     * Get the list response of the resources matching a filter.
+     *
+     * @param contextPath  The context path of the request.
+     * @param filterString The filter string or {@code null} for all resources.
+     *
+     * @return The rendered list response.
+     *
+     * @throws ScimException If the filter is invalid.
+     */
+    PreRenderedResponse search(final String contextPath, final String filterString) throws ScimException {
+        final RenderedResources rendered = getRenderedResources(contextPath);
+        return StringUtils.isEmpty(filterString) ? rendered.listResponse : rendered.search(filter(Filter.fromString(filterString)));
+    }
+
+    /**
+     * Get a resource by ID.
+     *
+     * @param contextPath The context path of the request.
+     * @param id          The ID of the resource.
+     *
+     * @return The rendered resource.
+     *
+     * @throws ScimException If there is no resource with the ID.
+     */
+    PreRenderedResponse get(final String contextPath, final String id) throws ScimException {
+        return getRenderedResources(contextPath).resourceResponses.get(indexOf(id));
+    }
+
+    /**
+     * Get copies of the prepared resources matching a filter.
+     *
+     * @param contextPath  The context path of the request.
+     * @param filterString The filter string or {@code null} for all resources.
+     *
+     * @return The matching resources.
+     *
+     * @throws ScimException If the filter is invalid.
+     */
+    List<GenericScimResource> getResources(final String contextPath, final String filterString) throws ScimException {
+        final RenderedResources rendered = getRenderedResources(contextPath);
+        final List<GenericScimResource> matchingResources = new ArrayList<>();
+        if (StringUtils.isEmpty(filterString)) {
+            for (GenericScimResource resource : rendered.preparedResources) {
+                matchingResources.add(copy(resource));
+            }
+        } else {
+            final BitSet matches = filter(Filter.fromString(filterString));
+            for (int i = matches.nextSetBit(0); i >= 0; i = matches.nextSetBit(i + 1)) {
+                matchingResources.add(copy(rendered.preparedResources.get(i)));
+            }
+        }
+        return matchingResources;
+    }
+
+    /**
+     * Get a copy of a prepared resource by ID.
+     *
+     * @param contextPath The context path of the request.
+     * @param id          The ID of the resource.
+     *
+     * @return The resource.
+     *
+     * @throws ScimException If there is no resource with the ID.
+     */
+    GenericScimResource getResource(final String contextPath, final String id) throws ScimException {
+        return copy(getRenderedResources(contextPath).preparedResources.get(indexOf(id)));
+    }
+
+    private int indexOf(final String id) throws ScimException {
+        final BitSet matches = filter(Filter.eq("id", id));
+        if (matches.isEmpty()) {
+            throw new ResourceNotFoundException(id);
+        }
+        return matches.nextSetBit(0);
+    }
+
+    private RenderedResources getRenderedResources(final String contextPath) throws ScimException {
+        RenderedResources rendered = renderedResources.get(contextPath);
+        if (rendered == null) {
+            rendered = new RenderedResources(contextPath);
+            final RenderedResources existing = renderedResources.putIfAbsent(contextPath, rendered);
+            if (existing != null) {
+                rendered = existing;
+            }
+        }
+        return rendered;
+    }
+
+    /**
+     * Evaluate a filter on the resources that may match it according to the index.
+     */
+    private BitSet filter(final Filter filter) throws ScimException {
+        final BitSet matches = candidates(filter);
+        for (int i = matches.nextSetBit(0); i >= 0; i = matches.nextSetBit(i + 1)) {
+            if (!filter.visit(filterEvaluator, resources.get(i).getObjectNode())) {
+                matches.clear(i);
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Get the resources that may match a filter.  The index ignores case, so the candidates are a superset of the matches.
+     */
+    private BitSet candidates(final Filter filter) throws ScimException {
+        switch (filter.getFilterType()) {
+            case AND:
+            case OR:
+                final boolean and = filter.getFilterType() == FilterType.AND;
+                BitSet result = null;
+                for (Filter combinedFilter : filter.getCombinedFilters()) {
+                    final BitSet next = candidates(combinedFilter);
+                    if (result == null) {
+                        result = next;
+                    } else if (and) {
+                        result.and(next);
+                    } else {
+                        result.or(next);
+                    }
+                }
+                return result == null ? new BitSet() : result;
+            case EQUAL:
+                final Path path = filter.getAttributePath();
+                if (path.getSchemaUrn() == null && path.size() == 1 && path.getElement(0).getValueFilter() == null &&
+                    filter.getComparisonValue().isTextual()) {
+                    final String name = StaticUtils.toLowerCase(path.getElement(0).getAttribute());
+                    if (!index.containsKey(name)) {
+                        return new BitSet();
+                    }
+                    final Map<String, BitSet> values = index.get(name);
+                    if (values != null) {
+                        final BitSet positions = values.get(StaticUtils.toLowerCase(filter.getComparisonValue().textValue()));
+                        return positions == null ? new BitSet() : (BitSet) positions.clone();
+                    }
+                }
+                return all();
+            default:
+                return all();
+        }
+    }
+
+    private BitSet all() {
+        final BitSet all = new BitSet(resources.size());
+        all.set(0, resources.size());
+        return all;
+    }
+
+    private static GenericScimResource copy(final GenericScimResource resource) {
+        return new GenericScimResource(resource.getObjectNode().deepCopy());
+    }
+
+    /**
+     * The discovery resources rendered for one context path.
+     */
+    private final class RenderedResources {
+
+        private final List<GenericScimResource> preparedResources = new ArrayList<>();
+
+        private final List<PreRenderedResponse> resourceResponses = new ArrayList<>();
+
+        private final List<PreRenderedResponse> singleListResponses = new ArrayList<>();
+
+        private final PreRenderedResponse listResponse;
+
+        private final PreRenderedResponse emptyListResponse;
+
+        private RenderedResources(final String contextPath) throws ScimException {
+            final URI location = UriComponentsBuilder.fromHttpUrl(baseUrl)
+                                                     .pathSegment(contextPath)
+                                                     .path(resourceTypeDefinition.getEndpoint())
+                                                     .build()
+                                                     .toUri();
+            final ResourcePreparer<GenericScimResource> resourcePreparer = new ResourcePreparer<>(resourceTypeDefinition, null, null, location);
+
+            for (GenericScimResource resource : resources) {
+                final GenericScimResource copy = copy(resource);
+                resourcePreparer.setResourceTypeAndLocation(copy);
+
+                final GenericScimResource prepared = resourcePreparer.trimRetrievedResource(copy);
+                preparedResources.add(prepared);
+                resourceResponses.add(PreRenderedResponse.render(prepared));
+                singleListResponses.add(render(Collections.singletonList(prepared)));
+            }
+            listResponse = render(preparedResources);
+            emptyListResponse = render(Collections.emptyList());
+        }
+
+        private PreRenderedResponse search(final BitSet matches) {
+            final int count = matches.cardinality();
+            if (count == 0) {
+                return emptyListResponse;
+            } else if (count == 1) {
+                return singleListResponses.get(matches.nextSetBit(0));
+            } else if (count == preparedResources.size()) {
+                return listResponse;
+            }
+
+            final List<GenericScimResource> matchingResources = new ArrayList<>(count);
+            for (int i = matches.nextSetBit(0); i >= 0; i = matches.nextSetBit(i + 1)) {
+                matchingResources.add(preparedResources.get(i));
+            }
+            return render(matchingResources);
+        }
+
+        private PreRenderedResponse render(final List<GenericScimResource> matchingResources) {
+            return PreRenderedResponse.render(new ListResponse<>(matchingResources.size(), matchingResources, 1, matchingResources.size()));
+        }
+    }
+}
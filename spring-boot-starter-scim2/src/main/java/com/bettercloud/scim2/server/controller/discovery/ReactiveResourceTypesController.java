@@ -0,0 +1,25 @@
+package com.bettercloud.scim2.server.controller.discovery;
+
+import com.bettercloud.scim2.common.utils.ApiConstants;
+import com.bettercloud.scim2.server.ResourceTypeDefinition;
+import com.bettercloud.scim2.server.config.Scim2Properties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Set;
+
+/**
+ * Serves the /ResourceTypes discovery API on Spring WebFlux.  See {@link ResourceTypesController}.
+ */
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@RequestMapping(value = ApiConstants.RESOURCE_TYPES_ENDPOINT)
+public class ReactiveResourceTypesController extends ReactiveSchemaAwareController {
+
+    @Autowired
+    public ReactiveResourceTypesController(final Scim2Properties scim2Properties, final Set<ResourceTypeDefinition> resourceDefinitions) {
+        super(scim2Properties, ResourceTypesController.class, ResourceTypesController.discoverableResourceTypes(resourceDefinitions));
+    }
+}
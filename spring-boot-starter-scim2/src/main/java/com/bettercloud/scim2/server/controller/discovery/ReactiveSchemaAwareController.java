@@ -0,0 +1,70 @@
+package com.bettercloud.scim2.server.controller.discovery;
+
+import com.bettercloud.scim2.common.GenericScimResource;
+import com.bettercloud.scim2.common.utils.ApiConstants;
+import com.bettercloud.scim2.server.ResourceTypeDefinition;
+import com.bettercloud.scim2.server.config.Scim2Properties;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * The Spring WebFlux counterpart of {@link SchemaAwareController}.  The resource type definition is taken from the Spring MVC
+ * controller so both serve identical responses.  The responses are rendered at startup.
+ */
+public abstract class ReactiveSchemaAwareController {
+
+    private final CacheControl cacheControl;
+
+    private final DiscoveryResources discoveryResources;
+
+    protected ReactiveSchemaAwareController(final Scim2Properties scim2Properties,
+                                            final Class<? extends SchemaAwareController> controller,
+                                            final List<GenericScimResource> resources) {
+        this.cacheControl = scim2Properties.getDiscovery().getCacheControl();
+        this.discoveryResources = new DiscoveryResources(ResourceTypeDefinition.fromScimResource(controller), resources,
+                                                         scim2Properties.getBaseUrl());
+        // WebFlux applications are served without a context path.
+        this.discoveryResources.prepare("");
+    }
+
+    /**
+     * Service SCIM request to retrieve all resource types or schemas defined at the
+     * service provider using GET.
+     *
+     * @param filterString The filter string used to request a subset of resources.
+     * @param request      The current request.
+     *
+     * @return All resource types in a ListResponse container.
+     */
+    @GetMapping
+    public Mono<ResponseEntity<byte[]>> search(
+            @RequestParam(value = ApiConstants.QUERY_PARAMETER_FILTER, required = false) final String filterString,
+            final ServerHttpRequest request) {
+        return Mono.fromCallable(() -> discoveryResources.search(request.getPath().contextPath().value(), filterString)
+                                                         .toResponseEntity(request.getHeaders().getFirst(HttpHeaders.IF_NONE_MATCH),
+                                                                           cacheControl));
+    }
+
+    /**
+     * Service SCIM request to retrieve a resource type or schema by ID.
+     *
+     * @param id      The ID of the resource type to retrieve.
+     * @param request The current request.
+     *
+     * @return The retrieved resource type.
+     */
+    @GetMapping(value = "/{id}")
+    public Mono<ResponseEntity<byte[]>> get(@PathVariable("id") final String id, final ServerHttpRequest request) {
+        return Mono.fromCallable(() -> discoveryResources.get(request.getPath().contextPath().value(), id)
+                                                         .toResponseEntity(request.getHeaders().getFirst(HttpHeaders.IF_NONE_MATCH),
+                                                                           cacheControl));
+    }
+}
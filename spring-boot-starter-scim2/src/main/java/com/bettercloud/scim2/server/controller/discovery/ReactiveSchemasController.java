@@ -0,0 +1,25 @@
+package com.bettercloud.scim2.server.controller.discovery;
+
+import com.bettercloud.scim2.common.utils.ApiConstants;
+import com.bettercloud.scim2.server.ResourceTypeDefinition;
+import com.bettercloud.scim2.server.config.Scim2Properties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Set;
+
+/**
+ * Serves the /Schemas discovery API on Spring WebFlux.  See {@link SchemasController}.
+ */
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@RequestMapping(value = ApiConstants.SCHEMAS_ENDPOINT)
+public class ReactiveSchemasController extends ReactiveSchemaAwareController {
+
+    @Autowired
+    public ReactiveSchemasController(final Scim2Properties scim2Properties, final Set<ResourceTypeDefinition> resourceDefinitions) {
+        super(scim2Properties, SchemasController.class, SchemasController.discoverableSchemas(resourceDefinitions));
+    }
+}
@@ -0,0 +1,79 @@
+package com.bettercloud.scim2.server.controller.discovery;
+
+import com.bettercloud.scim2.common.exceptions.ScimException;
+import com.bettercloud.scim2.common.types.ServiceProviderConfigResource;
+import com.bettercloud.scim2.common.utils.ApiConstants;
+import com.bettercloud.scim2.server.ResourceTypeDefinition;
+import com.bettercloud.scim2.server.config.Scim2Properties;
+import com.bettercloud.scim2.server.controller.PreRenderedResponse;
+import com.bettercloud.scim2.server.converter.GenericScimResourceConverter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Serves the /ServiceProviderConfig discovery API on Spring WebFlux.  See {@link ServiceProviderConfigController}.
+ */
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@RequestMapping(value = ApiConstants.SERVICE_PROVIDER_CONFIG_ENDPOINT)
+public class ReactiveServiceProviderConfigController {
+
+    private final ServiceProviderConfigResource serviceProviderConfigResource;
+
+    private final GenericScimResourceConverter<ServiceProviderConfigResource> genericScimResourceConverter;
+
+    private final CacheControl cacheControl;
+
+    private final ConcurrentMap<String, PreRenderedResponse> renderedResources = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ReactiveServiceProviderConfigController(final Scim2Properties scim2Properties,
+                                                   final ServiceProviderConfigResource serviceProviderConfigResource) {
+        this.serviceProviderConfigResource = serviceProviderConfigResource;
+        this.genericScimResourceConverter = new GenericScimResourceConverter<>(
+                ResourceTypeDefinition.fromScimResource(ServiceProviderConfigController.class), scim2Properties.getBaseUrl());
+        this.cacheControl = scim2Properties.getDiscovery().getCacheControl();
+        // WebFlux applications are served without a context path.
+        getRenderedResource("");
+    }
+
+    /**
+     * Service request to retrieve the Service Provider Config.  The response is rendered at startup.
+     *
+     * @param request The current request.
+     *
+     * @return The Service Provider Config.
+     */
+    @GetMapping
+    public Mono<ResponseEntity<byte[]>> get(final ServerHttpRequest request) {
+        return Mono.fromCallable(() -> getRenderedResource(request.getPath().contextPath().value())
+                .toResponseEntity(request.getHeaders().getFirst(HttpHeaders.IF_NONE_MATCH), cacheControl));
+    }
+
+    private PreRenderedResponse getRenderedResource(final String contextPath) {
+        return renderedResources.computeIfAbsent(contextPath, key -> {
+            try {
+                final URI baseUri = genericScimResourceConverter.getBaseUri(key);
+                final URI locationUri = UriComponentsBuilder.fromUri(baseUri).path(ApiConstants.SERVICE_PROVIDER_CONFIG_ENDPOINT).build().toUri();
+                return PreRenderedResponse.render(genericScimResourceConverter.convert(baseUri, locationUri, null, null,
+                                                                                       serviceProviderConfigResource, (r, u) -> {
+                        }));
+            } catch (ScimException e) {
+                throw new IllegalStateException("Unable to render the service provider configuration", e);
+            }
+        });
+    }
+}
@@ -8,6 +8,7 @@ import com.bettercloud.scim2.server.ResourceTypeDefinition;
 import com.bettercloud.scim2.server.annotation.ScimResource;
 import com.bettercloud.scim2.server.config.Scim2Properties;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
@@ -73,6 +74,7 @@ import java.util.stream.Collectors;
  */
 @ScimResource(description = "SCIM 2.0 Resource Type", name = "ResourceType", schema = ResourceTypeResource.class, discoverable = false)
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @RequestMapping(value = ApiConstants.RESOURCE_TYPES_ENDPOINT)
 public class ResourceTypesController extends SchemaAwareController {
 
@@ -90,6 +92,10 @@ public class ResourceTypesController extends SchemaAwareController {
      */
     @Override
     protected List<GenericScimResource> getResources(final Set<ResourceTypeDefinition> resourceDefinitions) {
+        return discoverableResourceTypes(resourceDefinitions);
+    }
+
+    static List<GenericScimResource> discoverableResourceTypes(final Set<ResourceTypeDefinition> resourceDefinitions) {
         return resourceDefinitions.stream()
                                   .filter(ResourceTypeDefinition::isDiscoverable)
                                   .map(ResourceTypeDefinition::toScimResource)
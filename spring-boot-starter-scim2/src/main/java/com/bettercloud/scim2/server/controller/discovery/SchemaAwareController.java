@@ -1,32 +1,40 @@
 package com.bettercloud.scim2.server.controller.discovery;
 
-import com.bettercloud.scim2.common.exceptions.ResourceNotFoundException;
 import com.bettercloud.scim2.common.utils.ApiConstants;
 import com.bettercloud.scim2.server.ResourceTypeDefinition;
 import com.bettercloud.scim2.server.config.Scim2Properties;
 import com.bettercloud.scim2.server.controller.BaseResourceController;
-import com.bettercloud.scim2.server.evaluator.SchemaAwareFilterEvaluator;
-import com.google.common.base.Throwables;
 import com.bettercloud.scim2.common.GenericScimResource;
 import com.bettercloud.scim2.common.ScimResource;
 import com.bettercloud.scim2.common.exceptions.ScimException;
-import com.bettercloud.scim2.common.filters.Filter;
 import com.bettercloud.scim2.common.messages.ListResponse;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.util.StringUtils;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.context.ServletContextAware;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
 
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServletRequest;
 import java.util.List;
 import java.util.Set;
-import java.util.stream.Collectors;
 
-public abstract class SchemaAwareController extends BaseResourceController<GenericScimResource> {
+/**
+ * Serves discovery resources that never change after startup.  The responses are rendered at startup for the context path of the
+ * application, or on the first request for any other context path, and served with a strong ETag, so polling clients get a 304
+ * Not Modified response without any conversion or serialization.
+ */
+public abstract class SchemaAwareController extends BaseResourceController<GenericScimResource> implements ServletContextAware {
 
-    private List<GenericScimResource> resources;
+    private final CacheControl cacheControl;
 
-    private final SchemaAwareFilterEvaluator filterEvaluator = new SchemaAwareFilterEvaluator(resourceTypeDefinition);
+    private final DiscoveryResources discoveryResources;
 
     protected abstract List<GenericScimResource> getResources(final Set<ResourceTypeDefinition> resourceDefinitions);
 
@@ -37,7 +45,13 @@ public abstract class SchemaAwareController extends BaseResourceController<Gener
                                  final Set<ResourceTypeDefinition> resourceDefinitions) {
         super(scim2Properties);
         this.resourceDefinitions = resourceDefinitions;
-        resources = getResources(resourceDefinitions);
+        this.cacheControl = scim2Properties.getDiscovery().getCacheControl();
+        discoveryResources = new DiscoveryResources(resourceTypeDefinition, getResources(resourceDefinitions), scim2Properties.getBaseUrl());
+    }
+
+    @Override
+    public void setServletContext(final ServletContext servletContext) {
+        discoveryResources.prepare(servletContext.getContextPath());
     }
 
     /**
@@ -45,45 +59,68 @@ public abstract class SchemaAwareController extends BaseResourceController<Gener
      * service provider using GET.
      *
      * @param filterString The filter string used to request a subset of resources.
+     * @param request      The current request.
      *
      * @return All resource types in a ListResponse container.
      *
      * @throws ScimException If an error occurs.
      */
     @GetMapping
-    public ListResponse<GenericScimResource> search(
-            @RequestParam(value = ApiConstants.QUERY_PARAMETER_FILTER, required = false) final String filterString) throws ScimException {
+    public ResponseEntity<byte[]> search(
+            @RequestParam(value = ApiConstants.QUERY_PARAMETER_FILTER, required = false) final String filterString,
+            final HttpServletRequest request) throws ScimException {
+        return discoveryResources.search(request.getContextPath(), filterString)
+                                 .toResponseEntity(request.getHeader(HttpHeaders.IF_NONE_MATCH), cacheControl);
+    }
 
-        final List<GenericScimResource> filteredResources = StringUtils.isEmpty(filterString)
-                                                            ? resources
-                                                            : filterResources(Filter.fromString(filterString));
-        final List<GenericScimResource> preparedResources = genericScimResourceConverter.convert(null, null, filteredResources);
+    /**
+     * Service SCIM request to retrieve a resource type or schema by ID.
+     *
+     * @param id      The ID of the resource type to retrieve.
+     * @param request The current request.
+     *
+     * @return The retrieved resource type.
+     *
+     * @throws ScimException If an error occurs.
+     */
+    @GetMapping(value = "/{id}")
+    public ResponseEntity<byte[]> get(@PathVariable("id") final String id, final HttpServletRequest request) throws ScimException {
+        return discoveryResources.get(request.getContextPath(), id).toResponseEntity(request.getHeader(HttpHeaders.IF_NONE_MATCH), cacheControl);
+    }
 
-        return new ListResponse<>(preparedResources.size(), preparedResources, 1, preparedResources.size());
+    /**
+     * Retrieve all resource types or schemas defined at the service provider for the current request.
+     *
+     * @param filterString The filter string used to request a subset of resources.
+     *
+     * @return All resource types in a ListResponse container.
+     *
+     * @throws ScimException If an error occurs.
+     * @deprecated Use {@link #search(String, HttpServletRequest)}, which serves the pre-rendered response.
+     */
+    @Deprecated
+    public ListResponse<GenericScimResource> search(final String filterString) throws ScimException {
+        final List<GenericScimResource> resources = discoveryResources.getResources(getCurrentContextPath(), filterString);
+        return new ListResponse<>(resources.size(), resources, 1, resources.size());
     }
 
     /**
-     * Service SCIM request to retrieve a resource type or schema by ID.
+     * Retrieve a resource type or schema by ID for the current request.
      *
      * @param id The ID of the resource type to retrieve.
      *
      * @return The retrieved resource type.
      *
      * @throws ScimException If an error occurs.
+     * @deprecated Use {@link #get(String, HttpServletRequest)}, which serves the pre-rendered response.
      */
-    @GetMapping(value = "/{id}")
-    public ScimResource get(@PathVariable("id") final String id) throws ScimException {
-        final Filter filter = Filter.eq("id", id);
-        return filterResources(filter).stream().findFirst().orElseThrow(() -> new ResourceNotFoundException(id));
+    @Deprecated
+    public ScimResource get(final String id) throws ScimException {
+        return discoveryResources.getResource(getCurrentContextPath(), id);
     }
 
-    private List<GenericScimResource> filterResources(final Filter filter) {
-        return resources.stream().filter(genericScimResource -> {
-            try {
-                return filter.visit(filterEvaluator, genericScimResource.getObjectNode());
-            } catch (ScimException e) {
-                throw Throwables.propagate(e);
-            }
-        }).collect(Collectors.toList());
+    private static String getCurrentContextPath() {
+        final RequestAttributes attrs = RequestContextHolder.getRequestAttributes();
+        return attrs instanceof ServletRequestAttributes ? ((ServletRequestAttributes) attrs).getRequest().getContextPath() : "";
     }
-}
\ No newline at end of file
+}
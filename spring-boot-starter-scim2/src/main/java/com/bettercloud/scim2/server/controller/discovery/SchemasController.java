@@ -7,6 +7,7 @@ import com.bettercloud.scim2.server.ResourceTypeDefinition;
 import com.bettercloud.scim2.server.annotation.ScimResource;
 import com.bettercloud.scim2.server.config.Scim2Properties;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
@@ -51,6 +52,7 @@ import java.util.stream.Collectors;
  */
 @ScimResource(description = "SCIM 2.0 Schema", name = "Schema", schema = SchemaResource.class, discoverable = false)
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @RequestMapping(value = ApiConstants.SCHEMAS_ENDPOINT)
 public class SchemasController extends SchemaAwareController {
 
@@ -61,6 +63,10 @@ public class SchemasController extends SchemaAwareController {
 
     @Override
     protected List<GenericScimResource> getResources(final Set<ResourceTypeDefinition> resourceDefinitions) {
+        return discoverableSchemas(resourceDefinitions);
+    }
+
+    static List<GenericScimResource> discoverableSchemas(final Set<ResourceTypeDefinition> resourceDefinitions) {
         return resourceDefinitions.stream()
                                   .filter(ResourceTypeDefinition::isDiscoverable)
                                   .map(resourceTypeDefinition -> {
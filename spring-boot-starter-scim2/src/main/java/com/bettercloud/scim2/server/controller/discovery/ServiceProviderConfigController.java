@@ -7,10 +7,23 @@ import com.bettercloud.scim2.common.utils.ApiConstants;
 import com.bettercloud.scim2.server.annotation.ScimResource;
 import com.bettercloud.scim2.server.config.Scim2Properties;
 import com.bettercloud.scim2.server.controller.BaseResourceController;
+import com.bettercloud.scim2.server.controller.PreRenderedResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.ServletContextAware;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServletRequest;
+import java.net.URI;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * The ServiceProviderConfig is populated through application properties.  Please review the readme for further details.
@@ -36,27 +49,69 @@ import org.springframework.web.bind.annotation.RestController;
               schema = ServiceProviderConfigResource.class,
               discoverable = false)
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @RequestMapping(value = ApiConstants.SERVICE_PROVIDER_CONFIG_ENDPOINT)
-public class ServiceProviderConfigController extends BaseResourceController<ServiceProviderConfigResource> {
+public class ServiceProviderConfigController extends BaseResourceController<ServiceProviderConfigResource>
+        implements ServletContextAware {
 
     private ServiceProviderConfigResource serviceProviderConfigResource;
 
+    private final CacheControl cacheControl;
+
+    private final ConcurrentMap<String, PreRenderedResponse> renderedResources = new ConcurrentHashMap<>();
+
     @Autowired
     public ServiceProviderConfigController(final Scim2Properties scim2Properties,
                                            final ServiceProviderConfigResource serviceProviderConfigResource) {
         super(scim2Properties);
         this.serviceProviderConfigResource = serviceProviderConfigResource;
+        this.cacheControl = scim2Properties.getDiscovery().getCacheControl();
+    }
+
+    @Override
+    public void setServletContext(final ServletContext servletContext) {
+        getRenderedResource(servletContext.getContextPath());
     }
 
     /**
-     * Service request to retrieve the Service Provider Config.
+     * Service request to retrieve the Service Provider Config.  The response is rendered at startup for the context path of the
+     * application, or on the first request for any other context path.
+     *
+     * @param request The current request.
      *
      * @return The Service Provider Config.
      *
      * @throws ScimException if an error occurs.
      */
     @GetMapping
+    public ResponseEntity<byte[]> get(final HttpServletRequest request) throws ScimException {
+        return getRenderedResource(request.getContextPath()).toResponseEntity(request.getHeader(HttpHeaders.IF_NONE_MATCH), cacheControl);
+    }
+
+    /**
+     * Retrieve the Service Provider Config for the current request.
+     *
+     * @return The Service Provider Config.
+     *
+     * @throws ScimException if an error occurs.
+     * @deprecated Use {@link #get(HttpServletRequest)}, which serves the pre-rendered response.
+     */
+    @Deprecated
     public GenericScimResource get() throws ScimException {
         return genericScimResourceConverter.convert(serviceProviderConfigResource);
     }
-}
\ No newline at end of file
+
+    private PreRenderedResponse getRenderedResource(final String contextPath) {
+        return renderedResources.computeIfAbsent(contextPath, key -> {
+            try {
+                final URI baseUri = genericScimResourceConverter.getBaseUri(key);
+                final URI locationUri = UriComponentsBuilder.fromUri(baseUri).path(ApiConstants.SERVICE_PROVIDER_CONFIG_ENDPOINT).build().toUri();
+                return PreRenderedResponse.render(genericScimResourceConverter.convert(baseUri, locationUri, null, null,
+                                                                                       serviceProviderConfigResource, (r, u) -> {
+                        }));
+            } catch (ScimException e) {
+                throw new IllegalStateException("Unable to render the service provider configuration", e);
+            }
+        });
+    }
+}
@@ -6,8 +6,9 @@ import com.bettercloud.scim2.common.exceptions.BadRequestException;
 import com.bettercloud.scim2.common.types.Meta;
 import com.bettercloud.scim2.server.ResourcePreparer;
 import com.bettercloud.scim2.server.ResourceTypeDefinition;
-import lombok.AllArgsConstructor;
+import com.bettercloud.scim2.server.ScimETag;
 import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
 import org.springframework.web.context.request.RequestAttributes;
 import org.springframework.web.context.request.RequestContextHolder;
 import org.springframework.web.context.request.ServletRequestAttributes;
@@ -15,17 +16,87 @@ import org.springframework.web.util.UriComponentsBuilder;
 
 import javax.servlet.http.HttpServletRequest;
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
 import java.util.function.BiConsumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
-@AllArgsConstructor
 public class GenericScimResourceConverter<RESOURCE extends ScimResource> {
 
+    private static final int PARALLELISM = Runtime.getRuntime().availableProcessors();
+
     private final ResourceTypeDefinition resourceTypeDefinition;
 
     private final String baseUrl;
 
+    private final Executor executor;
+
+    private final int parallelThreshold;
+
+    private final boolean versioned;
+
+    /**
+     * Base URIs by context path.  There are only a few context paths, unlike servlet paths which contain resource ids, so these are
+     * safe to keep for the lifetime of the converter.
+     */
+    private final ConcurrentMap<String, URI> baseUris = new ConcurrentHashMap<>();
+
+    /**
+     * Create a converter that converts lists on the calling thread.
+     *
+     * @param resourceTypeDefinition The resource type of the converted resources.
+     * @param baseUrl                The base URL of the server.
+     */
+    public GenericScimResourceConverter(final ResourceTypeDefinition resourceTypeDefinition, final String baseUrl) {
+        this(resourceTypeDefinition, baseUrl, null, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Create a converter that splits large lists across an executor.
+     *
+     * @param resourceTypeDefinition The resource type of the converted resources.
+     * @param baseUrl                The base URL of the server.
+     * @param executor               The executor for converting large lists or {@code null} to convert every list on the calling
+     *                               thread.
+     * @param parallelThreshold      The minimum size of a list to convert with the executor.
+     */
+    public GenericScimResourceConverter(final ResourceTypeDefinition resourceTypeDefinition,
+                                        final String baseUrl,
+                                        final Executor executor,
+                                        final int parallelThreshold) {
+        this(resourceTypeDefinition, baseUrl, executor, parallelThreshold, false);
+    }
+
+    /**
+     * Create a converter that splits large lists across an executor and optionally versions the converted resources.
+     *
+     * @param resourceTypeDefinition The resource type of the converted resources.
+     * @param baseUrl                The base URL of the server.
+     * @param executor               The executor for converting large lists or {@code null} to convert every list on the calling
+     *                               thread.
+     * @param parallelThreshold      The minimum size of a list to convert with the executor.
+     * @param versioned              Whether to set the meta.version of converted resources that have none to the {@link ScimETag} of
+     *                               the resource as provided, so it matches the version checked by
+     *                               {@link ScimETag#checkPreconditions}.
+     */
+    public GenericScimResourceConverter(final ResourceTypeDefinition resourceTypeDefinition,
+                                        final String baseUrl,
+                                        final Executor executor,
+                                        final int parallelThreshold,
+                                        final boolean versioned) {
+        this.resourceTypeDefinition = resourceTypeDefinition;
+        this.baseUrl = baseUrl;
+        this.executor = executor;
+        this.parallelThreshold = parallelThreshold;
+        this.versioned = versioned;
+    }
+
     /**
      * Convert a resource to a GenericScimResource.
      *
@@ -87,9 +158,34 @@ public class GenericScimResourceConverter<RESOURCE extends ScimResource> {
     public GenericScimResource convert(final String attributes, final String excludedAttributes,
                                        final RESOURCE resource,
                                        final BiConsumer<RESOURCE, URI> prepareResource) throws BadRequestException {
-        final ResourcePreparer<GenericScimResource> resourcePreparer = prepare(attributes, excludedAttributes);
+        final HttpServletRequest request = getCurrentRequest();
+        return convert(getBaseUri(request.getContextPath()), getLocationUri(request.getContextPath(), request.getServletPath()),
+                       attributes, excludedAttributes, resource, prepareResource);
+    }
+
+    /**
+     * Convert a resource for a request that is not bound to the current thread, for example a reactive request.
+     *
+     * @param baseUri            The base URI of the request.  See {@link #getBaseUri(String)}.
+     * @param locationUri        The URI of the request.  See {@link #getLocationUri(String, String)}.
+     * @param attributes         Attributes filter. ex type,schemaBlob
+     * @param excludedAttributes Exclude attributes filter. ex type,schemaBlob  This is not used if the attributes filter is defined.
+     * @param resource           The resource to be converted.
+     * @param prepareResource    A BiConsumer that will prepare the resource.  Usually used to set the references of {@link
+     *                           com.bettercloud.scim2.common.ComplexRef}
+     *
+     * @return A generic resource that has had all the correct types and locations set.
+     *
+     * @throws BadRequestException This can be thrown if the attributes parameter is invalid.
+     */
+    public GenericScimResource convert(final URI baseUri, final URI locationUri,
+                                       final String attributes, final String excludedAttributes,
+                                       final RESOURCE resource,
+                                       final BiConsumer<RESOURCE, URI> prepareResource) throws BadRequestException {
+        final ResourcePreparer<GenericScimResource> resourcePreparer = prepare(attributes, excludedAttributes, locationUri);
 
-        prepareResource.accept(resource, getBaseUri());
+        final String version = getVersion(resource);
+        prepareResource.accept(resource, baseUri);
 
         final GenericScimResource genericScimResource = resource.asGenericScimResource();
 
@@ -97,8 +193,9 @@ public class GenericScimResourceConverter<RESOURCE extends ScimResource> {
             genericScimResource.setMeta(new Meta());
         }
 
-        genericScimResource.getMeta().setLocation(getLocationUri());
+        genericScimResource.getMeta().setLocation(locationUri);
         resourcePreparer.setResourceTypeAndLocation(genericScimResource);
+        setVersion(genericScimResource, version);
 
         return resourcePreparer.trimRetrievedResource(genericScimResource);
     }
@@ -123,6 +220,9 @@ public class GenericScimResourceConverter<RESOURCE extends ScimResource> {
 
     /**
      * Convert a list of resources after preparing them with the supplied BiConsumer and then trim the results based on the attributes string.
+     * <p>
+     * Lists of at least the parallel threshold are converted in chunks on the executor when there is one.  The prepareResource BiConsumer
+     * is then called from the executor threads, so it must not rely on request scoped state such as {@link RequestContextHolder}.
      *
      * @param attributes         Attributes filter. ex type,schemaBlob
      * @param excludedAttributes Excluded attributes filter. ex type,schemaBlob
@@ -137,29 +237,146 @@ public class GenericScimResourceConverter<RESOURCE extends ScimResource> {
     public List<GenericScimResource> convert(final String attributes, final String excludedAttributes,
                                              final List<RESOURCE> resourceList,
                                              final BiConsumer<RESOURCE, URI> prepareResource) throws BadRequestException {
-        final ResourcePreparer<GenericScimResource> resourcePreparer = prepare(attributes, excludedAttributes);
+        // The request is the same for every resource so resolve its URIs once for the whole list.
+        final HttpServletRequest request = getCurrentRequest();
+        return convert(getBaseUri(request.getContextPath()), getLocationUri(request.getContextPath(), request.getServletPath()),
+                       attributes, excludedAttributes, resourceList, prepareResource);
+    }
+
+    /**
+     * Convert a list of resources for a request that is not bound to the current thread, for example a reactive request.
+     *
+     * @param baseUri            The base URI of the request.  See {@link #getBaseUri(String)}.
+     * @param locationUri        The URI of the request.  See {@link #getLocationUri(String, String)}.
+     * @param attributes         Attributes filter. ex type,schemaBlob
+     * @param excludedAttributes Excluded attributes filter. ex type,schemaBlob
+     * @param resourceList       The resources to be converted.
+     * @param prepareResource    A BiConsumer that will prepare the resource.  Usually used to set the references of {@link
+     *                           com.bettercloud.scim2.common.ComplexRef}
+     *
+     * @return A list of generic resources that have had all the correct types and locations set.
+     *
+     * @throws BadRequestException This can be thrown if the attributes parameter is invalid.
+     */
+    public List<GenericScimResource> convert(final URI baseUri, final URI locationUri,
+                                             final String attributes, final String excludedAttributes,
+                                             final List<RESOURCE> resourceList,
+                                             final BiConsumer<RESOURCE, URI> prepareResource) throws BadRequestException {
+        final Function<RESOURCE, GenericScimResource> converter = getConverter(baseUri, locationUri, attributes, excludedAttributes,
+                                                                               prepareResource);
+
+        if (executor == null || resourceList.size() < parallelThreshold) {
+            return resourceList.stream().map(converter).collect(Collectors.toList());
+        }
+        return convertInParallel(resourceList, converter);
+    }
+
+    /**
+     * Convert a list in chunks of about half the parallel threshold, and at most one chunk per processor.  The first chunk is converted
+     * on the calling thread while the executor converts the others, and the chunks are joined in order so the results keep the order of
+     * the list.
+     */
+    private List<GenericScimResource> convertInParallel(final List<RESOURCE> resourceList,
+                                                        final Function<RESOURCE, GenericScimResource> converter) {
+        final int chunkCount = Math.max(2, Math.min(PARALLELISM, resourceList.size() / Math.max(1, parallelThreshold / 2)));
+        final int chunkSize = (resourceList.size() + chunkCount - 1) / chunkCount;
+        final List<CompletableFuture<List<GenericScimResource>>> chunks = new ArrayList<>(chunkCount);
+        for (int from = chunkSize; from < resourceList.size(); from += chunkSize) {
+            final List<RESOURCE> chunk = resourceList.subList(from, Math.min(from + chunkSize, resourceList.size()));
+            chunks.add(CompletableFuture.supplyAsync(() -> chunk.stream().map(converter).collect(Collectors.toList()), executor));
+        }
+
+        final List<GenericScimResource> results = new ArrayList<>(resourceList.size());
+        resourceList.subList(0, Math.min(chunkSize, resourceList.size())).stream().map(converter).forEach(results::add);
+        try {
+            for (CompletableFuture<List<GenericScimResource>> chunk : chunks) {
+                results.addAll(chunk.join());
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+        return results;
+    }
+
+    /**
+     * Get a function that converts the resources of a list one at a time, for example the elements of a stream.  The attributes are
+     * parsed once, and the function does not depend on the thread it is called from.
+     *
+     * @param baseUri            The base URI of the request.  See {@link #getBaseUri(String)}.
+     * @param locationUri        The URI of the request.  See {@link #getLocationUri(String, String)}.
+     * @param attributes         Attributes filter. ex type,schemaBlob
+     * @param excludedAttributes Excluded attributes filter. ex type,schemaBlob
+     * @param prepareResource    A BiConsumer that will prepare the resource.  Usually used to set the references of {@link
+     *                           com.bettercloud.scim2.common.ComplexRef}
+     *
+     * @return The conversion function.
+     *
+     * @throws BadRequestException This can be thrown if the attributes parameter is invalid.
+     */
+    public Function<RESOURCE, GenericScimResource> getConverter(final URI baseUri, final URI locationUri,
+                                                                final String attributes, final String excludedAttributes,
+                                                                final BiConsumer<RESOURCE, URI> prepareResource) throws BadRequestException {
+        final ResourcePreparer<GenericScimResource> resourcePreparer = prepare(attributes, excludedAttributes, locationUri);
 
-        return resourceList.stream().map(resource -> {
-            prepareResource.accept(resource, getBaseUri());
+        return resource -> {
+            final String version = getVersion(resource);
+            prepareResource.accept(resource, baseUri);
 
             final GenericScimResource genericScimResource = resource.asGenericScimResource();
             resourcePreparer.setResourceTypeAndLocation(genericScimResource);
+            setVersion(genericScimResource, version);
 
             return resourcePreparer.trimRetrievedResource(genericScimResource);
-        }).collect(Collectors.toList());
+        };
     }
 
-    private ResourcePreparer<GenericScimResource> prepare(final String attributes, final String excludedAttributes) throws BadRequestException {
-        return new ResourcePreparer<>(resourceTypeDefinition, attributes, excludedAttributes, getLocationUri());
+    /**
+     * Get the base URI of the server for a context path.
+     *
+     * @param contextPath The context path of the request.
+     *
+     * @return The base URI.
+     */
+    public URI getBaseUri(final String contextPath) {
+        return baseUris.computeIfAbsent(contextPath, key -> UriComponentsBuilder.fromHttpUrl(baseUrl).pathSegment(key).build().toUri());
     }
 
-    private URI getBaseUri() {
-        return UriComponentsBuilder.fromHttpUrl(baseUrl).pathSegment(getCurrentRequest().getContextPath()).build().toUri();
+    /**
+     * Get the URI of a request, which is the base for the locations of the resources it returns.
+     *
+     * @param contextPath The context path of the request.
+     * @param path        The path of the request within the application.
+     *
+     * @return The request URI.
+     */
+    public URI getLocationUri(final String contextPath, final String path) {
+        return UriComponentsBuilder.fromHttpUrl(baseUrl).pathSegment(contextPath).pathSegment(path).build().toUri();
     }
 
-    private URI getLocationUri() {
-        final HttpServletRequest request = getCurrentRequest();
-        return UriComponentsBuilder.fromHttpUrl(baseUrl).pathSegment(request.getContextPath()).pathSegment(request.getServletPath()).build().toUri();
+    private String getVersion(final RESOURCE resource) {
+        // The version is computed before the resource is prepared so it only depends on the resource as stored.
+        return versioned ? ScimETag.of(resource) : null;
+    }
+
+    private static void setVersion(final GenericScimResource genericScimResource, final String version) {
+        if (version == null) {
+            return;
+        }
+
+        final Meta meta = genericScimResource.getMeta() == null ? new Meta() : genericScimResource.getMeta();
+        if (StringUtils.isEmpty(meta.getVersion())) {
+            meta.setVersion(version);
+            genericScimResource.setMeta(meta);
+        }
+    }
+
+    private ResourcePreparer<GenericScimResource> prepare(final String attributes,
+                                                          final String excludedAttributes,
+                                                          final URI locationUri) throws BadRequestException {
+        return new ResourcePreparer<>(resourceTypeDefinition, attributes, excludedAttributes, locationUri);
     }
 
     private HttpServletRequest getCurrentRequest() {
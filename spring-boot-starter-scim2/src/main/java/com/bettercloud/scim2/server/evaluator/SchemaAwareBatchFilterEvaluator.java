@@ -0,0 +1,35 @@
+package com.bettercloud.scim2.server.evaluator;
+
+import com.bettercloud.scim2.common.Path;
+import com.bettercloud.scim2.common.filters.Filter;
+import com.bettercloud.scim2.common.types.AttributeDefinition;
+import com.bettercloud.scim2.common.utils.BatchFilterEvaluator;
+import com.bettercloud.scim2.server.ResourceTypeDefinition;
+
+import java.util.List;
+
+/**
+ * A schema aware batch filter evaluator that respects case sensitivity.
+ */
+public class SchemaAwareBatchFilterEvaluator extends BatchFilterEvaluator {
+    private final ResourceTypeDefinition resourceType;
+
+    /**
+     * Create a new schema aware batch filter evaluator.
+     *
+     * @param resourceType The resource type definition.
+     * @param filters      The filters to evaluate.
+     */
+    public SchemaAwareBatchFilterEvaluator(final ResourceTypeDefinition resourceType, final List<Filter> filters) {
+        super(filters);
+        this.resourceType = resourceType;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected AttributeDefinition getAttributeDefinition(final Path path) {
+        return resourceType.getAttributeDefinition(path);
+    }
+}
@@ -0,0 +1,31 @@
+package com.bettercloud.scim2.server.evaluator;
+
+import com.bettercloud.scim2.common.Path;
+import com.bettercloud.scim2.common.types.AttributeDefinition;
+import com.bettercloud.scim2.common.utils.FilterOptimizer;
+import com.bettercloud.scim2.server.ResourceTypeDefinition;
+
+/**
+ * A schema aware filter optimizer that uses attribute definitions to estimate
+ * the cost and selectivity of filters.
+ */
+public class SchemaAwareFilterOptimizer extends FilterOptimizer {
+    private final ResourceTypeDefinition resourceType;
+
+    /**
+     * Create a new schema aware filter optimizer.
+     *
+     * @param resourceType The resource type definition.
+     */
+    public SchemaAwareFilterOptimizer(final ResourceTypeDefinition resourceType) {
+        this.resourceType = resourceType;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected AttributeDefinition getAttributeDefinition(final Path path) {
+        return resourceType.getAttributeDefinition(path);
+    }
+}
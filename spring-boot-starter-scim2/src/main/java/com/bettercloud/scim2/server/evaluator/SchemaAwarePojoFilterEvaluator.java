@@ -0,0 +1,30 @@
+package com.bettercloud.scim2.server.evaluator;
+
+import com.bettercloud.scim2.common.Path;
+import com.bettercloud.scim2.common.types.AttributeDefinition;
+import com.bettercloud.scim2.common.utils.PojoFilterEvaluator;
+import com.bettercloud.scim2.server.ResourceTypeDefinition;
+
+/**
+ * A schema aware filter evaluator for typed resources that respects case sensitivity.
+ */
+public class SchemaAwarePojoFilterEvaluator extends PojoFilterEvaluator {
+    private final ResourceTypeDefinition resourceType;
+
+    /**
+     * Create a new schema aware filter evaluator for typed resources.
+     *
+     * @param resourceType The resource type definition.
+     */
+    public SchemaAwarePojoFilterEvaluator(final ResourceTypeDefinition resourceType) {
+        this.resourceType = resourceType;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected AttributeDefinition getAttributeDefinition(final Path path) {
+        return resourceType.getAttributeDefinition(path);
+    }
+}
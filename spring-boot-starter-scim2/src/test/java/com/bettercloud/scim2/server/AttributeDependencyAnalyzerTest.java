@@ -0,0 +1,90 @@
+package com.bettercloud.scim2.server;
+
+import com.bettercloud.scim2.common.Path;
+import com.bettercloud.scim2.common.filters.Filter;
+import com.bettercloud.scim2.common.types.EnterpriseUserExtension;
+import com.bettercloud.scim2.common.types.UserResource;
+import com.bettercloud.scim2.common.utils.SchemaUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AttributeDependencyAnalyzerTest {
+
+    private static final String ENTERPRISE = "urn:ietf:params:scim:schemas:extension:enterprise:2.0:User";
+
+    private ResourceTypeDefinition resourceTypeDefinition;
+
+    private AttributeDependencyAnalyzer analyzer;
+
+    @Before
+    public void setUp() throws Exception {
+        resourceTypeDefinition = new ResourceTypeDefinition(null, "User", null, "/Users", SchemaUtils.getSchema(UserResource.class),
+                                                            Collections.singletonMap(SchemaUtils.getSchema(EnterpriseUserExtension.class),
+                                                                                     false), true);
+        analyzer = new AttributeDependencyAnalyzer(resourceTypeDefinition);
+    }
+
+    @Test
+    public void filterAndProjectionIncludeAlwaysReturnedAttributes() throws Exception {
+        assertEquals(paths("userName", "schemas", "id"), analyze("userName eq \"bjensen\"", null, "userName", null));
+    }
+
+    @Test
+    public void complexValueFiltersAndSortingByMultiValuedAttributes() throws Exception {
+        assertEquals(paths("emails.type", "emails.value", "emails.primary", ENTERPRISE + ":manager.value", "name.givenName", "schemas", "id"),
+                     analyze("emails[type eq \"work\" and value ew \"@example.com\"] or " + ENTERPRISE + ":manager.value pr",
+                             "emails.value", "name.givenName", null));
+        assertEquals(paths("schemas", "id"), analyze("schemas[value eq \"" + ENTERPRISE + "\"]", null, "id", null));
+    }
+
+    @Test
+    public void pathsAreNormalizedAndMinimal() throws Exception {
+        final List<String> paths = new ArrayList<>();
+        for (Path path : analyze("USERNAME pr and urn:ietf:params:scim:schemas:core:2.0:User:name.familyName eq \"jensen\"", null,
+                                 "name", null)) {
+            paths.add(path.toString());
+        }
+        assertEquals(new HashSet<>(paths), new HashSet<>(Arrays.asList("userName", "name", "schemas", "id")));
+    }
+
+    @Test
+    public void excludedAttributesKeepEverythingElse() throws Exception {
+        final Set<Path> paths = analyze(null, null, null, "photos,x509Certificates,groups,name.middleName");
+        assertTrue(paths.contains(Path.fromString("emails")));
+        assertTrue(paths.contains(Path.fromString("meta")));
+        assertTrue(paths.contains(Path.fromString("name.givenName")));
+        assertTrue(paths.contains(Path.fromString(ENTERPRISE + ":manager")));
+        assertTrue(paths.contains(Path.fromString(ENTERPRISE + ":employeeNumber")));
+        assertFalse(paths.contains(Path.fromString("name")));
+        assertFalse(paths.contains(Path.fromString("name.middleName")));
+        assertFalse(paths.contains(Path.fromString("photos")));
+        assertFalse(paths.contains(Path.fromString("groups")));
+        assertFalse(paths.contains(Path.fromString("password")));
+    }
+
+    private Set<Path> analyze(final String filter, final String sortBy, final String attributes, final String excludedAttributes)
+            throws Exception {
+        return analyzer.getRequiredAttributes(filter == null ? null : Filter.fromString(filter),
+                                              sortBy == null ? null : Path.fromString(sortBy),
+                                              new ResourcePreparer<>(resourceTypeDefinition, attributes, excludedAttributes, null));
+    }
+
+    private static Set<Path> paths(final String... paths) throws Exception {
+        final Set<Path> result = new HashSet<>();
+        for (String path : paths) {
+            result.add(Path.fromString(path));
+        }
+        return result;
+    }
+}
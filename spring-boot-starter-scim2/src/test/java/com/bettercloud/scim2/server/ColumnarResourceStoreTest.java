@@ -0,0 +1,142 @@
+package com.bettercloud.scim2.server;
+
+import com.bettercloud.scim2.common.FilterParity;
+import com.bettercloud.scim2.common.GenericScimResource;
+import com.bettercloud.scim2.common.exceptions.ScimException;
+import com.bettercloud.scim2.common.filters.Filter;
+import com.bettercloud.scim2.common.messages.ListResponse;
+import com.bettercloud.scim2.common.types.EnterpriseUserExtension;
+import com.bettercloud.scim2.common.types.UserResource;
+import com.bettercloud.scim2.common.utils.JsonUtils;
+import com.bettercloud.scim2.common.utils.SchemaUtils;
+import com.bettercloud.scim2.server.evaluator.SchemaAwareFilterEvaluator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class ColumnarResourceStoreTest {
+
+    private static final String ENTERPRISE = "urn:ietf:params:scim:schemas:extension:enterprise:2.0:User";
+
+    private static final String[] TEXTS = {"a", "A", "ab", "true", "1", "2019-06-01T00:00:00Z", "2019-06-02T00:00:00.000Z"};
+
+    private ResourceTypeDefinition resourceTypeDefinition;
+
+    private SchemaAwareFilterEvaluator filterEvaluator;
+
+    @Before
+    public void setUp() throws Exception {
+        resourceTypeDefinition = new ResourceTypeDefinition(null, "User", null, "/Users", SchemaUtils.getSchema(UserResource.class),
+                                                            Collections.singletonMap(SchemaUtils.getSchema(EnterpriseUserExtension.class),
+                                                                                     false), true);
+        filterEvaluator = new SchemaAwareFilterEvaluator(resourceTypeDefinition);
+    }
+
+    @Test
+    public void resourcesAreMaterializedUnchanged() throws Exception {
+        final Random random = new Random(7);
+        final FilterParity parity = newParity(random);
+        final ColumnarResourceStore store = new ColumnarResourceStore(resourceTypeDefinition, 100);
+        final List<GenericScimResource> resources = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            resources.add(randomResource(parity, random));
+        }
+        store.addAll(resources);
+
+        assertEquals(resources.size(), store.size());
+        for (int i = 0; i < resources.size(); i++) {
+            assertEquals(resources.get(i).getObjectNode(), store.get(i).getObjectNode());
+        }
+    }
+
+    @Test
+    public void filtersMatchLikeTheFilterEvaluator() throws Exception {
+        final Random random = new Random(42);
+        final FilterParity parity = newParity(random);
+        final ColumnarResourceStore store = new ColumnarResourceStore(resourceTypeDefinition, 100);
+        final List<GenericScimResource> resources = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            resources.add(randomResource(parity, random));
+        }
+        store.addAll(resources);
+
+        for (int i = 0; i < 3000; i++) {
+            FilterParity.assertSameSelection(parity.filter(3), resources,
+                                             (filter, resource) -> filter.visit(filterEvaluator, resource.getObjectNode()), store::filter);
+        }
+    }
+
+    @Test
+    public void queryMaterializesOnlyThePage() throws Exception {
+        final ColumnarResourceStore store = new ColumnarResourceStore(resourceTypeDefinition, 10);
+        for (int i = 0; i < 50; i++) {
+            final GenericScimResource user = new GenericScimResource();
+            user.getObjectNode().put("id", String.valueOf(i));
+            user.getObjectNode().put("userName", (i % 2 == 0 ? "even" : "odd") + i);
+            store.add(user);
+        }
+
+        ListResponse<GenericScimResource> response = store.query("userName sw \"EVEN\"", 3, 2);
+        assertEquals(25, response.getTotalResults());
+        assertEquals(Arrays.asList("4", "6"), ids(response));
+
+        response = store.query(null, null, null);
+        assertEquals(50, response.getTotalResults());
+        assertEquals(Integer.valueOf(10), response.getItemsPerPage());
+        assertEquals("9", ids(response).get(9));
+    }
+
+    private static List<String> ids(final ListResponse<GenericScimResource> response) {
+        final List<String> ids = new ArrayList<>();
+        for (JsonNode resource : JsonUtils.valueToNode(response).path("Resources")) {
+            ids.add(resource.get("id").textValue());
+        }
+        return ids;
+    }
+
+    private static FilterParity newParity(final Random random) {
+        return new FilterParity(random)
+                .setAttributes("id", "userName", "TITLE", "active", "name", "name.givenName", "emails", "emails.value", "emails.primary",
+                               "schemas", "nickName", "unknown", "name.unknown.a", "urn:ietf:params:scim:schemas:core:2.0:User:userName",
+                               ENTERPRISE + ":employeeNumber", ENTERPRISE + ":manager", ENTERPRISE + ":manager.value")
+                .setComplexAttributes(new String[]{"emails", "name", ENTERPRISE + ":manager", "schemas"},
+                                      "type", "VALUE", "primary", "givenName", "display")
+                .setResourceAttributes(new String[]{"id", "userName", "title", "active", "name.givenName", "name.familyName",
+                                                    ENTERPRISE + ":employeeNumber", ENTERPRISE + ":manager.value",
+                                                    ENTERPRISE + ":manager.displayName"}, "emails")
+                .setTexts(TEXTS);
+    }
+
+    private static GenericScimResource randomResource(final FilterParity parity, final Random random) throws ScimException {
+        final ObjectNode node = parity.resource();
+        if (random.nextBoolean()) {
+            node.putArray("schemas").add("urn:ietf:params:scim:schemas:core:2.0:User").add(ENTERPRISE);
+        }
+        switch (random.nextInt(20)) {
+            case 0:
+                node.putNull("nickName");
+                break;
+            case 1:
+                node.put("unknown", "a");
+                break;
+            case 2:
+                node.put("USERNAME", "a");
+                break;
+            case 3:
+                node.set("title", JsonUtils.getJsonNodeFactory().arrayNode().add("a"));
+                break;
+            default:
+                break;
+        }
+        return new GenericScimResource(node);
+    }
+}
@@ -0,0 +1,149 @@
+package com.bettercloud.scim2.server;
+
+import com.bettercloud.scim2.common.GenericScimResource;
+import com.bettercloud.scim2.common.exceptions.BadRequestException;
+import com.bettercloud.scim2.common.messages.ListResponse;
+import com.bettercloud.scim2.common.types.UserResource;
+import com.bettercloud.scim2.common.utils.ApiConstants;
+import com.bettercloud.scim2.common.utils.JsonUtils;
+import com.bettercloud.scim2.common.utils.SchemaUtils;
+import com.bettercloud.scim2.server.annotation.ScimResource;
+import com.bettercloud.scim2.server.config.Scim2Properties;
+import com.bettercloud.scim2.server.controller.ReactiveResourceController;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ReactiveResourceControllerTest {
+
+    private ReactiveUserController controller;
+
+    private WebTestClient client;
+
+    @Before
+    public void setUp() {
+        final Scim2Properties scim2Properties = new Scim2Properties();
+        scim2Properties.setBaseUrl("https://example.com");
+        controller = new ReactiveUserController(scim2Properties);
+        client = WebTestClient.bindToController(controller).build();
+    }
+
+    @Test
+    public void streamListResponse() throws Exception {
+        final JsonNode response = get("/reactive/Users");
+        assertEquals(SchemaUtils.getSchemaUrn(ListResponse.class), response.path("schemas").path(0).textValue());
+        assertEquals(100, response.path("totalResults").intValue());
+        assertEquals(100, response.path("itemsPerPage").intValue());
+        assertEquals(1, response.path("startIndex").intValue());
+        for (int i = 0; i < 100; i++) {
+            final JsonNode user = response.path("Resources").path(i);
+            assertEquals(String.valueOf(i), user.path("id").textValue());
+            assertEquals("https://example.com/reactive/Users/" + i, user.path("meta").path("location").textValue());
+            assertEquals("ReactiveUser", user.path("meta").path("resourceType").textValue());
+        }
+
+        final ListResponse<GenericScimResource> listResponse = JsonUtils.getObjectReader().forType(ListResponse.class).readValue(response);
+        assertEquals(100, listResponse.getTotalResults());
+    }
+
+    @Test
+    public void streamListResponseWithAttributesAndTotal() throws Exception {
+        final JsonNode response = get("/reactive/Users?attributes=userName&total=500");
+        assertEquals(500, response.path("totalResults").intValue());
+        assertEquals(100, response.path("itemsPerPage").intValue());
+        assertEquals("user42", response.path("Resources").path(42).path("userName").textValue());
+        assertTrue(response.path("Resources").path(42).path("meta").isMissingNode());
+
+        final JsonNode empty = get("/reactive/Users?count=0");
+        assertEquals(0, empty.path("totalResults").intValue());
+        assertEquals(0, empty.path("Resources").size());
+        assertTrue(empty.path("Resources").isArray());
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void invalidAttributes() throws Exception {
+        controller.search("emails[type eq", 1, null, MockServerHttpRequest.get("/reactive/Users").build());
+    }
+
+    @Test
+    public void convertSingleResource() throws Exception {
+        final byte[] body = client.get().uri("/reactive/Users/7").exchange().expectStatus().isOk().expectBody().returnResult().getResponseBody();
+        final JsonNode user = JsonUtils.getObjectReader().readTree(new String(body, "UTF-8"));
+        assertEquals("7", user.path("id").textValue());
+        assertEquals("ReactiveUser", user.path("meta").path("resourceType").textValue());
+        assertFalse(user.path("userName").isMissingNode());
+    }
+
+    private JsonNode get(final String uri) throws Exception {
+        final byte[] body = client.get()
+                                  .uri(uri)
+                                  .exchange()
+                                  .expectStatus()
+                                  .isOk()
+                                  .expectHeader()
+                                  .contentType(MediaType.parseMediaType(ApiConstants.MEDIA_TYPE_SCIM))
+                                  .expectBody()
+                                  .returnResult()
+                                  .getResponseBody();
+        return JsonUtils.getObjectReader().readTree(new String(body, "UTF-8"));
+    }
+
+    private static UserResource user(final int id) {
+        final UserResource user = new UserResource();
+        user.setId(String.valueOf(id));
+        user.setUserName("user" + id);
+        return user;
+    }
+
+    @ScimResource(description = "Access User Resources Reactively", name = "ReactiveUser", schema = UserResource.class)
+    @RequestMapping("/reactive/Users")
+    @ResponseBody
+    static class ReactiveUserController extends ReactiveResourceController<UserResource> {
+
+        ReactiveUserController(final Scim2Properties scim2Properties) {
+            super(scim2Properties);
+        }
+
+        @GetMapping
+        public ResponseEntity<Flux<DataBuffer>> search(@RequestParam(value = "attributes", required = false) final String attributes,
+                                                       @RequestParam(value = "count", defaultValue = "100") final int count,
+                                                       @RequestParam(value = "total", required = false) final Integer total,
+                                                       final ServerHttpRequest request) throws BadRequestException {
+            final List<UserResource> users = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                users.add(user(i));
+            }
+            // Emit the users one at a time like a slow backend.
+            final Flux<UserResource> resources = Flux.fromIterable(users).delayElements(Duration.ofMillis(1));
+            return listResponse(request, attributes, null, resources, total, 1, (user, baseUri) -> {
+            });
+        }
+
+        @GetMapping("/{id}")
+        public Mono<GenericScimResource> get(@PathVariable("id") final int id, final ServerHttpRequest request) {
+            return convert(request, null, null, Mono.just(user(id)), (user, baseUri) -> {
+            });
+        }
+    }
+}
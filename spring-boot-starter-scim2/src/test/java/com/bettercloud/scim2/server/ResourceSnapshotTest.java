@@ -0,0 +1,159 @@
+package com.bettercloud.scim2.server;
+
+import com.bettercloud.scim2.common.GenericScimResource;
+import com.bettercloud.scim2.common.utils.JsonUtils;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ResourceSnapshotTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void resourcesAreRestoredAfterReopening() throws Exception {
+        final Path file = folder.getRoot().toPath().resolve("users.snapshot");
+        final GenericScimResource alice = user("1", "alice");
+        alice.getObjectNode().put("binary", new byte[]{1, 2, 3});
+        alice.getObjectNode().put("big", new BigDecimal("12345678901234567890.5"));
+        alice.getObjectNode().put("huge", new BigInteger("123456789012345678901234567890"));
+        alice.getObjectNode().putNull("nickName");
+        alice.getObjectNode().put("active", true);
+        alice.getObjectNode().putArray("emails").addObject().put("value", "alice@example.com").put("primary", true);
+
+        try (ResourceSnapshot snapshot = ResourceSnapshot.open(file)) {
+            snapshot.put(alice);
+            snapshot.put(user("2", "bob"));
+            assertEquals(alice.getObjectNode(), snapshot.get("1").getObjectNode());
+            snapshot.checkpoint();
+            assertEquals(alice.getObjectNode(), snapshot.get("1").getObjectNode());
+        }
+
+        try (ResourceSnapshot snapshot = ResourceSnapshot.open(file)) {
+            assertEquals(2, snapshot.size());
+            assertEquals(alice.getObjectNode(), snapshot.get("1").getObjectNode());
+            assertEquals("bob", snapshot.get("2").getObjectNode().path("USERNAME").textValue());
+            assertNull(snapshot.get("3"));
+        }
+    }
+
+    @Test
+    public void checkpointsAreIncremental() throws Exception {
+        final Path file = folder.getRoot().toPath().resolve("users.snapshot");
+        try (ResourceSnapshot snapshot = new ResourceSnapshot(file, 64)) {
+            for (int i = 0; i < 20; i++) {
+                snapshot.put(user(String.valueOf(i), "user" + i));
+            }
+            snapshot.checkpoint();
+            snapshot.put(user("3", "replaced"));
+            snapshot.remove("4");
+            snapshot.remove("unknown");
+            assertNull(snapshot.get("4"));
+            assertEquals(19, snapshot.size());
+            snapshot.checkpoint();
+            snapshot.put(user("4", "restored"));
+        }
+
+        try (ResourceSnapshot snapshot = new ResourceSnapshot(file, 64)) {
+            assertEquals(20, snapshot.size());
+            assertEquals("replaced", snapshot.get("3").getObjectNode().path("userName").textValue());
+            assertEquals("restored", snapshot.get("4").getObjectNode().path("userName").textValue());
+            int resources = 0;
+            for (GenericScimResource resource : snapshot.getResources()) {
+                assertEquals(resource.getObjectNode(), snapshot.get(resource.getId()).getObjectNode());
+                resources++;
+            }
+            assertEquals(20, resources);
+        }
+    }
+
+    @Test
+    public void incompleteCheckpointsAreDropped() throws Exception {
+        final Path file = folder.getRoot().toPath().resolve("users.snapshot");
+        final long committed;
+        try (ResourceSnapshot snapshot = new ResourceSnapshot(file, 64)) {
+            snapshot.put(user("1", "alice"));
+            snapshot.checkpoint();
+            committed = Files.size(file);
+            for (int i = 2; i < 10; i++) {
+                snapshot.put(user(String.valueOf(i), "user" + i));
+            }
+            snapshot.remove("1");
+        }
+
+        // Cut the file in the last segment of the second checkpoint, after its first segments.
+        truncate(file, Files.size(file) - 5);
+        try (ResourceSnapshot snapshot = new ResourceSnapshot(file, 64)) {
+            assertEquals(new HashSet<>(Arrays.asList("1")), snapshot.getIds());
+            assertEquals(committed, Files.size(file));
+            snapshot.put(user("2", "bob"));
+        }
+
+        try (ResourceSnapshot snapshot = new ResourceSnapshot(file, 64)) {
+            assertEquals(new HashSet<>(Arrays.asList("1", "2")), snapshot.getIds());
+        }
+    }
+
+    @Test
+    public void compactKeepsOnlyCurrentResources() throws Exception {
+        final Path file = folder.getRoot().toPath().resolve("users.snapshot");
+        try (ResourceSnapshot snapshot = ResourceSnapshot.open(file)) {
+            for (int round = 0; round < 10; round++) {
+                for (int i = 0; i < 10; i++) {
+                    snapshot.put(user(String.valueOf(i), "user" + i + "-" + round));
+                }
+                snapshot.checkpoint();
+            }
+            snapshot.remove("0");
+            final long size = Files.size(file);
+            snapshot.compact();
+            assertTrue(Files.size(file) < size / 5);
+            assertEquals(9, snapshot.size());
+            assertEquals("user1-9", snapshot.get("1").getObjectNode().path("userName").textValue());
+            snapshot.put(user("0", "again"));
+        }
+
+        try (ResourceSnapshot snapshot = ResourceSnapshot.open(file)) {
+            assertEquals(10, snapshot.size());
+            assertEquals("again", snapshot.get("0").getObjectNode().path("userName").textValue());
+            assertEquals("user9-9", snapshot.get("9").getObjectNode().path("userName").textValue());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void otherFilesAreRejected() throws Exception {
+        final Path file = folder.newFile().toPath();
+        Files.write(file, "{\"id\":\"1\"}".getBytes());
+        ResourceSnapshot.open(file);
+    }
+
+    private static GenericScimResource user(final String id, final String userName) {
+        final ObjectNode node = JsonUtils.getJsonNodeFactory().objectNode();
+        node.putArray("schemas").add("urn:ietf:params:scim:schemas:core:2.0:User");
+        node.put("id", id);
+        node.put("userName", userName);
+        return new GenericScimResource(node);
+    }
+
+    private static void truncate(final Path file, final long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(size);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.bettercloud.scim2.server;
+
+import com.bettercloud.scim2.common.Path;
+import com.bettercloud.scim2.common.filters.Filter;
+import com.bettercloud.scim2.common.types.AttributeDefinition;
+import com.bettercloud.scim2.common.types.EnterpriseUserExtension;
+import com.bettercloud.scim2.common.types.SchemaResource;
+import com.bettercloud.scim2.common.types.UserResource;
+import com.bettercloud.scim2.common.utils.SchemaUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ResourceTypeDefinitionTest {
+
+    private SchemaResource coreSchema;
+
+    private SchemaResource extensionSchema;
+
+    private ResourceTypeDefinition resourceTypeDefinition;
+
+    @Before
+    public void setUp() throws Exception {
+        coreSchema = SchemaUtils.getSchema(UserResource.class);
+        extensionSchema = SchemaUtils.getSchema(EnterpriseUserExtension.class);
+        resourceTypeDefinition = new ResourceTypeDefinition(null, "User", null, "/Users", coreSchema,
+                                                            Collections.singletonMap(extensionSchema, false), true);
+    }
+
+    @Test
+    public void getAttributeDefinitionByPath() throws Exception {
+        final AttributeDefinition name = findAttribute(coreSchema, "name");
+        final AttributeDefinition givenName = findAttribute(name, "givenName");
+
+        assertSame(name, resourceTypeDefinition.getAttributeDefinition(Path.fromString("name")));
+        assertSame(name, resourceTypeDefinition.getAttributeDefinition(Path.fromString("NAME")));
+        assertSame(givenName, resourceTypeDefinition.getAttributeDefinition(Path.fromString("name.givenName")));
+        assertSame(givenName, resourceTypeDefinition.getAttributeDefinition(Path.fromString(coreSchema.getId() + ":name.GIVENNAME")));
+        assertSame(findAttribute(findAttribute(coreSchema, "emails"), "value"),
+                   resourceTypeDefinition.getAttributeDefinition(Path.root().attribute("emails", Filter.eq("type", "work"))
+                                                                          .attribute("value")));
+        assertEquals("id", resourceTypeDefinition.getAttributeDefinition(Path.fromString("id")).getName());
+        assertEquals("meta", resourceTypeDefinition.getAttributeDefinition(Path.fromString("meta")).getName());
+    }
+
+    @Test
+    public void getExtensionAttributeDefinitionByPath() throws Exception {
+        final AttributeDefinition employeeNumber = findAttribute(extensionSchema, "employeeNumber");
+
+        assertSame(employeeNumber, resourceTypeDefinition.getAttributeDefinition(Path.root(extensionSchema.getId())
+                                                                                     .attribute("employeeNumber")));
+        assertSame(employeeNumber, resourceTypeDefinition.getAttributeDefinition(Path.root(extensionSchema.getId().toUpperCase())
+                                                                                     .attribute("EMPLOYEENUMBER")));
+        assertNull(resourceTypeDefinition.getAttributeDefinition(Path.fromString("employeeNumber")));
+    }
+
+    @Test
+    public void getUndefinedAttributeDefinitionByPath() throws Exception {
+        assertNull(resourceTypeDefinition.getAttributeDefinition(Path.root()));
+        assertNull(resourceTypeDefinition.getAttributeDefinition(Path.root(extensionSchema.getId())));
+        assertNull(resourceTypeDefinition.getAttributeDefinition(Path.fromString("undefined")));
+        assertNull(resourceTypeDefinition.getAttributeDefinition(Path.fromString("name.undefined")));
+        assertNull(resourceTypeDefinition.getAttributeDefinition(Path.root("urn:undefined").attribute("name")));
+    }
+
+    @Test
+    public void attributeIds() throws Exception {
+        final int coreId = resourceTypeDefinition.getSchemaId(null);
+        assertEquals(coreId, resourceTypeDefinition.getSchemaId(coreSchema.getId()));
+        assertNull(resourceTypeDefinition.getAttributeDefinition(coreId));
+
+        final int nameId = resourceTypeDefinition.getAttributeId(coreId, "name");
+        final int givenNameId = resourceTypeDefinition.getAttributeId(nameId, "GivenName");
+        assertSame(findAttribute(coreSchema, "name"), resourceTypeDefinition.getAttributeDefinition(nameId));
+        assertSame(resourceTypeDefinition.getAttributeDefinition(Path.fromString("name.givenName")),
+                   resourceTypeDefinition.getAttributeDefinition(givenNameId));
+
+        final int extensionId = resourceTypeDefinition.getSchemaId(extensionSchema.getId());
+        assertNotEquals(coreId, extensionId);
+        assertEquals(ResourceTypeDefinition.NO_ATTRIBUTE, resourceTypeDefinition.getAttributeId(extensionId, "name"));
+        assertEquals(ResourceTypeDefinition.NO_ATTRIBUTE, resourceTypeDefinition.getSchemaId("urn:undefined"));
+        assertEquals(ResourceTypeDefinition.NO_ATTRIBUTE,
+                     resourceTypeDefinition.getAttributeId(ResourceTypeDefinition.NO_ATTRIBUTE, "name"));
+        assertNull(resourceTypeDefinition.getAttributeDefinition(ResourceTypeDefinition.NO_ATTRIBUTE));
+
+        final Set<Integer> ids = new HashSet<>();
+        for (AttributeDefinition attribute : coreSchema.getAttributes()) {
+            final int id = resourceTypeDefinition.getAttributeId(coreId, attribute.getName());
+            assertSame(attribute, resourceTypeDefinition.getAttributeDefinition(id));
+            assertTrue(ids.add(id));
+        }
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void attributeNotationMap() throws Exception {
+        final Map<Path, AttributeDefinition> attributeNotationMap = resourceTypeDefinition.getAttributeNotationMap();
+        assertSame(findAttribute(coreSchema, "userName"), attributeNotationMap.get(Path.root().attribute("userName")));
+        assertSame(findAttribute(findAttribute(coreSchema, "name"), "givenName"),
+                   attributeNotationMap.get(Path.fromString("name.givenName")));
+        assertSame(findAttribute(extensionSchema, "employeeNumber"),
+                   attributeNotationMap.get(Path.root(extensionSchema.getId()).attribute("employeeNumber")));
+        assertSame(SchemaUtils.COMMON_ATTRIBUTE_DEFINITIONS.iterator().next(),
+                   attributeNotationMap.get(Path.root().attribute(SchemaUtils.COMMON_ATTRIBUTE_DEFINITIONS.iterator().next().getName())));
+        assertNull(attributeNotationMap.get(Path.root()));
+        for (Map.Entry<Path, AttributeDefinition> entry : attributeNotationMap.entrySet()) {
+            assertSame(entry.getValue(), resourceTypeDefinition.getAttributeDefinition(entry.getKey()));
+        }
+    }
+
+    private static AttributeDefinition findAttribute(final SchemaResource schema, final String name) {
+        for (AttributeDefinition attribute : schema.getAttributes()) {
+            if (attribute.getName().equals(name)) {
+                return attribute;
+            }
+        }
+        throw new AssertionError(name);
+    }
+
+    private static AttributeDefinition findAttribute(final AttributeDefinition parent, final String name) {
+        for (AttributeDefinition attribute : parent.getSubAttributes()) {
+            if (attribute.getName().equals(name)) {
+                return attribute;
+            }
+        }
+        throw new AssertionError(name);
+    }
+}
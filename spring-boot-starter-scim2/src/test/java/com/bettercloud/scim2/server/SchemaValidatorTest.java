@@ -0,0 +1,200 @@
+package com.bettercloud.scim2.server;
+
+import com.bettercloud.scim2.common.Path;
+import com.bettercloud.scim2.common.exceptions.BadRequestException;
+import com.bettercloud.scim2.common.messages.PatchOperation;
+import com.bettercloud.scim2.common.messages.PatchRequest;
+import com.bettercloud.scim2.common.types.AttributeDefinition;
+import com.bettercloud.scim2.common.types.SchemaResource;
+import com.bettercloud.scim2.common.types.UserResource;
+import com.bettercloud.scim2.common.utils.JsonUtils;
+import com.bettercloud.scim2.common.utils.SchemaUtils;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SchemaValidatorTest {
+
+    private static final String EXTENSION = "urn:example:params:scim:schemas:extension:badge:2.0:User";
+
+    private ResourceTypeDefinition resourceTypeDefinition;
+
+    @Before
+    public void setUp() throws Exception {
+        final AttributeDefinition badgeNumber = new AttributeDefinition.Builder().setName("badgeNumber")
+                                                                                 .setType(AttributeDefinition.Type.INTEGER)
+                                                                                 .setRequired(true)
+                                                                                 .setMutability(AttributeDefinition.Mutability.IMMUTABLE)
+                                                                                 .build();
+        final AttributeDefinition issued = new AttributeDefinition.Builder().setName("issued")
+                                                                            .setType(AttributeDefinition.Type.DATETIME)
+                                                                            .build();
+        final SchemaResource extension = new SchemaResource(EXTENSION, "Badge", null, Arrays.asList(badgeNumber, issued));
+        resourceTypeDefinition = new ResourceTypeDefinition(null, "User", null, "/Users", SchemaUtils.getSchema(UserResource.class),
+                                                            Collections.singletonMap(extension, true), true);
+    }
+
+    @Test
+    public void validResourcesHaveNoViolations() throws Exception {
+        final SchemaValidator validator = new SchemaValidator(resourceTypeDefinition);
+        final ObjectNode user = user();
+        user.put("id", "1");
+        user.putObject("meta").put("resourceType", "User");
+        user.putObject("name").put("givenName", "Alice");
+        user.putArray("emails").addObject().put("value", "alice@example.com").put("type", "custom");
+
+        assertEquals(Collections.emptyList(), validator.validateCreate(user));
+        assertFalse(user.has("id"));
+        assertFalse(user.has("meta"));
+        assertTrue(user.has("name"));
+    }
+
+    @Test
+    public void allViolationsAreReported() throws Exception {
+        final SchemaValidator validator = new SchemaValidator(resourceTypeDefinition, SchemaValidator.ReadOnlyAttributes.REJECT, true);
+        final ObjectNode user = JsonUtils.getJsonNodeFactory().objectNode();
+        user.putArray("schemas").add("urn:ietf:params:scim:schemas:core:2.0:User");
+        user.put("ID", "1");
+        user.put("active", "yes");
+        user.put("displayName", 1);
+        user.putObject("emails").put("value", "alice@example.com");
+        user.putArray("phoneNumbers").addObject().put("value", 1).put("primary", "true");
+        user.putArray("addresses").addObject().put("type", "Office");
+        user.putArray("emails2");
+        user.putObject(EXTENSION).put("issued", "yesterday");
+
+        assertEquals(Arrays.asList("mutability: Attribute id is read-only",
+                                   "invalidValue: Attribute active must be a boolean value",
+                                   "invalidValue: Attribute displayName must be a string value",
+                                   "invalidValue: Attribute emails must be an array",
+                                   "invalidValue: Attribute phoneNumbers.value must be a string value",
+                                   "invalidValue: Attribute phoneNumbers.primary must be a boolean value",
+                                   "invalidValue: Attribute addresses.type must be one of " + canonicalValues("addresses.type"),
+                                   "invalidValue: Attribute " + EXTENSION + ":issued must be a dateTime value",
+                                   "invalidValue: Attribute " + EXTENSION + ":badgeNumber is required",
+                                   "invalidValue: Attribute userName is required",
+                                   "invalidValue: The schemas attribute must contain " + EXTENSION),
+                     messages(validator.validateCreate(user)));
+    }
+
+    @Test
+    public void immutableAttributesAreNotReplaced() throws Exception {
+        final SchemaValidator validator = new SchemaValidator(resourceTypeDefinition);
+        final ObjectNode current = user();
+        final ObjectNode replacement = user();
+        replacement.with(EXTENSION).put("badgeNumber", 8);
+
+        assertEquals(Collections.emptyList(), validator.validateReplace(user(), current));
+        assertEquals(Collections.emptyList(), validator.validateReplace(replacement, null));
+        assertEquals(Collections.singletonList("mutability: Attribute " + EXTENSION + ":badgeNumber is immutable"),
+                     messages(validator.validateReplace(replacement, current)));
+    }
+
+    @Test
+    public void immutableAttributesArePatchedWithTheirCurrentValue() throws Exception {
+        final SchemaValidator validator = new SchemaValidator(resourceTypeDefinition);
+        final ObjectNode current = user();
+        final ObjectNode withoutBadgeNumber = user();
+        withoutBadgeNumber.with(EXTENSION).remove("badgeNumber");
+        final String immutable = "mutability: Attribute " + EXTENSION + ":badgeNumber is immutable";
+        final ObjectNode resource = JsonUtils.getJsonNodeFactory().objectNode();
+        resource.putObject(EXTENSION).put("badgeNumber", 7);
+
+        final PatchRequest same = new PatchRequest(Arrays.asList(
+                PatchOperation.replace(EXTENSION + ":badgeNumber", JsonUtils.getJsonNodeFactory().numberNode(7)),
+                PatchOperation.replace(Path.root(EXTENSION), JsonUtils.getJsonNodeFactory().objectNode().put("badgeNumber", 7)),
+                PatchOperation.replace(resource)));
+        assertEquals(Collections.emptyList(), validator.validatePatch(same, current));
+        assertEquals(Arrays.asList(immutable, immutable, immutable), messages(validator.validatePatch(same)));
+
+        final PatchRequest changed = new PatchRequest(Collections.singletonList(
+                PatchOperation.replace(EXTENSION + ":badgeNumber", JsonUtils.getJsonNodeFactory().numberNode(8))));
+        assertEquals(Collections.singletonList(immutable), messages(validator.validatePatch(changed, current)));
+        assertEquals(Collections.emptyList(), validator.validatePatch(changed, withoutBadgeNumber));
+    }
+
+    @Test
+    public void patchOperationsAreValidated() throws Exception {
+        final SchemaValidator validator = new SchemaValidator(resourceTypeDefinition);
+        final ObjectNode email = JsonUtils.getJsonNodeFactory().objectNode().put("value", "bob@example.com").put("primary", "yes");
+        final PatchRequest patchRequest = new PatchRequest(Arrays.asList(
+                PatchOperation.replace("userName", "bob"),
+                PatchOperation.add("emails", JsonUtils.getJsonNodeFactory().arrayNode().add(email)),
+                PatchOperation.add("emails", email),
+                PatchOperation.replace("emails[type eq \"work\"].value", JsonUtils.getJsonNodeFactory().numberNode(1)),
+                PatchOperation.replace("emails[type eq \"work\"]", email),
+                PatchOperation.replace("meta.lastModified", "2019-06-01T00:00:00Z"),
+                PatchOperation.remove("id"),
+                PatchOperation.remove(EXTENSION + ":badgeNumber"),
+                PatchOperation.add(EXTENSION + ":badgeNumber", JsonUtils.getJsonNodeFactory().numberNode(8)),
+                PatchOperation.replace("nickname.first", "Bobby"),
+                PatchOperation.replace("userName[value eq \"bob\"]", "bob"),
+                PatchOperation.replace("urn:example:unknown:userName", "bob"),
+                PatchOperation.replace(JsonUtils.getJsonNodeFactory().objectNode().put("active", 1).put("id", "2"))));
+
+        assertEquals(Arrays.asList("invalidValue: Attribute emails.primary must be a boolean value",
+                                   "invalidValue: Attribute emails.primary must be a boolean value",
+                                   "invalidValue: Attribute emails.value must be a string value",
+                                   "invalidValue: Attribute emails.primary must be a boolean value",
+                                   "mutability: Attribute meta is read-only",
+                                   "mutability: Attribute id is read-only",
+                                   "mutability: Attribute " + EXTENSION + ":badgeNumber is immutable",
+                                   "invalidPath: The attribute nickname.first is not defined",
+                                   "invalidPath: The value filter of userName[value eq \"bob\"] must be on a multi-valued attribute",
+                                   "invalidPath: The schema of the path urn:example:unknown:userName is not defined",
+                                   "invalidValue: Attribute active must be a boolean value",
+                                   "mutability: Attribute id is read-only"),
+                     messages(validator.validatePatch(patchRequest)));
+    }
+
+    @Test
+    public void dateTimesAreXsdDateTimes() throws Exception {
+        final SchemaValidator validator = new SchemaValidator(resourceTypeDefinition);
+        for (String issued : new String[]{"2019-06-01T00:00:00Z", "2019-06-01T02:00:00.5+02:00", "2019-06-01T00:00:00",
+                                          "2019-06-01T00:00:00.123456789012", "2020-02-29T23:59:59-14:00", "2019-06-01T24:00:00",
+                                          "-0044-03-15T12:00:00Z", "12019-06-01T00:00:00Z"}) {
+            final ObjectNode user = user();
+            user.with(EXTENSION).put("issued", issued);
+            assertEquals(Collections.emptyList(), validator.validateCreate(user));
+        }
+        for (String issued : new String[]{"2019-06-01", "2019-06-01T00:00", "2019-06-01T00:00:00.Z", "2019-06-01T00:00:00.",
+                                          "2019-02-29T00:00:00Z", "2019-13-01T00:00:00Z", "2019-06-01T24:00:01Z",
+                                          "2019-06-01T00:60:00Z", "2019-06-01T00:00:60Z", "2019-06-01T00:00:00+15:00",
+                                          "2019-06-01T00:00:00+01", "2019-06-01 00:00:00Z", "019-06-01T00:00:00Z"}) {
+            final ObjectNode user = user();
+            user.with(EXTENSION).put("issued", issued);
+            assertEquals(Collections.singletonList("invalidValue: Attribute " + EXTENSION + ":issued must be a dateTime value"),
+                         messages(validator.validateCreate(user)));
+        }
+    }
+
+    private Collection<String> canonicalValues(final String path) throws Exception {
+        return resourceTypeDefinition.getAttributeDefinition(Path.fromString(path)).getCanonicalValues();
+    }
+
+    private static ObjectNode user() {
+        final ObjectNode user = JsonUtils.getJsonNodeFactory().objectNode();
+        user.putArray("schemas").add("urn:ietf:params:scim:schemas:core:2.0:User").add(EXTENSION);
+        user.put("userName", "alice");
+        user.putObject(EXTENSION).put("badgeNumber", 7).put("issued", "2019-06-01T00:00:00Z");
+        return user;
+    }
+
+    private static List<String> messages(final List<BadRequestException> errors) {
+        final List<String> messages = new ArrayList<>();
+        for (BadRequestException error : errors) {
+            messages.add(error.getScimError().getScimType() + ": " + error.getMessage());
+        }
+        return messages;
+    }
+}
@@ -0,0 +1,212 @@
+package com.bettercloud.scim2.server;
+
+import com.bettercloud.scim2.common.GenericScimResource;
+import com.bettercloud.scim2.common.exceptions.ScimException;
+import com.bettercloud.scim2.common.types.Meta;
+import com.bettercloud.scim2.common.types.UserResource;
+import com.bettercloud.scim2.common.utils.JsonUtils;
+import com.bettercloud.scim2.server.annotation.ScimResource;
+import com.bettercloud.scim2.server.config.Scim2Properties;
+import com.bettercloud.scim2.server.controller.BaseResourceController;
+import com.bettercloud.scim2.server.controller.ScimETagAdvice;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+
+public class ScimETagTest {
+
+    private VersionedUserController controller;
+
+    private MockMvc mockMvc;
+
+    @Before
+    public void setUp() {
+        final Scim2Properties scim2Properties = new Scim2Properties();
+        scim2Properties.setBaseUrl("https://example.com");
+        final Scim2Properties.ServiceProviderConfigProperties serviceProviderConfig = new Scim2Properties.ServiceProviderConfigProperties();
+        serviceProviderConfig.setEtag(new Scim2Properties.ServiceProviderConfigProperties.ETagConfigProperties(true));
+        scim2Properties.setServiceProviderConfig(serviceProviderConfig);
+        controller = new VersionedUserController(scim2Properties);
+        controller.users.put("1", user("1", "bjensen", null));
+        controller.users.put("2", user("2", "jsmith", "3"));
+        mockMvc = MockMvcBuilders.standaloneSetup(controller).setControllerAdvice(new ScimETagAdvice()).build();
+    }
+
+    @Test
+    public void weakETagOfSerializedResource() throws Exception {
+        final UserResource user = user("1", "bjensen", null);
+        final String eTag = ScimETag.of(user);
+        assertEquals("W/\"" + DigestUtils.md5DigestAsHex(JsonUtils.getObjectWriter().writeValueAsBytes(user)) + "\"", eTag);
+        assertEquals(eTag, ScimETag.of(user("1", "bjensen", null)));
+        assertNotEquals(eTag, ScimETag.of(user("1", "bjensen2", null)));
+    }
+
+    @Test
+    public void eTagOfVersion() throws Exception {
+        assertEquals("W/\"3\"", ScimETag.of(user("2", "jsmith", "3")));
+        assertEquals("W/\"3\"", ScimETag.of(user("2", "jsmith", "W/\"3\"")));
+        assertEquals("\"3\"", ScimETag.of(user("2", "jsmith", "\"3\"")));
+    }
+
+    @Test
+    public void matches() throws Exception {
+        assertTrue(ScimETag.matches("W/\"3\"", "W/\"3\""));
+        assertTrue(ScimETag.matches("W/\"3\"", "\"3\""));
+        assertTrue(ScimETag.matches("\"3\"", "W/\"1\", W/\"3\""));
+        assertTrue(ScimETag.matches("W/\"3\"", "*"));
+        assertFalse(ScimETag.matches("W/\"3\"", "W/\"4\""));
+        assertFalse(ScimETag.matches("W/\"3\"", ""));
+        assertFalse(ScimETag.matches("W/\"3\"", null));
+    }
+
+    @Test
+    public void getReturnsETagAndVersion() throws Exception {
+        final MvcResult result = mockMvc.perform(get("/versioned/Users/1")).andReturn();
+        assertEquals(HttpStatus.OK.value(), result.getResponse().getStatus());
+        final String eTag = result.getResponse().getHeader(HttpHeaders.ETAG);
+        assertTrue(eTag.startsWith("W/\""));
+        final JsonNode user = JsonUtils.getObjectReader().readTree(result.getResponse().getContentAsString());
+        assertEquals(eTag, user.path("meta").path("version").textValue());
+
+        final MvcResult notModified = mockMvc.perform(get("/versioned/Users/1").header(HttpHeaders.IF_NONE_MATCH, eTag)).andReturn();
+        assertEquals(HttpStatus.NOT_MODIFIED.value(), notModified.getResponse().getStatus());
+        assertEquals(eTag, notModified.getResponse().getHeader(HttpHeaders.ETAG));
+        assertEquals(0, notModified.getResponse().getContentLength());
+
+        controller.users.put("1", user("1", "bjensen2", null));
+        final MvcResult modified = mockMvc.perform(get("/versioned/Users/1").header(HttpHeaders.IF_NONE_MATCH, eTag)).andReturn();
+        assertEquals(HttpStatus.OK.value(), modified.getResponse().getStatus());
+        assertNotEquals(eTag, modified.getResponse().getHeader(HttpHeaders.ETAG));
+    }
+
+    @Test
+    public void getReusesBackendVersion() throws Exception {
+        final MvcResult result = mockMvc.perform(get("/versioned/Users/2")).andReturn();
+        assertEquals("W/\"3\"", result.getResponse().getHeader(HttpHeaders.ETAG));
+        assertEquals("3", JsonUtils.getObjectReader().readTree(result.getResponse().getContentAsString()).path("meta").path("version").textValue());
+        assertEquals(1, controller.conversions);
+
+        final MvcResult notModified = mockMvc.perform(get("/versioned/Users/2/checked").header(HttpHeaders.IF_NONE_MATCH, "W/\"3\"")).andReturn();
+        assertEquals(HttpStatus.NOT_MODIFIED.value(), notModified.getResponse().getStatus());
+        assertEquals("W/\"3\"", notModified.getResponse().getHeader(HttpHeaders.ETAG));
+        assertEquals(1, controller.conversions);
+    }
+
+    @Test
+    public void putEnforcesIfMatch() throws Exception {
+        final String eTag = mockMvc.perform(get("/versioned/Users/1")).andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        final MvcResult updated = mockMvc.perform(put("/versioned/Users/1").param("userName", "bjensen2").header(HttpHeaders.IF_MATCH, eTag))
+                                         .andReturn();
+        assertEquals(HttpStatus.OK.value(), updated.getResponse().getStatus());
+        final String newETag = updated.getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotEquals(eTag, newETag);
+
+        final MvcResult stale = mockMvc.perform(put("/versioned/Users/1").param("userName", "bjensen3").header(HttpHeaders.IF_MATCH, eTag))
+                                       .andReturn();
+        assertEquals(HttpStatus.PRECONDITION_FAILED.value(), stale.getResponse().getStatus());
+        assertEquals(newETag, stale.getResponse().getHeader(HttpHeaders.ETAG));
+        assertEquals("412", JsonUtils.getObjectReader().readTree(stale.getResponse().getContentAsString()).path("status").textValue());
+        assertEquals("bjensen2", controller.users.get("1").getUserName());
+
+        final MvcResult unconditional = mockMvc.perform(put("/versioned/Users/1").param("userName", "bjensen3")).andReturn();
+        assertEquals(HttpStatus.OK.value(), unconditional.getResponse().getStatus());
+    }
+
+    @Test
+    public void deleteEnforcesIfMatch() throws Exception {
+        assertEquals(HttpStatus.PRECONDITION_FAILED.value(),
+                     mockMvc.perform(delete("/versioned/Users/2").header(HttpHeaders.IF_MATCH, "W/\"2\"")).andReturn().getResponse().getStatus());
+        assertTrue(controller.users.containsKey("2"));
+
+        assertEquals(HttpStatus.NO_CONTENT.value(),
+                     mockMvc.perform(delete("/versioned/Users/2").header(HttpHeaders.IF_MATCH, "W/\"3\", W/\"4\"")).andReturn().getResponse()
+                            .getStatus());
+        assertFalse(controller.users.containsKey("2"));
+    }
+
+    private static UserResource user(final String id, final String userName, final String version) {
+        final UserResource user = new UserResource();
+        user.setId(id);
+        user.setUserName(userName);
+        if (version != null) {
+            final Meta meta = new Meta();
+            meta.setVersion(version);
+            user.setMeta(meta);
+        }
+        return user;
+    }
+
+    @ScimResource(description = "Access Versioned User Resources", name = "VersionedUser", schema = UserResource.class)
+    @RequestMapping("/versioned/Users")
+    @ResponseBody
+    public static class VersionedUserController extends BaseResourceController<UserResource> {
+
+        private final Map<String, UserResource> users = new ConcurrentHashMap<>();
+
+        private int conversions;
+
+        public VersionedUserController(final Scim2Properties scim2Properties) {
+            super(scim2Properties);
+        }
+
+        @GetMapping("/{id}")
+        public GenericScimResource get(@PathVariable("id") final String id) throws ScimException {
+            conversions++;
+            return genericScimResourceConverter.convert(users.get(id));
+        }
+
+        @GetMapping("/{id}/checked")
+        public GenericScimResource getChecked(@PathVariable("id") final String id,
+                                              @RequestHeader final HttpHeaders headers) throws ScimException {
+            checkPreconditions(users.get(id), HttpMethod.GET, headers);
+            conversions++;
+            return genericScimResourceConverter.convert(users.get(id));
+        }
+
+        @PutMapping("/{id}")
+        public GenericScimResource replace(@PathVariable("id") final String id,
+                                           @RequestParam("userName") final String userName,
+                                           @RequestHeader final HttpHeaders headers) throws ScimException {
+            checkPreconditions(users.get(id), HttpMethod.PUT, headers);
+            final UserResource user = user(id, userName, null);
+            users.put(id, user);
+            return genericScimResourceConverter.convert(user);
+        }
+
+        @DeleteMapping("/{id}")
+        public ResponseEntity<Void> delete(@PathVariable("id") final String id,
+                                           @RequestHeader final HttpHeaders headers) throws ScimException {
+            checkPreconditions(users.get(id), HttpMethod.DELETE, headers);
+            users.remove(id);
+            return ResponseEntity.noContent().build();
+        }
+    }
+}
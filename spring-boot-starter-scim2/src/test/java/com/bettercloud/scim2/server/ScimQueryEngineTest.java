@@ -0,0 +1,367 @@
+package com.bettercloud.scim2.server;
+
+import com.bettercloud.scim2.common.GenericScimResource;
+import com.bettercloud.scim2.common.exceptions.BadRequestException;
+import com.bettercloud.scim2.common.messages.ListResponse;
+import com.bettercloud.scim2.common.messages.SearchRequest;
+import com.bettercloud.scim2.common.messages.SortOrder;
+import com.bettercloud.scim2.common.types.PaginationConfig;
+import com.bettercloud.scim2.common.types.UserResource;
+import com.bettercloud.scim2.common.utils.JsonUtils;
+import com.bettercloud.scim2.common.utils.SchemaUtils;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class ScimQueryEngineTest {
+
+    private ResourceTypeDefinition resourceTypeDefinition;
+
+    private ScimQueryEngine<GenericScimResource> queryEngine;
+
+    @Before
+    public void setUp() throws Exception {
+        resourceTypeDefinition = new ResourceTypeDefinition(null, "User", null, "/Users", SchemaUtils.getSchema(UserResource.class),
+                                                            Collections.emptyMap(), true);
+        queryEngine = new ScimQueryEngine<>(resourceTypeDefinition, 100, new PaginationConfig(true, true, "index", null, null, null));
+    }
+
+    @Test
+    public void sortedPagesMatchFullSort() throws Exception {
+        final Random random = new Random(42);
+        final List<GenericScimResource> users = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            users.add(user(String.valueOf(i), "user" + random.nextInt(200)));
+        }
+
+        final List<GenericScimResource> sorted = new ArrayList<>(users);
+        sorted.sort(Comparator.comparing(user -> user.getObjectNode().get("userName").textValue()));
+        final List<GenericScimResource> reversed = new ArrayList<>(users);
+        reversed.sort(Comparator.comparing((GenericScimResource user) -> user.getObjectNode().get("userName").textValue()).reversed());
+
+        for (int startIndex : new int[]{1, 2, 50, 951, 999, 1001}) {
+            final int end = Math.min(startIndex - 1 + 50, users.size());
+            final int start = Math.min(startIndex - 1, end);
+
+            ListResponse<GenericScimResource> response = queryEngine.query(users, null, "userName", SortOrder.ASCENDING, startIndex, 50);
+            assertEquals(1000, response.getTotalResults());
+            assertEquals(Integer.valueOf(startIndex), response.getStartIndex());
+            assertEquals(ids(sorted.subList(start, end)), ids(response));
+
+            response = queryEngine.query(users, null, "userName", SortOrder.DESCENDING, startIndex, 50);
+            assertEquals(ids(reversed.subList(start, end)), ids(response));
+        }
+    }
+
+    @Test
+    public void missingValuesSortLastAscendingAndFirstDescending() throws Exception {
+        final GenericScimResource withoutName = new GenericScimResource();
+        withoutName.getObjectNode().put("id", "none");
+        final List<GenericScimResource> users = Arrays.asList(user("b", "bob"), withoutName, user("a", "alice"));
+
+        assertEquals(Arrays.asList("a", "b", "none"), ids(queryEngine.query(users, null, "userName", null, null, null)));
+        assertEquals(Arrays.asList("none", "b", "a"), ids(queryEngine.query(users, null, "userName", SortOrder.DESCENDING, null, null)));
+    }
+
+    @Test
+    public void sortRespectsCaseExact() throws Exception {
+        final List<GenericScimResource> users = Arrays.asList(user("b", "b"), user("B", "B"), user("a", "a"), user("A", "A"));
+
+        // userName is not case exact, equal values keep their order
+        assertEquals(Arrays.asList("a", "A", "b", "B"), ids(queryEngine.query(users, null, "userName", null, null, null)));
+        // id is case exact
+        assertEquals(Arrays.asList("A", "B", "a", "b"), ids(queryEngine.query(users, null, "id", null, null, null)));
+    }
+
+    @Test
+    public void sortByMultiValuedAttributeUsesPrimaryValue() throws Exception {
+        final GenericScimResource first = user("1", "first");
+        addEmail(first, "z@example.com", false);
+        addEmail(first, "b@example.com", true);
+        final GenericScimResource second = user("2", "second");
+        addEmail(second, "a@example.com", false);
+        addEmail(second, "c@example.com", false);
+        final List<GenericScimResource> users = Arrays.asList(first, second);
+
+        assertEquals(Arrays.asList("2", "1"), ids(queryEngine.query(users, null, "emails.value", null, null, null)));
+        assertEquals(Arrays.asList("2", "1"), ids(queryEngine.query(users, null, "emails", null, null, null)));
+    }
+
+    @Test
+    public void filterAndMaxResults() throws Exception {
+        final List<GenericScimResource> users = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            users.add(user(String.valueOf(i), (i % 2 == 0 ? "even" : "odd") + i));
+        }
+
+        ListResponse<GenericScimResource> response = queryEngine.query(users, new SearchRequest(null, null, "userName sw \"even\"", null,
+                                                                                                 null, null, 500));
+        assertEquals(150, response.getTotalResults());
+        assertEquals(Integer.valueOf(100), response.getItemsPerPage());
+        assertEquals("0", ids(response).get(0));
+        assertEquals("198", ids(response).get(99));
+
+        response = queryEngine.query(users, "userName sw \"odd\"", null, null, 0, null);
+        assertEquals(150, response.getTotalResults());
+        assertEquals(Integer.valueOf(1), response.getStartIndex());
+        assertEquals(100, ids(response).size());
+
+        response = queryEngine.query(users, "userName sw \"odd\"", "userName", null, 1, 0);
+        assertEquals(150, response.getTotalResults());
+        assertEquals(Integer.valueOf(0), response.getItemsPerPage());
+    }
+
+    @Test
+    public void optimizedFiltersMatchTheSameResources() throws Exception {
+        final List<GenericScimResource> users = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            final GenericScimResource user = user(String.valueOf(i), "user" + i);
+            addEmail(user, i % 3 == 0 ? "user" + i + "@example.com" : "user" + i + "@example.org", i % 2 == 0);
+            users.add(user);
+        }
+
+        assertEquals(Collections.singletonList("42"),
+                     ids(queryEngine.query(users, "emails.value co \"example\" and (id eq \"42\" and userName pr)", null, null, null, null)));
+        assertEquals(Arrays.asList("0", "12", "15"),
+                     ids(queryEngine.query(users, "(emails[value ew \".com\"] or id eq \"4\" or emails[value ew \".com\"]) and "
+                                                  + "not(not(userName lt \"user5\"))", "id", null, 1, 3)));
+    }
+
+    @Test
+    public void batchQueryMatchesEachFilter() throws Exception {
+        final List<GenericScimResource> users = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            final GenericScimResource user = user(String.valueOf(i), "user" + i);
+            addEmail(user, "user" + i + "@example.com", i % 2 == 0);
+            users.add(user);
+        }
+
+        final List<String> filters = Arrays.asList("userName eq \"USER3\"", "userName eq \"user3\"", "id eq \"unknown\"", null,
+                                                   "emails[value sw \"user1\" and primary eq true]", "userName eq \"user7\"");
+        final List<List<GenericScimResource>> results = queryEngine.queryBatch(users, filters);
+        assertEquals(filters.size(), results.size());
+        for (int i = 0; i < filters.size(); i++) {
+            assertEquals(filters.get(i), ids(queryEngine.query(users, filters.get(i), null, null, null, null)), ids(results.get(i)));
+        }
+        assertEquals(Collections.singletonList("3"), ids(results.get(0)));
+        assertEquals(Arrays.asList("10", "12", "14", "16", "18"), ids(results.get(4)));
+    }
+
+    @Test
+    public void cursorPagesMatchFullSort() throws Exception {
+        final Random random = new Random(7);
+        final List<GenericScimResource> users = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            users.add(user(String.format("%04d", random.nextInt(10000)) + "-" + i, "user" + random.nextInt(200)));
+        }
+
+        final Comparator<GenericScimResource> byUserName = Comparator.comparing(user -> user.getObjectNode().get("userName").textValue());
+        final Comparator<GenericScimResource> byId = Comparator.comparing(GenericScimResource::getId);
+
+        final List<GenericScimResource> sorted = new ArrayList<>(users);
+        sorted.sort(byUserName.thenComparing(byId));
+        assertEquals(ids(sorted), readAllPages(users, "userName", null, 70));
+
+        sorted.sort(byUserName.reversed().thenComparing(byId));
+        assertEquals(ids(sorted), readAllPages(users, "userName", SortOrder.DESCENDING, 100));
+
+        sorted.sort(byId);
+        assertEquals(ids(sorted), readAllPages(users, null, null, 33));
+    }
+
+    @Test
+    public void cursorPagesIgnoreResourcesAddedBeforeTheCursor() throws Exception {
+        final List<GenericScimResource> users = new ArrayList<>(Arrays.asList(user("1", "a"), user("2", "b"), user("3", "c"), user("4", "d")));
+
+        ListResponse<GenericScimResource> response = queryEngine.query(users, new SearchRequest(null, null, null, "userName", null, null,
+                                                                                                 2, ""));
+        assertEquals(Arrays.asList("1", "2"), ids(response));
+        assertNull(response.getStartIndex());
+        assertEquals(4, response.getTotalResults());
+
+        users.add(user("0", "aa"));
+        users.add(user("5", "bb"));
+        response = queryEngine.queryByCursor(users, null, "userName", null, response.getNextCursor(), 2);
+        assertEquals(Arrays.asList("5", "3"), ids(response));
+        response = queryEngine.queryByCursor(users, null, "userName", null, response.getNextCursor(), 2);
+        assertEquals(Collections.singletonList("4"), ids(response));
+        assertNull(response.getNextCursor());
+    }
+
+    @Test
+    public void invalidCursor() throws Exception {
+        final String queryHash = ScimCursor.hashQuery(null, null, null);
+        for (String cursor : new String[]{"not a cursor", "e30", new ScimCursor(null, "1", queryHash).encode().substring(1),
+                                          new ScimCursor(null, "1").encode(), new ScimCursor(null, "1", "other").encode()}) {
+            expectInvalidCursor(queryEngine, null, null, null, cursor);
+        }
+        assertEquals(0, queryEngine.queryByCursor(Collections.emptyList(), null, null, null,
+                                                  new ScimCursor(null, "1", queryHash).encode(), null).getTotalResults());
+    }
+
+    @Test
+    public void cursorsAreBoundToTheirQuery() throws Exception {
+        final List<GenericScimResource> users = Arrays.asList(user("1", "a"), user("2", "b"), user("3", "c"));
+        final String cursor = queryEngine.queryByCursor(users, "userName pr", "userName", null, "", 1).getNextCursor();
+
+        assertEquals(Collections.singletonList("2"), ids(queryEngine.queryByCursor(users, "userName pr", "userName",
+                                                                                   SortOrder.ASCENDING, cursor, 1)));
+        expectInvalidCursor(queryEngine, "userName pr", "userName", SortOrder.DESCENDING, cursor);
+        expectInvalidCursor(queryEngine, "userName pr", "id", null, cursor);
+        expectInvalidCursor(queryEngine, "userName sw \"b\"", "userName", null, cursor);
+        expectInvalidCursor(queryEngine, null, "userName", null, cursor);
+    }
+
+    @Test
+    public void cursorsRequireCursorPagination() throws Exception {
+        final List<GenericScimResource> users = Arrays.asList(user("1", "a"), user("2", "b"));
+        final ScimQueryEngine<GenericScimResource> indexOnly = new ScimQueryEngine<>(resourceTypeDefinition, 100);
+
+        assertEquals(Arrays.asList("1", "2"), ids(indexOnly.query(users, new SearchRequest(null, null, null, null, null, null, null))));
+        expectInvalidCursor(indexOnly, null, null, null, "");
+        try {
+            indexOnly.query(users, new SearchRequest(null, null, null, null, null, null, 1, ""));
+            fail("Expected cursor-based pagination to be rejected");
+        } catch (BadRequestException e) {
+            assertEquals(BadRequestException.INVALID_CURSOR, e.getScimError().getScimType());
+        }
+    }
+
+    @Test
+    public void cursorIsTheDefaultPaginationMethod() throws Exception {
+        final List<GenericScimResource> users = Arrays.asList(user("1", "a"), user("2", "b"), user("3", "c"));
+        final ScimQueryEngine<GenericScimResource> cursorByDefault =
+                new ScimQueryEngine<>(resourceTypeDefinition, 100, new PaginationConfig(true, true, "cursor", null, null, null));
+
+        ListResponse<GenericScimResource> response = cursorByDefault.query(users, new SearchRequest(null, null, null, null, null, null, 2));
+        assertNull(response.getStartIndex());
+        assertEquals(Arrays.asList("1", "2"), ids(response));
+        response = cursorByDefault.query(users, new SearchRequest(null, null, null, null, null, null, 2, response.getNextCursor()));
+        assertEquals(Collections.singletonList("3"), ids(response));
+
+        response = cursorByDefault.query(users, new SearchRequest(null, null, null, null, null, 2, 2));
+        assertEquals(Integer.valueOf(2), response.getStartIndex());
+        assertEquals(Arrays.asList("2", "3"), ids(response));
+    }
+
+    @Test
+    public void startIndexesRequireIndexPagination() throws Exception {
+        final List<GenericScimResource> users = Arrays.asList(user("1", "a"), user("2", "b"), user("3", "c"));
+        final ScimQueryEngine<GenericScimResource> cursorOnly =
+                new ScimQueryEngine<>(resourceTypeDefinition, 100, new PaginationConfig(true, false, "index", null, null, null));
+
+        final ListResponse<GenericScimResource> response = cursorOnly.query(users, new SearchRequest(null, null, null, null, null, null, 2));
+        assertNull(response.getStartIndex());
+        assertEquals(Arrays.asList("1", "2"), ids(response));
+        try {
+            cursorOnly.query(users, new SearchRequest(null, null, null, null, null, 2, 2));
+            fail("Expected index-based pagination to be rejected");
+        } catch (BadRequestException e) {
+            assertEquals(Integer.valueOf(400), e.getScimError().getStatus());
+            assertEquals(BadRequestException.INVALID_VALUE, e.getScimError().getScimType());
+        }
+    }
+
+    @Test
+    public void pageSizesFollowThePaginationConfig() throws Exception {
+        final List<GenericScimResource> users = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            users.add(user(String.valueOf(i), "user" + i));
+        }
+        final ScimQueryEngine<GenericScimResource> engine =
+                new ScimQueryEngine<>(resourceTypeDefinition, 100, new PaginationConfig(true, true, "index", 5, 10, null));
+
+        assertEquals(5, engine.query(users, new SearchRequest(null, null, null, null, null, null, null)).getResources().size());
+        assertEquals(3, engine.query(users, new SearchRequest(null, null, null, null, null, null, 3)).getResources().size());
+        assertEquals(10, engine.query(users, new SearchRequest(null, null, null, null, null, null, 50)).getResources().size());
+        assertEquals(5, engine.queryByCursor(users, null, null, null, "", null).getResources().size());
+        assertEquals(10, engine.queryByCursor(users, null, null, null, "", 50).getResources().size());
+
+        final ScimQueryEngine<GenericScimResource> limited =
+                new ScimQueryEngine<>(resourceTypeDefinition, 4, new PaginationConfig(true, true, "index", 5, 10, null));
+        assertEquals(4, limited.query(users, new SearchRequest(null, null, null, null, null, null, null)).getResources().size());
+        assertEquals(4, limited.query(users, new SearchRequest(null, null, null, null, null, null, 50)).getResources().size());
+    }
+
+    @Test
+    public void cursorRoundTrip() throws Exception {
+        final ScimCursor cursor = new ScimCursor(JsonUtils.getJsonNodeFactory().numberNode(42), "id");
+        assertEquals(cursor, ScimCursor.decode(cursor.encode()));
+        assertEquals(new ScimCursor(null, "id"), ScimCursor.decode(new ScimCursor(null, "id").encode()));
+        final ScimCursor boundCursor = new ScimCursor(JsonUtils.getJsonNodeFactory().textNode("a"), "id",
+                                                      ScimCursor.hashQuery(null, null, SortOrder.DESCENDING));
+        assertEquals(boundCursor, ScimCursor.decode(boundCursor.encode()));
+    }
+
+    private static void expectInvalidCursor(final ScimQueryEngine<GenericScimResource> engine,
+                                            final String filter,
+                                            final String sortBy,
+                                            final SortOrder sortOrder,
+                                            final String cursor) throws Exception {
+        try {
+            engine.queryByCursor(Collections.emptyList(), filter, sortBy, sortOrder, cursor, null);
+            fail("Expected invalid cursor " + cursor);
+        } catch (BadRequestException e) {
+            assertEquals(BadRequestException.INVALID_CURSOR, e.getScimError().getScimType());
+        }
+    }
+
+    private List<String> readAllPages(final List<GenericScimResource> users,
+                                      final String sortBy,
+                                      final SortOrder sortOrder,
+                                      final int count) throws Exception {
+        final List<String> ids = new ArrayList<>();
+        String cursor = "";
+        do {
+            final ListResponse<GenericScimResource> response = queryEngine.queryByCursor(users, null, sortBy, sortOrder, cursor, count);
+            assertEquals(users.size(), response.getTotalResults());
+            ids.addAll(ids(response));
+            cursor = response.getNextCursor();
+        } while (cursor != null);
+        return ids;
+    }
+
+    private static GenericScimResource user(final String id, final String userName) {
+        final GenericScimResource user = new GenericScimResource();
+        user.getObjectNode().put("id", id);
+        user.getObjectNode().put("userName", userName);
+        return user;
+    }
+
+    private static void addEmail(final GenericScimResource user, final String value, final boolean primary) {
+        final ObjectNode email = user.getObjectNode().withArray("emails").addObject();
+        email.put("value", value);
+        if (primary) {
+            email.put("primary", true);
+        }
+    }
+
+    private static List<String> ids(final List<GenericScimResource> resources) {
+        final List<String> ids = new ArrayList<>();
+        for (GenericScimResource resource : resources) {
+            ids.add(resource.getId());
+        }
+        return ids;
+    }
+
+    private static List<String> ids(final ListResponse<GenericScimResource> response) {
+        final List<String> ids = new ArrayList<>();
+        final JsonNode resources = JsonUtils.valueToNode(response).path("Resources");
+        for (JsonNode resource : resources) {
+            ids.add(resource.get("id").textValue());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,210 @@
+package com.bettercloud.scim2.server;
+
+import com.bettercloud.scim2.common.GenericScimResource;
+import com.bettercloud.scim2.common.Path;
+import com.bettercloud.scim2.common.exceptions.BadRequestException;
+import com.bettercloud.scim2.common.exceptions.ResourceConflictException;
+import com.bettercloud.scim2.common.filters.Filter;
+import com.bettercloud.scim2.common.types.AttributeDefinition;
+import com.bettercloud.scim2.common.types.EnterpriseUserExtension;
+import com.bettercloud.scim2.common.types.SchemaResource;
+import com.bettercloud.scim2.common.types.UserResource;
+import com.bettercloud.scim2.common.utils.JsonUtils;
+import com.bettercloud.scim2.common.utils.SchemaUtils;
+import com.bettercloud.scim2.server.evaluator.SchemaAwareFilterEvaluator;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class UniquenessGuardTest {
+
+    private static final String EXTENSION = "urn:example:params:scim:schemas:extension:badge:2.0:User";
+
+    private ResourceTypeDefinition resourceTypeDefinition;
+
+    private SchemaAwareFilterEvaluator filterEvaluator;
+
+    private final List<GenericScimResource> stored = new ArrayList<>();
+
+    private final List<Filter> lookups = new ArrayList<>();
+
+    private UniquenessGuard guard;
+
+    @Before
+    public void setUp() throws Exception {
+        resourceTypeDefinition = new ResourceTypeDefinition(null, "User", null, "/Users", SchemaUtils.getSchema(UserResource.class),
+                                                            Collections.singletonMap(SchemaUtils.getSchema(EnterpriseUserExtension.class),
+                                                                                     false), true);
+        filterEvaluator = new SchemaAwareFilterEvaluator(resourceTypeDefinition);
+        guard = new UniquenessGuard(resourceTypeDefinition, filter -> {
+            lookups.add(filter);
+            for (GenericScimResource resource : stored) {
+                if (filter.visit(filterEvaluator, resource.getObjectNode())) {
+                    return true;
+                }
+            }
+            return false;
+        });
+        for (int i = 0; i < 10000; i++) {
+            stored.add(user(String.valueOf(i), "user" + i));
+        }
+    }
+
+    @Test
+    public void uniqueAttributesAreDiscovered() {
+        assertEquals(Collections.singleton(Path.root().attribute("userName")), new HashSet<>(guard.getUniqueAttributes()));
+    }
+
+    @Test
+    public void everyValueIsLookedUpBeforeRebuilding() throws Exception {
+        guard.checkUniqueness(user(null, "new"));
+        assertEquals(1, lookups.size());
+        assertEquals("userName eq \"new\"", lookups.get(0).toString());
+        assertEquals(1, guard.getExpectedFalsePositiveRate(), 0);
+    }
+
+    @Test
+    public void onlyPossibleMatchesAreLookedUp() throws Exception {
+        guard.rebuild(stored);
+
+        for (int i = 0; i < 10000; i++) {
+            guard.checkUniqueness(user(null, "new" + i));
+        }
+        assertEquals(10000, guard.getChecks());
+        assertEquals(guard.getLookups(), lookups.size());
+        assertTrue(String.valueOf(guard.getFalsePositiveRate()), guard.getFalsePositiveRate() < 0.02);
+        assertTrue(guard.getExpectedFalsePositiveRate() < 0.02);
+
+        lookups.clear();
+        expectConflict(user(null, "USER42"));
+        assertEquals(1, lookups.size());
+        assertTrue(guard.getFalsePositiveRate() < 0.02);
+    }
+
+    @Test
+    public void replacedResourcesDoNotConflictWithThemselves() throws Exception {
+        guard.rebuild(stored);
+        guard.checkUniqueness(user("42", "user42"));
+        assertEquals("(userName eq \"user42\" and id ne \"42\")", lookups.get(0).toString());
+        expectConflict(user("43", "user42"));
+    }
+
+    @Test
+    public void addedAndRebuiltValuesAreGuarded() throws Exception {
+        guard.rebuild(stored);
+        final GenericScimResource created = user("new", "created");
+        stored.add(created);
+        guard.add(created);
+        expectConflict(user(null, "created"));
+
+        stored.remove(created);
+        guard.rebuild(stored);
+        guard.checkUniqueness(user(null, "created"));
+    }
+
+    @Test
+    public void valuesAddedWhileRebuildingAreGuarded() throws Exception {
+        // Keep the store small so that rebuilds complete while values are added.
+        final Queue<GenericScimResource> concurrentStore = new ConcurrentLinkedQueue<>();
+        final UniquenessGuard concurrentGuard = new UniquenessGuard(resourceTypeDefinition, filter -> true);
+        concurrentGuard.rebuild(concurrentStore);
+
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final Future<?> added = executor.submit(() -> {
+                for (int i = 0; i < 20000; i++) {
+                    final GenericScimResource created = user("new" + i, "created" + i);
+                    concurrentStore.add(created);
+                    if (i >= 10) {
+                        concurrentStore.remove();
+                    }
+                    concurrentGuard.add(created);
+                    expectConflict(concurrentGuard, user(null, "created" + i));
+                }
+                return null;
+            });
+            int rebuilds = 0;
+            while (!added.isDone()) {
+                concurrentGuard.rebuild(concurrentStore);
+                rebuilds++;
+            }
+            added.get();
+            assertTrue(rebuilds > 1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void valuesAreKeyedLikeTheFilterEvaluatorComparesThem() throws Exception {
+        final AttributeDefinition profile = new AttributeDefinition.Builder().setName("profile")
+                                                                             .setType(AttributeDefinition.Type.REFERENCE)
+                                                                             .setCaseExact(true)
+                                                                             .setUniqueness(AttributeDefinition.Uniqueness.SERVER)
+                                                                             .build();
+        final AttributeDefinition badge = new AttributeDefinition.Builder().setName("badge")
+                                                                           .setType(AttributeDefinition.Type.STRING)
+                                                                           .setCaseExact(true)
+                                                                           .setUniqueness(AttributeDefinition.Uniqueness.SERVER)
+                                                                           .build();
+        final SchemaResource extension = new SchemaResource(EXTENSION, "Badge", null, Arrays.asList(profile, badge));
+        final ResourceTypeDefinition badgeTypeDefinition =
+                new ResourceTypeDefinition(null, "User", null, "/Users", SchemaUtils.getSchema(UserResource.class),
+                                           Collections.singletonMap(extension, false), true);
+        final SchemaAwareFilterEvaluator badgeEvaluator = new SchemaAwareFilterEvaluator(badgeTypeDefinition);
+        final GenericScimResource badgeUser = user("1", "alice");
+        badgeUser.getObjectNode().putObject(EXTENSION)
+                 .put("profile", "https://example.com/Profiles/Alice")
+                 .put("badge", "2019-06-01T00:00:00Z");
+        final UniquenessGuard badgeGuard = new UniquenessGuard(badgeTypeDefinition,
+                                                               filter -> filter.visit(badgeEvaluator, badgeUser.getObjectNode()));
+        badgeGuard.rebuild(Collections.singletonList(badgeUser));
+
+        // References are compared case insensitive even when they are case exact.
+        final GenericScimResource sameProfile = user(null, "bob");
+        sameProfile.getObjectNode().putObject(EXTENSION).put("profile", "https://EXAMPLE.com/Profiles/Alice");
+        expectConflict(badgeGuard, sameProfile);
+
+        // Strings that are the same instant are equal whatever their offsets.
+        final GenericScimResource sameBadge = user(null, "bob");
+        sameBadge.getObjectNode().putObject(EXTENSION).put("badge", "2019-06-01T02:00:00+02:00");
+        expectConflict(badgeGuard, sameBadge);
+    }
+
+    private void expectConflict(final GenericScimResource resource) throws Exception {
+        expectConflict(guard, resource);
+    }
+
+    private static void expectConflict(final UniquenessGuard guard, final GenericScimResource resource) throws Exception {
+        try {
+            guard.checkUniqueness(resource);
+            fail("Expected a conflict");
+        } catch (ResourceConflictException e) {
+            assertEquals(BadRequestException.UNIQUENESS, e.getScimError().getScimType());
+        }
+    }
+
+    private static GenericScimResource user(final String id, final String userName) {
+        final ObjectNode node = JsonUtils.getJsonNodeFactory().objectNode();
+        if (id != null) {
+            node.put("id", id);
+        }
+        node.put("userName", userName);
+        return new GenericScimResource(node);
+    }
+}
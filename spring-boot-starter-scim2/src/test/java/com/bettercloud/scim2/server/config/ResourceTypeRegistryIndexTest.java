@@ -0,0 +1,44 @@
+package com.bettercloud.scim2.server.config;
+
+import com.bettercloud.scim2.server.ResourceTypeDefinition;
+import com.bettercloud.scim2.server.TestApplication;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = "scim2.useResourceIndex=true")
+@ContextConfiguration(classes = {TestApplication.class, ResourceTypeRegistry.class})
+public class ResourceTypeRegistryIndexTest {
+
+    @Autowired
+    private Set<ResourceTypeDefinition> resourceTypeDefinitions;
+
+    @Autowired
+    private Scim2Properties scim2Properties;
+
+    @Test
+    public void validateResourceTypeDefinitions() throws Exception {
+        assertNotNull(getClass().getClassLoader().getResource(ResourceTypeRegistry.INDEX_LOCATION));
+
+        final Scim2Properties scanningProperties = new Scim2Properties();
+        scanningProperties.setResourcesPackage(scim2Properties.getResourcesPackage());
+        final Set<ResourceTypeDefinition> scannedResourceTypeDefinitions = new ResourceTypeRegistry().getResourceDefinitions(scanningProperties);
+
+        assertEquals(4, resourceTypeDefinitions.size());
+        assertEquals(getNames(scannedResourceTypeDefinitions), getNames(resourceTypeDefinitions));
+    }
+
+    private Set<String> getNames(final Set<ResourceTypeDefinition> resourceTypeDefinitions) {
+        return resourceTypeDefinitions.stream().map(ResourceTypeDefinition::getName).collect(Collectors.toSet());
+    }
+}
@@ -0,0 +1,37 @@
+package com.bettercloud.scim2.server.controller;
+
+import com.bettercloud.scim2.server.controller.discovery.ReactiveResourceTypesController;
+import com.bettercloud.scim2.server.controller.discovery.ReactiveSchemasController;
+import com.bettercloud.scim2.server.controller.discovery.ReactiveServiceProviderConfigController;
+import com.bettercloud.scim2.server.controller.discovery.SchemaAwareController;
+import com.bettercloud.scim2.server.controller.discovery.ServiceProviderConfigController;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = "spring.main.web-application-type=reactive")
+public class ReactiveDiscoveryConfigurationTest {
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    @Test
+    public void reactiveDiscoveryControllers() {
+        assertEquals(1, applicationContext.getBeanNamesForType(ReactiveSchemasController.class).length);
+        assertEquals(1, applicationContext.getBeanNamesForType(ReactiveResourceTypesController.class).length);
+        assertEquals(1, applicationContext.getBeanNamesForType(ReactiveServiceProviderConfigController.class).length);
+        assertEquals(0, applicationContext.getBeanNamesForType(SchemaAwareController.class).length);
+        assertEquals(0, applicationContext.getBeanNamesForType(ServiceProviderConfigController.class).length);
+
+        final WebTestClient client = WebTestClient.bindToApplicationContext(applicationContext).build();
+        client.get().uri("/ResourceTypes/User").exchange().expectStatus().isOk();
+        client.get().uri("/ServiceProviderConfig").exchange().expectStatus().isOk();
+    }
+}
@@ -0,0 +1,107 @@
+package com.bettercloud.scim2.server.controller;
+
+import com.bettercloud.scim2.common.types.ServiceProviderConfigResource;
+import com.bettercloud.scim2.common.utils.JsonUtils;
+import com.bettercloud.scim2.server.ResourceTypeDefinition;
+import com.bettercloud.scim2.server.config.Scim2Properties;
+import com.bettercloud.scim2.server.controller.discovery.ReactiveResourceTypesController;
+import com.bettercloud.scim2.server.controller.discovery.ReactiveSchemasController;
+import com.bettercloud.scim2.server.controller.discovery.ReactiveServiceProviderConfigController;
+import com.bettercloud.scim2.server.controller.discovery.ResourceTypesController;
+import com.bettercloud.scim2.server.controller.discovery.SchemasController;
+import com.bettercloud.scim2.server.controller.discovery.ServiceProviderConfigController;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.Collections;
+import java.util.Set;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class ReactiveDiscoveryControllerTest {
+
+    private Scim2Properties scim2Properties;
+
+    private Set<ResourceTypeDefinition> resourceDefinitions;
+
+    private ServiceProviderConfigResource serviceProviderConfig;
+
+    private WebTestClient client;
+
+    @Before
+    public void setUp() {
+        scim2Properties = new Scim2Properties();
+        scim2Properties.setBaseUrl("http://localhost");
+        resourceDefinitions = Collections.singleton(ResourceTypeDefinition.fromScimResource(MockUserController.class));
+
+        serviceProviderConfig =
+                new Scim2Properties.ServiceProviderConfigProperties(null,
+                                                                    new Scim2Properties.ServiceProviderConfigProperties.PatchConfigProperties(),
+                                                                    new Scim2Properties.ServiceProviderConfigProperties.BulkConfigProperties(),
+                                                                    new Scim2Properties.ServiceProviderConfigProperties.FilterConfigProperties(),
+                                                                    new Scim2Properties.ServiceProviderConfigProperties.ChangePasswordConfigProperties(),
+                                                                    new Scim2Properties.ServiceProviderConfigProperties.SortConfigProperties(),
+                                                                    new Scim2Properties.ServiceProviderConfigProperties.ETagConfigProperties(),
+                                                                    null,
+                                                                    Collections.emptyList()).getServiceProviderConfiguration();
+
+        client = WebTestClient.bindToController(new ReactiveSchemasController(scim2Properties, resourceDefinitions),
+                                                new ReactiveResourceTypesController(scim2Properties, resourceDefinitions),
+                                                new ReactiveServiceProviderConfigController(scim2Properties, serviceProviderConfig))
+                              .build();
+    }
+
+    @Test
+    public void responsesMatchServletControllers() throws Exception {
+        assertArrayEquals(new SchemasController(scim2Properties, resourceDefinitions).search(null, new MockHttpServletRequest()).getBody(),
+                          get("/Schemas"));
+        assertArrayEquals(new ResourceTypesController(scim2Properties, resourceDefinitions).search(null, new MockHttpServletRequest())
+                                                                                           .getBody(),
+                          get("/ResourceTypes"));
+        assertArrayEquals(new ResourceTypesController(scim2Properties, resourceDefinitions).get("User", new MockHttpServletRequest())
+                                                                                           .getBody(),
+                          get("/ResourceTypes/User"));
+    }
+
+    @Test
+    public void searchWithFilter() throws Exception {
+        final JsonNode response = JsonUtils.getObjectReader().readTree(new String(get("/ResourceTypes?filter=name eq \"User\""), "UTF-8"));
+        assertEquals(1, response.path("totalResults").intValue());
+        assertEquals("http://localhost/ResourceTypes/User", response.path("Resources").path(0).path("meta").path("location").textValue());
+    }
+
+    @Test
+    public void serviceProviderConfig() throws Exception {
+        final MockHttpServletRequest request = new MockHttpServletRequest("GET", "/ServiceProviderConfig");
+        request.setServletPath("/ServiceProviderConfig");
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+        try {
+            assertArrayEquals(new ServiceProviderConfigController(scim2Properties, serviceProviderConfig).get(request).getBody(),
+                              get("/ServiceProviderConfig"));
+        } finally {
+            RequestContextHolder.resetRequestAttributes();
+        }
+
+        final JsonNode response = JsonUtils.getObjectReader().readTree(new String(get("/ServiceProviderConfig"), "UTF-8"));
+        assertEquals(100, response.path("filter").path("maxResults").intValue());
+    }
+
+    @Test
+    public void notModified() {
+        for (String uri : new String[]{"/Schemas", "/ResourceTypes/User", "/ServiceProviderConfig"}) {
+            final String eTag = client.get().uri(uri).exchange().expectStatus().isOk().returnResult(byte[].class).getResponseHeaders().getETag();
+            client.get().uri(uri).header(HttpHeaders.IF_NONE_MATCH, eTag).exchange().expectStatus().isNotModified().expectBody().isEmpty();
+        }
+    }
+
+    private byte[] get(final String uri) {
+        return client.get().uri(uri).exchange().expectStatus().isOk().expectBody().returnResult().getResponseBody();
+    }
+}
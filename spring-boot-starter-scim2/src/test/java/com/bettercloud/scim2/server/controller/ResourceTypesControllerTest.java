@@ -4,11 +4,14 @@ import com.bettercloud.scim2.common.GenericScimResource;
 import com.bettercloud.scim2.common.ScimResource;
 import com.bettercloud.scim2.common.exceptions.ScimException;
 import com.bettercloud.scim2.common.messages.ListResponse;
+import com.bettercloud.scim2.common.utils.JsonUtils;
 import com.bettercloud.scim2.server.controller.discovery.ResourceTypesController;
+import com.fasterxml.jackson.core.type.TypeReference;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.test.context.junit4.SpringRunner;
 
 import static org.junit.Assert.assertEquals;
@@ -32,4 +35,21 @@ public class ResourceTypesControllerTest {
         final ScimResource user = resourceTypesController.get("User");
         assertEquals("User", user.getId());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void searchRendered() throws Exception {
+        final ListResponse<GenericScimResource> response = JsonUtils.getObjectReader()
+                                                                    .forType(new TypeReference<ListResponse<GenericScimResource>>() {
+                                                                    })
+                                                                    .readValue(resourceTypesController.search(null, new MockHttpServletRequest()).getBody());
+        assertNotNull(response);
+    }
+
+    @Test
+    public void getRenderedResourceTypeById() throws Exception {
+        final ScimResource user = JsonUtils.getObjectReader()
+                                           .forType(GenericScimResource.class)
+                                           .readValue(resourceTypesController.get("User", new MockHttpServletRequest()).getBody());
+        assertEquals("User", user.getId());
+    }
+}
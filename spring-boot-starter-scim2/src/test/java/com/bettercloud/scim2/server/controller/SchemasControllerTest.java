@@ -4,20 +4,34 @@ import com.bettercloud.scim2.common.GenericScimResource;
 import com.bettercloud.scim2.common.ScimResource;
 import com.bettercloud.scim2.common.exceptions.ScimException;
 import com.bettercloud.scim2.common.messages.ListResponse;
+import com.bettercloud.scim2.common.utils.JsonUtils;
 import com.bettercloud.scim2.server.controller.discovery.SchemasController;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.test.context.junit4.SpringRunner;
 
+import java.net.URI;
+
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 
 @RunWith(SpringRunner.class)
 @SpringBootTest
 public class SchemasControllerTest {
 
+    private static final String USER_SCHEMA = "urn:ietf:params:scim:schemas:core:2.0:User";
+
     @Autowired
     private SchemasController schemasController;
 
@@ -29,8 +43,91 @@ public class SchemasControllerTest {
 
     @Test
     public void getSchemaById() throws ScimException {
-        final ScimResource response = schemasController.get("urn:ietf:params:scim:schemas:core:2.0:User");
+        final ScimResource response = schemasController.get(USER_SCHEMA);
         assertNotNull(response);
-        assertEquals("urn:ietf:params:scim:schemas:core:2.0:User", response.getId());
+        assertEquals(USER_SCHEMA, response.getId());
+    }
+
+    @Test
+    public void searchRendered() throws Exception {
+        final ResponseEntity<byte[]> response = schemasController.search(null, new MockHttpServletRequest());
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertNotNull(response.getHeaders().getETag());
+        assertEquals("max-age=300", response.getHeaders().getCacheControl());
+
+        final ListResponse<ObjectNode> listResponse = JsonUtils.getObjectReader().forType(new TypeReference<ListResponse<ObjectNode>>() {
+        }).readValue(response.getBody());
+        assertNotNull(listResponse);
+    }
+
+    @Test
+    public void searchWithFilter() throws Exception {
+        final ResponseEntity<byte[]> response = schemasController.search("id eq \"" + USER_SCHEMA + "\"", new MockHttpServletRequest());
+        final JsonNode listResponse = JsonUtils.getObjectReader().forType(JsonNode.class).readValue(response.getBody());
+        assertEquals(1, listResponse.path("totalResults").intValue());
+        assertEquals(USER_SCHEMA, listResponse.path("Resources").path(0).path("id").textValue());
+
+        // Single resource responses are rendered up front.
+        assertSame(response.getBody(), schemasController.search("id eq \"" + USER_SCHEMA + "\"", new MockHttpServletRequest()).getBody());
+        assertEquals(0, JsonUtils.getObjectReader()
+                                 .forType(JsonNode.class)
+                                 .<JsonNode>readValue(schemasController.search("id eq \"urn:unknown\"", new MockHttpServletRequest()).getBody())
+                                 .path("totalResults")
+                                 .intValue());
+    }
+
+    @Test
+    public void searchNotModified() throws Exception {
+        final ResponseEntity<byte[]> response = schemasController.search(null, new MockHttpServletRequest());
+
+        final MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, "\"other\", W/" + response.getHeaders().getETag());
+        final ResponseEntity<byte[]> notModified = schemasController.search(null, request);
+        assertEquals(HttpStatus.NOT_MODIFIED, notModified.getStatusCode());
+        assertEquals(response.getHeaders().getETag(), notModified.getHeaders().getETag());
+        assertNull(notModified.getBody());
+
+        request.removeHeader(HttpHeaders.IF_NONE_MATCH);
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, "\"other\"");
+        assertEquals(HttpStatus.OK, schemasController.search(null, request).getStatusCode());
+    }
+
+    @Test
+    public void searchWithIndexedFilters() throws Exception {
+        final int schemas = totalResults(null);
+        assertEquals(1, totalResults("name eq \"User\""));
+        assertEquals(1, totalResults("id eq \"" + USER_SCHEMA + "\" or id eq \"urn:unknown\""));
+        assertEquals(0, totalResults("id eq \"" + USER_SCHEMA + "\" and name eq \"Group\""));
+        assertEquals(0, totalResults("unknown eq \"User\""));
+        assertEquals(schemas - 1, totalResults("not (id eq \"" + USER_SCHEMA + "\")"));
+        assertEquals(schemas, totalResults("id pr"));
+        assertEquals(1, totalResults("id pr and name eq \"User\""));
+        assertEquals(1, schemasController.search("name eq \"User\"").getTotalResults());
+    }
+
+    @Test
+    public void getRenderedSchemaById() throws Exception {
+        final ResponseEntity<byte[]> response = schemasController.get(USER_SCHEMA, new MockHttpServletRequest());
+        final GenericScimResource schema = JsonUtils.getObjectReader().forType(GenericScimResource.class).readValue(response.getBody());
+        assertNotNull(schema);
+        assertEquals(USER_SCHEMA, schema.getId());
+        assertEquals(URI.create("http://localhost/Schemas/" + USER_SCHEMA), schema.getMeta().getLocation());
+    }
+
+    @Test
+    public void getSchemaByIdWithContextPath() throws Exception {
+        final MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setContextPath("/scim");
+        final ResponseEntity<byte[]> response = schemasController.get(USER_SCHEMA, request);
+        final GenericScimResource schema = JsonUtils.getObjectReader().forType(GenericScimResource.class).readValue(response.getBody());
+        assertEquals(URI.create("http://localhost/scim/Schemas/" + USER_SCHEMA), schema.getMeta().getLocation());
+    }
+
+    private int totalResults(final String filter) throws Exception {
+        return JsonUtils.getObjectReader()
+                        .forType(JsonNode.class)
+                        .<JsonNode>readValue(schemasController.search(filter, new MockHttpServletRequest()).getBody())
+                        .path("totalResults")
+                        .intValue();
     }
-}
\ No newline at end of file
+}
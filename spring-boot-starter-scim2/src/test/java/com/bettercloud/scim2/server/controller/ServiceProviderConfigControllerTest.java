@@ -12,6 +12,10 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.test.context.junit4.SpringRunner;
 
 import java.net.URI;
@@ -21,6 +25,7 @@ import static junit.framework.TestCase.assertTrue;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 
 @RunWith(SpringRunner.class)
 @SpringBootTest
@@ -58,6 +63,11 @@ public class ServiceProviderConfigControllerTest {
         assertTrue(serviceProviderConfigResource.getChangePassword().isSupported());
         assertTrue(serviceProviderConfigResource.getSort().isSupported());
         assertTrue(serviceProviderConfigResource.getEtag().isSupported());
+        assertTrue(serviceProviderConfigResource.getPagination().isCursor());
+        assertTrue(serviceProviderConfigResource.getPagination().isIndex());
+        assertEquals("index", serviceProviderConfigResource.getPagination().getDefaultPaginationMethod());
+        assertEquals(Integer.valueOf(MAX_RESULTS), serviceProviderConfigResource.getPagination().getMaxPageSize());
+        assertNull(serviceProviderConfigResource.getPagination().getCursorTimeout());
 
         assertEquals(AUTHENTICATION_SCHEMES, serviceProviderConfigResource.getAuthenticationSchemes().size());
         final AuthenticationScheme authenticationScheme = serviceProviderConfigResource.getAuthenticationSchemes().get(0);
@@ -68,4 +78,19 @@ public class ServiceProviderConfigControllerTest {
         assertEquals(AUTHENTICATION_SCHEMES_TYPE, authenticationScheme.getType());
         assertEquals(AUTHENTICATION_SCHEMES_PRIMARY, authenticationScheme.isPrimary());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void getServiceProviderConfigNotModified() throws Exception {
+        final ResponseEntity<byte[]> response = serviceProviderConfigController.get(new MockHttpServletRequest());
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertNotNull(response.getHeaders().getETag());
+        final GenericScimResource rendered = JsonUtils.getObjectReader().forType(GenericScimResource.class).readValue(response.getBody());
+        assertEquals(URI.create("http://localhost/ServiceProviderConfig"), rendered.getMeta().getLocation());
+
+        final MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, response.getHeaders().getETag());
+        final ResponseEntity<byte[]> notModified = serviceProviderConfigController.get(request);
+        assertEquals(HttpStatus.NOT_MODIFIED, notModified.getStatusCode());
+        assertNull(notModified.getBody());
+    }
+}
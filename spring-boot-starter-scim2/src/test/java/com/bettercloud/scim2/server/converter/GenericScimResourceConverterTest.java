@@ -0,0 +1,136 @@
+package com.bettercloud.scim2.server.converter;
+
+import com.bettercloud.scim2.common.GenericScimResource;
+import com.bettercloud.scim2.common.types.UserResource;
+import com.bettercloud.scim2.common.utils.SchemaUtils;
+import com.bettercloud.scim2.server.ResourcePreparer;
+import com.bettercloud.scim2.server.ResourceTypeDefinition;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class GenericScimResourceConverterTest {
+
+    private static final String[] IDS = {"1", "abc-DEF_123", "with space", "50%", "a/b", "/leading", "a//b", "trailing/", "", "a:b", "a?b#c",
+                                         "ünïcödé", "a+b=c&d", "@home", "~user;1"};
+
+    private ResourceTypeDefinition resourceTypeDefinition;
+
+    private GenericScimResourceConverter<GenericScimResource> converter;
+
+    @Before
+    public void setUp() throws Exception {
+        resourceTypeDefinition = new ResourceTypeDefinition(null, "User", null, "/Users", SchemaUtils.getSchema(UserResource.class),
+                                                            Collections.emptyMap(), true);
+        converter = new GenericScimResourceConverter<>(resourceTypeDefinition, "https://example.com");
+
+        final MockHttpServletRequest request = new MockHttpServletRequest("GET", "/scim/Users");
+        request.setContextPath("/scim");
+        request.setServletPath("/Users");
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+    }
+
+    @After
+    public void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    public void convertListSetsLocations() throws Exception {
+        final List<GenericScimResource> users = new ArrayList<>();
+        for (String id : IDS) {
+            users.add(user(id));
+        }
+
+        final List<URI> baseUris = new ArrayList<>();
+        final List<GenericScimResource> converted = converter.convert(null, null, users, (user, baseUri) -> baseUris.add(baseUri));
+
+        assertEquals(IDS.length, converted.size());
+        for (int i = 0; i < IDS.length; i++) {
+            assertEquals(URI.create("https://example.com//scim"), baseUris.get(i));
+            assertEquals(IDS[i], converted.get(i).getId());
+            assertEquals("User", converted.get(i).getMeta().getResourceType());
+            assertEquals(expectedLocation(URI.create("https://example.com//scim//Users"), IDS[i]), converted.get(i).getMeta().getLocation());
+        }
+    }
+
+    @Test
+    public void locationsMatchUriComponentsBuilder() throws Exception {
+        for (String baseUri : new String[]{"https://example.com/scim/Users", "https://example.com/scim/Users/", "https://example.com",
+                                           "https://example.com/", "http://user@example.com:8080/a%20b/Users", "https://example.com//scim//Users",
+                                           "https://example.com/Users?x=1", "/Users", "Users"}) {
+            final ResourcePreparer<GenericScimResource> preparer = new ResourcePreparer<>(resourceTypeDefinition, null, null,
+                                                                                          URI.create(baseUri));
+            for (String id : IDS) {
+                final GenericScimResource user = user(id);
+                preparer.setResourceTypeAndLocation(user);
+                assertEquals(baseUri + " " + id, expectedLocation(URI.create(baseUri), id), user.getMeta().getLocation());
+            }
+        }
+    }
+
+    @Test
+    public void convertLargeListInParallel() throws Exception {
+        final List<GenericScimResource> users = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            users.add(user(String.valueOf(i)));
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final GenericScimResourceConverter<GenericScimResource> parallelConverter =
+                    new GenericScimResourceConverter<>(resourceTypeDefinition, "https://example.com", executor, 100);
+            final Set<URI> baseUris = ConcurrentHashMap.newKeySet();
+            final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+            final List<GenericScimResource> converted = parallelConverter.convert("userName", null, users, (user, baseUri) -> {
+                baseUris.add(baseUri);
+                threads.add(Thread.currentThread());
+            });
+
+            final List<GenericScimResource> expected = converter.convert("userName", null, users);
+            assertEquals(Collections.singleton(URI.create("https://example.com//scim")), baseUris);
+            assertTrue(threads.size() > 1);
+            assertEquals(users.size(), converted.size());
+            for (int i = 0; i < users.size(); i++) {
+                assertEquals(expected.get(i).getObjectNode(), converted.get(i).getObjectNode());
+                assertEquals(String.valueOf(i), converted.get(i).getId());
+                assertNull(converted.get(i).getObjectNode().get("meta"));
+            }
+
+            // Lists below the threshold stay on the calling thread.
+            threads.clear();
+            parallelConverter.convert(null, null, users.subList(0, 99), (user, baseUri) -> threads.add(Thread.currentThread()));
+            assertEquals(Collections.singleton(Thread.currentThread()), threads);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static URI expectedLocation(final URI baseUri, final String id) {
+        return UriComponentsBuilder.fromUri(baseUri).path("/").path(id).build().toUri();
+    }
+
+    private static GenericScimResource user(final String id) {
+        final GenericScimResource user = new GenericScimResource();
+        user.getObjectNode().put("id", id);
+        user.getObjectNode().put("userName", "user" + id);
+        return user;
+    }
+}